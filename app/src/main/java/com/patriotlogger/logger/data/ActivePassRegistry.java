@@ -0,0 +1,102 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authoritative in-memory view of the open pass (not LOGGED / TIMED_OUT) for each tagId.
+ *
+ * Seeded once from the database when the scanner starts, then kept current by the
+ * Repository on every insert and state transition, so the per-sample path never has
+ * to query tag_status to find the row it is already holding.
+ *
+ * The rows are the scan workers' live, mutable TagStatus objects. {@link #get} and
+ * {@link #live()} return them as they are; {@link #snapshot()} returns copies.
+ */
+public final class ActivePassRegistry {
+
+    private final Map<Integer, TagStatus> openPassByTag = new ConcurrentHashMap<>();
+
+    /** Replace the registry contents with the given open passes (later trackIds win per tag). */
+    public void seed(@Nullable List<TagStatus> openPasses) {
+        openPassByTag.clear();
+        if (openPasses == null) return;
+        for (TagStatus ts : openPasses) {
+            if (!isOpen(ts)) continue;
+            ts.writtenState = ts.state; // loaded from the database, so already persisted
+            put(ts);
+        }
+    }
+
+    /** @return the open pass for this tag, or null if the tag has no pass in progress. */
+    @Nullable
+    public TagStatus get(int tagId) {
+        return openPassByTag.get(tagId);
+    }
+
+    public void put(@NonNull TagStatus ts) {
+        TagStatus current = openPassByTag.get(ts.tagId);
+        if (current == null || current.trackId <= ts.trackId) {
+            openPassByTag.put(ts.tagId, ts);
+        }
+    }
+
+    /**
+     * Apply a state change. Terminal states drop the pass so the next sample for the
+     * tag starts a new one; anything else (re)registers it.
+     */
+    public void onStateChanged(@NonNull TagStatus ts) {
+        if (isOpen(ts)) {
+            put(ts);
+        } else {
+            TagStatus current = openPassByTag.get(ts.tagId);
+            if (current != null && current.trackId == ts.trackId) {
+                openPassByTag.remove(ts.tagId, current);
+            }
+        }
+    }
+
+    /**
+     * Copies of all open passes, each taken under its row's monitor, for any thread. Changing
+     * a copy changes nothing.
+     */
+    @NonNull
+    public List<TagStatus> snapshot() {
+        List<TagStatus> out = new ArrayList<>(openPassByTag.size());
+        for (TagStatus ts : openPassByTag.values()) {
+            synchronized (ts) {
+                out.add(ts.copy());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * The live open-pass rows (safe to iterate while the registry changes). Only the scan
+     * worker that owns a tag may change its row, under the row's monitor; anyone else reads
+     * it under that monitor too, or uses {@link #snapshot()}.
+     */
+    @NonNull
+    public List<TagStatus> live() {
+        return new ArrayList<>(openPassByTag.values());
+    }
+
+    public int size() {
+        return openPassByTag.size();
+    }
+
+    public void clear() {
+        openPassByTag.clear();
+    }
+
+    public static boolean isOpen(@Nullable TagStatus ts) {
+        return ts != null
+                && ts.state != TagStatus.TagStatusState.LOGGED
+                && ts.state != TagStatus.TagStatusState.TIMED_OUT;
+    }
+}
@@ -4,8 +4,8 @@ import androidx.room.Database;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
 
-// Schema changed, incremented version to 9
-@Database(entities = {TagStatus.class, Racer.class, RaceContext.class, Setting.class, TagData.class}, version = 10)
+// Schema changed, incremented version to 19
+@Database(entities = {TagStatus.class, Racer.class, RaceContext.class, Setting.class, TagData.class, TagDataChunk.class}, version = 19)
 @TypeConverters({TagStatusStateConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
     public abstract TagStatusDao tagStatusDao();
@@ -13,6 +13,7 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract RaceContextDao raceContextDao();
     public abstract SettingDao settingDao();
     public abstract TagDataDao tagDataDao();
+    public abstract TagDataChunkDao tagDataChunkDao();
 
     public void clearAllTablesExceptSettings() {
         // Run the clear operations in a single transaction
@@ -21,6 +22,7 @@ public abstract class AppDatabase extends RoomDatabase {
             racerDao().clear();
             raceContextDao().clear();
             tagDataDao().clear();
+            tagDataChunkDao().clear();
             // Note: We DO NOT call settingDao().clear()
         });
     }
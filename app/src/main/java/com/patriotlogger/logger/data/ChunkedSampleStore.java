@@ -0,0 +1,176 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples stored as {@link TagDataChunk}s: about 3 bytes per advertisement plus one chunk row
+ * per {@link SampleChunkCodec#CHUNK_SAMPLES} samples, instead of a tag_data row and index
+ * entry per advertisement.
+ *
+ * A flush inserts one chunk per track, however many samples it holds, and never rewrites
+ * earlier chunks. A track's chunks that are not full yet form its open run; once the run holds
+ * a full chunk's worth, or the track's pass ends, it is re-encoded into full chunks from the
+ * copies kept here (no read). Each sample is written about twice, where rewriting a growing
+ * tail chunk on every flush would write it up to {@code CHUNK_SAMPLES} times.
+ *
+ * Writes run inside the caller's transaction and are synchronized, since a blocking flush may
+ * run off the database thread; reads may run anywhere.
+ */
+final class ChunkedSampleStore {
+
+    private final TagDataChunkDao dao;
+
+    // open run per track; guarded by this
+    private final Map<Integer, OpenRun> openRuns = new HashMap<>();
+    private final byte[] scratch = new byte[SampleChunkCodec.CHUNK_SAMPLES * SampleChunkCodec.MAX_SAMPLE_BYTES];
+
+    /** A track's chunks that are not full yet, oldest first, as last written. */
+    private static final class OpenRun {
+        final List<TagDataChunk> chunks = new ArrayList<>();
+        int samples = 0;
+    }
+
+    ChunkedSampleStore(@NonNull TagDataChunkDao dao) {
+        this.dao = dao;
+    }
+
+    /** Append one track's flushed samples (in arrival order). */
+    synchronized void appendSync(int trackId, @NonNull List<TagData> rows) {
+        final int n = rows.size();
+        if (n == 0) return;
+        final long[] ts = new long[n];
+        final int[] rssi = new int[n];
+        for (int k = 0; k < n; k++) {
+            ts[k] = rows.get(k).timestampMs;
+            rssi[k] = rows.get(k).rssi;
+        }
+        final OpenRun run = openRunFor(trackId);
+        for (int i = 0; i < n; i += SampleChunkCodec.CHUNK_SAMPLES) {
+            final int take = Math.min(SampleChunkCodec.CHUNK_SAMPLES, n - i);
+            final TagDataChunk chunk = encode(trackId, ts, rssi, i, take);
+            chunk.chunkId = dao.insert(chunk);
+            run.chunks.add(chunk);
+            run.samples += take;
+        }
+        if (run.samples >= SampleChunkCodec.CHUNK_SAMPLES) compact(trackId, run, false);
+    }
+
+    /** The track won't be appended to again: compact its open run and forget it. */
+    synchronized void sealTrackSync(int trackId) {
+        final OpenRun run = openRuns.remove(trackId);
+        if (run != null && run.chunks.size() > 1) compact(trackId, run, true);
+    }
+
+    /** Cached open runs may not match the database (e.g. after a rolled-back flush). */
+    synchronized void invalidateOpenRuns() {
+        openRuns.clear();
+    }
+
+    synchronized void deleteTrackSync(int trackId) {
+        openRuns.remove(trackId);
+        dao.deleteChunksForTrackIdSync(trackId);
+    }
+
+    @NonNull
+    List<TagData> readTrackSync(int trackId) {
+        return decode(dao.getChunksForTrackIdSync(trackId), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /** Samples with {@code fromMs <= timestampMs <= toMs}, decoding only the chunks that overlap. */
+    @NonNull
+    List<TagData> readRangeSync(int trackId, long fromMs, long toMs) {
+        return decode(dao.getChunksInRangeSync(trackId, fromMs, toMs), fromMs, toMs);
+    }
+
+    @NonNull
+    List<TagData> readAllSync() {
+        return decode(dao.getAllChunksSync(), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private OpenRun openRunFor(int trackId) {
+        OpenRun run = openRuns.get(trackId);
+        if (run != null) return run;
+        // first append since start (or since an invalidation): pick up the stored open run
+        run = new OpenRun();
+        for (TagDataChunk c : dao.getOpenChunksForTrackIdSync(trackId, SampleChunkCodec.CHUNK_SAMPLES)) {
+            run.chunks.add(c);
+            run.samples += c.sampleCount;
+        }
+        openRuns.put(trackId, run);
+        return run;
+    }
+
+    /** Rewrites the run as full chunks; unless sealing, a partial remainder stays open. */
+    private void compact(int trackId, OpenRun run, boolean seal) {
+        final long[] ts = new long[run.samples];
+        final int[] rssi = new int[run.samples];
+        final List<Long> oldIds = new ArrayList<>(run.chunks.size());
+        int n = 0;
+        for (TagDataChunk c : run.chunks) {
+            n += SampleChunkCodec.decode(c.payload, Math.min(c.sampleCount, ts.length - n), ts, rssi, n);
+            oldIds.add(c.chunkId);
+        }
+        run.chunks.clear();
+        run.samples = 0;
+
+        for (int i = 0; i < n; i += SampleChunkCodec.CHUNK_SAMPLES) {
+            final int take = Math.min(SampleChunkCodec.CHUNK_SAMPLES, n - i);
+            final TagDataChunk chunk = encode(trackId, ts, rssi, i, take);
+            chunk.chunkId = dao.insert(chunk);
+            if (take < SampleChunkCodec.CHUNK_SAMPLES && !seal) {
+                run.chunks.add(chunk);
+                run.samples = take;
+            }
+        }
+        dao.deleteChunksSync(oldIds);
+    }
+
+    private TagDataChunk encode(int trackId, long[] ts, int[] rssi, int from, int count) {
+        int len = 0;
+        long previous = 0L;
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int k = from; k < from + count; k++) {
+            len = SampleChunkCodec.put(scratch, len, previous, ts[k], rssi[k]);
+            previous = ts[k];
+            if (ts[k] < min) min = ts[k];
+            if (ts[k] > max) max = ts[k];
+        }
+        final TagDataChunk chunk = new TagDataChunk();
+        chunk.trackId = trackId;
+        chunk.minTimestampMs = min;
+        chunk.maxTimestampMs = max;
+        chunk.sampleCount = count;
+        chunk.payload = Arrays.copyOf(scratch, len);
+        return chunk;
+    }
+
+    /** Chunks arrive by start time; samples that arrived out of order are put back in place. */
+    @NonNull
+    private static List<TagData> decode(List<TagDataChunk> chunks, long fromMs, long toMs) {
+        if (chunks == null || chunks.isEmpty()) return new ArrayList<>();
+        int total = 0;
+        for (TagDataChunk c : chunks) total += c.sampleCount;
+        final List<TagData> out = new ArrayList<>(total);
+        final long[] ts = new long[SampleChunkCodec.CHUNK_SAMPLES];
+        final int[] rssi = new int[SampleChunkCodec.CHUNK_SAMPLES];
+        boolean sorted = true;
+        long last = Long.MIN_VALUE;
+        for (TagDataChunk c : chunks) {
+            final int n = SampleChunkCodec.decode(c.payload, Math.min(c.sampleCount, ts.length), ts, rssi, 0);
+            for (int k = 0; k < n; k++) {
+                if (ts[k] < fromMs || ts[k] > toMs) continue;
+                if (ts[k] < last) sorted = false;
+                last = ts[k];
+                out.add(new TagData(c.trackId, ts[k], rssi[k]));
+            }
+        }
+        if (!sorted) out.sort((a, b) -> Long.compare(a.timestampMs, b.timestampMs));
+        return out;
+    }
+}
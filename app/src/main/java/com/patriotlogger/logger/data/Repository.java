@@ -3,6 +3,7 @@ package com.patriotlogger.logger.data;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -13,7 +14,9 @@ import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.patriotlogger.logger.logic.PipelineConfig;
 import com.patriotlogger.logger.logic.RssiData;
+import com.patriotlogger.logger.metrics.PipelineMetrics;
 
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
@@ -24,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -37,17 +41,43 @@ public final class Repository {
 
     private final Map<Integer, Object> tagLockMap = new ConcurrentHashMap<>();
 
+    // Open pass per tagId; replaces the per-sample getLatestForTagIdSync lookup
+    private final ActivePassRegistry activePasses = new ActivePassRegistry();
+
     private final MutableLiveData<Boolean> areSettingsInitialized = new MutableLiveData<>(false);
 
     // ===== Step-2: buffered TagData + periodic flush =====
-    private final Map<Integer, List<TagData>> inMemoryTagDataBufferByTrack = new ConcurrentHashMap<>();
+    private final Map<Integer, TrackSampleBuffer> sampleBufferByTrack = new ConcurrentHashMap<>();
+
+    // chunked sample storage (Setting.chunked_sample_storage); reads always cover both tables
+    private final ChunkedSampleStore chunkStore;
+
+    // ===== bounded per-track history (read by handlers that need it) =====
+    private final Map<Integer, TrackSampleWindow> historyWindowByTrack = new ConcurrentHashMap<>();
+    private volatile int historyWindowSamples = Setting.DEFAULT_HISTORY_WINDOW_SAMPLES;
+    private volatile long historyWindowMs = Setting.DEFAULT_HISTORY_WINDOW_MS;
+
+    // ===== write-behind for TagStatus (state transitions write through) =====
+    private final StatusWriteStats statusWriteStats = new StatusWriteStats();
+    private final TagStatusWriteBehind statusWrites = new TagStatusWriteBehind(activePasses, statusWriteStats);
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+
+    // bumped by clearAllData so callers caching passes/buffers know to drop them
+    private volatile int dataGeneration = 0;
+
+    // shared so every observer sees one version sequence
+    private volatile PipelineConfig pipelineConfig = PipelineConfig.defaults();
 
     private volatile long tagDataFlushIntervalMs = 2000L;
     private volatile boolean savingEnabled = true;
 
     private final Runnable periodicFlushRunnable = new Runnable() {
         @Override public void run() {
-            try { flushAllTagDataBuffersInternal(); }
+            try {
+                flushAllTagDataBuffersInternal();
+                flushDirtyTagStatusesInternal();
+                statusWriteStats.updateRates(System.currentTimeMillis());
+            }
             finally { mainThreadHandler.postDelayed(this, tagDataFlushIntervalMs); }
         }
     };
@@ -65,6 +95,16 @@ public final class Repository {
         this.tagDataFlushIntervalMs = intervalMs;
     }
 
+    /**
+     * Horizons for the per-track history windows. The sample count applies to windows
+     * created after the call; the age horizon applies to all windows immediately.
+     */
+    public void setHistoryWindow(int maxSamples, long maxAgeMs) {
+        this.historyWindowSamples = Math.max(1, maxSamples);
+        this.historyWindowMs = Math.max(0L, maxAgeMs);
+        for (TrackSampleWindow w : historyWindowByTrack.values()) w.setMaxAgeMs(this.historyWindowMs);
+    }
+
     private Repository(Context ctx) {
         databaseWriteExecutor = Executors.newSingleThreadExecutor();
         db = Room.databaseBuilder(ctx.getApplicationContext(), AppDatabase.class, "psl.db")
@@ -78,6 +118,7 @@ public final class Repository {
                     }
                 })
                 .build();
+        chunkStore = new ChunkedSampleStore(db.tagDataChunkDao());
 
         mainThreadHandler.postDelayed(periodicFlushRunnable, tagDataFlushIntervalMs);
     }
@@ -93,10 +134,14 @@ public final class Repository {
 
     // ===== TagStatus helpers =====
     private TagStatus createNewTagStatus(int tagId){
+        return createNewTagStatus(tagId, System.currentTimeMillis());
+    }
+
+    private TagStatus createNewTagStatus(int tagId, long entryTimeMs){
         TagStatus newStatus = new TagStatus();
         newStatus.tagId = tagId;
-        newStatus.entryTimeMs = System.currentTimeMillis();
-        newStatus.lastSeenMs = System.currentTimeMillis();
+        newStatus.entryTimeMs = entryTimeMs;
+        newStatus.lastSeenMs = entryTimeMs;
         newStatus.state = TagStatus.TagStatusState.FIRST_SAMPLE;
         return newStatus;
     }
@@ -116,35 +161,39 @@ public final class Repository {
         clearCalibrationBuffer(); // reuse the later helper
     }
 
+    /**
+     * Returns the open pass for this tag, starting a new one if the last pass ended.
+     * Served from the in-memory registry; only a brand-new pass touches the database.
+     */
     public TagStatus getOrCreateActiveStatus(int tagId) {
+        return getOrCreateActiveStatus(tagId, System.currentTimeMillis());
+    }
+
+    /**
+     * Same, with the pass times taken from the sample that opened it rather than from when
+     * it was processed, so a sample handled late still starts its pass at the right time.
+     */
+    public TagStatus getOrCreateActiveStatus(int tagId, long sampleTimeMs) {
         final Object tagLock = tagLockMap.computeIfAbsent(tagId, k -> new Object());
         synchronized (tagLock) {
-            TagStatus ts = db.tagStatusDao().getLatestForTagIdSync(tagId);
+            TagStatus ts = activePasses.get(tagId);
 
             // Check if we need to start a new pass
-            if (ts == null || ts.state == TagStatus.TagStatusState.LOGGED || ts.state == TagStatus.TagStatusState.TIMED_OUT) {
-                // --- START OF FIX ---
-
-                // 1. Create a completely new TagStatus object for the new pass.
-                ts = createNewTagStatus(tagId);
-
-                // 2. Resolve the friendly name for this NEW object.
+            if (ts == null || !ActivePassRegistry.isOpen(ts)) {
+                ts = createNewTagStatus(tagId, sampleTimeMs);
                 ts.friendlyName = resolveFriendlyName(tagId);
 
-                // 3. Insert it into the database to get a new auto-generated trackId.
+                // Insert it into the database to get a new auto-generated trackId.
                 long newId = db.tagStatusDao().insertSync(ts);
                 ts.trackId = (int) newId;
-
-                // --- END OF FIX ---
+                ts.writtenState = ts.state;
+                activePasses.put(ts);
             } else {
                 // This is a continuation of an existing, active pass.
-                // Just update the last seen time.
-                ts.lastSeenMs = System.currentTimeMillis();
-                // No need to update the friendly name, it's already set.
+                synchronized (ts) {
+                    ts.lastSeenMs = Math.max(ts.lastSeenMs, sampleTimeMs);
+                }
             }
-
-            // By this point, 'ts' is the correct object for the current pass,
-            // whether it's brand new or a continuation of an active one.
             return ts;
         }
     }
@@ -155,10 +204,36 @@ public final class Repository {
             TagStatus ts = createNewTagStatus(tagId);
             long newId = db.tagStatusDao().insertSync(ts);
             ts.trackId = (int) newId;
+            ts.writtenState = ts.state;
+            activePasses.put(ts);
             return ts;
         }
     }
 
+    /**
+     * Loads the open passes from the database into the in-memory registry.
+     * Call once from a background thread when the scanner starts.
+     * @return the open passes that were registered
+     */
+    public List<TagStatus> seedActivePassRegistry() {
+        List<TagStatus> open = db.tagStatusDao().getOpenPassesSync();
+        activePasses.seed(open);
+        return activePasses.snapshot();
+    }
+
+    /** Copies of the open passes as currently known in memory (no database access). */
+    public List<TagStatus> getActivePassesSnapshot() {
+        return activePasses.snapshot();
+    }
+
+    /**
+     * The live open-pass rows, for the scan workers' sweep. A worker may only touch the rows
+     * of the tags it owns, under each row's monitor.
+     */
+    public List<TagStatus> getActivePassesLive() {
+        return activePasses.live();
+    }
+
 //    public TagStatus getLatestTagStatusForId(int tagId){
 //        Object tagLock = tagLockMap.computeIfAbsent(tagId, k -> new Object());
 //        TagStatus ts;
@@ -188,26 +263,59 @@ public final class Repository {
 
     // ===== Step-2: buffered TagData API =====
     public void appendInMemoryTagData(TagData tagData) {
+        appendInMemoryTagData(tagData, true);
+    }
+
+    /** @param retainInHistory also append to the track's history window (only needed by history-reading handlers) */
+    public void appendInMemoryTagData(TagData tagData, boolean retainInHistory) {
         if (tagData == null) return;
         final int trackId = tagData.trackId;
-        final Object tagLock = tagLockMap.computeIfAbsent(trackId, k -> new Object());
-        synchronized (tagLock) {
-            inMemoryTagDataBufferByTrack
-                    .computeIfAbsent(trackId, __ -> new ArrayList<>())
-                    .add(tagData);
+        sampleBufferFor(trackId).append(tagData.timestampMs, tagData.rssi);
+        if (retainInHistory) historyWindowFor(trackId).append(tagData);
+    }
+
+    /**
+     * Append a run of samples for one track (ascending time) under a single lock acquisition.
+     * Used by batched ingestion.
+     */
+    public void appendInMemoryTagData(List<TagData> rows, boolean retainInHistory) {
+        if (rows == null || rows.isEmpty()) return;
+        final int trackId = rows.get(0).trackId;
+        sampleBufferFor(trackId).appendAll(rows);
+        if (retainInHistory) historyWindowFor(trackId).appendAll(rows);
+    }
+
+    /**
+     * The unflushed-sample buffer for a track. The scan worker caches this per open pass and
+     * appends primitives to it directly, so steady-state appends allocate nothing.
+     */
+    public TrackSampleBuffer sampleBufferFor(int trackId) {
+        TrackSampleBuffer b = sampleBufferByTrack.get(trackId);
+        if (b == null) {
+            b = sampleBufferByTrack.computeIfAbsent(trackId, k -> new TrackSampleBuffer(k, 64));
         }
+        return b;
     }
 
+    /** Changes whenever clearAllData wipes passes and buffers. */
+    public int getDataGeneration() { return dataGeneration; }
+
+    /**
+     * Recent history for an open track, as a zero-copy read-only view over its bounded
+     * window (no database access). Read it on the thread that appends samples for the track.
+     */
+    public List<TagData> getHistoryWindowView(int trackId) {
+        TrackSampleWindow w = historyWindowByTrack.get(trackId);
+        return (w != null) ? w.view() : Collections.emptyList();
+    }
+
+    /** Full history (persisted + unflushed buffer). Reads the whole track; keep off the per-sample path. */
     public List<TagData> getHistoryForTrackIdSyncCombined(int trackId) {
-        List<TagData> persisted = db.tagDataDao().getSamplesForTrackIdSync(trackId);
-        if (persisted == null) persisted = Collections.emptyList();
+        List<TagData> persisted = getSamplesForTrackIdSync(trackId);
 
         List<TagData> copyBuffer = Collections.emptyList();
-        final Object tagLock = tagLockMap.computeIfAbsent(trackId, k -> new Object());
-        synchronized (tagLock) {
-            List<TagData> buf = inMemoryTagDataBufferByTrack.get(trackId);
-            if (buf != null && !buf.isEmpty()) copyBuffer = new ArrayList<>(buf);
-        }
+        TrackSampleBuffer buf = sampleBufferByTrack.get(trackId);
+        if (buf != null) copyBuffer = buf.copyRows();
 
         if (copyBuffer.isEmpty()) return new ArrayList<>(persisted);
         List<TagData> combined = new ArrayList<>(persisted.size() + copyBuffer.size());
@@ -217,43 +325,71 @@ public final class Repository {
     }
 
     public void clearInMemorySamplesForTrackId(int trackId) {
-        final Object tagLock = tagLockMap.computeIfAbsent(trackId, k -> new Object());
-        synchronized (tagLock) {
-            inMemoryTagDataBufferByTrack.remove(trackId);
-        }
+        sampleBufferByTrack.remove(trackId);
+        historyWindowByTrack.remove(trackId);
     }
 
+    /**
+     * Re-seed the history windows of open passes with their latest persisted samples.
+     * Runs synchronously; call from the thread that will process samples, before scanning.
+     * Samples go to the history window only; they are already in tag_data and must not be re-flushed.
+     */
     public void restoreOpenPassBuffers(int maxPerTrack) {
         if (maxPerTrack <= 0) return;
-        databaseWriteExecutor.execute(() -> {
-            try {
-                List<TagStatus> open = db.tagStatusDao().getOpenPassesSync();
-                if (open == null || open.isEmpty()) return;
-
-                for (TagStatus ts : open) {
-                    final int trackId = ts.trackId;
-                    List<TagData> all = db.tagDataDao().getSamplesForTrackIdSync(trackId);
-                    if (all == null || all.isEmpty()) continue;
-
-                    // take the last N in ascending time order
-                    int from = Math.max(0, all.size() - maxPerTrack);
-                    List<TagData> tail = new ArrayList<>(all.subList(from, all.size()));
-                    tail.sort(Comparator.comparingLong(td -> td.timestampMs));
-
-                    final Object tagLock = tagLockMap.computeIfAbsent(trackId, k -> new Object());
-                    synchronized (tagLock) {
-                        inMemoryTagDataBufferByTrack.put(trackId, new ArrayList<>(tail));
-                    }
-                }
-            } catch (Throwable t) {
-                // best-effort; no-op on failure
-                t.printStackTrace();
+        try {
+            for (TagStatus ts : activePasses.live()) {
+                final int trackId = ts.trackId;
+                List<TagData> all = getSamplesForTrackIdSync(trackId);
+                if (all.isEmpty()) continue;
+
+                // take the last N in ascending time order
+                int from = Math.max(0, all.size() - maxPerTrack);
+                List<TagData> tail = new ArrayList<>(all.subList(from, all.size()));
+                tail.sort(Comparator.comparingLong(td -> td.timestampMs));
+
+                TrackSampleWindow w = historyWindowFor(trackId);
+                w.clear();
+                w.appendAll(tail);
             }
-        });
+        } catch (Throwable t) {
+            // best-effort; no-op on failure
+            t.printStackTrace();
+        }
     }
 
+    private TrackSampleWindow historyWindowFor(int trackId) {
+        TrackSampleWindow w = historyWindowByTrack.get(trackId);
+        if (w == null) {
+            w = historyWindowByTrack.computeIfAbsent(trackId,
+                    k -> new TrackSampleWindow(historyWindowSamples, historyWindowMs));
+        }
+        return w;
+    }
+
+    /** Persisted samples of a track from both sample tables, oldest first. */
     public List<TagData> getSamplesForTrackIdSync(int trackId) {
-        return  db.tagDataDao().getSamplesForTrackIdSync(trackId);
+        return mergeByTime(db.tagDataDao().getSamplesForTrackIdSync(trackId), chunkStore.readTrackSync(trackId));
+    }
+
+    /** Persisted samples of a track with {@code fromMs <= timestampMs <= toMs}, oldest first. */
+    public List<TagData> getSamplesInRangeSync(int trackId, long fromMs, long toMs) {
+        return mergeByTime(db.tagDataDao().getSamplesInRangeSync(trackId, fromMs, toMs),
+                chunkStore.readRangeSync(trackId, fromMs, toMs));
+    }
+
+    /** Every persisted sample, oldest first (exports). */
+    public List<TagData> getAllSamplesSync() {
+        return mergeByTime(db.tagDataDao().getAllTagDataSync(), chunkStore.readAllSync());
+    }
+
+    private static List<TagData> mergeByTime(@Nullable List<TagData> rows, @NonNull List<TagData> chunked) {
+        if (chunked.isEmpty()) return rows != null ? rows : new ArrayList<>();
+        if (rows == null || rows.isEmpty()) return chunked;
+        List<TagData> out = new ArrayList<>(rows.size() + chunked.size());
+        out.addAll(rows);
+        out.addAll(chunked);
+        out.sort(Comparator.comparingLong(td -> td.timestampMs));
+        return out;
     }
 
     public List<TagStatus> getAllActiveTagsSync(){
@@ -261,7 +397,13 @@ public final class Repository {
     }
 
     public void insertTagData(TagData tagData) {
-        databaseWriteExecutor.execute(() -> db.tagDataDao().insert(tagData));
+        databaseWriteExecutor.execute(() -> {
+            if (pipelineConfig.chunkedSampleStorage) {
+                db.runInTransaction(() -> chunkStore.appendSync(tagData.trackId, Collections.singletonList(tagData)));
+            } else {
+                db.tagDataDao().insert(tagData);
+            }
+        });
     }
 
     // === RESTORED ===
@@ -271,7 +413,7 @@ public final class Repository {
 
     public LiveData<DataCount> getTotalDataCount(){
         MediatorLiveData<DataCount> mediatorLiveData = new MediatorLiveData<>();
-        LiveData<Integer> samplesCountSource = db.tagDataDao().getTotalSamplesCount();
+        LiveData<Integer> samplesCountSource = totalSamplesCount();
         LiveData<Integer> statusesCountSource = db.tagStatusDao().getStatusSampleCount();
 
         mediatorLiveData.addSource(samplesCountSource, sampleCount -> {
@@ -291,8 +433,25 @@ public final class Repository {
         return mediatorLiveData;
     }
 
+    /** Row and chunk sample counts, summed. */
+    private LiveData<Integer> totalSamplesCount() {
+        MediatorLiveData<Integer> total = new MediatorLiveData<>();
+        LiveData<Integer> rows = db.tagDataDao().getTotalSamplesCount();
+        LiveData<Integer> chunked = db.tagDataChunkDao().getTotalSamplesCount();
+        total.addSource(rows, n -> {
+            if (chunked.getValue() != null) total.setValue(n + chunked.getValue());
+        });
+        total.addSource(chunked, n -> {
+            if (rows.getValue() != null) total.setValue(rows.getValue() + n);
+        });
+        return total;
+    }
+
     public void deleteSamplesForTrackId(int trackId) {
-        databaseWriteExecutor.execute(() -> db.tagDataDao().deleteSamplesForTrackIdSync(trackId));
+        databaseWriteExecutor.execute(() -> {
+            db.tagDataDao().deleteSamplesForTrackIdSync(trackId);
+            chunkStore.deleteTrackSync(trackId);
+        });
     }
 
     public AppDatabase getDatabase() { return db; }
@@ -321,14 +480,35 @@ public final class Repository {
         return db.tagStatusDao().liveAll();
     }
 
+    /**
+     * Persist a TagStatus. Inserts, callers wanting a callback, and changes into
+     * APPROACHING/HERE/LOGGED/TIMED_OUT are written immediately; anything else (typically
+     * just lastSeenMs) flags the row dirty and is coalesced into the next batch flush.
+     * The coalesced path touches no maps, so it is allocation-free per sample.
+     * Either way the database is handed a copy taken under the row's monitor, never the row itself.
+     */
     public void upsertTagStatus(TagStatus s, boolean deleteSamples, @Nullable RepositoryCallback<Long> callback) {
+        if (s.trackId != 0 && callback == null && !isWriteThroughTransition(s)) {
+            statusWrites.markDirty(s);
+            return;
+        }
+
+        final TagStatus row = statusWrites.prepareImmediateWrite(s);
+        if (!ActivePassRegistry.isOpen(row)) {
+            historyWindowByTrack.remove(row.trackId);
+            TrackSampleBuffer buf = sampleBufferByTrack.get(row.trackId);
+            if (buf != null) buf.markClosed();
+        }
+
+        final long queuedNs = System.nanoTime();
         databaseWriteExecutor.execute(() -> {
             try {
-                long rowId = db.tagStatusDao().upsertSync(s);
-                if ( s.state == TagStatus.TagStatusState.LOGGED){
+                long rowId = db.tagStatusDao().upsertSync(row);
+                metrics.record(PipelineMetrics.Stage.STATUS_WRITE, System.nanoTime() - queuedNs);
+                if ( row.state == TagStatus.TagStatusState.LOGGED){
                     if (deleteSamples) {
-                        clearInMemorySamplesForTrackId(s.trackId);
-                        deleteSamplesForTrackId(s.trackId);
+                        clearInMemorySamplesForTrackId(row.trackId);
+                        deleteSamplesForTrackId(row.trackId);
                     }
                 }
                 if (callback != null) mainThreadHandler.post(() -> callback.onSuccess(rowId));
@@ -338,6 +518,30 @@ public final class Repository {
         });
     }
 
+    /**
+     * Scan worker: persist a handler-state blob with the open pass it was taken from. The pass
+     * and the blob are copied together, and the copy goes out with the next batch flush.
+     */
+    public void stageHandlerState(@NonNull TagStatus pass, @NonNull byte[] handlerState) {
+        if (pass.trackId == 0 || !ActivePassRegistry.isOpen(pass)) return;
+        statusWrites.stageHandlerState(pass, handlerState);
+    }
+
+    private static boolean isWriteThroughTransition(TagStatus s) {
+        if (s.state == s.writtenState) return false;
+        switch (s.state) {
+            case APPROACHING:
+            case HERE:
+            case LOGGED:
+            case TIMED_OUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public StatusWriteStats getStatusWriteStats() { return statusWriteStats; }
+
     public void upsertRacers(List<Racer> rs) {
         databaseWriteExecutor.execute(() -> db.racerDao().upsertAll(rs));
     }
@@ -397,6 +601,28 @@ public final class Repository {
         return mediatedLiveData;
     }
 
+    /**
+     * Settings as immutable {@link PipelineConfig} snapshots, built once per change on the main
+     * thread. Emits only when a value the pipeline reads actually changed.
+     */
+    public LiveData<PipelineConfig> getLivePipelineConfig() {
+        MediatorLiveData<PipelineConfig> out = new MediatorLiveData<>();
+        out.addSource(getLiveConfig(), setting -> {
+            if (setting == null) return;
+            PipelineConfig next = advancePipelineConfig(setting);
+            if (out.getValue() != next) out.setValue(next);
+        });
+        return out;
+    }
+
+    /** The latest snapshot (defaults until settings have loaded). */
+    public PipelineConfig getPipelineConfig() { return pipelineConfig; }
+
+    private synchronized PipelineConfig advancePipelineConfig(Setting setting) {
+        pipelineConfig = PipelineConfig.next(pipelineConfig, setting);
+        return pipelineConfig;
+    }
+
     public void upsertConfig(Setting setting, @Nullable RepositoryVoidCallback callback) {
         setting.id = Setting.SETTINGS_ID;
         databaseWriteExecutor.execute(() -> {
@@ -412,7 +638,12 @@ public final class Repository {
     public void clearAllData(boolean clearSettings,@Nullable RepositoryVoidCallback callback) {
         databaseWriteExecutor.execute(() -> {
             try {
-                inMemoryTagDataBufferByTrack.clear();
+                dataGeneration++;
+                sampleBufferByTrack.clear();
+                activePasses.clear();
+                historyWindowByTrack.clear();
+                statusWrites.clear();
+                chunkStore.invalidateOpenRuns();
                 clearCalibrationBuffer();
                 if ( clearSettings){
                     db.clearAllTables();
@@ -431,6 +662,7 @@ public final class Repository {
     public void flushPendingSamplesNow() {
         try {
             flushAllTagDataBuffersInternal();
+            flushDirtyTagStatusesInternal();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -442,22 +674,42 @@ public final class Repository {
         if (!savingEnabled) return;
         Map<Integer, List<TagData>> snap = snapshotInMemoryBuffers();
         if (snap.isEmpty()) return;
-        databaseWriteExecutor.execute(() -> {
-            try {
-                flushSnapshotSync(snap);
-            } catch (Exception ex) {
-                // On failure, re-queue back into per-track buffer
-                for (Map.Entry<Integer, List<TagData>> e : snap.entrySet()) {
-                    final int trackId = e.getKey();
-                    final Object tagLock = tagLockMap.computeIfAbsent(trackId, k -> new Object());
-                    synchronized (tagLock) {
-                        inMemoryTagDataBufferByTrack
-                                .computeIfAbsent(trackId, __ -> new ArrayList<>())
-                                .addAll(e.getValue());
-                    }
-                }
+        databaseWriteExecutor.execute(() -> flushSnapshotOrRequeue(snap));
+    }
+
+    /** DB executor: write the snapshot, or put it back into the per-track buffers for the next flush. */
+    private void flushSnapshotOrRequeue(Map<Integer, List<TagData>> snap) {
+        try {
+            flushSnapshotSync(snap);
+        } catch (Exception ex) {
+            // On failure, re-queue back into per-track buffer
+            for (Map.Entry<Integer, List<TagData>> e : snap.entrySet()) {
+                sampleBufferFor(e.getKey()).appendAll(e.getValue());
             }
-        });
+        }
+    }
+
+    // ===== write-behind internals: coalesced TagStatus flush =====
+    private void flushDirtyTagStatusesInternal() {
+        List<TagStatus> snap = statusWrites.drain();
+        if (snap.isEmpty()) return;
+        final long queuedNs = System.nanoTime();
+        databaseWriteExecutor.execute(() -> flushDirtyStatusesSync(snap, queuedNs));
+    }
+
+    private void flushDirtyStatusesSync(List<TagStatus> snap, long queuedNs) {
+        try {
+            // one transaction => one invalidation of liveAll() for the whole batch
+            db.runInTransaction(() -> {
+                for (TagStatus ts : snap) db.tagStatusDao().updateSync(ts);
+            });
+            statusWriteStats.onBatchFlushed(snap.size());
+            final long latencyNs = System.nanoTime() - queuedNs;
+            for (int i = 0; i < snap.size(); i++) metrics.record(PipelineMetrics.Stage.STATUS_WRITE, latencyNs);
+        } catch (Exception ex) {
+            // flag the rows again for the next flush
+            statusWrites.requeue(snap);
+        }
     }
 
     // ===== Step-5: calibration stream (mirror kept for compatibility) =====
@@ -482,49 +734,92 @@ public final class Repository {
 
     // ===== NEW: helper to fetch the latest open pass (not LOGGED/TIMED_OUT) =====
     public int getLatestOpenTrackIdForTag(int tagId) {
-        TagStatus ts = db.tagStatusDao().getTagStatusForTagId(tagId);
+        TagStatus ts = activePasses.get(tagId);
         if (ts == null) return -1;
-        if (ts.state == TagStatus.TagStatusState.LOGGED || ts.state == TagStatus.TagStatusState.TIMED_OUT) return -1;
-        return ts.trackId;
+        synchronized (ts) {
+            return ActivePassRegistry.isOpen(ts) ? ts.trackId : -1;
+        }
     }
 
 
     // === NEW: snapshot + synchronous flush helpers ===
     private Map<Integer, List<TagData>> snapshotInMemoryBuffers() {
         final Map<Integer, List<TagData>> snapshot = new ConcurrentHashMap<>();
-        for (Map.Entry<Integer, List<TagData>> e : inMemoryTagDataBufferByTrack.entrySet()) {
-            final int trackId = e.getKey();
-            final Object tagLock = tagLockMap.computeIfAbsent(trackId, k -> new Object());
-            List<TagData> toFlush;
-            synchronized (tagLock) {
-                List<TagData> buf = inMemoryTagDataBufferByTrack.get(trackId);
-                if (buf == null || buf.isEmpty()) continue;
-                toFlush = new ArrayList<>(buf);
-                buf.clear();
+        for (Map.Entry<Integer, TrackSampleBuffer> e : sampleBufferByTrack.entrySet()) {
+            final TrackSampleBuffer buf = e.getValue();
+            List<TagData> toFlush = buf.drain();
+            if (toFlush.isEmpty()) {
+                // pass is over and everything it buffered has been handed to a flush
+                if (buf.isClosed() && sampleBufferByTrack.remove(e.getKey(), buf)) {
+                    final int trackId = e.getKey();
+                    // queued behind the flushes that still carry its samples
+                    databaseWriteExecutor.execute(() -> sealChunksSync(trackId));
+                }
+                continue;
             }
-            snapshot.put(trackId, toFlush);
+            snapshot.put(e.getKey(), toFlush);
         }
         return snapshot;
     }
 
+    private void sealChunksSync(int trackId) {
+        try {
+            db.runInTransaction(() -> chunkStore.sealTrackSync(trackId));
+        } catch (RuntimeException ex) {
+            // rolled back: the open run stays as it was and is picked up again from the database
+            chunkStore.invalidateOpenRuns();
+        }
+    }
+
     private void flushSnapshotSync(Map<Integer, List<TagData>> snapshot) {
         if (snapshot == null || snapshot.isEmpty()) return;
+        final boolean chunked = pipelineConfig.chunkedSampleStorage;
         // Optional: run in a transaction for speed/atomicity
-        db.runInTransaction(() -> {
-            for (Map.Entry<Integer, List<TagData>> e : snapshot.entrySet()) {
-                List<TagData> items = e.getValue();
-                if (items == null || items.isEmpty()) continue;
-                db.tagDataDao().insertAll(items);
+        try {
+            db.runInTransaction(() -> {
+                for (Map.Entry<Integer, List<TagData>> e : snapshot.entrySet()) {
+                    List<TagData> items = e.getValue();
+                    if (items == null || items.isEmpty()) continue;
+                    if (chunked) chunkStore.appendSync(e.getKey(), items);
+                    else db.tagDataDao().insertAll(items);
+                }
+            });
+        } catch (RuntimeException ex) {
+            // rolled back: cached open runs may hold chunks that were never committed
+            if (chunked) chunkStore.invalidateOpenRuns();
+            throw ex;
+        }
+        // sample timestamps are wall-clock ms
+        final long committedMs = System.currentTimeMillis();
+        for (List<TagData> items : snapshot.values()) {
+            if (items == null) continue;
+            for (int i = 0; i < items.size(); i++) {
+                metrics.recordMillis(PipelineMetrics.Stage.BUFFER_TO_COMMIT, committedMs - items.get(i).timestampMs);
             }
-        });
+        }
     }
 
-    /** Public: block this thread until all in-memory TagData are written to DB. */
+    /**
+     * Public: block this thread until all in-memory TagData are written to DB. The write runs on
+     * the DB executor like every other, so it lands after earlier flushes and before any chunk
+     * seal queued behind it. Not to be called from the DB executor.
+     */
     public void flushPendingSamplesBlocking() {
+        List<TagStatus> dirty = statusWrites.drain();
+        if (!dirty.isEmpty()) {
+            final long queuedNs = System.nanoTime();
+            databaseWriteExecutor.execute(() -> flushDirtyStatusesSync(dirty, queuedNs));
+        }
         if (!savingEnabled) return;
         Map<Integer, List<TagData>> snap = snapshotInMemoryBuffers();
         if (snap.isEmpty()) return;
-        flushSnapshotSync(snap);
+        try {
+            databaseWriteExecutor.submit(() -> flushSnapshotOrRequeue(snap)).get();
+        } catch (ExecutionException ee) {
+            Log.w(TAG, "Blocking sample flush failed", ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /** Public: wait until all previously queued DB tasks have run. */
@@ -544,7 +839,7 @@ public final class Repository {
         databaseWriteExecutor.execute(() -> {
             Exception error = null;
             try {
-                List<TagData> rows = db.tagDataDao().getSamplesForTrackIdSync(trackId);
+                List<TagData> rows = getSamplesForTrackIdSync(trackId);
                 // write header
                 output.write("timestampMs,trackId,tagId,rssi\n".getBytes(StandardCharsets.UTF_8));
 
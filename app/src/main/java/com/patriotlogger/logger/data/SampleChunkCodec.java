@@ -0,0 +1,70 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Payload format of a {@link TagDataChunk}: per sample, the timestamp as a zigzag varint
+ * delta from the previous sample (the first sample's delta is from 0, so a chunk decodes on
+ * its own), then the RSSI as one signed byte. Samples are self-delimiting, so payloads can be
+ * decoded one after another into a single run.
+ *
+ * A typical advertisement costs 2-3 bytes: a delta of up to 8 s fits two varint bytes.
+ * RSSI outside [-128, 127] dBm is clamped (BLE reports roughly -127..20).
+ */
+public final class SampleChunkCodec {
+
+    /** Samples per chunk; a full chunk is at most {@code CHUNK_SAMPLES * MAX_SAMPLE_BYTES} bytes. */
+    public static final int CHUNK_SAMPLES = 256;
+
+    /** Worst case: a 10-byte varint plus the RSSI byte. */
+    public static final int MAX_SAMPLE_BYTES = 11;
+
+    private SampleChunkCodec() {}
+
+    /**
+     * Writes one sample at {@code pos}, its time relative to {@code previousTimestampMs}
+     * (0 for a chunk's first sample). {@code out} needs {@link #MAX_SAMPLE_BYTES} free.
+     *
+     * @return the position after the sample
+     */
+    public static int put(@NonNull byte[] out, int pos, long previousTimestampMs, long timestampMs, int rssi) {
+        long delta = timestampMs - previousTimestampMs;
+        long v = (delta << 1) ^ (delta >> 63); // zigzag: small |delta| -> small unsigned
+        while ((v & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out[pos++] = (byte) v;
+        out[pos++] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, rssi));
+        return pos;
+    }
+
+    /**
+     * Decodes the first {@code count} samples of a payload into parallel arrays starting at
+     * {@code outFrom}.
+     *
+     * @return the number of samples decoded (fewer than {@code count} if the payload is short)
+     */
+    public static int decode(@NonNull byte[] payload, int count,
+                             @NonNull long[] timestampsOut, @NonNull int[] rssiOut, int outFrom) {
+        int pos = 0;
+        long ts = 0L;
+        int n = 0;
+        while (n < count && pos < payload.length) {
+            long v = 0L;
+            int shift = 0;
+            byte b;
+            do {
+                b = payload[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && pos < payload.length);
+            if (pos >= payload.length) break; // truncated: no RSSI byte
+            ts += (v >>> 1) ^ -(v & 1);
+            timestampsOut[outFrom + n] = ts;
+            rssiOut[outFrom + n] = payload[pos++];
+            n++;
+        }
+        return n;
+    }
+}
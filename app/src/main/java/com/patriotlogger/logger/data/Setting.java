@@ -27,12 +27,29 @@ public class Setting {
 
     public static final int    DEFAULT_FILTER_MIN_RSSI       = -105;
     public static final int    DEFAULT_FILTER_MAX_RSSI       =  -25;
+    public static final int    DEFAULT_FILTER_MEDIAN_WINDOW  = 0; // 0 = median-delta filter off
+    public static final int    DEFAULT_FILTER_MEDIAN_MAX_DELTA_DB = 8;
 
     // --- NEW: runtime cadence defaults ---
     public static final int    DEFAULT_TAGDATA_FLUSH_MS      = 200; // repo flush cadence
     public static final int    DEFAULT_SWEEP_INTERVAL_MS     = 1000; // service sweep cadence
     public static final int    DEFAULT_ABANDONED_TIMEOUT_MS  = 5000; // HERE -> TIMED_OUT
 
+    // --- per-track in-memory history window (for handlers that need history) ---
+    public static final int    DEFAULT_HISTORY_WINDOW_SAMPLES = 120;
+    public static final int    DEFAULT_HISTORY_WINDOW_MS      = 30000; // 0 = count horizon only
+    public static final boolean DEFAULT_CHUNKED_SAMPLE_STORAGE = false; // tag_data rows
+
+    // --- scan ingestion ---
+    public static final int    DEFAULT_SCAN_REPORT_DELAY_MS   = 0; // 0 = per-result callbacks, >0 = batched
+    public static final boolean DEFAULT_SCAN_HARDWARE_FILTER  = false; // off: legacy tags only advertise a name
+    public static final int    DEFAULT_WORKER_SHARDS          = 1; // processing threads, tags split by tagId
+    public static final int    DEFAULT_SCAN_QUEUE_CAPACITY    = 1024; // per shard
+    public static final String DEFAULT_SCAN_QUEUE_POLICY      = "DROP_OLDEST_PER_TAG";
+    public static final int    DEFAULT_SCAN_QUEUE_PER_TAG_LIMIT = 16;
+    public static final int    DEFAULT_SCAN_COALESCE_MS       = 0; // 0 = every advertisement runs the handler
+    public static final String DEFAULT_SCAN_COALESCE_MODE     = "MAX";
+
     // --- NEW: handler EMA default ---
     public static final float  DEFAULT_TCA_ALPHA             = 0.30f;
 
@@ -79,6 +96,10 @@ public class Setting {
     public Integer filter_min_rssi = DEFAULT_FILTER_MIN_RSSI;
     /** Absolute max RSSI to accept. */
     public Integer filter_max_rssi = DEFAULT_FILTER_MAX_RSSI;
+    /** Per-tag median window (samples) for outlier rejection; 0 disables it. */
+    public Integer filter_median_window = DEFAULT_FILTER_MEDIAN_WINDOW;
+    /** Reject a sample further than this (dB) from its tag's running median. */
+    public Integer filter_median_max_delta_db = DEFAULT_FILTER_MEDIAN_MAX_DELTA_DB;
 
     // --- NEW: runtime cadences ---
     /** Repository periodic flush interval (ms) for TagData buffers. */
@@ -90,6 +111,56 @@ public class Setting {
     /** Abandoned HERE timeout (ms) before auto TIMED_OUT. */
     public Integer abandoned_timeout_ms = DEFAULT_ABANDONED_TIMEOUT_MS;
 
+    // --- history window ---
+    /** Max samples kept per open track for handlers that need history. */
+    public Integer history_window_samples = DEFAULT_HISTORY_WINDOW_SAMPLES;
+
+    /** Max age (ms) of samples kept per open track; 0 = no time horizon. */
+    public Integer history_window_ms = DEFAULT_HISTORY_WINDOW_MS;
+
+    /**
+     * Persist samples as delta-encoded chunks (tag_data_chunk) instead of one tag_data row per
+     * advertisement. Reads cover both tables, so switching keeps earlier samples visible.
+     */
+    public Boolean chunked_sample_storage = DEFAULT_CHUNKED_SAMPLE_STORAGE;
+
+    // --- scan ingestion ---
+    /**
+     * BLE report delay (ms). 0 delivers every advertisement as it arrives; >0 lets the
+     * controller batch results and the service processes each batch as one unit.
+     */
+    public Integer scan_report_delay_ms = DEFAULT_SCAN_REPORT_DELAY_MS;
+
+    /**
+     * Pass ScanFilters for the binary tag payload to the controller so other devices'
+     * advertisements are dropped before reaching the app. Tags that only advertise a
+     * "PT-123" name are not matched while this is on.
+     */
+    public Boolean scan_hardware_filter = DEFAULT_SCAN_HARDWARE_FILTER;
+
+    /**
+     * Number of processing threads. Tags are assigned to a thread by tagId, so each tag's
+     * samples stay in order while a slow tag no longer delays the others.
+     */
+    public Integer worker_shards = DEFAULT_WORKER_SHARDS;
+
+    // --- scan queue (callback -> worker) ---
+    /** Samples each shard's queue holds before new ones are dropped. */
+    public Integer scan_queue_capacity = DEFAULT_SCAN_QUEUE_CAPACITY;
+
+    /** DROP_NEWEST, DROP_OLDEST_PER_TAG or COALESCE_LATEST (see ScanSampleRing.OverflowPolicy). */
+    public String scan_queue_policy = DEFAULT_SCAN_QUEUE_POLICY;
+
+    /** Queued samples allowed per tag under DROP_OLDEST_PER_TAG. */
+    public Integer scan_queue_per_tag_limit = DEFAULT_SCAN_QUEUE_PER_TAG_LIMIT;
+
+    // --- burst coalescing (worker, ahead of the handler) ---
+    /** Per-tag bucket (ms) whose advertisements become one sample; 0 disables coalescing. */
+    public Integer scan_coalesce_ms = DEFAULT_SCAN_COALESCE_MS;
+
+    /** MAX, MEAN or MEDIAN RSSI per bucket (see BurstCoalescer.Mode). */
+    public String scan_coalesce_mode = DEFAULT_SCAN_COALESCE_MODE;
+
     public Setting() {}
 
     @Override
@@ -110,9 +181,22 @@ public class Setting {
                 ", tca_alpha=" + tca_alpha +
                 ", filter_min_rssi=" + filter_min_rssi +
                 ", filter_max_rssi=" + filter_max_rssi +
+                ", filter_median_window=" + filter_median_window +
+                ", filter_median_max_delta_db=" + filter_median_max_delta_db +
                 ", tagdata_flush_ms=" + tagdata_flush_ms +
                 ", sweep_interval_ms=" + sweep_interval_ms +
                 ", abandoned_timeout_ms=" + abandoned_timeout_ms +
+                ", history_window_samples=" + history_window_samples +
+                ", history_window_ms=" + history_window_ms +
+                ", chunked_sample_storage=" + chunked_sample_storage +
+                ", scan_report_delay_ms=" + scan_report_delay_ms +
+                ", scan_hardware_filter=" + scan_hardware_filter +
+                ", worker_shards=" + worker_shards +
+                ", scan_queue_capacity=" + scan_queue_capacity +
+                ", scan_queue_policy=" + scan_queue_policy +
+                ", scan_queue_per_tag_limit=" + scan_queue_per_tag_limit +
+                ", scan_coalesce_ms=" + scan_coalesce_ms +
+                ", scan_coalesce_mode=" + scan_coalesce_mode +
                 '}';
     }
 }
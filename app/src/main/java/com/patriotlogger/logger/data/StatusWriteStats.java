@@ -0,0 +1,80 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the TagStatus write-behind layer in {@link Repository}.
+ *
+ * Every coalesced upsert is a write that did not happen immediately. A batch flush writes
+ * each dirty row once inside a single transaction, so Room invalidates liveAll() once per
+ * batch instead of once per update. Rates are computed per flush interval.
+ */
+public final class StatusWriteStats {
+
+    private final AtomicLong immediateWrites = new AtomicLong();
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+    private final AtomicLong batchedRows = new AtomicLong();
+    private final AtomicLong batchTransactions = new AtomicLong();
+
+    // interval bookkeeping (touched only by the flush thread)
+    private long lastCoalesced = 0L;
+    private long lastBatchedRows = 0L;
+    private long lastTransactions = 0L;
+    private long lastRateAtMs = 0L;
+
+    private volatile double writesAvoidedPerSec = 0.0;
+    private volatile double invalidationsAvoidedPerSec = 0.0;
+
+    void onImmediateWrite() { immediateWrites.incrementAndGet(); }
+
+    void onCoalesced() { coalescedUpdates.incrementAndGet(); }
+
+    void onBatchFlushed(int rows) {
+        if (rows <= 0) return;
+        batchedRows.addAndGet(rows);
+        batchTransactions.incrementAndGet();
+    }
+
+    /** Recompute the per-second rates over the interval since the previous call. */
+    void updateRates(long nowMs) {
+        final long coalesced = coalescedUpdates.get();
+        final long rows = batchedRows.get();
+        final long tx = batchTransactions.get();
+        if (lastRateAtMs > 0L && nowMs > lastRateAtMs) {
+            final double sec = (nowMs - lastRateAtMs) / 1000.0;
+            final long dCoalesced = coalesced - lastCoalesced;
+            writesAvoidedPerSec = Math.max(0L, dCoalesced - (rows - lastBatchedRows)) / sec;
+            invalidationsAvoidedPerSec = Math.max(0L, dCoalesced - (tx - lastTransactions)) / sec;
+        }
+        lastCoalesced = coalesced;
+        lastBatchedRows = rows;
+        lastTransactions = tx;
+        lastRateAtMs = nowMs;
+    }
+
+    public long getImmediateWrites() { return immediateWrites.get(); }
+    public long getCoalescedUpdates() { return coalescedUpdates.get(); }
+    public long getBatchedRows() { return batchedRows.get(); }
+    public long getBatchTransactions() { return batchTransactions.get(); }
+
+    /** Upserts that never reached SQLite because a later one for the same track superseded them. */
+    public long getWritesAvoided() { return Math.max(0L, coalescedUpdates.get() - batchedRows.get()); }
+
+    /** Per-update invalidations replaced by one invalidation per batch transaction. */
+    public long getInvalidationsAvoided() { return Math.max(0L, coalescedUpdates.get() - batchTransactions.get()); }
+
+    public double getWritesAvoidedPerSec() { return writesAvoidedPerSec; }
+    public double getInvalidationsAvoidedPerSec() { return invalidationsAvoidedPerSec; }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "StatusWriteStats{immediate=%d, coalesced=%d, batchedRows=%d, batches=%d, writesAvoided/s=%.1f, invalidationsAvoided/s=%.1f}",
+                getImmediateWrites(), getCoalescedUpdates(), getBatchedRows(), getBatchTransactions(),
+                writesAvoidedPerSec, invalidationsAvoidedPerSec);
+    }
+}
@@ -0,0 +1,39 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Up to {@link SampleChunkCodec#CHUNK_SAMPLES} samples of one track packed into a BLOB
+ * (see {@link SampleChunkCodec}), instead of one {@link TagData} row per advertisement.
+ * A track's chunks are written in time order; chunks that are not full are later replaced
+ * by full ones (see {@link ChunkedSampleStore}).
+ */
+@Entity(tableName = "tag_data_chunk",
+        foreignKeys = @ForeignKey(entity = TagStatus.class,
+                                   parentColumns = "trackId",
+                                   childColumns = "trackId",
+                                   onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = {"trackId", "minTimestampMs"})}
+)
+public class TagDataChunk {
+
+    @PrimaryKey(autoGenerate = true)
+    public long chunkId;
+
+    public int trackId; // Foreign key to TagStatus.trackId
+
+    // time span of the chunk's samples, for range reads
+    public long minTimestampMs;
+    public long maxTimestampMs;
+
+    public int sampleCount;
+
+    @NonNull
+    public byte[] payload = new byte[0];
+
+    public TagDataChunk() {}
+}
@@ -0,0 +1,41 @@
+package com.patriotlogger.logger.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface TagDataChunkDao {
+
+    @Insert
+    long insert(TagDataChunk chunk);
+
+    @Query("SELECT * FROM tag_data_chunk WHERE trackId = :trackId AND sampleCount < :fullCount " +
+           "ORDER BY minTimestampMs ASC, chunkId ASC")
+    List<TagDataChunk> getOpenChunksForTrackIdSync(int trackId, int fullCount);
+
+    @Query("SELECT * FROM tag_data_chunk WHERE trackId = :trackId ORDER BY minTimestampMs ASC, chunkId ASC")
+    List<TagDataChunk> getChunksForTrackIdSync(int trackId);
+
+    @Query("SELECT * FROM tag_data_chunk WHERE trackId = :trackId " +
+           "AND maxTimestampMs >= :fromMs AND minTimestampMs <= :toMs ORDER BY minTimestampMs ASC, chunkId ASC")
+    List<TagDataChunk> getChunksInRangeSync(int trackId, long fromMs, long toMs);
+
+    @Query("SELECT * FROM tag_data_chunk ORDER BY minTimestampMs ASC, chunkId ASC")
+    List<TagDataChunk> getAllChunksSync();
+
+    @Query("DELETE FROM tag_data_chunk WHERE chunkId IN (:chunkIds)")
+    void deleteChunksSync(List<Long> chunkIds);
+
+    @Query("DELETE FROM tag_data_chunk WHERE trackId = :trackId")
+    void deleteChunksForTrackIdSync(int trackId);
+
+    @Query("DELETE FROM tag_data_chunk")
+    void clear();
+
+    @Query("SELECT IFNULL(SUM(sampleCount), 0) FROM tag_data_chunk")
+    LiveData<Integer> getTotalSamplesCount();
+}
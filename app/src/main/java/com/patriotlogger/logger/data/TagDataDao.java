@@ -46,6 +46,10 @@ public interface TagDataDao {
     @Query("SELECT * FROM tag_data WHERE trackId = :trackId ORDER BY timestampMs ASC")
     List<TagData> getSamplesForTrackIdSync(int trackId);
 
+    @Query("SELECT * FROM tag_data WHERE trackId = :trackId " +
+           "AND timestampMs BETWEEN :fromMs AND :toMs ORDER BY timestampMs ASC")
+    List<TagData> getSamplesInRangeSync(int trackId, long fromMs, long toMs);
+
     @Query("SELECT * FROM tag_data WHERE timestampMs > :sinceTimestampMs ORDER BY timestampMs ASC")
     List<TagData> getNewSamplesSync(long sinceTimestampMs);
 
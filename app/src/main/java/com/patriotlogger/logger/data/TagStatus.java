@@ -1,11 +1,18 @@
 package com.patriotlogger.logger.data;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.room.Entity;
+import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.TypeConverters;
 
+/**
+ * One pass of a tag. An open pass is mutated in place by the scan worker that owns its tag,
+ * always while holding this object's monitor; other threads (the batch flush, the database
+ * executor) only ever see a {@link #copy()} taken under that monitor.
+ */
 @Entity(
         tableName = "tag_status",
         indices = {@Index(value = {"tagId", "state"})}
@@ -39,8 +46,42 @@ public class TagStatus {
 
     public long lastSeenMs = 0L;
 
+    /** RssiHandler.snapshotState() for an open pass, so a restarted service resumes it (null if none). */
+    @Nullable
+    public byte[] handlerState = null;
+
+    // --- write-behind bookkeeping (not persisted) ---
+    /** Changed since the last write; picked up by the Repository's batch flush. */
+    @Ignore
+    public volatile boolean dirty = false;
+
+    /** State as of the last immediate write or insert (null = never written from this process). */
+    @Ignore
+    public TagStatusState writtenState = null;
+
     public TagStatus() {}
 
+    /**
+     * Detached copy of the persisted columns, safe to hand to another thread. Take it while
+     * holding this row's monitor. The handlerState blob is shared: blobs are replaced, never
+     * modified.
+     */
+    @NonNull
+    public TagStatus copy() {
+        TagStatus c = new TagStatus();
+        c.trackId = trackId;
+        c.tagId = tagId;
+        c.friendlyName = friendlyName;
+        c.entryTimeMs = entryTimeMs;
+        c.arrivedTimeMs = arrivedTimeMs;
+        c.peakTimeMs = peakTimeMs;
+        c.exitTimeMs = exitTimeMs;
+        c.state = state;
+        c.lastSeenMs = lastSeenMs;
+        c.handlerState = handlerState;
+        return c;
+    }
+
     @Override
     public String toString() {
         return "TagStatus{" +
@@ -53,6 +94,7 @@ public class TagStatus {
                 ", exitTimeMs=" + exitTimeMs +
                 ", state=" + state +
                 ", lastSeenMs=" + lastSeenMs +
+                ", handlerState=" + (handlerState != null ? handlerState.length + "B" : "null") +
                 '}';
     }
 }
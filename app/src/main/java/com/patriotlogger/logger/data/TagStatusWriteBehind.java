@@ -0,0 +1,126 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Repository's TagStatus write-behind. Scan workers keep mutating an open pass in place
+ * (under its monitor, see {@link TagStatus}); everything this class hands to the database
+ * executor is a {@link TagStatus#copy()} taken under that same monitor, so a write never
+ * mixes two samples' worth of fields (e.g. a new state with an old peakTimeMs).
+ *
+ * Coalesced updates only flag the live row, so the per-sample path allocates nothing; the
+ * batch flush copies flagged rows. Copies made on the worker side (rows that already left
+ * the registry, handler-state snapshots) wait per track until the next flush.
+ */
+public final class TagStatusWriteBehind {
+
+    private final ActivePassRegistry passes;
+    private final StatusWriteStats stats;
+
+    // detached copies waiting for the next batch flush, at most one (the latest) per track
+    private final Map<Integer, TagStatus> stagedByTrack = new ConcurrentHashMap<>();
+
+    public TagStatusWriteBehind(@NonNull ActivePassRegistry passes, @NonNull StatusWriteStats stats) {
+        this.passes = passes;
+        this.stats = stats;
+    }
+
+    /** Worker, coalesced path: flag the row for the next batch flush. */
+    public void markDirty(@NonNull TagStatus s) {
+        // the registry only needs touching when the state moved (e.g. into TOO_FAR)
+        if (s.state != s.writtenState) passes.onStateChanged(s);
+        if (ActivePassRegistry.isOpen(s)) {
+            s.dirty = true;
+        } else {
+            // the flush walks the registry; rows outside it are copied now so they still get written
+            synchronized (s) {
+                s.dirty = false;
+                stagedByTrack.put(s.trackId, s.copy());
+            }
+        }
+        stats.onCoalesced();
+    }
+
+    /**
+     * Worker, write-through path: the copy to write now. It supersedes any pending coalesced
+     * update for the track. Closed passes drop their handler state (only open passes resume).
+     */
+    @NonNull
+    public TagStatus prepareImmediateWrite(@NonNull TagStatus s) {
+        // keep the registry in step with the caller before the write is queued
+        passes.onStateChanged(s);
+        final TagStatus row;
+        synchronized (s) {
+            if (!ActivePassRegistry.isOpen(s)) s.handlerState = null;
+            s.dirty = false;
+            s.writtenState = s.state;
+            if (s.trackId != 0) stagedByTrack.remove(s.trackId);
+            row = s.copy();
+        }
+        stats.onImmediateWrite();
+        return row;
+    }
+
+    /**
+     * Worker: put a fresh handler-state blob on the open pass and stage a copy of the pass taken
+     * in the same step, so the blob is written together with the fields it was taken at.
+     */
+    public void stageHandlerState(@NonNull TagStatus s, @NonNull byte[] handlerState) {
+        synchronized (s) {
+            s.handlerState = handlerState;
+            s.dirty = false;
+            stagedByTrack.put(s.trackId, s.copy());
+        }
+        stats.onCoalesced();
+    }
+
+    /**
+     * Flush side: copies of every pending row, oldest first, with the flags cleared. A later
+     * change to a row flags it again.
+     */
+    @NonNull
+    public List<TagStatus> drain() {
+        List<TagStatus> out = null;
+        for (Integer trackId : stagedByTrack.keySet()) {
+            TagStatus c = stagedByTrack.remove(trackId);
+            if (c == null) continue;
+            if (out == null) out = new ArrayList<>();
+            out.add(c);
+        }
+        for (TagStatus ts : passes.live()) {
+            if (!ts.dirty) continue;
+            synchronized (ts) {
+                if (!ts.dirty) continue;
+                ts.dirty = false;
+                // newer than anything staged for the track
+                stagedByTrack.remove(ts.trackId);
+                if (out == null) out = new ArrayList<>();
+                out.add(ts.copy());
+            }
+        }
+        return (out != null) ? out : Collections.emptyList();
+    }
+
+    /**
+     * A drained batch failed to write. Rows still open are flagged again (the next flush copies
+     * their current state); the rest are re-staged unless something newer is already waiting.
+     */
+    public void requeue(@NonNull List<TagStatus> failed) {
+        for (int i = failed.size() - 1; i >= 0; i--) {
+            final TagStatus c = failed.get(i);
+            final TagStatus live = passes.get(c.tagId);
+            if (live != null && live.trackId == c.trackId) live.dirty = true;
+            else stagedByTrack.putIfAbsent(c.trackId, c);
+        }
+    }
+
+    public void clear() {
+        stagedByTrack.clear();
+    }
+}
@@ -0,0 +1,124 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unflushed samples for one track, held in primitive columns.
+ *
+ * Appends write into preallocated arrays (growing only while the flush interval's worth of
+ * samples is still being learned). {@link #drain} swaps in the spare arrays under the lock
+ * and builds TagData rows outside it, on the flushing thread, so the sample thread never
+ * allocates a row object.
+ */
+public final class TrackSampleBuffer {
+
+    private final int trackId;
+
+    private long[] timestamps;
+    private int[]  rssis;
+    private int    size = 0;
+
+    // arrays handed back by the last drain, reused by the next one
+    private long[] spareTimestamps;
+    private int[]  spareRssis;
+
+    private volatile boolean closed = false;
+
+    public TrackSampleBuffer(int trackId, int initialCapacity) {
+        this.trackId = trackId;
+        int c = Math.max(8, initialCapacity);
+        this.timestamps = new long[c];
+        this.rssis = new int[c];
+    }
+
+    public int getTrackId() { return trackId; }
+
+    public synchronized void append(long timestampMs, int rssi) {
+        if (size == timestamps.length) grow();
+        timestamps[size] = timestampMs;
+        rssis[size] = rssi;
+        size++;
+    }
+
+    public synchronized void appendAll(@NonNull List<TagData> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            TagData td = rows.get(i);
+            if (size == timestamps.length) grow();
+            timestamps[size] = td.timestampMs;
+            rssis[size] = td.rssi;
+            size++;
+        }
+    }
+
+    /** Append {@code length} samples from parallel arrays, starting at {@code from}. */
+    public synchronized void appendAll(@NonNull long[] timestampsMs, @NonNull int[] rssi, int from, int length) {
+        while (size + length > timestamps.length) grow();
+        System.arraycopy(timestampsMs, from, timestamps, size, length);
+        System.arraycopy(rssi, from, rssis, size, length);
+        size += length;
+    }
+
+    public synchronized int size() { return size; }
+
+    /** Remove everything buffered so far and return it as TagData rows (oldest first). */
+    @NonNull
+    public List<TagData> drain() {
+        final long[] ts;
+        final int[] rs;
+        final int n;
+        synchronized (this) {
+            if (size == 0) return Collections.emptyList();
+            ts = timestamps;
+            rs = rssis;
+            n = size;
+            if (spareTimestamps != null) {
+                timestamps = spareTimestamps;
+                rssis = spareRssis;
+                spareTimestamps = null;
+                spareRssis = null;
+            } else {
+                timestamps = new long[ts.length];
+                rssis = new int[rs.length];
+            }
+            size = 0;
+        }
+
+        List<TagData> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(new TagData(trackId, ts[i], rs[i]));
+
+        synchronized (this) {
+            if (spareTimestamps == null) {
+                spareTimestamps = ts;
+                spareRssis = rs;
+            }
+        }
+        return out;
+    }
+
+    /** Copy of the buffered samples as TagData rows, leaving the buffer untouched. */
+    @NonNull
+    public synchronized List<TagData> copyRows() {
+        List<TagData> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(new TagData(trackId, timestamps[i], rssis[i]));
+        return out;
+    }
+
+    /** The pass has ended; once drained this buffer can be discarded. */
+    public void markClosed() { closed = true; }
+
+    public boolean isClosed() { return closed; }
+
+    private void grow() {
+        int c = timestamps.length << 1;
+        long[] ts = new long[c];
+        int[] rs = new int[c];
+        System.arraycopy(timestamps, 0, ts, 0, size);
+        System.arraycopy(rssis, 0, rs, 0, size);
+        timestamps = ts;
+        rssis = rs;
+    }
+}
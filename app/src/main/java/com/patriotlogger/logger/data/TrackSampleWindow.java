@@ -0,0 +1,82 @@
+package com.patriotlogger.logger.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Bounded, incrementally maintained sample history for one track.
+ *
+ * Samples live in a fixed ring (count horizon) and are additionally trimmed by age
+ * (time horizon, 0 = unbounded). {@link #view()} is a zero-copy, read-only List over
+ * the ring in ascending time order; it reflects later appends, so read it on the
+ * thread that owns the track and do not hold on to it across samples.
+ */
+public final class TrackSampleWindow {
+
+    private final TagData[] ring;
+    private volatile long maxAgeMs;
+
+    private int head = 0; // index of the oldest sample
+    private int size = 0;
+
+    private final List<TagData> view = new AbstractList<TagData>() {
+        @Override public TagData get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+            return ring[(head + index) % ring.length];
+        }
+        @Override public int size() { return size; }
+    };
+
+    public TrackSampleWindow(int maxSamples, long maxAgeMs) {
+        this.ring = new TagData[Math.max(1, maxSamples)];
+        this.maxAgeMs = Math.max(0L, maxAgeMs);
+    }
+
+    /** Append one sample (assumed newest) and evict anything beyond either horizon. */
+    public void append(@NonNull TagData sample) {
+        if (size == ring.length) {
+            ring[head] = sample;
+            head = (head + 1) % ring.length;
+        } else {
+            ring[(head + size) % ring.length] = sample;
+            size++;
+        }
+        evictOlderThan(sample.timestampMs);
+    }
+
+    /** Append samples in the given order (ascending time). */
+    public void appendAll(@NonNull List<TagData> samples) {
+        for (int i = 0; i < samples.size(); i++) append(samples.get(i));
+    }
+
+    public void setMaxAgeMs(long maxAgeMs) {
+        this.maxAgeMs = Math.max(0L, maxAgeMs);
+    }
+
+    public int capacity() { return ring.length; }
+
+    public int size() { return size; }
+
+    public void clear() {
+        for (int i = 0; i < ring.length; i++) ring[i] = null;
+        head = 0;
+        size = 0;
+    }
+
+    /** Read-only, zero-copy view of the window (oldest first). */
+    @NonNull
+    public List<TagData> view() { return view; }
+
+    private void evictOlderThan(long newestMs) {
+        final long age = maxAgeMs;
+        if (age <= 0L) return;
+        final long cutoff = newestMs - age;
+        while (size > 1 && ring[head].timestampMs < cutoff) {
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.patriotlogger.logger.logic;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.patriotlogger.logger.util.TagIndexed;
+
+import java.util.Arrays;
+
+/**
+ * Per-tag burst coalescing ahead of the handler: samples of a tag that arrive within
+ * {@code bucketMs} of the first sample of their bucket become one sample, so a tag that
+ * delivers several near-duplicate advertisements in a few ms runs the pipeline once.
+ *
+ * A bucket is emitted when the tag's next sample falls outside it, when it holds
+ * {@link #MAX_BUCKET_SAMPLES}, or when {@link #flushDue} finds it over. The emitted sample is
+ * <ul>
+ *   <li>MAX: the strongest sample, at its own timestamp (the peak survives unchanged);</li>
+ *   <li>MEAN: the rounded mean RSSI, midway between the bucket's first sample and its latest timestamp;</li>
+ *   <li>MEDIAN: the median RSSI (floor of the middle pair's mean), at the same time as MEAN.</li>
+ * </ul>
+ * Radio timestamps can arrive out of order. A sample stamped before its bucket's first one
+ * still joins the bucket but does not move the MEAN/MEDIAN time. Emitted times are only as
+ * ordered as the input: MAX emits a late sample at its own time, and a late sample arriving
+ * after its tag's bucket was emitted opens a bucket of its own. A bucket of 0 ms passes
+ * samples through.
+ *
+ * Per-tag state lives in {@link TagIndexed} primitive arrays; nothing is allocated per sample.
+ */
+public final class BurstCoalescer {
+
+    public enum Mode {
+        MAX, MEAN, MEDIAN;
+
+        @NonNull
+        public static Mode fromName(@Nullable String name, @NonNull Mode fallback) {
+            if (name == null) return fallback;
+            for (Mode m : values()) {
+                if (m.name().equalsIgnoreCase(name.trim())) return m;
+            }
+            return fallback;
+        }
+    }
+
+    /** Receives coalesced samples; {@code context} is passed through so the sink can be a shared method reference. */
+    public interface Sink<C> {
+        void emit(C context, int tagId, long timestampMs, int rssi);
+    }
+
+    /** A bucket holding this many samples is emitted without waiting for its time to run out. */
+    public static final int MAX_BUCKET_SAMPLES = 16;
+
+    private int bucketMs;
+    private Mode mode;
+
+    // per-tag bucket, indexed by tagId
+    private int[] count;        // 0 = no open bucket
+    private long[] startMs;     // first sample's time
+    private long[] lastMs;      // latest sample's time
+    private long[] sum;         // MEAN
+    private int[] maxRssi;      // MAX
+    private long[] maxMs;       // MAX
+    private int[] values;       // MEDIAN: MAX_BUCKET_SAMPLES per tag
+    private final int[] scratch = new int[MAX_BUCKET_SAMPLES];
+
+    private long samplesIn = 0L;
+    private long samplesOut = 0L;
+
+    public BurstCoalescer() {
+        this(0, Mode.MAX);
+    }
+
+    public BurstCoalescer(int bucketMs, @NonNull Mode mode) {
+        this.bucketMs = Math.max(0, bucketMs);
+        this.mode = mode;
+        final int n = 16;
+        count = new int[n];
+        startMs = new long[n];
+        lastMs = new long[n];
+        sum = new long[n];
+        maxRssi = new int[n];
+        maxMs = new long[n];
+        values = new int[n * MAX_BUCKET_SAMPLES];
+    }
+
+    /** Whether samples are coalesced at all (bucket > 0 ms). */
+    public boolean isEnabled() {
+        return bucketMs > 0;
+    }
+
+    public int bucketMs() {
+        return bucketMs;
+    }
+
+    @NonNull
+    public Mode mode() {
+        return mode;
+    }
+
+    /** Emits every open bucket, then switches to the new bucket length and mode. Counters carry over. */
+    public <C> void configure(int bucketMs, @NonNull Mode mode, C context, @NonNull Sink<C> sink) {
+        flushAll(context, sink);
+        this.bucketMs = Math.max(0, bucketMs);
+        this.mode = mode;
+    }
+
+    /** Adds a sample; any bucket it closes is emitted to {@code sink} first (the sink may re-enter). */
+    public <C> void offer(int tagId, long timestampMs, int rssi, C context, @NonNull Sink<C> sink) {
+        samplesIn++;
+        if (bucketMs <= 0 || tagId < 0) {
+            samplesOut++;
+            sink.emit(context, tagId, timestampMs, rssi);
+            return;
+        }
+        if (tagId >= count.length) grow(tagId);
+        if (count[tagId] > 0 && timestampMs - startMs[tagId] < bucketMs) {
+            add(tagId, timestampMs, rssi);
+            if (count[tagId] >= MAX_BUCKET_SAMPLES) flush(tagId, context, sink);
+            return;
+        }
+        // the sample opens a new bucket; emit the old one after the state is consistent
+        final boolean hadBucket = count[tagId] > 0;
+        final long outMs = hadBucket ? emittedMs(tagId) : 0L;
+        final int outRssi = hadBucket ? emittedRssi(tagId) : 0;
+        count[tagId] = 0;
+        add(tagId, timestampMs, rssi);
+        if (hadBucket) {
+            samplesOut++;
+            sink.emit(context, tagId, outMs, outRssi);
+        }
+    }
+
+    /** Emits the tag's open bucket, if any. */
+    public <C> void flush(int tagId, C context, @NonNull Sink<C> sink) {
+        if (tagId < 0 || tagId >= count.length || count[tagId] == 0) return;
+        final long outMs = emittedMs(tagId);
+        final int outRssi = emittedRssi(tagId);
+        count[tagId] = 0;
+        samplesOut++;
+        sink.emit(context, tagId, outMs, outRssi);
+    }
+
+    /** Emits every bucket whose time has run out by {@code nowMs}, e.g. from the periodic sweep. */
+    public <C> void flushDue(long nowMs, C context, @NonNull Sink<C> sink) {
+        for (int tagId = 0; tagId < count.length; tagId++) {
+            if (count[tagId] > 0 && nowMs - startMs[tagId] >= bucketMs) flush(tagId, context, sink);
+        }
+    }
+
+    public <C> void flushAll(C context, @NonNull Sink<C> sink) {
+        for (int tagId = 0; tagId < count.length; tagId++) flush(tagId, context, sink);
+    }
+
+    /** Drops the tag's open bucket without emitting it. */
+    public void reset(int tagId) {
+        if (tagId >= 0 && tagId < count.length) count[tagId] = 0;
+    }
+
+    public long samplesIn() {
+        return samplesIn;
+    }
+
+    public long samplesOut() {
+        return samplesOut;
+    }
+
+    /** Samples in per sample out (1.0 = no reduction), over everything emitted so far. */
+    public double reductionRatio() {
+        return samplesOut > 0 ? (samplesIn - pending()) / (double) samplesOut : 1.0;
+    }
+
+    /** Samples waiting in open buckets. */
+    public int pending() {
+        int n = 0;
+        for (int c : count) n += c;
+        return n;
+    }
+
+    private void add(int tagId, long timestampMs, int rssi) {
+        final int c = count[tagId];
+        if (c == 0) {
+            startMs[tagId] = timestampMs;
+            lastMs[tagId] = timestampMs;
+            sum[tagId] = 0L;
+            maxRssi[tagId] = rssi;
+            maxMs[tagId] = timestampMs;
+        } else {
+            if (rssi > maxRssi[tagId]) {
+                maxRssi[tagId] = rssi;
+                maxMs[tagId] = timestampMs;
+            }
+            lastMs[tagId] = Math.max(lastMs[tagId], timestampMs);
+        }
+        sum[tagId] += rssi;
+        values[tagId * MAX_BUCKET_SAMPLES + c] = rssi;
+        count[tagId] = c + 1;
+    }
+
+    private long emittedMs(int tagId) {
+        if (mode == Mode.MAX) return maxMs[tagId];
+        return startMs[tagId] + (lastMs[tagId] - startMs[tagId]) / 2;
+    }
+
+    private int emittedRssi(int tagId) {
+        final int c = count[tagId];
+        switch (mode) {
+            case MEAN:
+                return Math.round((float) sum[tagId] / c);
+            case MEDIAN: {
+                System.arraycopy(values, tagId * MAX_BUCKET_SAMPLES, scratch, 0, c);
+                // insertion sort: at most MAX_BUCKET_SAMPLES values
+                for (int i = 1; i < c; i++) {
+                    final int v = scratch[i];
+                    int j = i - 1;
+                    while (j >= 0 && scratch[j] > v) {
+                        scratch[j + 1] = scratch[j];
+                        j--;
+                    }
+                    scratch[j + 1] = v;
+                }
+                return (c & 1) == 1 ? scratch[c / 2]
+                        : (int) Math.floor((scratch[c / 2 - 1] + (double) scratch[c / 2]) / 2.0);
+            }
+            case MAX:
+            default:
+                return maxRssi[tagId];
+        }
+    }
+
+    private void grow(int tagId) {
+        count = TagIndexed.grow(count, tagId);
+        startMs = TagIndexed.grow(startMs, tagId);
+        lastMs = TagIndexed.grow(lastMs, tagId);
+        sum = TagIndexed.grow(sum, tagId);
+        maxRssi = TagIndexed.grow(maxRssi, tagId);
+        maxMs = TagIndexed.grow(maxMs, tagId);
+        values = Arrays.copyOf(values, count.length * MAX_BUCKET_SAMPLES);
+    }
+}
@@ -0,0 +1,298 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+import com.patriotlogger.logger.util.HeapEstimate;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The HERE/LOGGED decisions shared by the closest-approach handlers, fed each sample with a
+ * log10(distance) estimate and its rate of change from whatever tracker the handler runs.
+ * - HERE entry: crossing of the HERE radius predicted within threshold OR (slope<0, distance <= 1.05*here).
+ * - HERE exit: only via crossing receding (with an earlier "behind us" allowance) or force-deadline.
+ * - Force-deadline: min(traverse, worst-case) — no tiny cap.
+ * - Peak: time of the best smoothed RSSI since entering HERE.
+ * Also holds what the handlers share around it: the RSSI to log-distance model, the batch
+ * loop of {@link RssiHandler#acceptSamples}, and the header of their persisted state.
+ */
+final class PassStateMachine {
+
+    // Tight proximity enter band
+    private static final double H_IN = 1.05;
+
+    // Runner speed band
+    private static final double V_MIN_MPS = 5000.0 / (26.0 * 60.0);
+    private static final double V_MAX_MPS = 5000.0 / (16.0 * 60.0);
+
+    // Early recede helpers
+    private static final double LOG_BEHIND_EPS_SEC   = 0.5;  // if crossing is ≥0.5s behind, allow LOG
+    private static final double HERE_MIN_DWELL_SEC   = 0.7;  // or after 0.7s dwell in HERE
+
+    private static final double LN10 = Math.log(10.0);
+
+    /** Bytes written by {@link #writeTo}. */
+    private static final int SERIALIZED_BYTES = 3 * 8 + 8;
+
+    /** Bytes {@link #beginSnapshot} writes ahead of the handler's own state: format, config hash, this machine. */
+    static final int STATE_HEADER_BYTES = 1 + 8 + SERIALIZED_BYTES;
+
+    private static final double MIN_DIST = 0.30;
+    private static final double MAX_DIST = 80.0;
+    private static final double LOG_MIN_DIST = Math.log10(MIN_DIST);
+    private static final double LOG_MAX_DIST = Math.log10(MAX_DIST);
+
+    /** A handler's per-sample work, from one raw reading to {@link #hold} or {@link #advance}. */
+    interface Step {
+        void accept(TagStatus status, long tMs, int rssi);
+    }
+
+    // --- config, thresholds in the log10(metres) domain ---
+    private final double hereMeters;
+    private final double thresholdSec;
+    private final double logHere;
+    private final double logHereIn;
+    private final double logApproach;
+
+    // --- state: primitives with sentinels, so per-pass state never boxes ---
+    private static final long NONE = Long.MIN_VALUE;
+    private long   hereEnterMs = NONE;
+    private long   forceLogAtMs = NONE;
+    private double bestRssi = Double.NaN;
+    private long   bestRssiTsMs = NONE;
+
+    PassStateMachine(double hereMeters, double thresholdSec, double approachMeters) {
+        this.hereMeters = hereMeters;
+        this.thresholdSec = thresholdSec;
+        this.logHere = Math.log10(hereMeters);
+        this.logHereIn = Math.log10(hereMeters * H_IN);
+        this.logApproach = Math.log10(approachMeters);
+    }
+
+    void reset() {
+        hereEnterMs = NONE;
+        forceLogAtMs = NONE;
+        bestRssi = Double.NaN;
+        bestRssiTsMs = NONE;
+    }
+
+    /** A sample arrived but the tracker cannot estimate a slope yet: bookkeeping only, never enters. */
+    void hold(TagStatus status, long tMs, double rssiSmoothed) {
+        trackBestSinceHere(tMs, rssiSmoothed);
+        if (checkForceDeadline(tMs, status)) {
+            setLogged(status, tMs);
+        }
+    }
+
+    /**
+     * One decision step.
+     *
+     * @param logD  log10(distance) used for the APPROACHING gate and proximity entry
+     * @param a     log10(distance) estimate at tMs the crossing is projected from
+     * @param b     rate of change of log10(distance), per second
+     */
+    void advance(TagStatus status, long tMs, double rssiSmoothed, double logD, double a, double b) {
+        double tCross = Double.NaN; // NaN = slope too flat to project a crossing
+        if (Math.abs(b) > 1e-9) tCross = (logHere - a) / b;
+        final boolean hasCross = !Double.isNaN(tCross);
+
+        boolean approachingSlope = b < -1e-6;
+        boolean recedingSlope    = b >  1e-6;
+
+        // APPROACHING gating
+        if (logD <= logApproach) {
+            if (status.state == TagStatusState.TOO_FAR ||
+                    status.state == TagStatusState.FIRST_SAMPLE) {
+                status.state = TagStatusState.APPROACHING;
+            }
+        } else {
+            if (status.state != TagStatusState.HERE &&
+                    status.state != TagStatusState.LOGGED) {
+                status.state = TagStatusState.TOO_FAR;
+            }
+        }
+
+        // FSM
+        switch (status.state) {
+            case FIRST_SAMPLE:
+            case TOO_FAR:
+            case APPROACHING: {
+                boolean tcaSoon = (hasCross && approachingSlope && tCross >= 0 && tCross <= thresholdSec);
+                boolean proximityEnter = (approachingSlope && logD <= logHereIn);
+                if (tcaSoon || proximityEnter) {
+                    enterHere(status, tMs, rssiSmoothed, velocity(b, logD));
+                }
+                break;
+            }
+
+            case HERE: {
+                // Standard recede: crossing sufficiently behind us
+                boolean tcaBehindEnough = (hasCross && recedingSlope && tCross <= -thresholdSec);
+
+                // Earlier recede allowance: if crossing is behind at all and we've dwelled a bit OR behind by ~0.5s
+                long dwellMs = (hereEnterMs != NONE) ? (tMs - hereEnterMs) : 0L;
+                boolean earlyBehind = (hasCross && recedingSlope && tCross < 0.0
+                        && (dwellMs >= (long)(HERE_MIN_DWELL_SEC * 1000.0) || (-tCross) >= LOG_BEHIND_EPS_SEC));
+
+                if (tcaBehindEnough || earlyBehind) {
+                    setLogged(status, tMs);
+                    break;
+                }
+
+                // Track best + refresh deadline (no tiny cap)
+                trackBestSinceHere(tMs, rssiSmoothed);
+                refreshForceDeadline(velocity(b, logD));
+
+                if (checkForceDeadline(tMs, status)) {
+                    setLogged(status, tMs);
+                }
+                break;
+            }
+
+            case LOGGED:
+            case TIMED_OUT:
+                break;
+        }
+    }
+
+    /** Fixed size: config and timers only. */
+    long estimatedFootprintBytes() {
+        return HeapEstimate.objects(1);
+    }
+
+    private void writeTo(ByteBuffer out) {
+        out.putLong(hereEnterMs).putLong(forceLogAtMs).putLong(bestRssiTsMs).putDouble(bestRssi);
+    }
+
+    /** Reads what {@link #writeTo} wrote; the caller checks there are {@link #SERIALIZED_BYTES} left. */
+    private void readFrom(ByteBuffer in) {
+        hereEnterMs = in.getLong();
+        forceLogAtMs = in.getLong();
+        bestRssiTsMs = in.getLong();
+        bestRssi = in.getDouble();
+    }
+
+    /**
+     * {@link RssiHandler#acceptSamples} for a handler whose per-sample work is {@code step}: the
+     * same logic as acceptSample, looped over primitive arrays with no RssiData or history.
+     */
+    static int acceptSamples(Step step, TagStatus status, long[] timestampsMs, int[] rssi,
+                             int from, int length, StateTransitions transitions) {
+        transitions.clear();
+        TagStatusState before = status.state;
+        final int end = from + length;
+        for (int i = from; i < end; i++) {
+            step.accept(status, timestampsMs[i], rssi[i]);
+            final TagStatusState now = status.state;
+            if (now != before) {
+                transitions.add(i, timestampsMs[i], now);
+                if (now == TagStatusState.LOGGED || now == TagStatusState.TIMED_OUT) return i + 1 - from;
+                before = now;
+            }
+        }
+        return length;
+    }
+
+    /** log10 of the log-distance model's metres, clamped to [MIN_DIST, MAX_DIST]. */
+    static double logDistance(double rssiDbm, double txAt1mDbm, double pathExp) {
+        double logD = (txAt1mDbm - rssiDbm) / (10.0 * pathExp);
+        if (Double.isNaN(logD)) return LOG_MAX_DIST;
+        if (logD < LOG_MIN_DIST) return LOG_MIN_DIST;
+        if (logD > LOG_MAX_DIST) return LOG_MAX_DIST;
+        return logD;
+    }
+
+    // --- persisted state ---
+
+    /**
+     * Start of the hash identifying the settings a handler was built from (state from other
+     * settings is not reused): this machine's; the handler adds its own with {@link #hash}.
+     */
+    long configHash() {
+        long h = Double.doubleToLongBits(hereMeters);
+        h = hash(h, thresholdSec);
+        return hash(h, logApproach);
+    }
+
+    static long hash(long h, double setting) {
+        return 31 * h + Double.doubleToLongBits(setting);
+    }
+
+    /**
+     * A blob of {@link #STATE_HEADER_BYTES} + {@code bodyBytes} with the header written; the
+     * handler puts its own state after it.
+     */
+    ByteBuffer beginSnapshot(byte format, long configHash, int bodyBytes) {
+        ByteBuffer out = ByteBuffer.allocate(STATE_HEADER_BYTES + bodyBytes);
+        out.put(format).putLong(configHash);
+        writeTo(out);
+        return out;
+    }
+
+    /**
+     * Checks a {@link #beginSnapshot} header and restores this machine from it.
+     * @return the blob positioned at the handler's state, or null (nothing restored) if it is
+     *         from another format or configuration, or has fewer than {@code minBodyBytes} after the header
+     */
+    @Nullable
+    ByteBuffer beginRestore(@Nullable byte[] state, byte format, long configHash, int minBodyBytes) {
+        if (state == null || state.length < STATE_HEADER_BYTES + minBodyBytes) return null;
+        ByteBuffer in = ByteBuffer.wrap(state);
+        if (in.get() != format || in.getLong() != configHash) return null;
+        readFrom(in);
+        return in;
+    }
+
+    // --- helpers ---
+
+    /** Speed (m/s) implied by the log-distance slope at the current distance, clamped to the runner band. */
+    private static double velocity(double slopeLogPerSec, double logD) {
+        double vEst = Math.abs(slopeLogPerSec) * LN10 * Math.pow(10.0, logD);
+        return clamp(vEst, V_MIN_MPS, V_MAX_MPS);
+    }
+
+    private void trackBestSinceHere(long tMs, double rssiSmoothed) {
+        if (hereEnterMs == NONE) return;
+        if (Double.isNaN(bestRssi) || rssiSmoothed > bestRssi) {
+            bestRssi = rssiSmoothed;
+            bestRssiTsMs = tMs;
+        }
+    }
+
+    private boolean checkForceDeadline(long nowMs, TagStatus status) {
+        return status.state == TagStatusState.HERE && forceLogAtMs != NONE && nowMs >= forceLogAtMs;
+    }
+
+    private void setLogged(TagStatus status, long tMs) {
+        status.state = TagStatusState.LOGGED;
+        status.exitTimeMs = tMs;
+        if (bestRssiTsMs != NONE && status.peakTimeMs == 0L) {
+            status.peakTimeMs = bestRssiTsMs;
+        }
+    }
+
+    private void enterHere(TagStatus status, long tMs, double rssiSmoothed, double vClamped) {
+        status.state = TagStatusState.HERE;
+        hereEnterMs = tMs;
+        if (status.arrivedTimeMs == 0L) status.arrivedTimeMs = tMs;
+        bestRssi = rssiSmoothed;
+        bestRssiTsMs = tMs;
+        refreshForceDeadline(vClamped);
+    }
+
+    private void refreshForceDeadline(double vClamped) {
+        if (hereEnterMs == NONE) return;
+        long traverseMs  = (long) Math.ceil((2.0 * hereMeters / vClamped) * 1000.0);
+        long worstCaseMs = (long) Math.ceil((2.0 * hereMeters / V_MIN_MPS) * 1000.0);
+        forceLogAtMs = hereEnterMs + Math.min(traverseMs, worstCaseMs);
+    }
+
+    private static double clamp(double v, double lo, double hi) {
+        if (!Double.isFinite(v)) return lo;
+        if (v < lo) return lo;
+        if (v > hi) return hi;
+        return v;
+    }
+}
@@ -0,0 +1,205 @@
+package com.patriotlogger.logger.logic;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.patriotlogger.logger.data.Setting;
+
+/**
+ * Immutable snapshot of the settings the scanning pipeline runs on, resolved against the
+ * defaults into primitives once per settings emission. Workers read the current snapshot
+ * through one volatile field, so a swap is atomic and the per-sample path never unboxes or
+ * null-checks a {@link Setting} field.
+ *
+ * {@link #version} increases whenever any value changes; {@link #handlerVersion} only when
+ * the TCA handler parameters do, so open passes keep their handlers across unrelated edits.
+ */
+public final class PipelineConfig {
+
+    public final int version;
+    public final int handlerVersion;
+
+    // TCA handler
+    public final float  tcaAlpha;
+    public final double txAt1mDbm;
+    public final double pathLossN;
+    public final double tcaHereMeters;
+    public final double tcaThresholdSec;
+    public final int    tcaWindowSize;
+    public final int    tcaMinPoints;
+    public final double tcaApproachMeters;
+
+    // ingest filter and UI smoothing
+    public final int   filterMinRssi;
+    public final int   filterMaxRssi;
+    public final int   filterMedianWindow;
+    public final int   filterMedianMaxDeltaDb;
+    public final float rssiAveragingAlpha;
+
+    // persistence
+    public final boolean retainSamples;
+    public final int     tagDataFlushMs;
+    public final int     historyWindowSamples;
+    public final int     historyWindowMs;
+    public final boolean chunkedSampleStorage;
+
+    // service cadence and scanning
+    public final int     sweepIntervalMs;
+    public final int     abandonedTimeoutMs;
+    public final int     scanReportDelayMs;
+    public final boolean scanHardwareFilter;
+    public final int     workerShards;
+    public final int     scanQueueCapacity;
+    @NonNull
+    public final String  scanQueuePolicy;
+    public final int     scanQueuePerTagLimit;
+    public final int     scanCoalesceMs;
+    @NonNull
+    public final BurstCoalescer.Mode scanCoalesceMode;
+
+    private PipelineConfig(@NonNull Setting s, int version, int handlerVersion) {
+        this.version = version;
+        this.handlerVersion = handlerVersion;
+
+        tcaAlpha          = s.tca_alpha != null ? s.tca_alpha : Setting.DEFAULT_TCA_ALPHA;
+        txAt1mDbm         = s.tx_power_at_1m_dbm != null ? s.tx_power_at_1m_dbm : Setting.DEFAULT_TX_POWER_AT_1M_DBM;
+        pathLossN         = s.path_loss_n != null ? s.path_loss_n : Setting.DEFAULT_PATH_LOSS_N;
+        tcaHereMeters     = s.tca_here_meters != null ? s.tca_here_meters : Setting.DEFAULT_TCA_HERE_METERS;
+        tcaThresholdSec   = s.tca_threshold_sec != null ? s.tca_threshold_sec : Setting.DEFAULT_TCA_THRESHOLD_SEC;
+        tcaWindowSize     = s.tca_window_size != null ? s.tca_window_size : Setting.DEFAULT_TCA_WINDOW_SIZE;
+        tcaMinPoints      = s.tca_min_points != null ? s.tca_min_points : Setting.DEFAULT_TCA_MIN_POINTS;
+        tcaApproachMeters = s.tca_approach_meters != null ? s.tca_approach_meters : Setting.DEFAULT_TCA_APPROACH_METERS;
+
+        filterMinRssi      = s.filter_min_rssi != null ? s.filter_min_rssi : Setting.DEFAULT_FILTER_MIN_RSSI;
+        filterMaxRssi      = s.filter_max_rssi != null ? s.filter_max_rssi : Setting.DEFAULT_FILTER_MAX_RSSI;
+        filterMedianWindow = s.filter_median_window != null ? Math.max(0, s.filter_median_window) : Setting.DEFAULT_FILTER_MEDIAN_WINDOW;
+        filterMedianMaxDeltaDb = s.filter_median_max_delta_db != null
+                ? s.filter_median_max_delta_db : Setting.DEFAULT_FILTER_MEDIAN_MAX_DELTA_DB;
+        rssiAveragingAlpha = s.rssi_averaging_alpha != null ? s.rssi_averaging_alpha : Setting.DEFAULT_RSSI_AVERAGING_ALPHA;
+
+        retainSamples        = s.retain_samples != null ? s.retain_samples : Setting.DEFAULT_RETAIN_SAMPLES;
+        tagDataFlushMs       = s.tagdata_flush_ms != null ? s.tagdata_flush_ms : Setting.DEFAULT_TAGDATA_FLUSH_MS;
+        historyWindowSamples = s.history_window_samples != null ? s.history_window_samples : Setting.DEFAULT_HISTORY_WINDOW_SAMPLES;
+        historyWindowMs      = s.history_window_ms != null ? s.history_window_ms : Setting.DEFAULT_HISTORY_WINDOW_MS;
+        chunkedSampleStorage = s.chunked_sample_storage != null ? s.chunked_sample_storage : Setting.DEFAULT_CHUNKED_SAMPLE_STORAGE;
+
+        sweepIntervalMs      = s.sweep_interval_ms != null ? s.sweep_interval_ms : Setting.DEFAULT_SWEEP_INTERVAL_MS;
+        abandonedTimeoutMs   = s.abandoned_timeout_ms != null ? s.abandoned_timeout_ms : Setting.DEFAULT_ABANDONED_TIMEOUT_MS;
+        scanReportDelayMs    = s.scan_report_delay_ms != null ? Math.max(0, s.scan_report_delay_ms) : Setting.DEFAULT_SCAN_REPORT_DELAY_MS;
+        scanHardwareFilter   = s.scan_hardware_filter != null ? s.scan_hardware_filter : Setting.DEFAULT_SCAN_HARDWARE_FILTER;
+        workerShards         = s.worker_shards != null ? s.worker_shards : Setting.DEFAULT_WORKER_SHARDS;
+        scanQueueCapacity    = s.scan_queue_capacity != null ? s.scan_queue_capacity : Setting.DEFAULT_SCAN_QUEUE_CAPACITY;
+        scanQueuePolicy      = s.scan_queue_policy != null ? s.scan_queue_policy : Setting.DEFAULT_SCAN_QUEUE_POLICY;
+        scanQueuePerTagLimit = s.scan_queue_per_tag_limit != null ? s.scan_queue_per_tag_limit : Setting.DEFAULT_SCAN_QUEUE_PER_TAG_LIMIT;
+        scanCoalesceMs       = s.scan_coalesce_ms != null ? Math.max(0, s.scan_coalesce_ms) : Setting.DEFAULT_SCAN_COALESCE_MS;
+        scanCoalesceMode     = BurstCoalescer.Mode.fromName(s.scan_coalesce_mode,
+                BurstCoalescer.Mode.fromName(Setting.DEFAULT_SCAN_COALESCE_MODE, BurstCoalescer.Mode.MAX));
+    }
+
+    /** The defaults, as version 0. */
+    @NonNull
+    public static PipelineConfig defaults() {
+        return new PipelineConfig(new Setting(), 0, 0);
+    }
+
+    /**
+     * Snapshot of {@code s}, versioned after {@code previous}. Returns {@code previous} itself
+     * when nothing the pipeline reads has changed.
+     */
+    @NonNull
+    public static PipelineConfig next(@Nullable PipelineConfig previous, @NonNull Setting s) {
+        if (previous == null) return new PipelineConfig(s, 1, 1);
+        PipelineConfig candidate = new PipelineConfig(s, previous.version, previous.handlerVersion);
+        if (candidate.sameValues(previous)) return previous;
+        final int handlerVersion = candidate.sameHandlerValues(previous)
+                ? previous.handlerVersion : previous.handlerVersion + 1;
+        return new PipelineConfig(s, previous.version + 1, handlerVersion);
+    }
+
+    @NonNull
+    public RssiHandler newTcaHandler() {
+        return new TcaWithFallbackHandler(tcaAlpha, txAt1mDbm, pathLossN, tcaHereMeters, tcaThresholdSec,
+                tcaWindowSize, tcaMinPoints, tcaApproachMeters);
+    }
+
+    /** Whether the handlers built from the two snapshots are interchangeable. */
+    public boolean sameHandlerValues(@NonNull PipelineConfig o) {
+        return Float.compare(tcaAlpha, o.tcaAlpha) == 0
+                && Double.compare(txAt1mDbm, o.txAt1mDbm) == 0
+                && Double.compare(pathLossN, o.pathLossN) == 0
+                && Double.compare(tcaHereMeters, o.tcaHereMeters) == 0
+                && Double.compare(tcaThresholdSec, o.tcaThresholdSec) == 0
+                && tcaWindowSize == o.tcaWindowSize
+                && tcaMinPoints == o.tcaMinPoints
+                && Double.compare(tcaApproachMeters, o.tcaApproachMeters) == 0;
+    }
+
+    /** Whether the ingest filters built from the two snapshots are the same. */
+    public boolean sameFilterValues(@NonNull PipelineConfig o) {
+        return filterMinRssi == o.filterMinRssi && filterMaxRssi == o.filterMaxRssi
+                && filterMedianWindow == o.filterMedianWindow
+                && filterMedianMaxDeltaDb == o.filterMedianMaxDeltaDb;
+    }
+
+    /** Whether the burst coalescing built from the two snapshots is the same. */
+    public boolean sameCoalesceValues(@NonNull PipelineConfig o) {
+        return scanCoalesceMs == o.scanCoalesceMs && scanCoalesceMode == o.scanCoalesceMode;
+    }
+
+    /** Same values throughout (versions aside). */
+    public boolean sameValues(@NonNull PipelineConfig o) {
+        return sameHandlerValues(o)
+                && sameFilterValues(o)
+                && Float.compare(rssiAveragingAlpha, o.rssiAveragingAlpha) == 0
+                && retainSamples == o.retainSamples
+                && tagDataFlushMs == o.tagDataFlushMs
+                && historyWindowSamples == o.historyWindowSamples
+                && historyWindowMs == o.historyWindowMs
+                && chunkedSampleStorage == o.chunkedSampleStorage
+                && sweepIntervalMs == o.sweepIntervalMs
+                && abandonedTimeoutMs == o.abandonedTimeoutMs
+                && scanReportDelayMs == o.scanReportDelayMs
+                && scanHardwareFilter == o.scanHardwareFilter
+                && workerShards == o.workerShards
+                && scanQueueCapacity == o.scanQueueCapacity
+                && scanQueuePolicy.equals(o.scanQueuePolicy)
+                && scanQueuePerTagLimit == o.scanQueuePerTagLimit
+                && sameCoalesceValues(o);
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineConfig{" +
+                "version=" + version +
+                ", handlerVersion=" + handlerVersion +
+                ", tcaAlpha=" + tcaAlpha +
+                ", txAt1mDbm=" + txAt1mDbm +
+                ", pathLossN=" + pathLossN +
+                ", tcaHereMeters=" + tcaHereMeters +
+                ", tcaThresholdSec=" + tcaThresholdSec +
+                ", tcaWindowSize=" + tcaWindowSize +
+                ", tcaMinPoints=" + tcaMinPoints +
+                ", tcaApproachMeters=" + tcaApproachMeters +
+                ", filterMinRssi=" + filterMinRssi +
+                ", filterMaxRssi=" + filterMaxRssi +
+                ", filterMedianWindow=" + filterMedianWindow +
+                ", filterMedianMaxDeltaDb=" + filterMedianMaxDeltaDb +
+                ", rssiAveragingAlpha=" + rssiAveragingAlpha +
+                ", retainSamples=" + retainSamples +
+                ", tagDataFlushMs=" + tagDataFlushMs +
+                ", historyWindowSamples=" + historyWindowSamples +
+                ", historyWindowMs=" + historyWindowMs +
+                ", chunkedSampleStorage=" + chunkedSampleStorage +
+                ", sweepIntervalMs=" + sweepIntervalMs +
+                ", abandonedTimeoutMs=" + abandonedTimeoutMs +
+                ", scanReportDelayMs=" + scanReportDelayMs +
+                ", scanHardwareFilter=" + scanHardwareFilter +
+                ", workerShards=" + workerShards +
+                ", scanQueueCapacity=" + scanQueueCapacity +
+                ", scanQueuePolicy='" + scanQueuePolicy + '\'' +
+                ", scanQueuePerTagLimit=" + scanQueuePerTagLimit +
+                ", scanCoalesceMs=" + scanCoalesceMs +
+                ", scanCoalesceMode=" + scanCoalesceMode +
+                '}';
+    }
+}
@@ -6,7 +6,7 @@ package com.patriotlogger.logger.logic;
  * tagId directly without touching the persisted DB schema.
  */
 public class RssiData {
-    public final int tagId;
+    public int tagId;
     public long timestampMs;
     public int rssi;
     public int smoothedRssi;
@@ -18,6 +18,15 @@ public class RssiData {
         this.smoothedRssi = smoothedRssi;
     }
 
+    /** Overwrite all fields; lets the scan pipeline reuse one instance per tag. */
+    public RssiData set(int tagId, long timestampMs, int rssi, int smoothedRssi) {
+        this.tagId = tagId;
+        this.timestampMs = timestampMs;
+        this.rssi = rssi;
+        this.smoothedRssi = smoothedRssi;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "RssiData{" +
@@ -1,8 +1,12 @@
 package com.patriotlogger.logger.logic;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.patriotlogger.logger.data.TagData;
 import com.patriotlogger.logger.data.TagStatus;
 
+import java.util.Collections;
 import java.util.List;
 
 public interface RssiHandler {
@@ -12,12 +16,70 @@ public interface RssiHandler {
     /**
      * Accept one sample and return an UPDATED TagStatus according to handler logic.
      * @param currentStatus Current TagStatus (mutable record you persist)
-     * @param history Full TagData history for this track (ordered by time)
+     * @param history Recent TagData history for this track (ordered by time, read-only);
+     *                empty unless {@link #needsHistory()} returns true
      * @param sample New RSSI sample (raw + smoothed)
      * @return Updated TagStatus to persist
      */
     TagStatus acceptSample(TagStatus currentStatus, List<TagData> history, RssiData sample);
 
+    /**
+     * Feed {@code length} samples starting at {@code from}, in order, to the same pass. Stops
+     * after a sample that ends the pass (LOGGED or TIMED_OUT); the caller starts a new pass and
+     * handler for the rest. {@code status} is updated in place; every state change is appended
+     * to {@code transitions} (cleared first).
+     *
+     * Handlers are given no history here; ones that {@link #needsHistory} must be fed per sample.
+     * The default calls {@link #acceptSample} per sample; implementations can do better.
+     *
+     * @return samples consumed (less than {@code length} only if the pass ended)
+     */
+    default int acceptSamples(@NonNull TagStatus status, @NonNull long[] timestampsMs, @NonNull int[] rssi,
+                              int from, int length, @NonNull StateTransitions transitions) {
+        transitions.clear();
+        final RssiData scratch = new RssiData(status.tagId, 0L, 0, 0);
+        final List<TagData> none = Collections.emptyList();
+        for (int k = 0; k < length; k++) {
+            final int i = from + k;
+            final TagStatus.TagStatusState before = status.state;
+            acceptSample(status, none, scratch.set(status.tagId, timestampsMs[i], rssi[i], rssi[i]));
+            if (status.state != before) {
+                transitions.add(i, timestampsMs[i], status.state);
+                if (status.state == TagStatus.TagStatusState.LOGGED
+                        || status.state == TagStatus.TagStatusState.TIMED_OUT) {
+                    return k + 1;
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Whether acceptSample reads its history argument. Handlers that return false
+     * are handed an empty list and the per-track history is never assembled for them.
+     */
+    default boolean needsHistory() { return false; }
+
+    /**
+     * Approximate heap this handler holds for its track (it lives as long as the pass is
+     * open), for sizing many concurrent passes. 0 if the handler doesn't report it.
+     */
+    default long estimatedFootprintBytes() { return 0L; }
+
+    /**
+     * Handler state for the open pass as a compact blob, persisted with its TagStatus so a
+     * restarted service can resume the pass without replaying samples. Null if the handler
+     * doesn't support it (the pass then resumes with a fresh handler).
+     */
+    @Nullable
+    default byte[] snapshotState() { return null; }
+
+    /**
+     * Resume from a {@link #snapshotState} blob. Implementations must reject (return false,
+     * state as after {@link #init}) blobs from another format or configuration.
+     */
+    default boolean restoreState(@NonNull byte[] state) { return false; }
+
     /** Human-friendly name for reporting (defaults to simple class name). */
     default String getName() { return this.getClass().getSimpleName(); }
 }
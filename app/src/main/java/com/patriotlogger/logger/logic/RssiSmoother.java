@@ -2,7 +2,16 @@ package com.patriotlogger.logger.logic;
 
 import androidx.annotation.NonNull;
 import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.util.TagIndexed;
 
+import java.util.Arrays;
+
+/**
+ * Per-tag RSSI smoothing for display: an EMA of the raw samples followed by a Holt
+ * (level + trend) stage. Each tag's state lives in {@link TagIndexed} primitive arrays, so one
+ * tag's series never depends on another's. One scan worker (one per shard) owns it and sees all
+ * of its tags' samples.
+ */
 public class RssiSmoother {
 
 /*
@@ -45,85 +54,86 @@ Adds back some lag when RSSI ramps fast.
     private static final float HOLT_BETA_NO_CHANGE = 0.0f;
     private static final float HOLT_BETA  = 0.00f;
 
-    // Shared Holt instance for static smoothing
-    private static final Holt staticHolt = new Holt(HOLT_ALPHA, HOLT_BETA);
+    // per-tag state, indexed by tagId
+    private float[] ema;
+    private float[] level;
+    private float[] trend;
+    private boolean[] seen;
+
+    public RssiSmoother() {
+        this(16);
+    }
 
-    private final Holt holt = new Holt(HOLT_ALPHA, HOLT_BETA);
-    private float lastRssi = 0.0f;
+    public RssiSmoother(int initialCapacity) {
+        final int n = Math.max(16, initialCapacity);
+        ema = new float[n];
+        level = new float[n];
+        trend = new float[n];
+        seen = new boolean[n];
+    }
 
     /**
-     * Old EMA logic, now private. Kept in case you need it internally.
+     * One EMA step, stateless. Kept for callers that carry the previous value themselves
+     * (0 = no previous value).
      */
-    private static float computeEmaRssi(int rawRssi, float previousSmoothedRssi, float alpha) {
+    public static float computeSmoothedRssi(int rawRssi, float previousSmoothedRssi, float alpha) {
         if (previousSmoothedRssi == 0.0f) {
             return (float) rawRssi;
         }
         return (alpha * rawRssi) + ((1 - alpha) * previousSmoothedRssi);
     }
 
-    /**
-     * Public static smoother: now uses Holt under the hood.
-     * Any legacy callers will transparently get Holt-smoothed RSSI.
-     */
-    public static synchronized float computeSmoothedRssi(int rawRssi,
-                                                         float previousSmoothedRssi,
-                                                         float alpha) {
-        float ema = computeEmaRssi(rawRssi, previousSmoothedRssi, alpha);
-        return staticHolt.update(ema);
+    /** As below, with alpha from the settings (default if unset). */
+    public float getSmoothedRssi(int tagId, int rawRssi, @NonNull Setting settings) {
+        float alpha = (settings.rssi_averaging_alpha != null)
+                ? settings.rssi_averaging_alpha : Setting.DEFAULT_RSSI_AVERAGING_ALPHA;
+        return getSmoothedRssi(tagId, rawRssi, alpha);
     }
 
     /**
-     * Instance-based smoothing (per stream).
+     * Next smoothed value of this tag's stream: EMA, then Holt. Depends only on this tag's
+     * earlier samples. Negative tagIds have no state and get the raw value back.
      */
-    public float getSmoothedRssi(int rawRssi, @NonNull Setting settings) {
-        return computeSmoothedRssi(rawRssi,lastRssi,settings.rssi_averaging_alpha);
+    public float getSmoothedRssi(int tagId, int rawRssi, float alpha) {
+        if (tagId < 0) return rawRssi;
+        if (tagId >= seen.length) grow(tagId);
+        if (!seen[tagId]) {
+            seen[tagId] = true;
+            ema[tagId] = rawRssi;
+            level[tagId] = rawRssi;
+            trend[tagId] = 0.0f;
+            return rawRssi;
+        }
+        final float x = alpha * rawRssi + (1 - alpha) * ema[tagId];
+        ema[tagId] = x;
+
+        final float prevLevel = level[tagId];
+        final float prevTrend = trend[tagId];
+        final float newLevel = HOLT_ALPHA * x + (1.0f - HOLT_ALPHA) * (prevLevel + prevTrend);
+        final float newTrend = HOLT_BETA * (newLevel - prevLevel) + (1.0f - HOLT_BETA) * prevTrend;
+        level[tagId] = newLevel;
+        trend[tagId] = newTrend;
+        return newLevel + newTrend; // one-step-ahead prediction
     }
 
-    public float getLastRssi() {
-        return lastRssi;
+    /** This tag's last EMA value, or 0 if it has none. */
+    public float getLastRssi(int tagId) {
+        return (tagId >= 0 && tagId < seen.length && seen[tagId]) ? ema[tagId] : 0.0f;
     }
 
-    public void reset() {
-        holt.reset();
-        lastRssi = 0.0f;
+    /** Forget this tag's stream; its next sample starts from the raw value. */
+    public void reset(int tagId) {
+        if (tagId >= 0 && tagId < seen.length) seen[tagId] = false;
     }
 
-    // === Private Holt class ===
-    private static final class Holt {
-        private final float alpha;
-        private final float beta;
-        private boolean initialized = false;
-        private float level = 0.0f;
-        private float trend = 0.0f;
-
-        Holt(float alpha, float beta) {
-            this.alpha = clamp01(alpha);
-            this.beta  = clamp01(beta);
-        }
-
-        float update(float x) {
-            if (!initialized) {
-                initialized = true;
-                level = x;
-                trend = 0.0f;
-                return x;
-            }
-            float prevLevel = level;
-            float newLevel = alpha * x + (1.0f - alpha) * (level + trend);
-            float newTrend = beta * (newLevel - prevLevel) + (1.0f - beta) * trend;
-            level = newLevel;
-            trend = newTrend;
-            return level + trend; // one-step-ahead prediction
-        }
-
-        void reset() {
-            initialized = false;
-            level = 0.0f;
-            trend = 0.0f;
-        }
+    public void reset() {
+        Arrays.fill(seen, false);
+    }
 
-        private static float clamp01(float v) {
-            return v < 0f ? 0f : (v > 1f ? 1f : v);
-        }
+    private void grow(int tagId) {
+        ema = TagIndexed.grow(ema, tagId);
+        level = TagIndexed.grow(level, tagId);
+        trend = TagIndexed.grow(trend, tagId);
+        seen = TagIndexed.grow(seen, tagId);
     }
 }
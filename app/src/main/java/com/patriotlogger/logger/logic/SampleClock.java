@@ -0,0 +1,91 @@
+package com.patriotlogger.logger.logic;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Maps the elapsedRealtime clock (what ScanResult.getTimestampNanos() and
+ * SystemClock.elapsedRealtimeNanos() report) to wall-clock epoch milliseconds.
+ *
+ * Samples are stamped from when the radio heard them, not from when a worker got round
+ * to them, so queueing, batching or deferred processing does not shift split times.
+ *
+ * The elapsed→epoch offset is calibrated by bracketing a wall-clock read between two
+ * elapsed reads. {@link #recalibrate} only adopts a new offset when the wall clock has
+ * really stepped (NTP, user change), so ordinary read jitter never makes a tag's
+ * timestamps run backwards.
+ */
+public final class SampleClock {
+
+    /** Clock reads; the service passes System.currentTimeMillis / SystemClock.elapsedRealtimeNanos. */
+    public interface TimeSource {
+        long wallMs();
+        long elapsedNs();
+    }
+
+    /** Offset changes smaller than this are treated as read jitter, not a clock step. */
+    public static final long STEP_TOLERANCE_MS = 100L;
+
+    private static final int CALIBRATION_READS = 5;
+
+    private final TimeSource source;
+    private volatile long offsetNs; // epochNs - elapsedNs
+
+    public SampleClock(@NonNull TimeSource source) {
+        this.source = source;
+        this.offsetNs = measureOffsetNs();
+    }
+
+    /**
+     * Re-measure the offset; adopts it only if the wall clock stepped.
+     * @return true if the offset changed
+     */
+    public boolean recalibrate() {
+        final long measured = measureOffsetNs();
+        if (Math.abs(measured - offsetNs) < STEP_TOLERANCE_MS * 1_000_000L) return false;
+        offsetNs = measured;
+        return true;
+    }
+
+    /** Epoch ms for an elapsedRealtime timestamp. */
+    public long toEpochMs(long elapsedNs) {
+        return Math.floorDiv(elapsedNs + offsetNs, 1_000_000L);
+    }
+
+    /**
+     * Epoch ms for a sample: the radio timestamp when the platform provides one (API 26+,
+     * non-zero), else the elapsed time it was delivered to the app.
+     */
+    public long stampMs(long radioNs, long deliverNs) {
+        return toEpochMs(radioNs > 0L ? radioNs : deliverNs);
+    }
+
+    /** Current time on the same scale as sample stamps. */
+    public long nowEpochMs() {
+        return toEpochMs(source.elapsedNs());
+    }
+
+    /** The source's elapsed-realtime ns (queue-age measurements). */
+    public long elapsedNs() {
+        return source.elapsedNs();
+    }
+
+    public long getOffsetNs() { return offsetNs; }
+
+    // keep the tightest of a few elapsed/wall/elapsed brackets
+    private long measureOffsetNs() {
+        long best = 0L;
+        long bestSpan = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_READS; i++) {
+            final long e0 = source.elapsedNs();
+            final long w = source.wallMs();
+            final long e1 = source.elapsedNs();
+            final long span = e1 - e0;
+            if (span < bestSpan) {
+                bestSpan = span;
+                // the wall read happened somewhere in [e0, e1]; it is truncated to the ms, so add half a ms
+                best = w * 1_000_000L + 500_000L - (e0 + span / 2);
+            }
+        }
+        return best;
+    }
+}
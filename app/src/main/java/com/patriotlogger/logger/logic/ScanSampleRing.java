@@ -0,0 +1,244 @@
+package com.patriotlogger.logger.logic;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.patriotlogger.logger.util.TagIndexedLongs;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer / single-consumer handoff of scan samples from the BLE
+ * callback thread to a processing worker, with no allocation per advertisement.
+ *
+ * Each slot is a row across preallocated primitive columns plus a small state word.
+ * The producer {@link #offer}s; the consumer {@link #claim}s the oldest slot, reads it
+ * with the *At accessors and {@link #release}s it. The state word lets the producer
+ * still change a queued, unclaimed slot (to coalesce or drop it) without locks: a slot
+ * is only ever written by whoever moved it out of PUBLISHED.
+ *
+ * When a tag floods the queue the {@link OverflowPolicy} decides what gives:
+ * <ul>
+ *   <li>{@link OverflowPolicy#DROP_NEWEST}: only the global bound applies; a full ring rejects the new sample.</li>
+ *   <li>{@link OverflowPolicy#DROP_OLDEST_PER_TAG}: a tag keeps at most {@link #setPerTagLimit perTagLimit}
+ *       queued samples; beyond that its oldest queued sample is dropped.</li>
+ *   <li>{@link OverflowPolicy#COALESCE_LATEST}: a tag has at most one queued sample; a newer one
+ *       overwrites it in place (latest RSSI wins, queue position kept).</li>
+ * </ul>
+ * The global bound always applies: a full ring drops the new sample.
+ */
+public final class ScanSampleRing {
+
+    public enum OverflowPolicy {
+        DROP_NEWEST,
+        DROP_OLDEST_PER_TAG,
+        COALESCE_LATEST;
+
+        /** Parse a Setting value, falling back when it is null or unknown. */
+        @NonNull
+        public static OverflowPolicy fromName(@Nullable String name, @NonNull OverflowPolicy fallback) {
+            if (name == null) return fallback;
+            for (OverflowPolicy p : values()) {
+                if (p.name().equalsIgnoreCase(name.trim())) return p;
+            }
+            return fallback;
+        }
+    }
+
+    // slot states
+    private static final int FREE      = 0;
+    private static final int PUBLISHED = 1;
+    private static final int UPDATING  = 2; // producer rewriting a queued slot
+    private static final int CLAIMED   = 3; // consumer reading it
+    private static final int DROPPED   = 4; // producer gave up on it; consumer skips
+
+    private final int capacity;
+    private final int mask;
+
+    private final int[]  tagIds;
+    private final int[]  rssis;
+    private final long[] radioNs;
+    private final long[] deliverNs;
+    private final long[] prevSeqSameTag;   // producer-only: chain of a tag's queued samples
+    private final AtomicIntegerArray state;
+
+    // tail = next sequence to publish (producer), head = next sequence to consume (consumer)
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // producer-only: newest queued sequence per tag (-1 = none)
+    private final TagIndexedLongs newestSeqByTag = new TagIndexedLongs(64, -1L);
+
+    private volatile OverflowPolicy policy;
+    private volatile int perTagLimit;
+
+    private final AtomicLong droppedFull = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    // set while a drain is pending, so the producer signals the consumer once per burst
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    /** @param capacity rounded up to a power of two */
+    public ScanSampleRing(int capacity, @NonNull OverflowPolicy policy, int perTagLimit) {
+        int c = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.capacity = c;
+        this.mask = c - 1;
+        this.tagIds = new int[c];
+        this.rssis = new int[c];
+        this.radioNs = new long[c];
+        this.deliverNs = new long[c];
+        this.prevSeqSameTag = new long[c];
+        this.state = new AtomicIntegerArray(c);
+        this.policy = policy;
+        setPerTagLimit(perTagLimit);
+    }
+
+    public ScanSampleRing(int capacity) {
+        this(capacity, OverflowPolicy.DROP_NEWEST, Integer.MAX_VALUE);
+    }
+
+    public void setPolicy(@NonNull OverflowPolicy policy) { this.policy = policy; }
+
+    public OverflowPolicy getPolicy() { return policy; }
+
+    public void setPerTagLimit(int limit) { this.perTagLimit = Math.max(1, limit); }
+
+    // ===== producer =====
+
+    /**
+     * Producer side. Applies the overflow policy, then publishes.
+     * @return false if the sample was not queued (ring full); true if it was queued or
+     *         coalesced into the tag's pending sample
+     */
+    public boolean offer(int tagId, int rssi, long radioNanos, long deliverNanos) {
+        final OverflowPolicy p = policy;
+        final long h = head.get();
+        final long newest = newestSeqByTag.get(tagId);
+
+        if (p == OverflowPolicy.COALESCE_LATEST && newest >= h) {
+            final int i = (int) (newest & mask);
+            if (state.compareAndSet(i, PUBLISHED, UPDATING)) {
+                rssis[i] = rssi;
+                radioNs[i] = radioNanos;
+                deliverNs[i] = deliverNanos;
+                state.set(i, PUBLISHED);
+                coalesced.incrementAndGet();
+                return true;
+            }
+            // already claimed by the consumer: queue as a new sample below
+        } else if (p == OverflowPolicy.DROP_OLDEST_PER_TAG && newest >= h) {
+            dropOldestBeyondLimit(newest, h, perTagLimit);
+        }
+
+        final long t = tail.get();
+        if (t - head.get() >= capacity) {
+            droppedFull.incrementAndGet();
+            return false;
+        }
+        final int i = (int) (t & mask);
+        tagIds[i] = tagId;
+        rssis[i] = rssi;
+        radioNs[i] = radioNanos;
+        deliverNs[i] = deliverNanos;
+        prevSeqSameTag[i] = newest;
+        state.set(i, PUBLISHED);
+        newestSeqByTag.put(tagId, t);
+        tail.lazySet(t + 1); // publish after the slot is written
+        return true;
+    }
+
+    /**
+     * Walk the tag's queued samples newest to oldest; if the new one would exceed the limit,
+     * drop the oldest. Drops always take the oldest, so the walk stops after {@code limit} entries.
+     */
+    private void dropOldestBeyondLimit(long newest, long h, int limit) {
+        int queued = 0;
+        long oldest = -1L;
+        for (long s = newest; s >= h && queued < limit; s = prevSeqSameTag[(int) (s & mask)]) {
+            if (state.get((int) (s & mask)) == PUBLISHED) {
+                queued++;
+                oldest = s;
+            }
+        }
+        if (queued >= limit && oldest >= 0) {
+            if (state.compareAndSet((int) (oldest & mask), PUBLISHED, DROPPED)) {
+                droppedOldest.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Producer side, after {@link #offer}: @return true if the consumer needs a wake-up
+     * (no drain pending yet). The consumer calls {@link #beginDrain} before draining.
+     */
+    public boolean requestDrain() {
+        return drainScheduled.compareAndSet(false, true);
+    }
+
+    // ===== consumer =====
+
+    /** Consumer side: call once before draining so later offers signal again. */
+    public void beginDrain() {
+        drainScheduled.set(false);
+    }
+
+    /**
+     * Consumer side. @return slot index of the oldest queued sample, or -1 if empty.
+     * Read it with the *At accessors, then {@link #release} it.
+     */
+    public int claim() {
+        for (;;) {
+            final long h = head.get();
+            if (h >= tail.get()) return -1;
+            final int i = (int) (h & mask);
+            final int st = state.get(i);
+            if (st == DROPPED) {
+                state.set(i, FREE);
+                head.lazySet(h + 1);
+                continue;
+            }
+            if (st == PUBLISHED && state.compareAndSet(i, PUBLISHED, CLAIMED)) return i;
+            // UPDATING: the producer is mid-rewrite of a few fields; spin
+        }
+    }
+
+    /** Consumer side: done with the slot returned by {@link #claim}. */
+    public void release(int slot) {
+        state.set(slot, FREE);
+        head.lazySet(head.get() + 1);
+    }
+
+    public int tagIdAt(int slot) { return tagIds[slot]; }
+    public int rssiAt(int slot) { return rssis[slot]; }
+    public long radioNsAt(int slot) { return radioNs[slot]; }
+    public long deliverNsAt(int slot) { return deliverNs[slot]; }
+
+    // ===== stats (any thread; approximate while running) =====
+
+    public int capacity() { return capacity; }
+
+    /** Queued slots, including dropped ones the consumer has not skipped yet. */
+    public int size() { return (int) Math.max(0L, tail.get() - head.get()); }
+
+    /** Samples rejected because the ring was full. */
+    public long droppedFullCount() { return droppedFull.get(); }
+
+    /** Queued samples dropped to keep a tag under its per-tag limit. */
+    public long droppedOldestCount() { return droppedOldest.get(); }
+
+    /** Samples merged into a tag's pending sample. */
+    public long coalescedCount() { return coalesced.get(); }
+
+    /** Samples lost to overflow (full ring + per-tag limit); coalesced samples are counted separately. */
+    public long droppedCount() { return droppedFull.get() + droppedOldest.get(); }
+
+    /** How long the oldest queued sample has been waiting, by its delivery time (0 when empty). */
+    public long oldestAgeNanos(long nowElapsedNanos) {
+        final long h = head.get();
+        if (h >= tail.get()) return 0L;
+        return Math.max(0L, nowElapsedNanos - deliverNs[(int) (h & mask)]);
+    }
+}
@@ -0,0 +1,155 @@
+package com.patriotlogger.logger.logic;
+
+/**
+ * Median of the last {@code capacity} ints, updated in O(log n) per add instead of sorting a
+ * copy of the window per sample.
+ *
+ * Values live in a ring of slots; two indexed heaps of slot numbers hold the lower half
+ * (max-heap) and upper half (min-heap), with the lower half one larger for odd sizes. Each
+ * slot remembers its heap position, so the evicted value is removed in place rather than
+ * searched for. Nothing is allocated after construction.
+ */
+public final class SlidingMedian {
+
+    private final int capacity;
+    private final int[] values;   // by slot
+    private final int[] heapPos;  // by slot: index within its heap
+    private final boolean[] inLow; // by slot: which heap holds it
+    private final int[] low;      // max-heap of slots
+    private final int[] high;     // min-heap of slots
+    private int lowSize = 0;
+    private int highSize = 0;
+    private int next = 0;         // slot the next value goes to (the oldest, once full)
+    private int size = 0;
+
+    public SlidingMedian(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.values = new int[this.capacity];
+        this.heapPos = new int[this.capacity];
+        this.inLow = new boolean[this.capacity];
+        this.low = new int[this.capacity];
+        this.high = new int[this.capacity];
+    }
+
+    /** Adds {@code v}, evicting the oldest value once the window is full. */
+    public void add(int v) {
+        final int slot = next;
+        next = next + 1 == capacity ? 0 : next + 1;
+        if (size == capacity) {
+            remove(slot);
+            rebalance();
+        } else {
+            size++;
+        }
+        values[slot] = v;
+        // lower half is never smaller than the upper after a rebalance, so empty means both are
+        if (lowSize == 0 || v <= values[low[0]]) {
+            push(low, true, slot);
+            lowSize++;
+            siftUp(low, true, lowSize - 1);
+        } else {
+            push(high, false, slot);
+            highSize++;
+            siftUp(high, false, highSize - 1);
+        }
+        rebalance();
+    }
+
+    /**
+     * The window's median; for an even count, the floor of the mean of the middle two, as
+     * the sort-based filter this replaces computed it. Undefined (0) when empty.
+     */
+    public int median() {
+        if (size == 0) return 0;
+        if (lowSize > highSize) return values[low[0]];
+        return (int) Math.floor((values[low[0]] + (double) values[high[0]]) / 2.0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        lowSize = highSize = 0;
+        next = 0;
+        size = 0;
+    }
+
+    // ---- heaps ----
+
+    private void push(int[] heap, boolean isLow, int slot) {
+        final int i = isLow ? lowSize : highSize;
+        heap[i] = slot;
+        heapPos[slot] = i;
+        inLow[slot] = isLow;
+    }
+
+    private void remove(int slot) {
+        final boolean isLow = inLow[slot];
+        final int[] heap = isLow ? low : high;
+        final int last = (isLow ? --lowSize : --highSize);
+        final int i = heapPos[slot];
+        if (i == last) return;
+        final int moved = heap[last];
+        heap[i] = moved;
+        heapPos[moved] = i;
+        siftDown(heap, isLow, i, last);
+        if (heapPos[moved] == i) siftUp(heap, isLow, i);
+    }
+
+    private void rebalance() {
+        while (lowSize > highSize + 1) move(low, true, high);
+        while (highSize > lowSize) move(high, false, low);
+    }
+
+    /** Pops the root of {@code from} and pushes it onto the other heap. */
+    private void move(int[] from, boolean fromLow, int[] to) {
+        final int slot = from[0];
+        remove(slot);
+        push(to, !fromLow, slot);
+        if (fromLow) {
+            highSize++;
+            siftUp(high, false, highSize - 1);
+        } else {
+            lowSize++;
+            siftUp(low, true, lowSize - 1);
+        }
+    }
+
+    /** Whether slot a belongs above slot b in the heap. */
+    private boolean above(int a, int b, boolean isLow) {
+        return isLow ? values[a] > values[b] : values[a] < values[b];
+    }
+
+    private void siftUp(int[] heap, boolean isLow, int i) {
+        final int slot = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (!above(slot, heap[parent], isLow)) break;
+            heap[i] = heap[parent];
+            heapPos[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = slot;
+        heapPos[slot] = i;
+    }
+
+    private void siftDown(int[] heap, boolean isLow, int i, int n) {
+        final int slot = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) break;
+            if (child + 1 < n && above(heap[child + 1], heap[child], isLow)) child++;
+            if (!above(heap[child], slot, isLow)) break;
+            heap[i] = heap[child];
+            heapPos[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = slot;
+        heapPos[slot] = i;
+    }
+}
@@ -0,0 +1,216 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.util.HeapEstimate;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Least-squares line over the last {@code capacity} (time, y) points, updated in O(1) per
+ * add/evict instead of refitting the whole window per sample.
+ *
+ * Keeps the window's means and centered sums (Sxx, Sxy) with Welford-style updates, which
+ * stay accurate where raw sums of x², xy would cancel. Times are held as seconds relative to
+ * an anchor inside the window rather than as absolute epoch seconds, and the sums are rebuilt
+ * from the stored points once per {@code capacity} evictions (O(1) amortized) so rounding
+ * from add/remove pairs never accumulates.
+ *
+ * Points whose y is not finite occupy a slot but are left out of the fit, like the
+ * SimpleRegression loop this replaces.
+ */
+public final class SlidingWindowRegression {
+
+    private final int capacity;
+    private final long[] tMs;
+    private final double[] ys;
+
+    private int head = 0;   // oldest point
+    private int size = 0;   // stored points
+    private int count = 0;  // points in the fit (finite y)
+    private int evictionsSinceRebuild = 0;
+
+    private long anchorMs = 0L;
+    private double meanX = 0.0;
+    private double meanY = 0.0;
+    private double sxx = 0.0;
+    private double sxy = 0.0;
+
+    public SlidingWindowRegression(int capacity) {
+        this.capacity = Math.max(2, capacity);
+        this.tMs = new long[this.capacity];
+        this.ys = new double[this.capacity];
+    }
+
+    /** Append a point, evicting the oldest when the window is full. */
+    public void add(long timestampMs, double y) {
+        if (size == capacity) {
+            evictOldest();
+            if (++evictionsSinceRebuild >= capacity) {
+                rebuild();
+            }
+        }
+        if (size == 0) anchorMs = timestampMs;
+        final int i = (head + size) % capacity;
+        tMs[i] = timestampMs;
+        ys[i] = y;
+        size++;
+        if (Double.isFinite(y)) include(x(timestampMs), y);
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        evictionsSinceRebuild = 0;
+        resetSums();
+    }
+
+    /** Points in the window, including any left out of the fit. */
+    public int size() { return size; }
+
+    /** Points in the fit. */
+    public int count() { return count; }
+
+    public int capacity() { return capacity; }
+
+    /** Approximate heap held by this window (object plus its two preallocated rings). */
+    public long estimatedFootprintBytes() {
+        return HeapEstimate.objects(1) + HeapEstimate.array(tMs) + HeapEstimate.array(ys);
+    }
+
+    /** Bytes {@link #writeTo} needs for the current window. */
+    public int serializedSize() {
+        return 3 * 4 + 8 + 4 * 8 + size * (4 + 8);
+    }
+
+    /**
+     * Write the window exactly as held (points oldest first, times as ms offsets from the
+     * anchor, and the running sums), so {@link #readFrom} resumes bit-for-bit.
+     *
+     * @return false (nothing written) if a point is more than ~24 days from the anchor
+     */
+    public boolean writeTo(ByteBuffer out) {
+        for (int k = 0; k < size; k++) {
+            final long dt = tMs[(head + k) % capacity] - anchorMs;
+            if (dt < Integer.MIN_VALUE || dt > Integer.MAX_VALUE) return false;
+        }
+        out.putInt(size).putInt(count).putInt(evictionsSinceRebuild);
+        out.putLong(anchorMs);
+        out.putDouble(meanX).putDouble(meanY).putDouble(sxx).putDouble(sxy);
+        for (int k = 0; k < size; k++) {
+            final int i = (head + k) % capacity;
+            out.putInt((int) (tMs[i] - anchorMs));
+            out.putDouble(ys[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Replace this window with one written by {@link #writeTo}.
+     *
+     * @return false (window left cleared) if the data doesn't fit this capacity
+     */
+    public boolean readFrom(ByteBuffer in) {
+        clear();
+        final int n = in.getInt();
+        final int c = in.getInt();
+        final int evictions = in.getInt();
+        if (n < 0 || n > capacity || c < 0 || c > n || in.remaining() < 8 + 4 * 8 + n * (4 + 8)) return false;
+        anchorMs = in.getLong();
+        meanX = in.getDouble();
+        meanY = in.getDouble();
+        sxx = in.getDouble();
+        sxy = in.getDouble();
+        for (int k = 0; k < n; k++) {
+            tMs[k] = anchorMs + in.getInt();
+            ys[k] = in.getDouble();
+        }
+        size = n;
+        count = c;
+        evictionsSinceRebuild = Math.min(evictions, capacity - 1);
+        return true;
+    }
+
+    /** Slope in y per second; NaN with fewer than two distinct times (as SimpleRegression). */
+    public double slope() {
+        if (count < 2 || Math.abs(sxx) < 10 * Double.MIN_VALUE) return Double.NaN;
+        return sxy / sxx;
+    }
+
+    /**
+     * The fitted y at a time: the intercept of a fit whose x axis is time relative to
+     * {@code timestampMs} (the handler's "relative to now" shift).
+     */
+    public double valueAt(long timestampMs) {
+        final double b = slope();
+        if (Double.isNaN(b)) return Double.NaN;
+        return meanY + b * (x(timestampMs) - meanX);
+    }
+
+    private double x(long timestampMs) {
+        return (timestampMs - anchorMs) / 1000.0;
+    }
+
+    private void evictOldest() {
+        final double y = ys[head];
+        final double xOld = x(tMs[head]);
+        head = (head + 1) % capacity;
+        size--;
+        if (Double.isFinite(y)) exclude(xOld, y);
+    }
+
+    private void include(double x, double y) {
+        count++;
+        final double dx = x - meanX;
+        meanX += dx / count;
+        meanY += (y - meanY) / count;
+        sxx += dx * (x - meanX);
+        sxy += dx * (y - meanY);
+    }
+
+    private void exclude(double x, double y) {
+        if (count <= 1) {
+            resetSums();
+            return;
+        }
+        final double mxBefore = meanX;
+        final double myBefore = meanY;
+        count--;
+        meanX = mxBefore - (x - mxBefore) / count;
+        meanY = myBefore - (y - myBefore) / count;
+        sxx -= (x - meanX) * (x - mxBefore);
+        sxy -= (x - meanX) * (y - myBefore);
+    }
+
+    /** Re-anchor on the oldest point and recompute the sums exactly (two-pass). */
+    private void rebuild() {
+        evictionsSinceRebuild = 0;
+        resetSums();
+        if (size == 0) return;
+        anchorMs = tMs[head];
+        double sumX = 0.0, sumY = 0.0;
+        for (int k = 0; k < size; k++) {
+            final int i = (head + k) % capacity;
+            if (!Double.isFinite(ys[i])) continue;
+            sumX += x(tMs[i]);
+            sumY += ys[i];
+            count++;
+        }
+        if (count == 0) return;
+        meanX = sumX / count;
+        meanY = sumY / count;
+        for (int k = 0; k < size; k++) {
+            final int i = (head + k) % capacity;
+            if (!Double.isFinite(ys[i])) continue;
+            final double dx = x(tMs[i]) - meanX;
+            sxx += dx * dx;
+            sxy += dx * (ys[i] - meanY);
+        }
+    }
+
+    private void resetSums() {
+        count = 0;
+        meanX = 0.0;
+        meanY = 0.0;
+        sxx = 0.0;
+        sxy = 0.0;
+    }
+}
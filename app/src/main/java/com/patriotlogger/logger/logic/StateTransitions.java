@@ -0,0 +1,78 @@
+package com.patriotlogger.logger.logic;
+
+import androidx.annotation.NonNull;
+
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+
+import java.util.Arrays;
+
+/**
+ * State changes produced by {@link RssiHandler#acceptSamples}, in order: which sample of the
+ * batch caused each one, its timestamp and the state entered. Backed by growable parallel
+ * arrays so a caller can reuse one instance across batches without allocating.
+ */
+public final class StateTransitions {
+
+    private int size = 0;
+    private int[] sampleIndex;
+    private long[] timestampMs;
+    private TagStatusState[] states;
+
+    public StateTransitions() {
+        this(8);
+    }
+
+    public StateTransitions(int initialCapacity) {
+        final int n = Math.max(1, initialCapacity);
+        sampleIndex = new int[n];
+        timestampMs = new long[n];
+        states = new TagStatusState[n];
+    }
+
+    public void clear() {
+        Arrays.fill(states, 0, size, null);
+        size = 0;
+    }
+
+    public void add(int index, long tsMs, @NonNull TagStatusState state) {
+        if (size == states.length) grow();
+        sampleIndex[size] = index;
+        timestampMs[size] = tsMs;
+        states[size] = state;
+        size++;
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /** Position, within the arrays passed to acceptSamples, of the sample that caused transition i. */
+    public int sampleIndex(int i) { return sampleIndex[check(i)]; }
+
+    public long timestampMs(int i) { return timestampMs[check(i)]; }
+
+    @NonNull
+    public TagStatusState state(int i) { return states[check(i)]; }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("transition " + i + " of " + size);
+        return i;
+    }
+
+    private void grow() {
+        final int n = states.length * 2;
+        sampleIndex = Arrays.copyOf(sampleIndex, n);
+        timestampMs = Arrays.copyOf(timestampMs, n);
+        states = Arrays.copyOf(states, n);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("StateTransitions{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(sampleIndex[i]).append('@').append(timestampMs[i]).append("->").append(states[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
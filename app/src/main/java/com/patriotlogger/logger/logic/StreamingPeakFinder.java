@@ -0,0 +1,115 @@
+package com.patriotlogger.logger.logic;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * {@link TagPeakFinder}'s zero-phase (forward-backward EMA) peak, computed as samples arrive.
+ * The forward EMA is advanced per sample into primitive columns; {@link #findPeak} runs the
+ * backward pass from the newest sample only as far back as an earlier sample could still win.
+ *
+ * Every backward value is a convex combination of forward values at and after it, so once
+ * the running maximum of the forward pass before index s is below the best backward value
+ * found so far, nothing before s can beat it and the pass stops. For a pass logged shortly
+ * after its closest approach that is a few EMA time constants before the peak, not the whole
+ * pass. The result is the same sample and value TagPeakFinder returns for the same input.
+ *
+ * Not thread-safe; use from a single thread.
+ */
+public final class StreamingPeakFinder {
+
+    private static final int MINIMUM_SAMPLES_FOR_ANALYSIS = 3;
+    private static final double STOP_MARGIN = 1e-9;
+
+    private final float alpha;
+
+    private int size = 0;
+    private long[] timestampsMs;
+    private double[] forward;
+
+    // indices where the forward pass reached a new running maximum, ascending
+    private int records = 0;
+    private int[] recordIndex;
+
+    private int lastBackwardSpan = 0;
+
+    public StreamingPeakFinder(float alpha) {
+        this(alpha, 64);
+    }
+
+    public StreamingPeakFinder(float alpha, int initialCapacity) {
+        this.alpha = alpha;
+        final int n = Math.max(MINIMUM_SAMPLES_FOR_ANALYSIS, initialCapacity);
+        timestampsMs = new long[n];
+        forward = new double[n];
+        recordIndex = new int[16];
+    }
+
+    /** Start a new pass, keeping the columns' capacity. */
+    public void reset() {
+        size = 0;
+        records = 0;
+        lastBackwardSpan = 0;
+    }
+
+    public void add(long timestampMs, int rssi) {
+        if (size == forward.length) grow();
+        final double f = (size == 0)
+                ? rssi
+                : (alpha * rssi) + ((1 - alpha) * forward[size - 1]); // same arithmetic as TagPeakFinder
+        timestampsMs[size] = timestampMs;
+        forward[size] = f;
+        if (records == 0 || f > forward[recordIndex[records - 1]]) {
+            if (records == recordIndex.length) recordIndex = Arrays.copyOf(recordIndex, records * 2);
+            recordIndex[records++] = size;
+        }
+        size++;
+    }
+
+    public void addAll(long[] timestampsMs, int[] rssi, int from, int length) {
+        for (int i = from, end = from + length; i < end; i++) add(timestampsMs[i], rssi[i]);
+    }
+
+    public int size() { return size; }
+
+    /** Samples the last {@link #findPeak} visited in its backward pass. */
+    public int lastBackwardSpan() { return lastBackwardSpan; }
+
+    /**
+     * The zero-phase peak of the samples added so far, or null with fewer than 3. Leaves the
+     * finder as it was, so it can be called again after more samples arrive.
+     */
+    @Nullable
+    public TagPeakData findPeak() {
+        lastBackwardSpan = 0;
+        if (size < MINIMUM_SAMPLES_FOR_ANALYSIS) return null;
+
+        int r = records - 1; // newest record at or before the index being visited
+        double backward = forward[size - 1];
+        double best = backward;
+        int bestIndex = size - 1;
+        int i = size - 1;
+        while (true) {
+            lastBackwardSpan++;
+            // ties keep the earliest index, as TagPeakFinder's strict '>' scan does
+            if (backward >= best) {
+                best = backward;
+                bestIndex = i;
+            }
+            if (i == 0) break;
+            while (recordIndex[r] > i - 1) r--;
+            // every backward value before i is below best (the margin absorbs rounding; stopping late is harmless)
+            if (forward[recordIndex[r]] < best - STOP_MARGIN) break;
+            i--;
+            backward = (alpha * forward[i]) + ((1 - alpha) * backward);
+        }
+        return new TagPeakData(timestampsMs[bestIndex], (float) best);
+    }
+
+    private void grow() {
+        final int n = forward.length * 2;
+        timestampsMs = Arrays.copyOf(timestampsMs, n);
+        forward = Arrays.copyOf(forward, n);
+    }
+}
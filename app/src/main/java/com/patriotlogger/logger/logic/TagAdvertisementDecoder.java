@@ -0,0 +1,162 @@
+package com.patriotlogger.logger.logic;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Pulls the tag id out of a raw BLE advertisement (the bytes of ScanRecord.getBytes()).
+ *
+ * Tags identify themselves with a compact binary payload:
+ * <pre>
+ *   'P' 'T' | version (1) | tagId (uint16, little-endian)
+ * </pre>
+ * carried either as manufacturer-specific data (AD type 0xFF) under {@link #COMPANY_ID},
+ * or as 16-bit service data (AD type 0x16) under {@link #SERVICE_UUID16}. Older firmware
+ * only advertises a "PT-123" local name; that is kept as a fallback and is read straight
+ * from the advertisement bytes, so decoding never builds a String.
+ *
+ * Everything here is plain Java so it can be tested with raw byte arrays.
+ */
+public final class TagAdvertisementDecoder {
+
+    private TagAdvertisementDecoder() {}
+
+    /** Returned when the advertisement is not from one of our tags. */
+    public static final int NO_TAG = -1;
+
+    /** Tag ids index per-tag arrays directly, so they are bounded (and fit the uint16 payload). */
+    public static final int MAX_TAG_ID = 0xFFFF;
+
+    /** Bluetooth SIG company id reserved for internal/test use. */
+    public static final int COMPANY_ID = 0xFFFF;
+    /** 16-bit service UUID ("PT") used for the service-data form. */
+    public static final int SERVICE_UUID16 = 0x5054;
+
+    public static final byte MAGIC_0 = 'P';
+    public static final byte MAGIC_1 = 'T';
+    public static final byte FORMAT_VERSION = 1;
+    /** Bytes of the binary payload after the company id / service UUID. */
+    public static final int PAYLOAD_LENGTH = 5;
+
+    /** Local-name prefix used by the name fallback ("PT-123"). */
+    public static final String NAME_PREFIX = "PT";
+
+    // AD types (Bluetooth Core Spec Supplement, part A)
+    static final int AD_SHORT_LOCAL_NAME    = 0x08;
+    static final int AD_COMPLETE_LOCAL_NAME = 0x09;
+    static final int AD_SERVICE_DATA_16     = 0x16;
+    static final int AD_MANUFACTURER_DATA   = 0xFF;
+
+    /**
+     * Decode a full advertisement (advertising data + scan response, as AD structures).
+     * A binary payload wins over the name fallback when both are present.
+     * @return the tag id, or {@link #NO_TAG}
+     */
+    public static int decode(@Nullable byte[] adv) {
+        if (adv == null) return NO_TAG;
+        int nameId = NO_TAG;
+        int i = 0;
+        while (i < adv.length) {
+            final int len = adv[i] & 0xFF;
+            if (len == 0) break;                 // zero-length structure pads the rest
+            final int end = i + 1 + len;
+            if (end > adv.length) break;         // truncated
+            final int type = adv[i + 1] & 0xFF;
+            final int data = i + 2;
+            final int dataLen = len - 1;
+
+            switch (type) {
+                case AD_MANUFACTURER_DATA:
+                    if (dataLen >= 2 && readUint16Le(adv, data) == COMPANY_ID) {
+                        int id = decodePayload(adv, data + 2, dataLen - 2);
+                        if (id != NO_TAG) return id;
+                    }
+                    break;
+                case AD_SERVICE_DATA_16:
+                    if (dataLen >= 2 && readUint16Le(adv, data) == SERVICE_UUID16) {
+                        int id = decodePayload(adv, data + 2, dataLen - 2);
+                        if (id != NO_TAG) return id;
+                    }
+                    break;
+                case AD_COMPLETE_LOCAL_NAME:
+                case AD_SHORT_LOCAL_NAME:
+                    if (nameId == NO_TAG) nameId = parseNameBytes(adv, data, dataLen);
+                    break;
+                default:
+                    break;
+            }
+            i = end;
+        }
+        return nameId;
+    }
+
+    /**
+     * Decode the binary payload on its own (e.g. ScanRecord.getManufacturerSpecificData(COMPANY_ID)).
+     * @return the tag id, or {@link #NO_TAG}
+     */
+    public static int decodePayload(@Nullable byte[] payload) {
+        return (payload == null) ? NO_TAG : decodePayload(payload, 0, payload.length);
+    }
+
+    static int decodePayload(byte[] b, int off, int len) {
+        if (len < PAYLOAD_LENGTH) return NO_TAG;
+        if (b[off] != MAGIC_0 || b[off + 1] != MAGIC_1) return NO_TAG;
+        if (b[off + 2] != FORMAT_VERSION) return NO_TAG;
+        return readUint16Le(b, off + 3);
+    }
+
+    /**
+     * Name fallback: "PT" followed by one separator and the decimal id ("PT-123").
+     * @return the tag id, or {@link #NO_TAG} if the name doesn't match or the id exceeds {@link #MAX_TAG_ID}
+     */
+    public static int parseTagIdFromName(@Nullable CharSequence name) {
+        if (name == null) return NO_TAG;
+        final int len = name.length();
+        final int start = NAME_PREFIX.length() + 1;
+        if (len <= start || name.charAt(0) != NAME_PREFIX.charAt(0) || name.charAt(1) != NAME_PREFIX.charAt(1)) {
+            return NO_TAG;
+        }
+        int id = 0;
+        for (int i = start; i < len; i++) {
+            final char c = name.charAt(i);
+            if (c < '0' || c > '9') return NO_TAG;
+            id = id * 10 + (c - '0');
+            if (id > MAX_TAG_ID) return NO_TAG;
+        }
+        return id;
+    }
+
+    /** Same as {@link #parseTagIdFromName} over ASCII name bytes inside an advertisement. */
+    static int parseNameBytes(byte[] b, int off, int len) {
+        final int start = NAME_PREFIX.length() + 1;
+        if (len <= start || b[off] != NAME_PREFIX.charAt(0) || b[off + 1] != NAME_PREFIX.charAt(1)) {
+            return NO_TAG;
+        }
+        int id = 0;
+        for (int i = off + start; i < off + len; i++) {
+            final int c = b[i];
+            if (c < '0' || c > '9') return NO_TAG;
+            id = id * 10 + (c - '0');
+            if (id > MAX_TAG_ID) return NO_TAG;
+        }
+        return id;
+    }
+
+    /** Payload prefix that every tag shares (magic + version), for controller-side ScanFilters. */
+    public static byte[] filterPrefix() {
+        return new byte[]{MAGIC_0, MAGIC_1, FORMAT_VERSION};
+    }
+
+    /** Mask matching {@link #filterPrefix()} exactly. */
+    public static byte[] filterPrefixMask() {
+        return new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+    }
+
+    /** Build the binary payload for a tag id (used by tests and tag tooling). */
+    public static byte[] encodePayload(int tagId) {
+        return new byte[]{MAGIC_0, MAGIC_1, FORMAT_VERSION, (byte) (tagId & 0xFF), (byte) ((tagId >>> 8) & 0xFF)};
+    }
+
+    private static int readUint16Le(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+    }
+}
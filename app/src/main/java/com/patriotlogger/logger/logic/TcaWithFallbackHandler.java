@@ -2,12 +2,9 @@ package com.patriotlogger.logger.logic;
 
 import com.patriotlogger.logger.data.TagData;
 import com.patriotlogger.logger.data.TagStatus;
-import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+import com.patriotlogger.logger.util.HeapEstimate;
 
-import org.apache.commons.math3.stat.regression.SimpleRegression;
-
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -15,6 +12,7 @@ import java.util.List;
  * - HERE entry: TCA predicts crossing within threshold OR (stable window, slope<0, distance <= 1.05*here).
  * - HERE exit: only via TCA receding (with an earlier "behind us" allowance) or force-deadline.
  * - Force-deadline: min(traverse, worst-case) — no tiny cap.
+ * The decisions live in {@link PassStateMachine}; this class supplies the windowed fit.
  */
 public class TcaWithFallbackHandler implements RssiHandler {
 
@@ -28,36 +26,17 @@ public class TcaWithFallbackHandler implements RssiHandler {
     private final int    minPoints;
     private final double approachMeters;
 
-    // Tight proximity enter band
-    private static final double H_IN = 1.05;
-
-    // Runner speed band
-    private static final double V_MIN_MPS = 5000.0 / (26.0 * 60.0);
-    private static final double V_MAX_MPS = 5000.0 / (16.0 * 60.0);
-
-    // Early recede helpers
-    private static final double LOG_BEHIND_EPS_SEC   = 0.5;  // if crossing is ≥0.5s behind, allow LOG
-    private static final double HERE_MIN_DWELL_SEC   = 0.7;  // or after 0.7s dwell in HERE
-
     // --- state ---
     private boolean hasEma = false;
     private double ema = 0.0;
 
-    private final Deque<Point> window = new ArrayDeque<>();
-
-    private Long   hereEnterMs = null;
-    private Long   forceLogAtMs = null;
-    private Double bestRssi = null;
-    private Long   bestRssiTsMs = null;
+    // log10(distance) over the last windowSize samples, fitted incrementally
+    private final SlidingWindowRegression window;
 
-    private static final double MIN_DIST = 0.30;
-    private static final double MAX_DIST = 80.0;
-
-    private static class Point {
-        final double tSec;
-        final double d;
-        Point(double tSec, double d) { this.tSec = tSec; this.d = d; }
-    }
+    // HERE/LOGGED decisions, fed the window's intercept and slope
+    private final PassStateMachine fsm;
+    private final PassStateMachine.Step step = this::step;
+    private final long configHash;
 
     public TcaWithFallbackHandler(float alpha,
                                   double txAt1mDbm,
@@ -75,6 +54,13 @@ public class TcaWithFallbackHandler implements RssiHandler {
         this.windowSize = Math.max(6, windowSize);
         this.minPoints = Math.max(5, Math.min(this.windowSize - 2, minPoints));
         this.approachMeters = (approachMeters > 0) ? approachMeters : 15.0;
+        this.window = new SlidingWindowRegression(this.windowSize);
+        this.fsm = new PassStateMachine(hereMeters, this.thresholdSec, this.approachMeters);
+        long h = PassStateMachine.hash(fsm.configHash(), alpha);
+        h = PassStateMachine.hash(h, txAt1mDbm);
+        h = PassStateMachine.hash(h, this.pathExp);
+        h = PassStateMachine.hash(h, this.windowSize);
+        this.configHash = PassStateMachine.hash(h, this.minPoints);
     }
 
     @Override
@@ -82,11 +68,7 @@ public class TcaWithFallbackHandler implements RssiHandler {
         hasEma = false;
         ema = 0.0;
         window.clear();
-
-        hereEnterMs = null;
-        forceLogAtMs = null;
-        bestRssi = null;
-        bestRssiTsMs = null;
+        fsm.reset();
     }
 
     @Override
@@ -102,172 +84,82 @@ public class TcaWithFallbackHandler implements RssiHandler {
                                   List<TagData> history,
                                   RssiData sample) {
         if (currentStatus == null || sample == null) return currentStatus;
+        step(currentStatus, sample.timestampMs, sample.rssi);
+        return currentStatus;
+    }
 
-        final long tMs = sample.timestampMs;
-        final double tSecAbs = tMs / 1000.0;
+    @Override
+    public int acceptSamples(TagStatus status, long[] timestampsMs, int[] rssi,
+                             int from, int length, StateTransitions transitions) {
+        return PassStateMachine.acceptSamples(step, status, timestampsMs, rssi, from, length, transitions);
+    }
 
+    private void step(TagStatus currentStatus, long tMs, int rssiNow) {
         // 1) EMA RSSI
-        final int rssiNow = sample.rssi;
         if (!hasEma) { ema = rssiNow; hasEma = true; }
         else         { ema = alpha * rssiNow + (1 - alpha) * ema; }
 
-        // 2) RSSI -> distance
-        final double dNow = rssiToDistance(ema);
+        // 2) RSSI -> log10(distance); metres are only materialized for the velocity estimate
+        final double logD = PassStateMachine.logDistance(ema, txAt1mDbm, pathExp);
 
-        // 3) Maintain window
-        window.addLast(new Point(tSecAbs, dNow));
-        while (window.size() > windowSize) window.removeFirst();
+        // 3) Maintain window (evicts the oldest point once full)
+        window.add(tMs, logD);
 
         // Update lastSeen
         currentStatus.lastSeenMs = tMs;
 
         // Not enough points: bookkeeping and optional gentle ENTER (but never exit)
         if (window.size() < minPoints) {
-            trackBestSinceHere(tMs, ema, currentStatus);
-            if (checkForceDeadline(tMs, currentStatus)) {
-                setLogged(currentStatus, tMs);
-            }
-            return currentStatus;
-        }
-
-        // 4) Regression
-        final double tNow = tSecAbs;
-        SimpleRegression reg = new SimpleRegression(true);
-        int nAdded = 0;
-        for (Point p : window) {
-            double tRel = p.tSec - tNow; // <= 0
-            double y    = Math.log10(p.d);
-            if (Double.isFinite(tRel) && Double.isFinite(y)) { reg.addData(tRel, y); nAdded++; }
-        }
-        if (nAdded < minPoints || Double.isNaN(reg.getSlope())) {
-            trackBestSinceHere(tMs, ema, currentStatus);
-            if (checkForceDeadline(tMs, currentStatus)) {
-                setLogged(currentStatus, tMs);
-            }
-            return currentStatus;
+            fsm.hold(currentStatus, tMs, ema);
+            return;
         }
 
-        final double b = reg.getSlope();
-        final double a = reg.getIntercept();
-        Double tCross = null;
-        if (Math.abs(b) > 1e-9) tCross = (Math.log10(hereMeters) - a) / b;
-
-        // Velocity estimate
-        double vEst = Math.abs(b) * Math.log(10.0) * dNow; // m/s
-        double vClamped = clamp(vEst, V_MIN_MPS, V_MAX_MPS);
-
-        boolean approachingSlope = b < -1e-6;
-        boolean recedingSlope    = b >  1e-6;
-
-        // 5) APPROACHING gating
-        if (dNow <= approachMeters) {
-            if (currentStatus.state == TagStatusState.TOO_FAR ||
-                    currentStatus.state == TagStatusState.FIRST_SAMPLE) {
-                currentStatus.state = TagStatusState.APPROACHING;
-            }
-        } else {
-            if (currentStatus.state != TagStatusState.HERE &&
-                    currentStatus.state != TagStatusState.LOGGED) {
-                currentStatus.state = TagStatusState.TOO_FAR;
-            }
+        // 4) Regression of log10(d) on time relative to now (so the intercept is "now")
+        final double b = window.slope();
+        if (window.count() < minPoints || Double.isNaN(b)) {
+            fsm.hold(currentStatus, tMs, ema);
+            return;
         }
 
-        // 6) FSM
-        switch (currentStatus.state) {
-            case FIRST_SAMPLE:
-            case TOO_FAR:
-            case APPROACHING: {
-                boolean tcaSoon = (tCross != null && approachingSlope && tCross >= 0 && tCross <= thresholdSec);
-                boolean proximityEnter = (approachingSlope && dNow <= hereMeters * H_IN);
-                if (tcaSoon || proximityEnter) {
-                    enterHere(currentStatus, tMs, vClamped);
-                }
-                break;
-            }
-
-            case HERE: {
-                // Standard recede: crossing sufficiently behind us
-                boolean tcaBehindEnough = (tCross != null && recedingSlope && tCross <= -thresholdSec);
-
-                // Earlier recede allowance: if crossing is behind at all and we've dwelled a bit OR behind by ~0.5s
-                long dwellMs = (hereEnterMs != null) ? (tMs - hereEnterMs) : 0L;
-                boolean earlyBehind = (tCross != null && recedingSlope && tCross < 0.0
-                        && (dwellMs >= (long)(HERE_MIN_DWELL_SEC * 1000.0) || (-tCross) >= LOG_BEHIND_EPS_SEC));
-
-                if (tcaBehindEnough || earlyBehind) {
-                    setLogged(currentStatus, tMs);
-                    break;
-                }
-
-                // Track best + refresh deadline (no tiny cap)
-                trackBestSinceHere(tMs, ema, currentStatus);
-                refreshForceDeadline(vClamped);
-
-                if (checkForceDeadline(tMs, currentStatus)) {
-                    setLogged(currentStatus, tMs);
-                }
-                break;
-            }
-
-            case LOGGED:
-            case TIMED_OUT:
-                break;
-        }
-
-        return currentStatus;
-    }
-
-    // --- helpers ---
-
-    private double rssiToDistance(double rssiDbm) {
-        double num = (txAt1mDbm - rssiDbm) / (10.0 * pathExp);
-        double d = Math.pow(10.0, num);
-        if (!Double.isFinite(d)) return MAX_DIST;
-        if (d < MIN_DIST) d = MIN_DIST;
-        if (d > MAX_DIST) d = MAX_DIST;
-        return d;
+        // 5) APPROACHING gating and the HERE/LOGGED FSM
+        fsm.advance(currentStatus, tMs, ema, logD, window.valueAt(tMs), b);
     }
 
-    private void trackBestSinceHere(long tMs, double rssiSmoothed, TagStatus status) {
-        if (hereEnterMs == null) return;
-        if (bestRssi == null || rssiSmoothed > bestRssi) {
-            bestRssi = rssiSmoothed;
-            bestRssiTsMs = tMs;
-        }
+    /** This object's fields plus its window rings; grows linearly with windowSize. */
+    @Override
+    public long estimatedFootprintBytes() {
+        return HeapEstimate.objects(1) + window.estimatedFootprintBytes() + fsm.estimatedFootprintBytes();
     }
 
-    private boolean checkForceDeadline(long nowMs, TagStatus status) {
-        return status.state == TagStatusState.HERE && forceLogAtMs != null && nowMs >= forceLogAtMs;
-    }
+    // --- persisted state ---
 
-    private void setLogged(TagStatus status, long tMs) {
-        status.state = TagStatusState.LOGGED;
-        status.exitTimeMs = tMs;
-        if (bestRssiTsMs != null && status.peakTimeMs == 0L) {
-            status.peakTimeMs = bestRssiTsMs;
-        }
-    }
+    private static final byte STATE_FORMAT = 2;
+    // hasEma + ema, after the state machine's header
+    private static final int STATE_BODY_BYTES = 1 + 8;
 
-    private void enterHere(TagStatus status, long tMs, double vClamped) {
-        status.state = TagStatusState.HERE;
-        hereEnterMs = tMs;
-        if (status.arrivedTimeMs == 0L) status.arrivedTimeMs = tMs;
-        bestRssi = ema;
-        bestRssiTsMs = tMs;
-        refreshForceDeadline(vClamped);
+    /** HERE timers, best-RSSI mark, EMA and the regression window, tagged with this handler's config. */
+    @Override
+    public byte[] snapshotState() {
+        ByteBuffer out = fsm.beginSnapshot(STATE_FORMAT, configHash, STATE_BODY_BYTES + window.serializedSize());
+        out.put((byte) (hasEma ? 1 : 0)).putDouble(ema);
+        if (!window.writeTo(out)) return null;
+        return out.array();
     }
 
-    private void refreshForceDeadline(double vClamped) {
-        if (hereEnterMs == null) return;
-        long traverseMs  = (long) Math.ceil((2.0 * hereMeters / vClamped) * 1000.0);
-        long worstCaseMs = (long) Math.ceil((2.0 * hereMeters / V_MIN_MPS) * 1000.0);
-        forceLogAtMs = hereEnterMs + Math.min(traverseMs, worstCaseMs);
-    }
+    @Override
+    public boolean restoreState(byte[] state) {
+        init();
+        ByteBuffer in = fsm.beginRestore(state, STATE_FORMAT, configHash, STATE_BODY_BYTES);
+        if (in == null) return false;
+        final boolean restoredHasEma = in.get() != 0;
+        final double restoredEma = in.getDouble();
+        if (!window.readFrom(in)) {
+            init();
+            return false;
+        }
 
-    private static double clamp(double v, double lo, double hi) {
-        if (!Double.isFinite(v)) return lo;
-        if (v < lo) return lo;
-        if (v > hi) return hi;
-        return v;
+        hasEma = restoredHasEma;
+        ema = restoredEma;
+        return true;
     }
 }
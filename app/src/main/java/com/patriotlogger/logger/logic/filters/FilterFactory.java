@@ -3,10 +3,14 @@ package com.patriotlogger.logger.logic.filters;
 import androidx.annotation.NonNull;
 
 import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.logic.PipelineConfig;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Central place to build the active RSSI filter chain from Settings.
- * No schema changes: we keep sensible defaults and use existing fields when helpful.
+ * Stateful filters keep per-tag state, so every scan worker builds its own chain.
  */
 public final class FilterFactory {
 
@@ -15,21 +19,20 @@ public final class FilterFactory {
     /**
      * Convert current Setting to a filter chain.
      * Right now:
-     *  - Min/Max RSSI bounds (defaults -105..-25 dBm).
+     *  - Min/Max RSSI bounds (overrides, else filter_min_rssi/filter_max_rssi, else -105..-25 dBm).
+     *  - Per-tag median-delta outlier rejection when filter_median_window > 0.
      *  - You can add more filters here later without touching BleScannerService.
      */
     @NonNull
-    public static java.util.List<RssiFilter> build(@NonNull Setting s, FiltersConfig overrides) {
-        final java.util.ArrayList<RssiFilter> list = new java.util.ArrayList<>(4);
-
+    public static List<TagRssiFilter> build(@NonNull Setting s, FiltersConfig overrides) {
         // Reasonable defaults for BLE indoors (avoid crazy outliers).
         int minRssi = (overrides != null && overrides.minRssi != null)
                 ? overrides.minRssi
-                : -105;
+                : (s.filter_min_rssi != null ? s.filter_min_rssi : Setting.DEFAULT_FILTER_MIN_RSSI);
 
         int maxRssi = (overrides != null && overrides.maxRssi != null)
                 ? overrides.maxRssi
-                : -25;
+                : (s.filter_max_rssi != null ? s.filter_max_rssi : Setting.DEFAULT_FILTER_MAX_RSSI);
 
         // Example of optionally tying to existing thresholds if you want:
         // If someone sets arrived_threshold tighter than max bound, clamp to that.
@@ -41,7 +44,30 @@ public final class FilterFactory {
             }
         }
 
+        final int medianWindow = s.filter_median_window != null
+                ? s.filter_median_window : Setting.DEFAULT_FILTER_MEDIAN_WINDOW;
+        final int medianMaxDeltaDb = s.filter_median_max_delta_db != null
+                ? s.filter_median_max_delta_db : Setting.DEFAULT_FILTER_MEDIAN_MAX_DELTA_DB;
+        return list(minRssi, maxRssi, medianWindow, medianMaxDeltaDb);
+    }
+
+    /** As {@link #build}, as an immutable chain with its ranges fused. */
+    @NonNull
+    public static RssiFilterChain buildChain(@NonNull Setting s, FiltersConfig overrides) {
+        return RssiFilterChain.of(build(s, overrides));
+    }
+
+    /** The scan pipeline's chain for a settings snapshot; a fresh one (no tag state) per call. */
+    @NonNull
+    public static RssiFilterChain buildChain(@NonNull PipelineConfig c) {
+        return RssiFilterChain.of(list(c.filterMinRssi, c.filterMaxRssi,
+                c.filterMedianWindow, c.filterMedianMaxDeltaDb));
+    }
+
+    private static List<TagRssiFilter> list(int minRssi, int maxRssi, int medianWindow, int medianMaxDeltaDb) {
+        final List<TagRssiFilter> list = new ArrayList<>(4);
         list.add(new MinMaxRssiFilter(minRssi, maxRssi));
+        if (medianWindow > 0) list.add(new MedianDeltaFilter(medianWindow, medianMaxDeltaDb));
 
         // Future additions can go here (e.g., short-gap debouncer, burst limiter), still standard.
 
@@ -0,0 +1,76 @@
+package com.patriotlogger.logger.logic.filters;
+
+import com.patriotlogger.logger.logic.SlidingMedian;
+import com.patriotlogger.logger.util.TagIndexed;
+
+/**
+ * Rejects a sample further than {@code maxDeltaDb} from the median of its tag's last
+ * {@code window} accepted samples (a Hampel-style filter with a fixed dB threshold), killing
+ * one-off dips and spikes before they reach the state transitions.
+ *
+ * The first {@code window} samples of a tag are accepted to seed its median. If a tag's
+ * signal really moves (a level shift rather than an outlier), {@code window} rejections in a
+ * row reseed it from the sample that ends the streak, so the tag is not locked out.
+ *
+ * Each tag keeps its own {@link SlidingMedian} (O(log window) per sample) in a
+ * {@link TagIndexed} array.
+ */
+public final class MedianDeltaFilter implements TagRssiFilter {
+
+    private final int window;
+    private final int maxDeltaDb;
+
+    // per tag, indexed by tagId
+    private SlidingMedian[] medians;
+    private int[] rejectStreak;
+
+    public MedianDeltaFilter(int window, int maxDeltaDb) {
+        this.window = Math.max(1, window);
+        this.maxDeltaDb = Math.max(1, maxDeltaDb);
+        this.medians = new SlidingMedian[16];
+        this.rejectStreak = new int[16];
+    }
+
+    @Override
+    public boolean shouldAccept(int tagId, long timestampMs, int rssi) {
+        if (tagId < 0) return true;
+        if (tagId >= medians.length) grow(tagId);
+        SlidingMedian m = medians[tagId];
+        if (m == null) {
+            m = new SlidingMedian(window);
+            medians[tagId] = m;
+        }
+        if (m.size() < window) {
+            m.add(rssi);
+            return true; // seeding
+        }
+        if (Math.abs(rssi - m.median()) <= maxDeltaDb) {
+            m.add(rssi);
+            rejectStreak[tagId] = 0;
+            return true;
+        }
+        if (++rejectStreak[tagId] < window) return false;
+        // level shift: start over from here
+        m.clear();
+        m.add(rssi);
+        rejectStreak[tagId] = 0;
+        return true;
+    }
+
+    @Override
+    public void reset(int tagId) {
+        if (tagId < 0 || tagId >= medians.length) return;
+        if (medians[tagId] != null) medians[tagId].clear();
+        rejectStreak[tagId] = 0;
+    }
+
+    private void grow(int tagId) {
+        medians = TagIndexed.grow(medians, tagId);
+        rejectStreak = TagIndexed.grow(rejectStreak, tagId);
+    }
+
+    @Override
+    public String toString() {
+        return "MedianDeltaFilter[win=" + window + ", maxDelta=" + maxDeltaDb + "dB]";
+    }
+}
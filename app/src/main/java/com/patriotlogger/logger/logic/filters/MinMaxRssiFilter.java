@@ -1,8 +1,9 @@
 package com.patriotlogger.logger.logic.filters;
 
 public class MinMaxRssiFilter implements RssiFilter{
-    private final int minRssi;
-    private final int maxRssi;
+    // package-private so RssiFilterChain can fuse ranges
+    final int minRssi;
+    final int maxRssi;
     public MinMaxRssiFilter(int minRssi, int maxRssi) {
         this.minRssi = minRssi;
         this.maxRssi = maxRssi;
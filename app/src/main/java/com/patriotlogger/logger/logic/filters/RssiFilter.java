@@ -1,5 +1,11 @@
 package com.patriotlogger.logger.logic.filters;
 
-public interface RssiFilter {
+/** A stateless filter: the same decision for every tag. */
+public interface RssiFilter extends TagRssiFilter {
     boolean shouldAccept(long timestampMs, int rssi);
+
+    @Override
+    default boolean shouldAccept(int tagId, long timestampMs, int rssi) {
+        return shouldAccept(timestampMs, rssi);
+    }
 }
@@ -0,0 +1,88 @@
+package com.patriotlogger.logger.logic.filters;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable filter chain, safe to publish through a volatile field without locking or
+ * copying. Built once per filter settings change. The chain itself holds no state, but its
+ * stages may keep state per tag, so a chain with stateful stages belongs to one worker.
+ *
+ * Consecutive {@link MinMaxRssiFilter}s are fused into one range (their intersection); a
+ * leading range is checked inline before any other stage. Stages still run in the order
+ * given and stop at the first rejection, so stateful filters see exactly the samples they
+ * would in the unfused chain.
+ */
+public final class RssiFilterChain implements TagRssiFilter {
+
+    /** Accepts everything. */
+    public static final RssiFilterChain ACCEPT_ALL =
+            new RssiFilterChain(Integer.MIN_VALUE, Integer.MAX_VALUE, new TagRssiFilter[0]);
+
+    // leading fused range, inlined
+    private final int minRssi;
+    private final int maxRssi;
+    // the remaining stages, in order
+    private final TagRssiFilter[] stages;
+
+    private RssiFilterChain(int minRssi, int maxRssi, TagRssiFilter[] stages) {
+        this.minRssi = minRssi;
+        this.maxRssi = maxRssi;
+        this.stages = stages;
+    }
+
+    /** The chain for {@code filters} in order; later changes to the list don't affect it. */
+    @NonNull
+    public static RssiFilterChain of(@NonNull List<? extends TagRssiFilter> filters) {
+        final List<TagRssiFilter> fused = new ArrayList<>(filters.size());
+        for (TagRssiFilter f : filters) {
+            if (f == null || f == ACCEPT_ALL) continue;
+            final int last = fused.size() - 1;
+            if (f instanceof MinMaxRssiFilter && last >= 0 && fused.get(last) instanceof MinMaxRssiFilter) {
+                MinMaxRssiFilter a = (MinMaxRssiFilter) fused.get(last);
+                MinMaxRssiFilter b = (MinMaxRssiFilter) f;
+                fused.set(last, new MinMaxRssiFilter(Math.max(a.minRssi, b.minRssi), Math.min(a.maxRssi, b.maxRssi)));
+            } else {
+                fused.add(f);
+            }
+        }
+        int min = Integer.MIN_VALUE, max = Integer.MAX_VALUE;
+        int from = 0;
+        if (!fused.isEmpty() && fused.get(0) instanceof MinMaxRssiFilter) {
+            MinMaxRssiFilter range = (MinMaxRssiFilter) fused.get(0);
+            min = range.minRssi;
+            max = range.maxRssi;
+            from = 1;
+        }
+        return new RssiFilterChain(min, max, fused.subList(from, fused.size()).toArray(new TagRssiFilter[0]));
+    }
+
+    @Override
+    public boolean shouldAccept(int tagId, long timestampMs, int rssi) {
+        if (rssi < minRssi || rssi > maxRssi) return false;
+        for (TagRssiFilter f : stages) {
+            if (!f.shouldAccept(tagId, timestampMs, rssi)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void reset(int tagId) {
+        for (TagRssiFilter f : stages) f.reset(tagId);
+    }
+
+    /** Stages run after the inlined range (0 for a range-only chain). */
+    public int stageCount() {
+        return stages.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RssiFilterChain{");
+        sb.append("rssi=[").append(minRssi).append(',').append(maxRssi).append(']');
+        for (TagRssiFilter f : stages) sb.append(", ").append(f.getClass().getSimpleName());
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,16 @@
+package com.patriotlogger.logger.logic.filters;
+
+/**
+ * An ingest filter that may keep state per tag, e.g. a tag's recent accepted samples.
+ *
+ * Each tag's samples are offered in timestamp order from the one worker thread that owns the
+ * tag. A filter instance is owned by one such worker (each shard builds its own chain), so
+ * implementations need no locking.
+ */
+public interface TagRssiFilter {
+
+    boolean shouldAccept(int tagId, long timestampMs, int rssi);
+
+    /** Forget this tag's state, e.g. because its pass ended. Stateless filters keep nothing. */
+    default void reset(int tagId) {}
+}
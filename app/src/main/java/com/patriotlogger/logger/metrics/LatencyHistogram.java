@@ -0,0 +1,128 @@
+package com.patriotlogger.logger.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-footprint latency histogram in the HDR style: log-linear buckets, so every
+ * recorded value lands in a bucket whose width is at most 1/32 of its magnitude
+ * (about 3% relative error) from 1ns up to ~18 minutes.
+ *
+ * {@link #record} is lock-free and allocation-free, and safe from any number of threads.
+ * Readers take a {@link Snapshot}; a snapshot taken while writers are active may be off
+ * by the few values recorded during the copy.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Largest exponent kept; larger values are clamped into the top bucket. */
+    static final int MAX_EXPONENT = 39;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    public static final long MAX_TRACKABLE_NANOS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** Record one latency. Negative values (clock skew) are counted as 0. */
+    public void record(long nanos) {
+        final long v = (nanos < 0L) ? 0L : Math.min(nanos, MAX_TRACKABLE_NANOS);
+        counts.incrementAndGet(indexFor(v));
+        totalCount.incrementAndGet();
+        sumNanos.addAndGet(v);
+        long m;
+        while (v > (m = maxNanos.get())) {
+            if (maxNanos.compareAndSet(m, v)) break;
+        }
+    }
+
+    /** Record {@code count} occurrences of one latency (e.g. a batch's per-item average). */
+    public void record(long nanos, int count) {
+        if (count <= 0) return;
+        final long v = (nanos < 0L) ? 0L : Math.min(nanos, MAX_TRACKABLE_NANOS);
+        counts.addAndGet(indexFor(v), count);
+        totalCount.addAndGet(count);
+        sumNanos.addAndGet(v * count);
+        long m;
+        while (v > (m = maxNanos.get())) {
+            if (maxNanos.compareAndSet(m, v)) break;
+        }
+    }
+
+    public long getCount() { return totalCount.get(); }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0L);
+        totalCount.set(0L);
+        sumNanos.set(0L);
+        maxNanos.set(0L);
+    }
+
+    @NonNull
+    public Snapshot snapshot() {
+        final long[] c = new long[BUCKET_COUNT];
+        long n = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            c[i] = counts.get(i);
+            n += c[i];
+        }
+        return new Snapshot(c, n, sumNanos.get(), maxNanos.get());
+    }
+
+    // values below SUB_BUCKETS map 1:1; above, each power of two is split into SUB_BUCKETS slices
+    static int indexFor(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        final int e = 63 - Long.numberOfLeadingZeros(v);
+        final int top = (int) (v >>> (e - SUB_BUCKET_BITS)); // in [SUB_BUCKETS, 2*SUB_BUCKETS)
+        return (e - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    /** Largest value that maps to the bucket (HDR's "highest equivalent value"). */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) return index;
+        final int e = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long top = (index % SUB_BUCKETS) + SUB_BUCKETS;
+        return ((top + 1) << (e - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /** Immutable copy of a histogram's state. */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() { return count; }
+
+        public long getMaxNanos() { return maxNanos; }
+
+        public double getMeanNanos() { return (count == 0L) ? 0.0 : (double) sumNanos / count; }
+
+        /**
+         * @param percentile 0..100
+         * @return the value at or below which that share of recorded values falls (0 when empty)
+         */
+        public long percentileNanos(double percentile) {
+            if (count == 0L) return 0L;
+            final double p = Math.max(0.0, Math.min(100.0, percentile));
+            final long rank = Math.max(1L, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highestValueAt(i), maxNanos);
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.patriotlogger.logger.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Process-wide latency registry for the scanning pipeline, one {@link LatencyHistogram}
+ * per {@link Stage}. Recording is lock-free and allocation-free, so it stays on for every
+ * sample; the histogram's count doubles as the stage's throughput counter.
+ *
+ * Read it with {@link #snapshot()}; shown on DebugActivity, logged by the scanner's sweep
+ * and exportable through CsvExporter.
+ */
+public final class PipelineMetrics {
+
+    public enum Stage {
+        /** Controller timestamp (ScanResult.getTimestampNanos) to our scan callback. */
+        RADIO_TO_DELIVERY("radio_to_delivery"),
+        /** Scan callback to the worker shard picking the sample up. */
+        DELIVERY_TO_WORKER("delivery_to_worker"),
+        /** RssiHandler.acceptSample for one sample. */
+        HANDLER("handler"),
+        /** Sample timestamp to its TagData row being committed. */
+        BUFFER_TO_COMMIT("buffer_to_commit"),
+        /** TagStatus write queued to committed (write-through and batched). */
+        STATUS_WRITE("status_write");
+
+        public final String key;
+
+        Stage(String key) { this.key = key; }
+    }
+
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+    public static PipelineMetrics get() { return INSTANCE; }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private volatile long startedElapsedNs = System.nanoTime();
+
+    private PipelineMetrics() {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+    }
+
+    public void record(@NonNull Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    /** {@code count} items that took {@code totalNanos} together, recorded at their average. */
+    public void recordBatch(@NonNull Stage stage, long totalNanos, int count) {
+        if (count > 0) histograms[stage.ordinal()].record(totalNanos / count, count);
+    }
+
+    public void recordMillis(@NonNull Stage stage, long millis) {
+        histograms[stage.ordinal()].record(millis * 1_000_000L);
+    }
+
+    /** Clear every stage and restart the throughput clock. */
+    public void reset() {
+        for (LatencyHistogram h : histograms) h.reset();
+        startedElapsedNs = System.nanoTime();
+    }
+
+    @NonNull
+    public Snapshot snapshot() {
+        final Map<Stage, LatencyHistogram.Snapshot> byStage = new EnumMap<>(Stage.class);
+        for (Stage s : Stage.values()) byStage.put(s, histograms[s.ordinal()].snapshot());
+        return new Snapshot(byStage, System.currentTimeMillis(), System.nanoTime() - startedElapsedNs);
+    }
+
+    /** All stages at one point in time. */
+    public static final class Snapshot {
+        public final long takenAtMs;
+        /** Time covered by the counts (since start or the last reset). */
+        public final long windowNanos;
+        private final Map<Stage, LatencyHistogram.Snapshot> byStage;
+
+        Snapshot(Map<Stage, LatencyHistogram.Snapshot> byStage, long takenAtMs, long windowNanos) {
+            this.byStage = byStage;
+            this.takenAtMs = takenAtMs;
+            this.windowNanos = windowNanos;
+        }
+
+        @NonNull
+        public LatencyHistogram.Snapshot get(@NonNull Stage stage) { return byStage.get(stage); }
+
+        /** Events per second over the whole window. */
+        public double ratePerSec(@NonNull Stage stage) {
+            return (windowNanos <= 0L) ? 0.0 : get(stage).getCount() * 1e9 / windowNanos;
+        }
+
+        /** Events per second between an earlier snapshot and this one (whole-window rate if there is none). */
+        public double ratePerSecSince(@NonNull Stage stage, @Nullable Snapshot earlier) {
+            if (earlier == null || earlier.windowNanos >= windowNanos) return ratePerSec(stage);
+            final long d = get(stage).getCount() - earlier.get(stage).getCount();
+            return Math.max(0L, d) * 1e9 / (windowNanos - earlier.windowNanos);
+        }
+
+        /** One line per stage: count, rate, p50/p90/p99/max in ms. */
+        @NonNull
+        public String summary(@Nullable Snapshot earlier) {
+            StringBuilder sb = new StringBuilder();
+            for (Stage s : Stage.values()) {
+                LatencyHistogram.Snapshot h = get(s);
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(String.format(Locale.US, "%-18s n=%-8d %7.1f/s  p50=%.2f p90=%.2f p99=%.2f max=%.2f ms",
+                        s.key, h.getCount(), ratePerSecSince(s, earlier),
+                        h.percentileNanos(50) / 1e6, h.percentileNanos(90) / 1e6,
+                        h.percentileNanos(99) / 1e6, h.getMaxNanos() / 1e6));
+            }
+            return sb.toString();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("PipelineMetrics{");
+            for (Stage s : Stage.values()) {
+                LatencyHistogram.Snapshot h = get(s);
+                sb.append(String.format(Locale.US, "%s: n=%d p50=%.2fms p99=%.2fms; ",
+                        s.key, h.getCount(), h.percentileNanos(50) / 1e6, h.percentileNanos(99) / 1e6));
+            }
+            sb.setLength(sb.length() - 2);
+            return sb.append('}').toString();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothManager;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
 import android.bluetooth.le.ScanRecord;
 import android.bluetooth.le.ScanResult;
 import android.bluetooth.le.ScanSettings;
@@ -17,9 +18,10 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.Message;
+import android.os.ParcelUuid;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -34,24 +36,29 @@ import com.patriotlogger.logger.R;
 import com.patriotlogger.logger.data.Repository;
 import com.patriotlogger.logger.logic.RssiData;
 import com.patriotlogger.logger.data.Setting;
-import com.patriotlogger.logger.data.TagData;
 import com.patriotlogger.logger.data.TagStatus;
 import com.patriotlogger.logger.data.TagStatus.TagStatusState;
-import com.patriotlogger.logger.logic.RssiSmoother;
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.logic.SampleClock;
+import com.patriotlogger.logger.logic.ScanSampleRing;
+import com.patriotlogger.logger.logic.TagAdvertisementDecoder;
 
-import com.patriotlogger.logger.logic.filters.RssiFilter;
-import com.patriotlogger.logger.logic.filters.MinMaxRssiFilter;
-import com.patriotlogger.logger.logic.RssiHandler;
-import com.patriotlogger.logger.logic.TcaWithFallbackHandler;
+import com.patriotlogger.logger.logic.filters.FilterFactory;
+import com.patriotlogger.logger.metrics.PipelineMetrics;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class BleScannerService extends Service {
     private static final String TAG_SERVICE = "BleScannerService";
+    // per-stage latency summary each sweep: adb shell setprop log.tag.PipelineMetrics DEBUG
+    private static final String TAG_METRICS = "PipelineMetrics";
 
     public static final String ACTION_START = "com.patriotlogger.logger.START_SCAN";
     public static final String ACTION_STOP  = "com.patriotlogger.logger.STOP_SCAN";
@@ -59,125 +66,204 @@ public class BleScannerService extends Service {
     public static final String ACTION_QUIESCE_AND_DRAIN = "com.patriotlogger.logger.QUIESCE_AND_DRAIN";
     public static final String EXTRA_RESULT_RECEIVER = "result_receiver";
 
-    public static final String TAG_PREFIX = "PT";
+    public static final String TAG_PREFIX = TagAdvertisementDecoder.NAME_PREFIX;
     private static final String CHANNEL_ID = "scan_channel";
     private static final int    NOTIF_ID   = 1001;
 
     private static final long DEFAULT_SWEEP_INTERVAL_MS = 1500;
-    private static final long REPORT_DELAY_MS = 0L;
 
-    private HandlerThread workerThread;
-    private Handler       worker;
+    private static final int MSG_DRAIN_SAMPLES = 1;
+    static final int MAX_WORKER_SHARDS = 8;
+    private static final long SHARD_HANDOFF_TIMEOUT_MS = 10_000L;
+
+    // Replaced as a whole (on the main thread) when worker_shards changes
+    private volatile ScanShard[] shards;
 
     private BluetoothLeScanner scanner;
     private Repository         repository;
 
-    private volatile Setting currentSettings = new Setting();
+    // settings snapshot the pipeline runs on; swapped whole when settings change
+    private volatile PipelineConfig config = PipelineConfig.defaults();
 
     private volatile long abandonedTagTimeoutMs = 5000L;
     private volatile long sweepIntervalMs = DEFAULT_SWEEP_INTERVAL_MS;
+    private volatile long reportDelayMs = Setting.DEFAULT_SCAN_REPORT_DELAY_MS;
+    private volatile boolean hardwareScanFilter = Setting.DEFAULT_SCAN_HARDWARE_FILTER;
 
-    private final Map<Integer, TagStatusState> lastNotifiedStateForTrack = new ConcurrentHashMap<>();
-    private Observer<Setting> settingsObserver;
+    private LiveData<PipelineConfig> liveConfig;
+    private Observer<PipelineConfig> settingsObserver;
 
     private static final MutableLiveData<Boolean> _isScanning = new MutableLiveData<>(false);
     public static final LiveData<Boolean> isScanning = _isScanning;
 
-    private final RssiSmoother rssiSmoother = new RssiSmoother();
-
-    private final Map<Integer, Long> lastRadioNs   = new ConcurrentHashMap<>();
-    private final Map<Integer, Long> lastDeliverNs = new ConcurrentHashMap<>();
-
-    // Filters
-    private final List<RssiFilter> filters = new ArrayList<>();
-
-    // Per-track handlers
-    private final Map<Integer, RssiHandler> handlerByTrack = new ConcurrentHashMap<>();
-
-    private RssiHandler newTcaHandler() {
-        // Use latest settings (with sane defaults if null)
-        float  alpha        = currentSettings.tca_alpha != null ? currentSettings.tca_alpha : Setting.DEFAULT_TCA_ALPHA;
-        double txAt1mDbm    = currentSettings.tx_power_at_1m_dbm != null ? currentSettings.tx_power_at_1m_dbm : Setting.DEFAULT_TX_POWER_AT_1M_DBM;
-        double pathExp      = currentSettings.path_loss_n != null ? currentSettings.path_loss_n : Setting.DEFAULT_PATH_LOSS_N;
-        double hereMeters   = currentSettings.tca_here_meters != null ? currentSettings.tca_here_meters : Setting.DEFAULT_TCA_HERE_METERS;
-        double thresholdSec = currentSettings.tca_threshold_sec != null ? currentSettings.tca_threshold_sec : Setting.DEFAULT_TCA_THRESHOLD_SEC;
-        int    windowSize   = currentSettings.tca_window_size != null ? currentSettings.tca_window_size : Setting.DEFAULT_TCA_WINDOW_SIZE;
-        int    minPoints    = currentSettings.tca_min_points != null ? currentSettings.tca_min_points : Setting.DEFAULT_TCA_MIN_POINTS;
-        double approachM    = currentSettings.tca_approach_meters != null ? currentSettings.tca_approach_meters : Setting.DEFAULT_TCA_APPROACH_METERS;
-
-        return new TcaWithFallbackHandler(
-                alpha,
-                txAt1mDbm,
-                pathExp,
-                hereMeters,
-                thresholdSec,
-                windowSize,
-                minPoints,
-                approachM
-        );
+    // Queue depth / overflow / age across shards, refreshed every sweep
+    private static final MutableLiveData<ScanQueueStats> _scanQueueStats = new MutableLiveData<>();
+    public static final LiveData<ScanQueueStats> scanQueueStats = _scanQueueStats;
+
+    // Scan queue config; capacity changes need new rings, policy/limit apply in place
+    private volatile int queueCapacity = Setting.DEFAULT_SCAN_QUEUE_CAPACITY;
+    private volatile ScanSampleRing.OverflowPolicy queuePolicy =
+            ScanSampleRing.OverflowPolicy.fromName(Setting.DEFAULT_SCAN_QUEUE_POLICY, ScanSampleRing.OverflowPolicy.DROP_NEWEST);
+    private volatile int queuePerTagLimit = Setting.DEFAULT_SCAN_QUEUE_PER_TAG_LIMIT;
+
+
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+
+    // radio/elapsed time -> epoch ms for sample stamps
+    private final SampleClock sampleClock = new SampleClock(new SampleClock.TimeSource() {
+        @Override public long wallMs() { return System.currentTimeMillis(); }
+        @Override public long elapsedNs() { return android.os.SystemClock.elapsedRealtimeNanos(); }
+    });
+    private PipelineMetrics.Snapshot lastLoggedMetrics; // shard 0's sweep only
+
+    // the per-sample path; built in onCreate once the Repository is available
+    private ScanPipeline pipeline;
+
+    /**
+     * Filters: each shard gets its own fresh chain (stages keep per-tag state), swapped whole
+     * and read once per sample without locking. Tags start over with the new filters.
+     */
+    private void rebuildFilters(PipelineConfig c) {
+        for (ScanShard shard : shards) shard.lanes.filters = FilterFactory.buildChain(c);
     }
 
-    private void rebuildFiltersFromSettings(Setting s) {
-        int min = (s.filter_min_rssi != null) ? s.filter_min_rssi : Setting.DEFAULT_FILTER_MIN_RSSI;
-        int max = (s.filter_max_rssi != null) ? s.filter_max_rssi : Setting.DEFAULT_FILTER_MAX_RSSI;
-        synchronized (filters) {
-            filters.clear();
-            filters.add(new MinMaxRssiFilter(min, max));
-        }
+    /** Worker thread: emit the shard's open buckets, then coalesce with the new settings. */
+    private void configureCoalescer(ScanShard shard, PipelineConfig c) {
+        shard.handler.post(() -> shard.lanes.coalescer.configure(
+                c.scanCoalesceMs, c.scanCoalesceMode, shard.lanes, pipeline.coalescedSample));
     }
 
-    private void applyRuntimeCadencesFromSettings(Setting s) {
+    private void applyRuntimeCadences(PipelineConfig c) {
         // Abandoned timeout & sweep cadence for this service
-        if (s.abandoned_timeout_ms != null) abandonedTagTimeoutMs = s.abandoned_timeout_ms;
-        if (s.sweep_interval_ms != null) sweepIntervalMs = s.sweep_interval_ms;
+        abandonedTagTimeoutMs = c.abandonedTimeoutMs;
+        sweepIntervalMs = c.sweepIntervalMs;
 
         // Repository flush cadence
-        if (s.tagdata_flush_ms != null) {
-            repository.setTagDataFlushIntervalMs(s.tagdata_flush_ms);
+        repository.setTagDataFlushIntervalMs(c.tagDataFlushMs);
+
+        // Per-track history horizons (only materialized for handlers that need history)
+        repository.setHistoryWindow(c.historyWindowSamples, c.historyWindowMs);
+
+        // Batched ingestion / controller filtering only take effect on a fresh startScan
+        long delay = c.scanReportDelayMs;
+        boolean hwFilter = c.scanHardwareFilter;
+        if (delay != reportDelayMs || hwFilter != hardwareScanFilter) {
+            reportDelayMs = delay;
+            hardwareScanFilter = hwFilter;
+            if (scanner != null) {
+                stopScan();
+                startScan();
+            }
         }
 
+        // Scan queue overflow handling (applies to the live rings)
+        queuePolicy = ScanSampleRing.OverflowPolicy.fromName(c.scanQueuePolicy, queuePolicy);
+        queuePerTagLimit = c.scanQueuePerTagLimit;
+        for (ScanShard shard : shards) {
+            shard.ring.setPolicy(queuePolicy);
+            shard.ring.setPerTagLimit(queuePerTagLimit);
+        }
+
+        // Re-shard if the worker count or queue capacity changed
+        applyShardConfig(c.workerShards, c.scanQueueCapacity);
+
         // Reschedule sweep using the new cadence
-        if (worker != null) {
-            worker.removeCallbacks(this::performSweepRunnable);
-            worker.postDelayed(this::performSweepRunnable, sweepIntervalMs);
+        for (ScanShard shard : shards) shard.scheduleSweep(sweepIntervalMs);
+    }
+
+    private ScanShard newShard(int index, int count) {
+        ScanSampleRing ring = new ScanSampleRing(queueCapacity, queuePolicy, queuePerTagLimit);
+        ScanShard shard = new ScanShard(index, count, ring, this::handleWorkerMessage, this::performSweepRunnable);
+        shard.lanes.filters = FilterFactory.buildChain(config);
+        configureCoalescer(shard, config);
+        return shard;
+    }
+
+    /**
+     * Main thread (same thread as the scan callbacks, so no sample is routed while the
+     * shards are swapped). The new shards hold their queues until every old shard has run
+     * what it already had, so a tag is never processed on two threads at once. Open passes
+     * keep their handler state across the swap (see {@link ScanPipeline#handOff}).
+     */
+    private void applyShardConfig(int requestedShards, int requestedCapacity) {
+        final int count = Math.max(1, Math.min(MAX_WORKER_SHARDS, requestedShards));
+        final int capacity = Math.max(16, requestedCapacity);
+        final ScanShard[] old = shards;
+        if (old != null && old.length == count && capacity == queueCapacity) return;
+        queueCapacity = capacity;
+
+        final CountDownLatch oldDrained = new CountDownLatch(old != null ? old.length : 0);
+        ScanShard[] next = new ScanShard[count];
+        for (int i = 0; i < count; i++) {
+            next[i] = newShard(i, count);
+            holdUntil(next[i], oldDrained);
+        }
+        shards = next;
+
+        if (old != null) {
+            for (ScanShard shard : old) {
+                // open buckets and handler state belong to the old shard's tags; hand them over
+                shard.handler.post(() -> pipeline.handOff(shard.lanes));
+                shard.handler.post(oldDrained::countDown);
+                shard.quitSafely();
+            }
         }
+        for (ScanShard shard : next) shard.scheduleSweep(sweepIntervalMs);
+        Log.i(TAG_SERVICE, "Processing on " + count + " worker shard(s)");
+    }
+
+    /** Make the shard's queue wait until the latch opens (bounded, so a stuck shard can't wedge it). */
+    private static void holdUntil(ScanShard shard, CountDownLatch latch) {
+        shard.handler.post(() -> {
+            try {
+                if (!latch.await(SHARD_HANDOFF_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG_SERVICE, "Shard " + shard.index + " handoff timed out");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
     }
 
     @Override
     public void onCreate() {
         super.onCreate();
         repository = Repository.get(getApplicationContext());
-
-        workerThread = new HandlerThread("ble-data-processor");
-        workerThread.start();
-        worker = new Handler(workerThread.getLooper());
-
-        // Start with conservative default filter; will be rebuilt when settings arrive
-        rebuildFiltersFromSettings(currentSettings);
-
-        settingsObserver = setting -> {
-            if (setting != null) {
-                this.currentSettings = setting;
-                rebuildFiltersFromSettings(setting);
-                applyRuntimeCadencesFromSettings(setting);
-
-                // Ensure new handler instances pick up new settings
-                handlerByTrack.clear();
-
-                Log.d(TAG_SERVICE, "Settings applied to scanner/handler/filters");
+        pipeline = new ScanPipeline(ScanPipeline.PassStore.of(repository), sampleClock, () -> config,
+                this::notifyLine, Log.isLoggable(TAG_SERVICE, Log.VERBOSE));
+
+        // Start with one shard; settings may re-shard once they arrive
+        final ScanShard first = newShard(0, 1);
+        shards = new ScanShard[]{first};
+
+        settingsObserver = next -> {
+            if (next == null || next == config) return;
+            final PipelineConfig previous = config;
+            if (!next.sameFilterValues(previous)) rebuildFilters(next);
+            // one volatile write: workers see the whole new snapshot, and lanes whose handler was
+            // built under an older handlerVersion rebuild it on their next sample
+            config = next;
+            if (!next.sameCoalesceValues(previous)) {
+                for (ScanShard shard : shards) configureCoalescer(shard, next);
             }
+            applyRuntimeCadences(next);
+            Log.d(TAG_SERVICE, "Settings v" + next.version + " applied to scanner/handler/filters"
+                    + (next.handlerVersion != previous.handlerVersion ? " (handlers retired)" : ""));
         };
-        new Handler(Looper.getMainLooper()).post(() ->
-                repository.getLiveConfig().observeForever(settingsObserver)
-        );
+        liveConfig = repository.getLivePipelineConfig();
+        new Handler(Looper.getMainLooper()).post(() -> liveConfig.observeForever(settingsObserver));
 
-        // Warm seed handlers + buffers for open passes
-        worker.post(() -> {
+        // Warm seed the open-pass registry (+ history windows); lanes bind to these lazily and
+        // each pass's first handler resumes from the state persisted with it (no sample replay).
+        // Runs first on the initial shard, so no sample is processed before it completes.
+        first.handler.post(() -> {
             try {
-                handlerByTrack.clear();
-                List<TagStatus> open = repository.getOpenPassesSync(); // safe here: not main thread
-                for (TagStatus ts : open) handlerByTrack.put(ts.trackId, newTcaHandler());
-                repository.restoreOpenPassBuffers(120);
+                List<TagStatus> open = repository.seedActivePassRegistry(); // safe here: not main thread
+                final PipelineConfig c = config;
+                boolean anyNeedsHistory = !open.isEmpty() && c.newTcaHandler().needsHistory();
+                if (anyNeedsHistory) {
+                    repository.restoreOpenPassBuffers(c.historyWindowSamples);
+                }
             } catch (Throwable t) {
                 Log.w(TAG_SERVICE, "Warm-start seeding failed", t);
             }
@@ -185,7 +271,7 @@ public class BleScannerService extends Service {
 
         createChannel();
         startForeground(NOTIF_ID, buildNotif("Scanner Initializing..."));
-        worker.postDelayed(this::performSweepRunnable, sweepIntervalMs);
+        first.scheduleSweep(sweepIntervalMs);
         Log.i(TAG_SERVICE, "Service Created and Initialized");
     }
 
@@ -196,11 +282,23 @@ public class BleScannerService extends Service {
             final android.os.ResultReceiver rr = intent.getParcelableExtra(EXTRA_RESULT_RECEIVER);
             // Ensure scanning is stopped so no new work is enqueued
             stopScan();
-            // Post a barrier at the end of the worker queue
-            worker.post(() -> {
+            // Post a barrier at the end of every shard's queue; shard 0 waits for all of them.
+            // Each shard emits its open coalescer buckets, so every tag's last sample is exported.
+            final ScanShard[] current = shards;
+            final CountDownLatch drained = new CountDownLatch(current.length);
+            for (ScanShard shard : current) {
+                shard.handler.post(() -> {
+                    pipeline.handOff(shard.lanes);
+                    drained.countDown();
+                });
+            }
+            current[0].handler.post(() -> {
                 try {
-                    // At this point, all prior onScanResultWork() have run.
-                    repository.flushPendingSamplesBlocking(); // write TagData buffers
+                    // At this point, all prior onScanResultWork() have run on every shard.
+                    if (!drained.await(SHARD_HANDOFF_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        Log.w(TAG_SERVICE, "Quiesce: not every shard drained in time");
+                    }
+                    repository.flushPendingSamplesBlocking(); // write TagData buffers + queue coalesced TagStatus rows
                     repository.drainDb();                     // wait for all Room upserts (TagStatus too)
                 } catch (Throwable t) {
                     Log.w(TAG_SERVICE, "Quiesce+drain failed", t);
@@ -231,16 +329,13 @@ public class BleScannerService extends Service {
         stopScan();
         try { repository.flushPendingSamplesNow(); } catch (Throwable ignored) {}
         if (settingsObserver != null) {
-            new Handler(Looper.getMainLooper()).post(() ->
-                    repository.getLiveConfig().removeObserver(settingsObserver)
-            );
+            new Handler(Looper.getMainLooper()).post(() -> liveConfig.removeObserver(settingsObserver));
         }
-        if (workerThread != null) {
-            worker.removeCallbacksAndMessages(null);
-            workerThread.quitSafely();
+        final ScanShard[] current = shards;
+        if (current != null) {
+            for (ScanShard shard : current) shard.quitNow();
         }
         _isScanning.postValue(false);
-        lastNotifiedStateForTrack.clear();
         Log.i(TAG_SERVICE, "Service Destroyed");
     }
 
@@ -265,12 +360,18 @@ public class BleScannerService extends Service {
             return;
         }
 
+        long delay = reportDelayMs;
+        if (delay > 0 && !adapter.isOffloadedScanBatchingSupported()) {
+            Log.w(TAG_SERVICE, "Scan batching not supported by controller; using per-result delivery");
+            delay = 0L;
+        }
+
         ScanSettings scanSettings = new ScanSettings.Builder()
                 .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
                 .setCallbackType(ScanSettings.CALLBACK_TYPE_ALL_MATCHES)
                 .setMatchMode(ScanSettings.MATCH_MODE_AGGRESSIVE)
                 .setNumOfMatches(ScanSettings.MATCH_NUM_MAX_ADVERTISEMENT)
-                .setReportDelay(REPORT_DELAY_MS)
+                .setReportDelay(delay)
                 .build();
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
@@ -281,11 +382,32 @@ public class BleScannerService extends Service {
                 return;
             }
         }
-        scanner.startScan(null, scanSettings, scanCallback);
+        scanner.startScan(hardwareScanFilter ? buildTagScanFilters() : null, scanSettings, scanCallback);
         notifyLine("Scanning for Runners...");
         Log.i(TAG_SERVICE, "Scan effectively started");
     }
 
+    /**
+     * Controller-side filters matching the binary tag payload (manufacturer data or service
+     * data), so foreign advertisements never wake the app. Name-only (legacy) tags cannot be
+     * matched by prefix in a ScanFilter, which is why this is opt-in via Setting.
+     */
+    private static List<ScanFilter> buildTagScanFilters() {
+        final byte[] prefix = TagAdvertisementDecoder.filterPrefix();
+        final byte[] mask = TagAdvertisementDecoder.filterPrefixMask();
+        final ParcelUuid serviceUuid = ParcelUuid.fromString(String.format(Locale.US,
+                "0000%04x-0000-1000-8000-00805f9b34fb", TagAdvertisementDecoder.SERVICE_UUID16));
+
+        List<ScanFilter> scanFilters = new ArrayList<>(2);
+        scanFilters.add(new ScanFilter.Builder()
+                .setManufacturerData(TagAdvertisementDecoder.COMPANY_ID, prefix, mask)
+                .build());
+        scanFilters.add(new ScanFilter.Builder()
+                .setServiceData(serviceUuid, prefix, mask)
+                .build());
+        return scanFilters;
+    }
+
     private void stopScan() {
         if (scanner != null) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
@@ -308,132 +430,194 @@ public class BleScannerService extends Service {
 
     private final ScanCallback scanCallback = new ScanCallback() {
         @Override public void onScanResult(int callbackType, ScanResult result) { handleScanResult(result); }
-        @Override public void onBatchScanResults(List<ScanResult> results) { for (ScanResult r : results) handleScanResult(r); }
+        @Override public void onBatchScanResults(List<ScanResult> results) { handleBatchScanResults(results); }
         @Override public void onScanFailed(int errorCode) {
             Log.e(TAG_SERVICE, "Scan failed with error code: " + errorCode);
             notifyLine("Scan failed: " + errorCode);
         }
     };
 
-    @Nullable
-    private Integer getTagIdIfShouldHandle(ScanRecord sr) {
-        if (sr == null) return null;
-        String deviceName = sr.getDeviceName();
-        if (deviceName != null && deviceName.startsWith(TAG_PREFIX)) {
-            try {
-                // Expect "PT-123"; substring after "PT-"
-                return Integer.parseInt(deviceName.substring(TAG_PREFIX.length() + 1));
-            } catch (NumberFormatException ignored) { return null; }
-        }
-        return null;
+    /**
+     * Decodes the raw advertisement bytes (binary tag payload, falling back to the "PT-123"
+     * name) without asking ScanRecord to build a device-name String.
+     * @return the tag id, or -1 if this advertisement is not from one of our tags
+     */
+    private static int getTagIdIfShouldHandle(ScanRecord sr) {
+        if (sr == null) return TagAdvertisementDecoder.NO_TAG;
+        return TagAdvertisementDecoder.decode(sr.getBytes());
     }
 
     private void handleScanResult(ScanResult result) {
-        Integer tagId = getTagIdIfShouldHandle(result.getScanRecord());
-        if (tagId == null) return;
+        final int tagId = getTagIdIfShouldHandle(result.getScanRecord());
+        if (tagId < 0) return;
 
-        int rssi = result.getRssi();
+        final int rssi = result.getRssi();
         final long radioNs   = (Build.VERSION.SDK_INT >= 26) ? result.getTimestampNanos() : 0L;
         final long deliverNs = android.os.SystemClock.elapsedRealtimeNanos();
 
-        Long pR = (radioNs > 0) ? lastRadioNs.put(tagId, radioNs) : null;
-        Long pD = lastDeliverNs.put(tagId, deliverNs);
-        if (pD == null || ((deliverNs / 1_000_000L) % 200 == 0)) { // ~2/s
-            long dRadioMs   = (pR != null && radioNs>0 && pR>0) ? (radioNs - pR)/1_000_000L : -1;
-            long dDeliverMs = (pD != null) ? (deliverNs - pD)/1_000_000L : -1;
-            Log.i("BLE_TIMING", "tag="+tagId+" dRadioMs="+dRadioMs+" dDeliverMs="+dDeliverMs);
-        }
-
-        worker.post(() -> onScanResultWork(tagId, rssi, radioNs, deliverNs));
-    }
+        if (radioNs > 0) metrics.record(PipelineMetrics.Stage.RADIO_TO_DELIVERY, deliverNs - radioNs);
 
-    // ====== main pipeline ======
-    private void onScanResultWork(int tagId, int rssi, long radioNs, long deliverNs) {
-        long nowMs = System.currentTimeMillis();
-        Log.i(TAG_SERVICE, "Received scan result for tagId: " + tagId + " RSSI: " + rssi);
-
-        // (filters)
-        List<RssiFilter> currentFilters;
-        synchronized (filters) { currentFilters = new ArrayList<>(filters); }
-        for (RssiFilter f : currentFilters) {
-            if (!f.shouldAccept(nowMs, rssi)) return;
+        // route by tag so each tag stays on one thread, in order; the ring applies the
+        // overflow policy, and only the first sample of a burst wakes the shard
+        final ScanShard[] current = shards;
+        final ScanShard shard = current[ScanShard.indexFor(tagId, current.length)];
+        if (shard.ring.offer(tagId, rssi, radioNs, deliverNs) && shard.ring.requestDrain()) {
+            shard.handler.sendEmptyMessage(MSG_DRAIN_SAMPLES);
         }
+    }
 
-        // Build RssiData (smoothed only for UI; TCA does its own EMA)
-        float smoothed = rssiSmoother.getSmoothedRssi(rssi, currentSettings);
-        RssiData rssiData = new RssiData(tagId, nowMs, rssi, (int) smoothed);
-
-        if (!repository.isSavingEnabled()) {
-            // Calibration mode: do not persist; publish to repo stream
-            repository.appendCalibrationSample(rssiData);
+    private void handleBatchScanResults(List<ScanResult> results) {
+        if (results == null || results.isEmpty()) return;
+        final long deliverNs = android.os.SystemClock.elapsedRealtimeNanos();
+        final ScanShard[] current = shards;
+        if (current.length == 1) {
+            // one worker message for the whole batch, decoded on the worker
+            current[0].handler.post(() -> onBatchScanWork(current[0], results, null, deliverNs));
             return;
         }
-
-        // Persisting mode
-        //TagStatus latestStatus = repository.getLatestTagStatusForId(tagId);
-        TagStatus latestStatus = repository.getOrCreateActiveStatus(tagId);
-        int trackId = latestStatus.trackId;
-
-        // history (persisted + in-mem tail)
-        List<TagData> history = repository.getHistoryForTrackIdSyncCombined(trackId);
-
-        // also buffer new sample for periodic flush
-        repository.appendInMemoryTagData(new TagData(trackId, nowMs, rssi));
-
-        // per-track handler (constructed from current settings)
-        RssiHandler handler = handlerByTrack.computeIfAbsent(trackId, k -> newTcaHandler());
-
-        TagStatus processedStatus = handler.acceptSample(latestStatus, history, rssiData);
-
-        repository.upsertTagStatus(processedStatus, !currentSettings.retain_samples, null);
-
-        // prune handler on terminal states
-        if (processedStatus.state == TagStatusState.LOGGED ||
-                processedStatus.state == TagStatusState.TIMED_OUT) {
-            handlerByTrack.remove(processedStatus.trackId);
+        // one message per shard, carrying only that shard's tags and the ids decoded to route them
+        final int n = results.size();
+        final int[] tagIds = new int[n];
+        final int[] perShard = new int[current.length];
+        for (int k = 0; k < n; k++) {
+            final int tagId = getTagIdIfShouldHandle(results.get(k).getScanRecord());
+            tagIds[k] = tagId;
+            if (tagId >= 0) perShard[ScanShard.indexFor(tagId, current.length)]++;
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (perShard[i] == 0) continue;
+            final List<ScanResult> part = new ArrayList<>(perShard[i]);
+            final int[] partTagIds = new int[perShard[i]];
+            for (int k = 0; k < n; k++) {
+                final int tagId = tagIds[k];
+                if (tagId < 0 || ScanShard.indexFor(tagId, current.length) != i) continue;
+                partTagIds[part.size()] = tagId;
+                part.add(results.get(k));
+            }
+            final ScanShard shard = current[i];
+            shard.handler.post(() -> onBatchScanWork(shard, part, partTagIds, deliverNs));
         }
+    }
 
-        handleUIUpdates(processedStatus, nowMs);
+    private boolean handleWorkerMessage(@NonNull ScanShard shard, @NonNull Message msg) {
+        if (msg.what != MSG_DRAIN_SAMPLES) return false;
+        shard.ring.beginDrain();
+        pipeline.drain(shard.ring, shard.lanes);
+        return true;
     }
 
-    private void handleUIUpdates(@NonNull TagStatus processedStatus, long sampleTimestampMs) {
-        TagStatusState lastNotified = lastNotifiedStateForTrack.get(processedStatus.trackId);
-        if (processedStatus.trackId != 0 && !processedStatus.state.equals(lastNotified)) {
-            String message = null;
-            if (processedStatus.state == TagStatusState.APPROACHING) {
-                if (lastNotified == null) {
-                    message = displayLabel(processedStatus) + " approaching...";
-                }
-            } else if (processedStatus.state == TagStatusState.HERE) {
-                message = displayLabel(processedStatus) + " passing...";
-            }
-            if (message != null) {
-                notifyLine(message);
-                lastNotifiedStateForTrack.put(processedStatus.trackId, processedStatus.state);
-            }
+    /**
+     * Batched ingestion: decode the whole batch, group by tag, and filter and feed each
+     * tag's handler in timestamp order. Buffer appends and status writes happen once per
+     * tag (per pass segment) instead of once per advertisement.
+     *
+     * @param tagIds each result's tag id if already decoded for routing, else null
+     */
+    private void onBatchScanWork(ScanShard shard, List<ScanResult> results, @Nullable int[] tagIds,
+                                 long deliverNs) {
+        final long nowElapsedNs = android.os.SystemClock.elapsedRealtimeNanos();
+        metrics.record(PipelineMetrics.Stage.DELIVERY_TO_WORKER, nowElapsedNs - deliverNs);
+
+        Map<Integer, List<RssiData>> samplesByTag = new HashMap<>();
+        for (int k = 0; k < results.size(); k++) {
+            final ScanResult r = results.get(k);
+            final int tagId = (tagIds != null) ? tagIds[k] : getTagIdIfShouldHandle(r.getScanRecord());
+            if (tagId < 0) continue;
+            int rssi = r.getRssi();
+            // results may sit in the controller for up to reportDelayMs; stamp from the radio time
+            long radioNs = r.getTimestampNanos();
+            if (radioNs > 0) metrics.record(PipelineMetrics.Stage.RADIO_TO_DELIVERY, deliverNs - radioNs);
+            long tsMs = sampleClock.stampMs(radioNs, deliverNs);
+            samplesByTag.computeIfAbsent(tagId, id -> new ArrayList<>()).add(new RssiData(tagId, tsMs, rssi, 0));
         }
+
+        for (Map.Entry<Integer, List<RssiData>> e : samplesByTag.entrySet()) {
+            List<RssiData> samples = e.getValue();
+            samples.sort(Comparator.comparingLong(d -> d.timestampMs));
+            pipeline.onTagBatch(shard.lanes, e.getKey(), samples);
+        }
+        Log.d(TAG_SERVICE, "Batch of " + results.size() + " results, " + samplesByTag.size() + " tags, queued "
+                + (nowElapsedNs - deliverNs) / 1_000_000L + "ms");
     }
 
-    private void performSweepRunnable() {
-        long now = System.currentTimeMillis();
-        List<TagStatus> activeStatuses = repository.getAllActiveTagsSync();
+    /** Per shard: only times out the shard's own tags, so a pass is only ever changed by the worker that owns it. */
+    private void performSweepRunnable(ScanShard shard) {
+        if (shard.index == 0 && sampleClock.recalibrate()) {
+            Log.w(TAG_SERVICE, "Wall clock stepped; sample clock offset now " + sampleClock.getOffsetNs() + "ns");
+        }
+        // catch up on queued samples first so a tag is never timed out on stale lastSeenMs
+        pipeline.drain(shard.ring, shard.lanes);
+        pipeline.persistHandlerStates(shard.lanes);
+        shard.handlerCount = shard.lanes.handlerCount();
+        shard.handlerBytes = shard.lanes.handlerFootprintBytes();
+        shard.publishPoolStats();
+        long now = sampleClock.nowEpochMs();
+        // buckets of tags that went quiet; their sample may move lastSeenMs before the timeout check
+        shard.lanes.coalescer.flushDue(now, shard.lanes, pipeline.coalescedSample);
+        List<TagStatus> activeStatuses = repository.getActivePassesLive();
 
         for (TagStatus status : activeStatuses) {
+            if (!shard.owns(status.tagId)) continue;
             long msSinceLastSeen = now - status.lastSeenMs;
 
             if (status.state == TagStatusState.HERE && (msSinceLastSeen > abandonedTagTimeoutMs)) {
                 Log.w(TAG_SERVICE, "Tag " + status.tagId + " abandoned while HERE. Timing out.");
                 TagStatus newStatus = status;
-                newStatus.state = TagStatusState.TIMED_OUT;
-                newStatus.exitTimeMs = now;
-                repository.upsertTagStatus(newStatus, !currentSettings.retain_samples, null);
+                synchronized (newStatus) {
+                    newStatus.state = TagStatusState.TIMED_OUT;
+                    newStatus.exitTimeMs = now;
+                }
+                repository.upsertTagStatus(newStatus, !config.retainSamples, null);
                 // prune handler on terminal
-                handlerByTrack.remove(newStatus.trackId);
-                handleUIUpdates(newStatus, now);
+                TagLane lane = shard.lanes.peek(newStatus.tagId);
+                if (lane != null && lane.pass == newStatus) shard.lanes.release(lane);
+                pipeline.handleUIUpdates(shard.lanes, newStatus, now);
+            }
+        }
+        if (shard.index == 0) {
+            ScanQueueStats queueStats = ScanQueueStats.of(shards, android.os.SystemClock.elapsedRealtimeNanos());
+            _scanQueueStats.postValue(queueStats);
+            Log.d(TAG_SERVICE, "Performing sweep END " + repository.getStatusWriteStats() + " " + queueStats
+                    + " " + handlerMemoryReport() + " " + coalescerReport());
+            if (Log.isLoggable(TAG_METRICS, Log.DEBUG)) {
+                PipelineMetrics.Snapshot snap = metrics.snapshot();
+                Log.d(TAG_METRICS, snap.summary(lastLoggedMetrics));
+                lastLoggedMetrics = snap;
             }
         }
-        Log.d(TAG_SERVICE, "Performing sweep END");
-        worker.postDelayed(this::performSweepRunnable, sweepIntervalMs);
+        shard.handler.postDelayed(shard.sweepRunnable, sweepIntervalMs);
+    }
+
+    /** Open-pass handler memory across shards (each shard's figure is from its latest sweep). */
+    private String handlerMemoryReport() {
+        int handlers = 0, idle = 0;
+        long bytes = 0L, idleBytes = 0L, hits = 0L, misses = 0L, retired = 0L;
+        for (ScanShard s : shards) {
+            handlers += s.handlerCount;
+            bytes += s.handlerBytes;
+            idle += s.poolIdle;
+            idleBytes += s.poolIdleBytes;
+            hits += s.poolHits;
+            misses += s.poolMisses;
+            retired += s.poolRetired;
+        }
+        return String.format(Locale.US, "HandlerMemory{openTracks=%d, bytes=%d, perTrack=%d}"
+                        + " HandlerPool{hits=%d, misses=%d, retired=%d, idle=%d, idleBytes=%d}",
+                handlers, bytes, handlers > 0 ? bytes / handlers : 0L, hits, misses, retired, idle, idleBytes);
+    }
+
+    /** Burst coalescing across shards: samples out to the handlers, and each shard's reduction weighted by them. */
+    private String coalescerReport() {
+        long out = 0L;
+        double in = 0.0;
+        for (ScanShard s : shards) {
+            final long shardOut = s.coalescedOut;
+            out += shardOut;
+            in += s.coalescedReduction * shardOut;
+        }
+        final PipelineConfig c = config;
+        return String.format(Locale.US, "Coalescer{bucketMs=%d, mode=%s, out=%d, reduction=%.2fx}",
+                c.scanCoalesceMs, c.scanCoalesceMode, out, out > 0 ? in / out : 1.0);
     }
 
     private void createChannel() {
@@ -466,13 +650,6 @@ public class BleScannerService extends Service {
         }
     }
 
-    private String displayLabel(TagStatus s) {
-        if (s == null) return "Unknown Tag";
-        String name = (s.friendlyName != null && !s.friendlyName.isEmpty())
-                ? s.friendlyName : ("PT-" + s.tagId);
-        return name + " (#" + s.tagId + (s.trackId != 0 ? " Pass:" + s.trackId : "") + ")";
-    }
-
     private String formatMmSs(long ms) {
         if (ms <= 0) return "--:--.--";
         long seconds = (ms / 1000) % 60;
@@ -0,0 +1,79 @@
+package com.patriotlogger.logger.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.logic.RssiHandler;
+
+import java.util.ArrayDeque;
+
+/**
+ * Idle handlers kept for reuse by the next pass, so opening a pass takes one from here
+ * (already reset through {@link RssiHandler#init}) instead of constructing one.
+ *
+ * Pooled handlers belong to one {@link PipelineConfig#handlerVersion}. A handler built under
+ * another version is retired (dropped) when handed back, and the idle set is retired as a
+ * whole the first time a snapshot with a newer version is asked for.
+ *
+ * Only touched on the owning shard's worker thread.
+ */
+final class HandlerPool {
+
+    static final int DEFAULT_MAX_IDLE = 32;
+
+    private final ArrayDeque<RssiHandler> idle;
+    private final int maxIdle;
+    private int version = Integer.MIN_VALUE;
+
+    private long hits = 0L;
+    private long misses = 0L;
+    private long retired = 0L;
+
+    HandlerPool(int maxIdle) {
+        this.maxIdle = Math.max(0, maxIdle);
+        this.idle = new ArrayDeque<>(Math.max(1, this.maxIdle));
+    }
+
+    /** A reset handler for {@code cfg}'s handler settings, pooled if one is idle, else newly built. */
+    @NonNull
+    RssiHandler acquire(@NonNull PipelineConfig cfg) {
+        if (cfg.handlerVersion != version) {
+            retired += idle.size();
+            idle.clear();
+            version = cfg.handlerVersion;
+        }
+        RssiHandler h = idle.pollLast();
+        if (h != null) {
+            hits++;
+            return h;
+        }
+        misses++;
+        return cfg.newTcaHandler();
+    }
+
+    /** Hand back a handler whose pass ended; kept only if its handlerVersion is still current. */
+    void recycle(@Nullable RssiHandler handler, int handlerVersion) {
+        if (handler == null) return;
+        if (handlerVersion != version || idle.size() >= maxIdle) {
+            retired++;
+            return;
+        }
+        handler.init();
+        idle.addLast(handler);
+    }
+
+    long hits() { return hits; }
+
+    long misses() { return misses; }
+
+    long retired() { return retired; }
+
+    int idleCount() { return idle.size(); }
+
+    long idleFootprintBytes() {
+        long bytes = 0L;
+        for (RssiHandler h : idle) bytes += h.estimatedFootprintBytes();
+        return bytes;
+    }
+}
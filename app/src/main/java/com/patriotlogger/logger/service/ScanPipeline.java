@@ -0,0 +1,353 @@
+package com.patriotlogger.logger.service;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.patriotlogger.logger.data.Repository;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+import com.patriotlogger.logger.data.TrackSampleBuffer;
+import com.patriotlogger.logger.logic.BurstCoalescer;
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.logic.RssiData;
+import com.patriotlogger.logger.logic.RssiHandler;
+import com.patriotlogger.logger.logic.SampleClock;
+import com.patriotlogger.logger.logic.ScanSampleRing;
+import com.patriotlogger.logger.logic.StateTransitions;
+import com.patriotlogger.logger.metrics.PipelineMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The scan worker's per-sample path: a shard's ring, sample stamping, filters, burst
+ * coalescing, display smoothing, the tag's lane and open pass, its handler, the sample
+ * buffer and the status write. Also the batched-ingestion path for one tag's samples.
+ *
+ * {@link BleScannerService} owns the threads and the Android plumbing and calls in here on
+ * the shard's worker thread. Everything the pipeline needs from the Repository goes through
+ * a {@link PassStore}, so the same code runs in JVM tests.
+ *
+ * Steady state (open pass, no history, no state change) allocates nothing per sample.
+ */
+final class ScanPipeline {
+
+    private static final String TAG = "BleScannerService";
+
+    /** What the pipeline needs from the Repository. */
+    interface PassStore {
+        boolean isSavingEnabled();
+        void appendCalibrationSample(@NonNull RssiData sample);
+        int getDataGeneration();
+        @NonNull TagStatus getOrCreateActiveStatus(int tagId, long sampleTimeMs);
+        @NonNull TrackSampleBuffer sampleBufferFor(int trackId);
+        @NonNull List<TagData> getHistoryWindowView(int trackId);
+        void appendInMemoryTagData(@NonNull TagData tagData, boolean retainInHistory);
+        void upsertTagStatus(@NonNull TagStatus status, boolean deleteSamples);
+        void stageHandlerState(@NonNull TagStatus pass, @NonNull byte[] handlerState);
+
+        static PassStore of(@NonNull Repository repository) {
+            return new PassStore() {
+                @Override public boolean isSavingEnabled() { return repository.isSavingEnabled(); }
+                @Override public void appendCalibrationSample(@NonNull RssiData sample) { repository.appendCalibrationSample(sample); }
+                @Override public int getDataGeneration() { return repository.getDataGeneration(); }
+                @NonNull @Override public TagStatus getOrCreateActiveStatus(int tagId, long sampleTimeMs) {
+                    return repository.getOrCreateActiveStatus(tagId, sampleTimeMs);
+                }
+                @NonNull @Override public TrackSampleBuffer sampleBufferFor(int trackId) { return repository.sampleBufferFor(trackId); }
+                @NonNull @Override public List<TagData> getHistoryWindowView(int trackId) { return repository.getHistoryWindowView(trackId); }
+                @Override public void appendInMemoryTagData(@NonNull TagData tagData, boolean retainInHistory) {
+                    repository.appendInMemoryTagData(tagData, retainInHistory);
+                }
+                @Override public void upsertTagStatus(@NonNull TagStatus status, boolean deleteSamples) {
+                    repository.upsertTagStatus(status, deleteSamples, null);
+                }
+                @Override public void stageHandlerState(@NonNull TagStatus pass, @NonNull byte[] handlerState) {
+                    repository.stageHandlerState(pass, handlerState);
+                }
+            };
+        }
+    }
+
+    /** Where pass progress is announced (the service's notification line). */
+    interface Notifier {
+        void notifyLine(@NonNull String line);
+    }
+
+    private final PassStore store;
+    private final SampleClock sampleClock;
+    private final Supplier<PipelineConfig> config;
+    private final Notifier notifier;
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+    private final boolean logEachSample;
+
+    /** One method reference for every shard's coalescer, so emitting allocates nothing. */
+    final BurstCoalescer.Sink<TagLaneTable> coalescedSample = this::onCoalescedSample;
+
+    ScanPipeline(@NonNull PassStore store, @NonNull SampleClock sampleClock,
+                 @NonNull Supplier<PipelineConfig> config, @NonNull Notifier notifier, boolean logEachSample) {
+        this.store = store;
+        this.sampleClock = sampleClock;
+        this.config = config;
+        this.notifier = notifier;
+        this.logEachSample = logEachSample;
+    }
+
+    /** Process everything queued on the shard's ring. Samples carry their radio time, so running late is harmless. */
+    void drain(@NonNull ScanSampleRing ring, @NonNull TagLaneTable lanes) {
+        int slot;
+        while ((slot = ring.claim()) >= 0) {
+            final int tagId = ring.tagIdAt(slot);
+            final int rssi = ring.rssiAt(slot);
+            final long radioNs = ring.radioNsAt(slot);
+            final long deliverNs = ring.deliverNsAt(slot);
+            ring.release(slot);
+            metrics.record(PipelineMetrics.Stage.DELIVERY_TO_WORKER, sampleClock.elapsedNs() - deliverNs);
+            onSample(lanes, tagId, rssi, radioNs, deliverNs);
+        }
+    }
+
+    private void onSample(TagLaneTable lanes, int tagId, int rssi, long radioNs, long deliverNs) {
+        // when the radio heard it, not when this worker got to it
+        final long sampleMs = sampleClock.stampMs(radioNs, deliverNs);
+        if (logEachSample) Log.v(TAG, "Received scan result for tagId: " + tagId + " RSSI: " + rssi);
+
+        // (filters)
+        if (!acceptedByFilters(lanes, tagId, sampleMs, rssi)) return;
+
+        // (burst coalescing) one sample per bucket continues below; passes through when off
+        lanes.coalescer.offer(tagId, sampleMs, rssi, lanes, coalescedSample);
+    }
+
+    private void onCoalescedSample(TagLaneTable lanes, int tagId, long sampleMs, int rssi) {
+        final PipelineConfig cfg = config.get(); // one snapshot for the whole sample
+
+        // Fill the lane's RssiData (smoothed only for UI; TCA does its own EMA)
+        float smoothed = lanes.smoother.getSmoothedRssi(tagId, rssi, cfg.rssiAveragingAlpha);
+        TagLane lane = lanes.laneFor(tagId);
+
+        if (!store.isSavingEnabled()) {
+            // Calibration mode: do not persist; publish to repo stream (which keeps the sample)
+            store.appendCalibrationSample(new RssiData(tagId, sampleMs, rssi, (int) smoothed));
+            return;
+        }
+        RssiData rssiData = lane.scratch.set(tagId, sampleMs, rssi, (int) smoothed);
+
+        // Persisting mode
+        TagStatus latestStatus = activePassFor(lane, sampleMs);
+        int trackId = latestStatus.trackId;
+
+        // per-pass handler (constructed from current settings)
+        RssiHandler handler = handlerFor(lane, cfg);
+        final boolean keepHistory = handler.needsHistory();
+
+        // bounded history view (prior samples only), skipped for handlers that don't read it
+        List<TagData> history = keepHistory
+                ? store.getHistoryWindowView(trackId)
+                : Collections.<TagData>emptyList();
+
+        // the pass is mutated under its monitor; the batch flush copies it under the same one
+        final long handlerStartNs = System.nanoTime();
+        TagStatus processedStatus;
+        synchronized (latestStatus) {
+            processedStatus = handler.acceptSample(latestStatus, history, rssiData);
+        }
+        metrics.record(PipelineMetrics.Stage.HANDLER, System.nanoTime() - handlerStartNs);
+
+        // buffer new sample for periodic flush (+ history window if the handler reads it)
+        if (keepHistory) store.appendInMemoryTagData(new TagData(trackId, sampleMs, rssi), true);
+        else lane.buffer.append(sampleMs, rssi);
+
+        store.upsertTagStatus(processedStatus, !cfg.retainSamples);
+
+        // prune handler on terminal states
+        if (processedStatus.state == TagStatusState.LOGGED ||
+                processedStatus.state == TagStatusState.TIMED_OUT) {
+            lanes.release(lane);
+        }
+
+        handleUIUpdates(lanes, processedStatus, sampleMs);
+    }
+
+    /** The lane's open pass, (re)binding it through the store only when a pass starts or ends. */
+    private TagStatus activePassFor(TagLane lane, long sampleTimeMs) {
+        final int generation = store.getDataGeneration();
+        if (!lane.isBoundTo(generation)) {
+            TagStatus ts = store.getOrCreateActiveStatus(lane.tagId, sampleTimeMs);
+            lane.bind(ts, store.sampleBufferFor(ts.trackId), generation);
+        }
+        return lane.pass;
+    }
+
+    private RssiHandler handlerFor(TagLane lane, PipelineConfig cfg) {
+        if (lane.ensureHandler(cfg)) restoreHandlerState(lane);
+        return lane.handler;
+    }
+
+    /**
+     * Warm restart: the first handler built for a pass loaded from the database resumes from
+     * the state persisted with it. Handlers rebuilt later in the pass (settings changes) start
+     * fresh, since that blob is older than what the previous handler had seen. The persisted
+     * lastSeenMs may be later than the blob, so the resumed handler is snapshotted again at the
+     * next sweep rather than taken as current.
+     */
+    private void restoreHandlerState(TagLane lane) {
+        final TagStatus pass = lane.pass;
+        if (pass == null || lane.handlerTrackId == pass.trackId) return;
+        lane.handlerTrackId = pass.trackId;
+        lane.snapshotSeenMs = Long.MIN_VALUE;
+        if (pass.handlerState == null) return;
+        if (lane.handler.restoreState(pass.handlerState)) {
+            Log.i(TAG, "Resumed handler state for track " + pass.trackId + " (tag " + pass.tagId + ")");
+        } else {
+            Log.i(TAG, "Persisted handler state for track " + pass.trackId + " not reusable; starting fresh");
+        }
+    }
+
+    /** Worker thread: snapshot handler state onto the open passes; the next batch flush writes it. */
+    void persistHandlerStates(@NonNull TagLaneTable lanes) {
+        lanes.snapshotHandlerStates(store::stageHandlerState);
+    }
+
+    /**
+     * Worker thread of a shard that is being retired or quiesced for an export: emit its open
+     * coalescer buckets and put every open pass's handler state on the pass. Whichever shard
+     * owns the tag next binds the same pass and its first handler resumes from that state
+     * instead of starting cold.
+     */
+    void handOff(@NonNull TagLaneTable lanes) {
+        lanes.coalescer.flushAll(lanes, coalescedSample);
+        persistHandlerStates(lanes);
+    }
+
+    /**
+     * Batched ingestion for one tag: its samples in timestamp order, filtered, coalesced (the
+     * batch's last bucket is emitted with it rather than held) and fed to the handler.
+     */
+    void onTagBatch(@NonNull TagLaneTable lanes, int tagId, @NonNull List<RssiData> samples) {
+        // filtered in timestamp order: stages may keep per-tag state
+        samples.removeIf(d -> !acceptedByFilters(lanes, tagId, d.timestampMs, d.rssi));
+        if (lanes.coalescer.isEnabled()) samples = coalesce(lanes.coalescer, tagId, samples);
+        if (!samples.isEmpty()) processTagBatch(lanes, tagId, samples);
+    }
+
+    private static final BurstCoalescer.Sink<List<RssiData>> BATCH_SINK =
+            (out, tagId, timestampMs, rssi) -> out.add(new RssiData(tagId, timestampMs, rssi, 0));
+
+    private static List<RssiData> coalesce(BurstCoalescer coalescer, int tagId, List<RssiData> samples) {
+        List<RssiData> out = new ArrayList<>(samples.size());
+        for (RssiData d : samples) coalescer.offer(tagId, d.timestampMs, d.rssi, out, BATCH_SINK);
+        coalescer.flush(tagId, out, BATCH_SINK);
+        return out;
+    }
+
+    private void processTagBatch(TagLaneTable lanes, int tagId, List<RssiData> samples) {
+        final PipelineConfig cfg = config.get();
+        for (RssiData d : samples) {
+            d.smoothedRssi = (int) lanes.smoother.getSmoothedRssi(tagId, d.rssi, cfg.rssiAveragingAlpha);
+        }
+
+        if (!store.isSavingEnabled()) {
+            for (RssiData d : samples) store.appendCalibrationSample(d);
+            return;
+        }
+
+        // primitive columns for the handlers' batch entry point
+        final int n = samples.size();
+        final long[] ts = new long[n];
+        final int[] rssi = new int[n];
+        for (int k = 0; k < n; k++) {
+            ts[k] = samples.get(k).timestampMs;
+            rssi[k] = samples.get(k).rssi;
+        }
+
+        int i = 0;
+        while (i < n) {
+            // a terminal state mid-batch ends the pass; the rest of the batch starts a new one
+            TagLane lane = lanes.laneFor(tagId);
+            TagStatus status = activePassFor(lane, ts[i]);
+            final int trackId = status.trackId;
+            RssiHandler handler = handlerFor(lane, cfg);
+
+            if (handler.needsHistory()) {
+                // history must stay per-sample
+                TagStatusState before = status.state;
+                while (i < n) {
+                    RssiData d = samples.get(i++);
+                    final long handlerStartNs = System.nanoTime();
+                    synchronized (status) {
+                        status = handler.acceptSample(status, store.getHistoryWindowView(trackId), d);
+                    }
+                    metrics.record(PipelineMetrics.Stage.HANDLER, System.nanoTime() - handlerStartNs);
+                    store.appendInMemoryTagData(new TagData(trackId, d.timestampMs, d.rssi), true);
+
+                    if (status.state != before) {
+                        handleUIUpdates(lanes, status, d.timestampMs);
+                        before = status.state;
+                    }
+                    if (status.state == TagStatusState.LOGGED || status.state == TagStatusState.TIMED_OUT) break;
+                }
+            } else {
+                final StateTransitions transitions = lanes.transitions;
+                final long handlerStartNs = System.nanoTime();
+                final int used;
+                synchronized (status) {
+                    used = handler.acceptSamples(status, ts, rssi, i, n - i, transitions);
+                }
+                metrics.recordBatch(PipelineMetrics.Stage.HANDLER, System.nanoTime() - handlerStartNs, used);
+
+                lane.buffer.appendAll(ts, rssi, i, used);
+                for (int t = 0; t < transitions.size(); t++) {
+                    handleUIUpdates(lanes, status, transitions.state(t), transitions.timestampMs(t));
+                }
+                i += used;
+            }
+
+            store.upsertTagStatus(status, !cfg.retainSamples);
+
+            if (status.state == TagStatusState.LOGGED || status.state == TagStatusState.TIMED_OUT) {
+                lanes.release(lane);
+            }
+        }
+    }
+
+    boolean acceptedByFilters(@NonNull TagLaneTable lanes, int tagId, long timestampMs, int rssi) {
+        return lanes.filters.shouldAccept(tagId, timestampMs, rssi);
+    }
+
+    void handleUIUpdates(@NonNull TagLaneTable lanes, @NonNull TagStatus processedStatus, long sampleTimestampMs) {
+        handleUIUpdates(lanes, processedStatus, processedStatus.state, sampleTimestampMs);
+    }
+
+    /** As above for a state the pass passed through (a batch may end in a later one). */
+    private void handleUIUpdates(TagLaneTable lanes, @NonNull TagStatus processedStatus,
+                                 @NonNull TagStatusState state, long sampleTimestampMs) {
+        TagLane lane = lanes.laneFor(processedStatus.tagId);
+        TagStatusState lastNotified = lane.notifiedStateFor(processedStatus.trackId);
+        if (processedStatus.trackId != 0 && !state.equals(lastNotified)) {
+            String message = null;
+            if (state == TagStatusState.APPROACHING) {
+                if (lastNotified == null) {
+                    message = displayLabel(processedStatus) + " approaching...";
+                }
+            } else if (state == TagStatusState.HERE) {
+                message = displayLabel(processedStatus) + " passing...";
+            }
+            if (message != null) {
+                notifier.notifyLine(message);
+                lane.markNotified(processedStatus.trackId, state);
+            }
+        }
+    }
+
+    private static String displayLabel(TagStatus s) {
+        if (s == null) return "Unknown Tag";
+        String name = (s.friendlyName != null && !s.friendlyName.isEmpty())
+                ? s.friendlyName : ("PT-" + s.tagId);
+        return name + " (#" + s.tagId + (s.trackId != 0 ? " Pass:" + s.trackId : "") + ")";
+    }
+}
@@ -0,0 +1,60 @@
+package com.patriotlogger.logger.service;
+
+import androidx.annotation.NonNull;
+
+import com.patriotlogger.logger.logic.ScanSampleRing;
+
+import java.util.Locale;
+
+/**
+ * Point-in-time view of the scan-callback -> worker queues, summed over all shards.
+ * Published by {@link BleScannerService#scanQueueStats} on every sweep.
+ */
+public final class ScanQueueStats {
+
+    public final ScanSampleRing.OverflowPolicy policy;
+    public final int shards;
+    public final int depth;
+    public final int capacity;
+    public final long droppedFull;
+    public final long droppedOldest;
+    public final long coalesced;
+    public final long oldestAgeMs;
+
+    ScanQueueStats(ScanSampleRing.OverflowPolicy policy, int shards, int depth, int capacity,
+                   long droppedFull, long droppedOldest, long coalesced, long oldestAgeMs) {
+        this.policy = policy;
+        this.shards = shards;
+        this.depth = depth;
+        this.capacity = capacity;
+        this.droppedFull = droppedFull;
+        this.droppedOldest = droppedOldest;
+        this.coalesced = coalesced;
+        this.oldestAgeMs = oldestAgeMs;
+    }
+
+    static ScanQueueStats of(@NonNull ScanShard[] shards, long nowElapsedNs) {
+        int depth = 0, capacity = 0;
+        long full = 0, oldest = 0, merged = 0, ageNs = 0;
+        ScanSampleRing.OverflowPolicy policy = ScanSampleRing.OverflowPolicy.DROP_NEWEST;
+        for (ScanShard shard : shards) {
+            ScanSampleRing r = shard.ring;
+            policy = r.getPolicy();
+            depth += r.size();
+            capacity += r.capacity();
+            full += r.droppedFullCount();
+            oldest += r.droppedOldestCount();
+            merged += r.coalescedCount();
+            ageNs = Math.max(ageNs, r.oldestAgeNanos(nowElapsedNs));
+        }
+        return new ScanQueueStats(policy, shards.length, depth, capacity, full, oldest, merged, ageNs / 1_000_000L);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "ScanQueueStats{policy=%s, shards=%d, depth=%d/%d, droppedFull=%d, droppedOldest=%d, coalesced=%d, oldestAgeMs=%d}",
+                policy, shards, depth, capacity, droppedFull, droppedOldest, coalesced, oldestAgeMs);
+    }
+}
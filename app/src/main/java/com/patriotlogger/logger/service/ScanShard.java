@@ -0,0 +1,95 @@
+package com.patriotlogger.logger.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+
+import com.patriotlogger.logger.logic.ScanSampleRing;
+
+/**
+ * One scan-processing worker thread and the per-tag state it owns.
+ *
+ * Tags are assigned to shards by tagId, so every sample of a tag is handled, in order,
+ * by the same thread, and that thread's {@link TagLaneTable} and sample ring need no
+ * locking. Samples for other tags proceed on the other shards in parallel.
+ */
+final class ScanShard {
+
+    final int index;
+    final int shardCount;
+    final ScanSampleRing ring;
+    final TagLaneTable lanes = new TagLaneTable(64);
+
+    private final HandlerThread thread;
+    final Handler handler;
+    final Runnable sweepRunnable;
+
+    // refreshed by this shard's sweep, read by shard 0 for the memory report
+    volatile int handlerCount;
+    volatile long handlerBytes;
+    volatile long poolHits;
+    volatile long poolMisses;
+    volatile long poolRetired;
+    volatile int poolIdle;
+    volatile long poolIdleBytes;
+    volatile long coalescedOut;
+    volatile double coalescedReduction = 1.0;
+
+    interface MessageHandler {
+        boolean handleMessage(@NonNull ScanShard shard, @NonNull android.os.Message msg);
+    }
+
+    interface Sweeper {
+        void sweep(@NonNull ScanShard shard);
+    }
+
+    ScanShard(int index, int shardCount, @NonNull ScanSampleRing ring,
+              @NonNull MessageHandler messages, @NonNull Sweeper sweeper) {
+        this.index = index;
+        this.shardCount = shardCount;
+        this.ring = ring;
+        this.thread = new HandlerThread("ble-data-processor-" + index);
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper(), msg -> messages.handleMessage(this, msg));
+        this.sweepRunnable = () -> sweeper.sweep(this);
+    }
+
+    /** Worker thread: copy the handler pool's and coalescer's counters out for other threads to read. */
+    void publishPoolStats() {
+        HandlerPool pool = lanes.pool;
+        poolHits = pool.hits();
+        poolMisses = pool.misses();
+        poolRetired = pool.retired();
+        poolIdle = pool.idleCount();
+        poolIdleBytes = pool.idleFootprintBytes();
+        coalescedOut = lanes.coalescer.samplesOut();
+        coalescedReduction = lanes.coalescer.reductionRatio();
+    }
+
+    /** Whether this shard processes the given tag. */
+    boolean owns(int tagId) {
+        return indexFor(tagId, shardCount) == index;
+    }
+
+    void scheduleSweep(long delayMs) {
+        handler.removeCallbacks(sweepRunnable);
+        handler.postDelayed(sweepRunnable, delayMs);
+    }
+
+    /** Stop after everything already queued has run. */
+    void quitSafely() {
+        handler.removeCallbacks(sweepRunnable);
+        thread.quitSafely();
+    }
+
+    /** Stop now, dropping anything still queued. */
+    void quitNow() {
+        handler.removeCallbacksAndMessages(null);
+        thread.quitSafely();
+    }
+
+    static int indexFor(int tagId, int shardCount) {
+        return (shardCount <= 1) ? 0 : (tagId & Integer.MAX_VALUE) % shardCount;
+    }
+}
@@ -0,0 +1,115 @@
+package com.patriotlogger.logger.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+import com.patriotlogger.logger.data.TrackSampleBuffer;
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.logic.RssiData;
+import com.patriotlogger.logger.logic.RssiHandler;
+
+/**
+ * Scan-worker state for one tagId, kept across samples so the per-advertisement path
+ * reuses objects instead of allocating them: the open pass, its handler and unflushed
+ * sample buffer, and a scratch RssiData handed to the handler.
+ *
+ * Only touched on the scan worker thread.
+ */
+final class TagLane {
+
+    final int tagId;
+
+    /** Reused for every sample of this tag; handlers must not keep a reference to it. */
+    final RssiData scratch;
+
+    /** Where this lane's handlers come from and go back to (the shard's pool). */
+    private final HandlerPool pool;
+
+    @Nullable TagStatus pass;
+    @Nullable RssiHandler handler;
+    @Nullable TrackSampleBuffer buffer;
+
+    /** Repository data generation the pass was bound under (clearAllData invalidates it). */
+    int dataGeneration = -1;
+    /** {@link PipelineConfig#handlerVersion} the handler was built under. */
+    int handlerVersion = -1;
+
+    /** Pass the handler was first built for (its persisted state is restored only then). */
+    int handlerTrackId = 0;
+    /** pass.lastSeenMs when the handler state was last snapshotted (MIN_VALUE = snapshot on the next sweep). */
+    long snapshotSeenMs = Long.MIN_VALUE;
+
+    // last state announced in the notification, for the pass identified by notifiedTrackId
+    int notifiedTrackId = 0;
+    @Nullable TagStatusState notifiedState;
+
+    TagLane(int tagId, HandlerPool pool) {
+        this.tagId = tagId;
+        this.pool = pool;
+        this.scratch = new RssiData(tagId, 0L, 0, 0);
+    }
+
+    /** Whether the cached pass can serve the next sample without asking the Repository. */
+    boolean isBoundTo(int generation) {
+        return pass != null && dataGeneration == generation && pass.state != TagStatusState.LOGGED
+                && pass.state != TagStatusState.TIMED_OUT;
+    }
+
+    void bind(TagStatus pass, TrackSampleBuffer buffer, int generation) {
+        if (this.pass == null || this.pass.trackId != pass.trackId) recycleHandler(); // new pass, fresh handler
+        this.pass = pass;
+        this.buffer = buffer;
+        this.dataGeneration = generation;
+    }
+
+    /** Pass ended: forget it and hand its handler back; the next sample opens a new one. */
+    void release() {
+        pass = null;
+        recycleHandler();
+        buffer = null;
+    }
+
+    /**
+     * The handler for the current pass under {@code cfg}: the one already held if it was built
+     * under the same handlerVersion, else a pooled (or new) one, retiring the outdated one.
+     * @return true if the handler was (re)placed and has seen nothing of this pass
+     */
+    boolean ensureHandler(@NonNull PipelineConfig cfg) {
+        if (handler != null && handlerVersion == cfg.handlerVersion) return false;
+        recycleHandler();
+        handler = pool.acquire(cfg);
+        handlerVersion = cfg.handlerVersion;
+        return true;
+    }
+
+    private void recycleHandler() {
+        pool.recycle(handler, handlerVersion);
+        handler = null;
+    }
+
+    /**
+     * The handler's state for the open pass if it has seen samples since the last snapshot.
+     * The caller stores it on the pass together with a copy of the pass, in one step.
+     * @return the blob, or null if there is nothing new to persist
+     */
+    @Nullable
+    byte[] takeHandlerSnapshot() {
+        if (pass == null || handler == null || pass.lastSeenMs == snapshotSeenMs) return null;
+        byte[] state = handler.snapshotState();
+        if (state == null) return null;
+        snapshotSeenMs = pass.lastSeenMs;
+        return state;
+    }
+
+    @Nullable
+    TagStatusState notifiedStateFor(int trackId) {
+        return (notifiedTrackId == trackId) ? notifiedState : null;
+    }
+
+    void markNotified(int trackId, TagStatusState state) {
+        notifiedTrackId = trackId;
+        notifiedState = state;
+    }
+}
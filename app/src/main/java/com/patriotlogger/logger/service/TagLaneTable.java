@@ -0,0 +1,100 @@
+package com.patriotlogger.logger.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.logic.BurstCoalescer;
+import com.patriotlogger.logger.logic.RssiSmoother;
+import com.patriotlogger.logger.logic.StateTransitions;
+import com.patriotlogger.logger.logic.filters.RssiFilterChain;
+import com.patriotlogger.logger.util.TagIndexed;
+
+import java.util.function.BiConsumer;
+
+/**
+ * {@link TagLane}s indexed directly by tagId, in a {@link TagIndexed} array.
+ *
+ * Only touched on the scan worker thread, apart from {@link #filters} being swapped.
+ */
+final class TagLaneTable {
+
+    private TagLane[] lanes;
+
+    /** Idle handlers shared by this table's lanes. */
+    final HandlerPool pool = new HandlerPool(HandlerPool.DEFAULT_MAX_IDLE);
+
+    /** Scratch for batched handler calls on this shard. */
+    final StateTransitions transitions = new StateTransitions();
+
+    /** Display smoothing for this shard's tags, one independent series per tag. */
+    final RssiSmoother smoother;
+
+    /** Burst coalescing ahead of the handlers; reconfigured on the worker when settings change. */
+    final BurstCoalescer coalescer = new BurstCoalescer();
+
+    /**
+     * Ingest filters for this shard's tags. Stages may keep per-tag state, so each shard has
+     * its own chain; the main thread swaps in a fresh one when the filter settings change.
+     */
+    volatile RssiFilterChain filters = RssiFilterChain.ACCEPT_ALL;
+
+    TagLaneTable(int initialCapacity) {
+        lanes = new TagLane[Math.max(16, initialCapacity)];
+        smoother = new RssiSmoother(initialCapacity);
+    }
+
+    /** @return the lane for this tag, creating it on first use (tagId must be >= 0) */
+    @NonNull
+    TagLane laneFor(int tagId) {
+        if (tagId >= lanes.length) grow(tagId);
+        TagLane lane = lanes[tagId];
+        if (lane == null) {
+            lane = new TagLane(tagId, pool);
+            lanes[tagId] = lane;
+        }
+        return lane;
+    }
+
+    @Nullable
+    TagLane peek(int tagId) {
+        return (tagId >= 0 && tagId < lanes.length) ? lanes[tagId] : null;
+    }
+
+    /**
+     * The lane's pass ended: release it and restart its tag's smoothing and filter state
+     * with the next pass.
+     */
+    void release(@NonNull TagLane lane) {
+        lane.release();
+        smoother.reset(lane.tagId);
+        filters.reset(lane.tagId);
+    }
+
+    /** Lanes currently holding a handler (one per open pass on this shard). */
+    int handlerCount() {
+        int n = 0;
+        for (TagLane lane : lanes) if (lane != null && lane.handler != null) n++;
+        return n;
+    }
+
+    /** Summed {@link com.patriotlogger.logger.logic.RssiHandler#estimatedFootprintBytes} of those handlers. */
+    long handlerFootprintBytes() {
+        long bytes = 0L;
+        for (TagLane lane : lanes) if (lane != null && lane.handler != null) bytes += lane.handler.estimatedFootprintBytes();
+        return bytes;
+    }
+
+    /** Snapshot the handler state of every open pass that saw samples since its last snapshot. */
+    void snapshotHandlerStates(@NonNull BiConsumer<TagStatus, byte[]> snapshots) {
+        for (TagLane lane : lanes) {
+            if (lane == null) continue;
+            byte[] state = lane.takeHandlerSnapshot();
+            if (state != null) snapshots.accept(lane.pass, state);
+        }
+    }
+
+    private void grow(int tagId) {
+        lanes = TagIndexed.grow(lanes, tagId);
+    }
+}
@@ -2,7 +2,11 @@ package com.patriotlogger.logger.ui;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.widget.Button;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
@@ -12,6 +16,8 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.patriotlogger.logger.R;
+import com.patriotlogger.logger.data.RepositoryCallback;
+import com.patriotlogger.logger.metrics.PipelineMetrics;
 import com.patriotlogger.logger.service.BleScannerService;
 
 public class DebugActivity extends AppCompatActivity {
@@ -20,6 +26,19 @@ public class DebugActivity extends AppCompatActivity {
     private DebugInfoAdapter adapter;
     private RecyclerView rvDebugData; // Make RecyclerView a class field
     private LinearLayoutManager layoutManager; // Store layout manager as a field
+    private TextView tvMetrics;
+    private PipelineMetrics.Snapshot lastMetrics; // previous refresh, for per-interval rates
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+    private static final long METRICS_REFRESH_MS = 1000L;
+    private final Runnable refreshMetrics = new Runnable() {
+        @Override
+        public void run() {
+            PipelineMetrics.Snapshot snap = viewModel.getMetricsSnapshot();
+            tvMetrics.setText(snap.summary(lastMetrics));
+            lastMetrics = snap;
+            mainThreadHandler.postDelayed(this, METRICS_REFRESH_MS);
+        }
+    };
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -31,6 +50,8 @@ public class DebugActivity extends AppCompatActivity {
         //Button btnStopScan = findViewById(R.id.btnDebugStopScan);
         Button btnClearRoom = findViewById(R.id.btnDebugClearRoom);
         Button btnCloseApp = findViewById(R.id.btnDebugCloseApp);
+        Button btnExportMetrics = findViewById(R.id.btnDebugExportMetrics);
+        tvMetrics = findViewById(R.id.tvDebugMetrics);
 
         rvDebugData = findViewById(R.id.rvDebugData); // Initialize the class field
         layoutManager = new LinearLayoutManager(this);
@@ -61,6 +82,26 @@ public class DebugActivity extends AppCompatActivity {
             finishAffinity();
         });
 
+        btnExportMetrics.setOnClickListener(v -> viewModel.exportMetricsCsv(new RepositoryCallback<String>() {
+            @Override
+            public void onSuccess(String fileName) {
+                mainThreadHandler.post(() -> Toast.makeText(DebugActivity.this, "Saved " + fileName, Toast.LENGTH_SHORT).show());
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e("DebugActivity", "Metrics export failed", e);
+                mainThreadHandler.post(() -> Toast.makeText(DebugActivity.this, "Metrics export failed", Toast.LENGTH_SHORT).show());
+            }
+        }));
+
+        findViewById(R.id.tvDebugMetricsHeader).setOnLongClickListener(v -> {
+            viewModel.resetMetrics();
+            lastMetrics = null;
+            Toast.makeText(this, "Metrics reset", Toast.LENGTH_SHORT).show();
+            return true;
+        });
+
         viewModel.getAllDebugTagData().observe(this, debugTagDataList -> {
             if (debugTagDataList != null) {
                 // Check if the user is currently at the top of the list
@@ -77,4 +118,16 @@ public class DebugActivity extends AppCompatActivity {
             }
         });
     }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mainThreadHandler.post(refreshMetrics);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mainThreadHandler.removeCallbacks(refreshMetrics);
+    }
 }
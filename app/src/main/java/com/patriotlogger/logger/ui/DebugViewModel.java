@@ -9,14 +9,21 @@ import androidx.lifecycle.LiveData;
 
 import com.patriotlogger.logger.data.DebugTagData; // Import the new POJO
 import com.patriotlogger.logger.data.Repository;
+import com.patriotlogger.logger.data.RepositoryCallback;
 import com.patriotlogger.logger.data.RepositoryVoidCallback;
+import com.patriotlogger.logger.metrics.PipelineMetrics;
+import com.patriotlogger.logger.util.CsvExportUtils;
+import com.patriotlogger.logger.util.CsvExporter;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DebugViewModel extends AndroidViewModel {
 
     private final Repository repository;
     private final LiveData<List<DebugTagData>> allDebugTagData; // Changed from TagStatus
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
 
     public DebugViewModel(@NonNull Application application) {
         super(application);
@@ -42,7 +49,29 @@ public class DebugViewModel extends AndroidViewModel {
             }
         });
     }
-}
 
+    public PipelineMetrics.Snapshot getMetricsSnapshot() {
+        return PipelineMetrics.get().snapshot();
+    }
 
+    public void resetMetrics() {
+        PipelineMetrics.get().reset();
+    }
 
+    /** Writes the current pipeline metrics to Downloads as CSV; the callback gets the file name (background thread). */
+    public void exportMetricsCsv(RepositoryCallback<String> callback) {
+        exportExecutor.execute(() -> {
+            CsvExporter.CsvFile f = CsvExporter.generateMetricsCsv(PipelineMetrics.get().snapshot());
+            if (CsvExportUtils.saveCsvToDownloads(getApplication(), f.filename, f.content)) {
+                callback.onSuccess(f.filename);
+            } else {
+                callback.onError(new IllegalStateException("Failed to write " + f.filename));
+            }
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        exportExecutor.shutdown();
+    }
+}
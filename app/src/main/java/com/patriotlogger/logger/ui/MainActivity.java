@@ -355,7 +355,7 @@ public class MainActivity extends AppCompatActivity implements EasyPermissions.P
 
             AppDatabase db = repository.getDatabase();
             List<TagStatus> tagStatuses = db.tagStatusDao().getAllSync();
-            List<TagData> allTagData = db.tagDataDao().getAllTagDataSync();
+            List<TagData> allTagData = repository.getAllSamplesSync();
 
             List<CsvExporter.CsvFile> files_to_download = CsvExporter.generateCsvFiles(tagStatuses,allTagData);
             StringBuilder snackbarText = new StringBuilder();
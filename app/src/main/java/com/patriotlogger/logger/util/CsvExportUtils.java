@@ -6,6 +6,7 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
 import android.provider.MediaStore;
+import android.util.Log;
 
 import com.patriotlogger.logger.data.Repository;
 import com.patriotlogger.logger.data.RepositoryVoidCallback;
@@ -16,6 +17,8 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 public final class CsvExportUtils {
+    private static final String TAG = "CsvExportUtils";
+
     private CsvExportUtils() {}
 
     /**
@@ -57,4 +60,44 @@ public final class CsvExportUtils {
             if (cb != null) cb.onError(e);
         }
     }
+
+    /**
+     * Writes an already-generated CSV string to Downloads.
+     * @return true if the file was written
+     */
+    public static boolean saveCsvToDownloads(Context ctx, String fileName, String content) {
+        try {
+            OutputStream os;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                ContentValues values = new ContentValues();
+                values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+                values.put(MediaStore.MediaColumns.MIME_TYPE, "text/csv");
+                values.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_DOWNLOADS);
+                Uri uri = ctx.getContentResolver().insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, values);
+                if (uri == null) {
+                    Log.e(TAG, "Could not create Downloads entry for " + fileName);
+                    return false;
+                }
+                os = ctx.getContentResolver().openOutputStream(uri);
+                if (os == null) {
+                    Log.e(TAG, "Could not open output stream for " + fileName);
+                    return false;
+                }
+            } else {
+                File downloads = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+                if (!downloads.exists() && !downloads.mkdirs()) {
+                    Log.e(TAG, "Could not create Downloads directory " + downloads);
+                    return false;
+                }
+                os = new FileOutputStream(new File(downloads, fileName));
+            }
+            try (OutputStream out = os) {
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Saving " + fileName + " to Downloads failed", e);
+            return false;
+        }
+    }
 }
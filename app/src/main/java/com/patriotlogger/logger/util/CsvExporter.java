@@ -2,6 +2,8 @@ package com.patriotlogger.logger.util;
 
 import com.patriotlogger.logger.data.TagData;
 import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.metrics.LatencyHistogram;
+import com.patriotlogger.logger.metrics.PipelineMetrics;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -18,6 +20,8 @@ public class CsvExporter {
     // --- Manually define headers here ---
     private static final String SPLITS_CSV_HEADER = "trackId,tagId,friendlyName,state,entryTimeMs,peakTimeMs,exitTimeMs,highestRssi";
     private static final String DATA_CSV_HEADER = "dataId,trackId,tagId,timestampMs,rssi";
+    private static final String METRICS_CSV_HEADER = "stage,count,ratePerSec,meanMs,p50Ms,p90Ms,p99Ms,p999Ms,maxMs,windowSec";
+    private static final double[] METRICS_PERCENTILES = {50.0, 90.0, 99.0, 99.9};
 
     /**
      * A data class to hold the results of a CSV generation for a single file.
@@ -60,6 +64,31 @@ public class CsvExporter {
         return files;
     }
 
+    /**
+     * Generates a CSV of the scanning pipeline's per-stage latencies, one row per stage.
+     */
+    public static CsvFile generateMetricsCsv(PipelineMetrics.Snapshot snapshot) {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date(snapshot.takenAtMs));
+        StringBuilder csvBuilder = new StringBuilder();
+        csvBuilder.append(METRICS_CSV_HEADER).append("\n");
+
+        int rows = 0;
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            LatencyHistogram.Snapshot h = snapshot.get(stage);
+            csvBuilder.append(stage.key).append(",");
+            csvBuilder.append(h.getCount()).append(",");
+            csvBuilder.append(String.format(Locale.US, "%.3f", snapshot.ratePerSec(stage))).append(",");
+            csvBuilder.append(String.format(Locale.US, "%.3f", h.getMeanNanos() / 1e6)).append(",");
+            for (double p : METRICS_PERCENTILES) {
+                csvBuilder.append(String.format(Locale.US, "%.3f", h.percentileNanos(p) / 1e6)).append(",");
+            }
+            csvBuilder.append(String.format(Locale.US, "%.3f", h.getMaxNanos() / 1e6)).append(",");
+            csvBuilder.append(String.format(Locale.US, "%.1f", snapshot.windowNanos / 1e9)).append("\n");
+            rows++;
+        }
+        return new CsvFile("patriotlogger_metrics_" + timestamp + ".csv", csvBuilder.toString(), rows);
+    }
+
     /**
      * Generates the CSV string for TagStatus data.
      */
@@ -0,0 +1,43 @@
+package com.patriotlogger.logger.util;
+
+/**
+ * Rough retained-size arithmetic for per-track objects, used to report how much memory
+ * each open pass costs. Arrays, which are what grows with the settings, are counted from
+ * their actual lengths; other objects are charged the flat {@link #OBJECT_BYTES}, or their
+ * field bytes via {@link #object} when they are known to be larger.
+ */
+public final class HeapEstimate {
+
+    private HeapEstimate() {}
+
+    /** Object header (64-bit VM, compressed references). */
+    public static final int OBJECT_HEADER = 12;
+
+    /**
+     * Allowance for one fixed-size object: the header plus the scalar fields these per-pass
+     * objects hold, 8-byte aligned. The TCA handler, its window and its state machine each come
+     * to 80-88 bytes on HotSpot. ART's layout is within a few bytes of HotSpot's.
+     */
+    public static final int OBJECT_BYTES = 88;
+
+    /** Array header (64-bit VM, compressed references). */
+    public static final int ARRAY_HEADER = 16;
+
+    /** {@code count} fixed-size objects. */
+    public static long objects(int count) {
+        return (long) OBJECT_BYTES * count;
+    }
+
+    /** One object holding {@code fieldBytes} of fields (references 4 bytes each). */
+    public static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    public static long array(long[] a) { return align(ARRAY_HEADER + 8L * a.length); }
+
+    public static long array(double[] a) { return align(ARRAY_HEADER + 8L * a.length); }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
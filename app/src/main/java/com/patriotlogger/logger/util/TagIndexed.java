@@ -0,0 +1,31 @@
+package com.patriotlogger.logger.util;
+
+import java.util.Arrays;
+
+/**
+ * Growth of per-tag state kept in arrays indexed directly by tagId (tag ids are small and
+ * dense, so a lookup is an array read). An array grows to the next power of two past the
+ * first tagId that does not fit, and never shrinks. Callers check {@code tagId >= length}
+ * themselves and only call in here to grow.
+ *
+ * Classes keeping state this way are owned by one scan worker and take no locks.
+ */
+public final class TagIndexed {
+
+    private TagIndexed() {}
+
+    /** Length an array indexed by tagId grows to so that {@code tagId} (>= 1) fits. */
+    public static int capacityFor(int tagId) {
+        return Integer.highestOneBit(tagId) << 1;
+    }
+
+    public static int[] grow(int[] a, int tagId) { return Arrays.copyOf(a, capacityFor(tagId)); }
+
+    public static long[] grow(long[] a, int tagId) { return Arrays.copyOf(a, capacityFor(tagId)); }
+
+    public static float[] grow(float[] a, int tagId) { return Arrays.copyOf(a, capacityFor(tagId)); }
+
+    public static boolean[] grow(boolean[] a, int tagId) { return Arrays.copyOf(a, capacityFor(tagId)); }
+
+    public static <T> T[] grow(T[] a, int tagId) { return Arrays.copyOf(a, capacityFor(tagId)); }
+}
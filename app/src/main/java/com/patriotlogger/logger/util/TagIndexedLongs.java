@@ -0,0 +1,44 @@
+package com.patriotlogger.logger.util;
+
+import java.util.Arrays;
+
+/**
+ * A long value per non-negative id, stored in a primitive array indexed by id.
+ * Replaces Map&lt;Integer, Long&gt; on per-sample paths: no boxing, no map nodes.
+ * The array grows as {@link TagIndexed} arrays do. Not thread-safe.
+ */
+public final class TagIndexedLongs {
+
+    private final long missing;
+    private long[] values;
+
+    public TagIndexedLongs(int initialCapacity, long missing) {
+        this.missing = missing;
+        this.values = new long[Math.max(16, initialCapacity)];
+        Arrays.fill(values, missing);
+    }
+
+    /** @return the stored value, or the "missing" value if none was stored for this id */
+    public long get(int id) {
+        return (id >= 0 && id < values.length) ? values[id] : missing;
+    }
+
+    /** Store a value and return the previous one (or "missing"). Negative ids are ignored. */
+    public long put(int id, long value) {
+        if (id < 0) return missing;
+        if (id >= values.length) grow(id);
+        long prev = values[id];
+        values[id] = value;
+        return prev;
+    }
+
+    public void clear() {
+        Arrays.fill(values, missing);
+    }
+
+    private void grow(int id) {
+        long[] next = TagIndexed.grow(values, id);
+        Arrays.fill(next, values.length, next.length, missing);
+        values = next;
+    }
+}
@@ -24,7 +24,6 @@ import com.patriotlogger.logger.data.Racer;
 import com.patriotlogger.logger.data.RacerDao;
 import com.patriotlogger.logger.data.Repository;
 import com.patriotlogger.logger.data.TagData;
-import com.patriotlogger.logger.data.TagDataDao;
 import com.patriotlogger.logger.data.TagStatus;
 import com.patriotlogger.logger.data.TagStatusDao;
 
@@ -76,7 +75,6 @@ public class UploadWorker extends Worker {
         RaceContextDao raceContextDao = db.raceContextDao();
         TagStatusDao tagStatusDao = db.tagStatusDao();
         RacerDao racerDao = db.racerDao();
-        TagDataDao tagDataDao = db.tagDataDao();
 
 
         // Since doWork() is already on a background thread, we can call synchronous DAO methods.
@@ -140,7 +138,7 @@ public class UploadWorker extends Worker {
             rj.addProperty("arriveTime", s.arrivedTimeMs); // Assuming this should be peak_rssi, not s.lowestRssi twice
             //rj.addProperty("lowest_rssi", s.peakRssi);
 
-            List<TagData> samples = tagDataDao.getSamplesForTrackIdSync(s.trackId); // Call DAO sync method
+            List<TagData> samples = repository.getSamplesForTrackIdSync(s.trackId); // rows + chunks
             int sampleCount = (samples != null) ? samples.size() : 0;
             rj.addProperty("num_samples", sampleCount);
 
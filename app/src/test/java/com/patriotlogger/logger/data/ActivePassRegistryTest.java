@@ -0,0 +1,57 @@
+package com.patriotlogger.logger.data;
+
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class ActivePassRegistryTest {
+
+    private static TagStatus pass(int tagId, int trackId, TagStatusState state) {
+        TagStatus ts = new TagStatus();
+        ts.tagId = tagId;
+        ts.trackId = trackId;
+        ts.state = state;
+        return ts;
+    }
+
+    @Test
+    public void snapshotHandsOutCopiesAndLiveHandsOutRows() {
+        ActivePassRegistry registry = new ActivePassRegistry();
+        TagStatus row = pass(3, 30, TagStatusState.APPROACHING);
+        row.lastSeenMs = 100L;
+        registry.put(row);
+
+        List<TagStatus> copies = registry.snapshot();
+        Assert.assertEquals(1, copies.size());
+        Assert.assertNotSame(row, copies.get(0));
+        copies.get(0).state = TagStatusState.LOGGED;
+        row.lastSeenMs = 200L;
+        Assert.assertEquals(TagStatusState.APPROACHING, row.state);
+        Assert.assertEquals(100L, copies.get(0).lastSeenMs);
+
+        Assert.assertSame(row, registry.live().get(0));
+        Assert.assertSame(row, registry.get(3));
+    }
+
+    @Test
+    public void terminalStateDropsOnlyTheCurrentPass() {
+        ActivePassRegistry registry = new ActivePassRegistry();
+        TagStatus older = pass(4, 40, TagStatusState.HERE);
+        TagStatus newer = pass(4, 41, TagStatusState.FIRST_SAMPLE);
+        registry.put(older);
+        registry.put(newer);
+        Assert.assertSame(newer, registry.get(4));
+
+        older.state = TagStatusState.LOGGED;
+        registry.onStateChanged(older);
+        Assert.assertSame("a stale pass closing leaves the newer one", newer, registry.get(4));
+
+        newer.state = TagStatusState.TIMED_OUT;
+        registry.onStateChanged(newer);
+        Assert.assertNull(registry.get(4));
+        Assert.assertEquals(0, registry.size());
+    }
+}
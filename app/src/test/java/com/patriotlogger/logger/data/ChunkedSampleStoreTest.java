@@ -0,0 +1,145 @@
+package com.patriotlogger.logger.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Chunked storage round-trips samples exactly (delta-varint times, int8 RSSI), compacts each
+ * track's per-flush chunks into full ones, and reads back ranges in time order.
+ */
+public class ChunkedSampleStoreTest {
+
+    @Test
+    public void codecRoundTripsIncludingOutOfOrderAndClampedRssi() {
+        Random rnd = new Random(5);
+        final int n = 1_000;
+        long[] ts = new long[n];
+        int[] rssi = new int[n];
+        long t = 1_761_170_000_000L;
+        for (int i = 0; i < n; i++) {
+            t += rnd.nextInt(20) == 0 ? -rnd.nextInt(50) : rnd.nextInt(100_000);
+            ts[i] = t;
+            rssi[i] = -127 + rnd.nextInt(150);
+        }
+        byte[] buf = new byte[n * SampleChunkCodec.MAX_SAMPLE_BYTES];
+        int len = 0;
+        long previous = 0L;
+        for (int i = 0; i < n; i++) {
+            len = SampleChunkCodec.put(buf, len, previous, ts[i], rssi[i]);
+            previous = ts[i];
+        }
+        byte[] payload = java.util.Arrays.copyOf(buf, len);
+        long[] tsOut = new long[n];
+        int[] rssiOut = new int[n];
+        Assert.assertEquals(n, SampleChunkCodec.decode(payload, n, tsOut, rssiOut, 0));
+        Assert.assertArrayEquals(ts, tsOut);
+        for (int i = 0; i < n; i++) Assert.assertEquals(Math.min(127, rssi[i]), rssiOut[i]);
+        // truncated payloads decode what is complete
+        Assert.assertEquals(0, SampleChunkCodec.decode(java.util.Arrays.copyOf(payload, 3), n, tsOut, rssiOut, 0));
+    }
+
+    @Test
+    public void flushesCompactIntoFullChunksAndReadBack() {
+        FakeTagDataChunkDao dao = new FakeTagDataChunkDao();
+        ChunkedSampleStore store = new ChunkedSampleStore(dao);
+        List<TagData> all = new ArrayList<>();
+        long t = 1_761_170_000_000L;
+        // 600 samples for track 3 in flushes of 6, interleaved with a second track
+        for (int flush = 0; flush < 600 / 6; flush++) {
+            List<TagData> batch = new ArrayList<>();
+            for (int k = 0; k < 6; k++) {
+                t += 37;
+                TagData td = new TagData(3, t, -60 - (int) (t % 30));
+                batch.add(td);
+                all.add(td);
+            }
+            store.appendSync(3, batch);
+            List<TagData> other = new ArrayList<>();
+            other.add(new TagData(4, t, -90));
+            store.appendSync(4, other);
+        }
+        // track 3: two full chunks, the rest still open; track 4: one chunk per flush
+        Assert.assertEquals(2, fullChunks(dao, 3));
+        Assert.assertEquals(100, chunksOf(dao, 4));
+        assertSame(all, store.readTrackSync(3));
+        Assert.assertEquals(100, store.readTrackSync(4).size());
+
+        store.sealTrackSync(4);
+        Assert.assertEquals(1, chunksOf(dao, 4));
+        Assert.assertEquals(100, store.readTrackSync(4).size());
+
+        // a fresh store (app restart) picks up track 3's open run from the database
+        ChunkedSampleStore restarted = new ChunkedSampleStore(dao);
+        List<TagData> more = new ArrayList<>();
+        for (int k = 0; k < 10; k++) {
+            t += 40;
+            TagData td = new TagData(3, t, -55);
+            more.add(td);
+            all.add(td);
+        }
+        restarted.appendSync(3, more);
+        restarted.sealTrackSync(3);
+        Assert.assertEquals(3, chunksOf(dao, 3)); // 256 + 256 + 98
+        assertSame(all, restarted.readTrackSync(3));
+
+        // range reads skip chunks outside the range and filter within the ones that overlap
+        long from = all.get(300).timestampMs, to = all.get(320).timestampMs;
+        assertSame(all.subList(300, 321), restarted.readRangeSync(3, from, to));
+        List<TagData> everything = restarted.readAllSync();
+        Assert.assertEquals(all.size() + 100, everything.size());
+        for (int i = 1; i < everything.size(); i++) {
+            Assert.assertTrue(everything.get(i - 1).timestampMs <= everything.get(i).timestampMs);
+        }
+
+        restarted.deleteTrackSync(3);
+        Assert.assertTrue(restarted.readTrackSync(3).isEmpty());
+        Assert.assertEquals(100, restarted.readTrackSync(4).size());
+    }
+
+    @Test
+    public void outOfOrderSamplesReadBackInTimeOrder() {
+        FakeTagDataChunkDao dao = new FakeTagDataChunkDao();
+        ChunkedSampleStore store = new ChunkedSampleStore(dao);
+        long t = 1_761_170_000_000L;
+        List<TagData> first = new ArrayList<>();
+        first.add(new TagData(1, t + 100, -50));
+        first.add(new TagData(1, t + 200, -51));
+        store.appendSync(1, first);
+        List<TagData> late = new ArrayList<>();
+        late.add(new TagData(1, t + 150, -52)); // arrived after a later sample was flushed
+        late.add(new TagData(1, t + 300, -53));
+        store.appendSync(1, late);
+        List<TagData> out = store.readTrackSync(1);
+        Assert.assertEquals(4, out.size());
+        Assert.assertEquals(t + 150, out.get(1).timestampMs);
+        Assert.assertEquals(-52, out.get(1).rssi);
+        Assert.assertEquals(t + 300, out.get(3).timestampMs);
+    }
+
+    private static int chunksOf(FakeTagDataChunkDao dao, int trackId) {
+        int n = 0;
+        for (TagDataChunk c : dao.rows.values()) if (c.trackId == trackId) n++;
+        return n;
+    }
+
+    private static int fullChunks(FakeTagDataChunkDao dao, int trackId) {
+        int n = 0;
+        for (TagDataChunk c : dao.rows.values()) {
+            if (c.trackId == trackId && c.sampleCount == SampleChunkCodec.CHUNK_SAMPLES) n++;
+        }
+        return n;
+    }
+
+    private static void assertSame(List<TagData> expected, List<TagData> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals("ts " + i, expected.get(i).timestampMs, actual.get(i).timestampMs);
+            Assert.assertEquals("rssi " + i, expected.get(i).rssi, actual.get(i).rssi);
+            Assert.assertEquals(expected.get(i).trackId, actual.get(i).trackId);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.patriotlogger.logger.data;
+
+import androidx.lifecycle.LiveData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * In-memory TagDataChunkDao for JVM tests: rows are copied in and out like a database would,
+ * and every statement is counted along with the record bytes it writes.
+ */
+class FakeTagDataChunkDao implements TagDataChunkDao {
+
+    final TreeMap<Long, TagDataChunk> rows = new TreeMap<>();
+    long nextId = 1;
+    int inserts = 0;
+    int deletes = 0;
+    long bytesWritten = 0;
+
+    @Override public long insert(TagDataChunk chunk) {
+        final long id = nextId++;
+        TagDataChunk c = copy(chunk);
+        c.chunkId = id;
+        rows.put(id, c);
+        inserts++;
+        bytesWritten += SqliteRecordModel.chunkRowBytes(c) + SqliteRecordModel.chunkIndexBytes(c);
+        return id;
+    }
+
+    @Override public List<TagDataChunk> getOpenChunksForTrackIdSync(int trackId, int fullCount) {
+        List<TagDataChunk> out = new ArrayList<>();
+        for (TagDataChunk c : rows.values()) {
+            if (c.trackId == trackId && c.sampleCount < fullCount) out.add(copy(c));
+        }
+        return byStart(out);
+    }
+
+    @Override public List<TagDataChunk> getChunksForTrackIdSync(int trackId) {
+        return getChunksInRangeSync(trackId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override public List<TagDataChunk> getChunksInRangeSync(int trackId, long fromMs, long toMs) {
+        List<TagDataChunk> out = new ArrayList<>();
+        for (TagDataChunk c : rows.values()) {
+            if (c.trackId == trackId && c.maxTimestampMs >= fromMs && c.minTimestampMs <= toMs) out.add(copy(c));
+        }
+        return byStart(out);
+    }
+
+    @Override public List<TagDataChunk> getAllChunksSync() {
+        List<TagDataChunk> out = new ArrayList<>();
+        for (TagDataChunk c : rows.values()) out.add(copy(c));
+        return byStart(out);
+    }
+
+    @Override public void deleteChunksSync(List<Long> chunkIds) {
+        for (Long id : chunkIds) rows.remove(id);
+        deletes++;
+    }
+
+    @Override public void deleteChunksForTrackIdSync(int trackId) {
+        rows.values().removeIf(c -> c.trackId == trackId);
+    }
+
+    @Override public void clear() {
+        rows.clear();
+    }
+
+    @Override public LiveData<Integer> getTotalSamplesCount() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Record bytes of the rows as they stand, row and index cells together. */
+    long storedBytes() {
+        long n = 0;
+        for (TagDataChunk c : rows.values()) n += SqliteRecordModel.chunkRowBytes(c) + SqliteRecordModel.chunkIndexBytes(c);
+        return n;
+    }
+
+    // ORDER BY minTimestampMs, chunkId (rows are already in chunkId order; the sort is stable)
+    private static List<TagDataChunk> byStart(List<TagDataChunk> chunks) {
+        chunks.sort((a, b) -> Long.compare(a.minTimestampMs, b.minTimestampMs));
+        return chunks;
+    }
+
+    private static TagDataChunk copy(TagDataChunk c) {
+        TagDataChunk out = new TagDataChunk();
+        out.chunkId = c.chunkId;
+        out.trackId = c.trackId;
+        out.minTimestampMs = c.minTimestampMs;
+        out.maxTimestampMs = c.maxTimestampMs;
+        out.sampleCount = c.sampleCount;
+        out.payload = Arrays.copyOf(c.payload, c.payload.length);
+        return out;
+    }
+}
@@ -0,0 +1,144 @@
+package com.patriotlogger.logger.data;
+
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays the data_samples corpus through the Repository's flush cadence into tag_data rows
+ * and into chunks, and checks that chunks store fewer bytes (modeled from the SQLite record
+ * format, row plus index cells, not measured) and issue fewer SQL statements than rows.
+ *
+ * {@link #main} prints those figures next to the JVM time to prepare a flush, which is higher
+ * for chunks. Timings depend on the machine and its load, so they are reported there rather
+ * than in the unit suite. The insert cost on a device follows the statements and bytes
+ * written; this JVM run has no SQLite to time.
+ */
+public class SampleStorageBenchmarkTest {
+
+    private static final int ROUNDS = 30;
+
+    @Test
+    public void chunksStoreAndWriteLessThanRows() throws Exception {
+        List<List<List<TagData>>> flushes = loadCorpusAsFlushes(Setting.DEFAULT_TAGDATA_FLUSH_MS);
+        final long samples = sampleCount(flushes);
+        final long rowBytes = rowBytes(flushes);
+        FakeTagDataChunkDao dao = replayChunks(flushes);
+        final long chunkBytes = dao.storedBytes();
+        final long chunkStatements = dao.inserts + dao.deletes;
+
+        Assert.assertTrue("chunks " + chunkBytes + " vs rows " + rowBytes, chunkBytes * 4 < rowBytes);
+        // one INSERT per flush per track instead of one per sample (the corpus averages under 3 a flush)
+        Assert.assertTrue("statements", chunkStatements * 2 < samples);
+        // compaction writes each sample twice, still less than one row per sample
+        Assert.assertTrue("written " + dao.bytesWritten + " vs rows " + rowBytes, dao.bytesWritten < rowBytes);
+    }
+
+    /** Prints modeled storage and statements per sample for rows and chunks, and the CPU each takes to prepare. */
+    public static void main(String[] args) throws Exception {
+        List<List<List<TagData>>> flushes = loadCorpusAsFlushes(Setting.DEFAULT_TAGDATA_FLUSH_MS);
+        final long samples = sampleCount(flushes);
+        final long rowBytes = rowBytes(flushes);
+        FakeTagDataChunkDao dao = replayChunks(flushes);
+        final long chunkBytes = dao.storedBytes();
+        final long chunkStatements = dao.inserts + dao.deletes;
+
+        // time to turn flushes into rows vs into chunk statements (the part this code owns)
+        for (int i = 0; i < 10; i++) { buildRows(flushes); replayChunks(flushes); }
+        long rowsNs = 0, chunksNs = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            long t0 = System.nanoTime();
+            buildRows(flushes);
+            long t1 = System.nanoTime();
+            replayChunks(flushes);
+            long t2 = System.nanoTime();
+            rowsNs += t1 - t0;
+            chunksNs += t2 - t1;
+        }
+        final double rowsPerSample = (double) rowsNs / (ROUNDS * samples);
+        final double chunksPerSample = (double) chunksNs / (ROUNDS * samples);
+
+        System.out.println(String.format(Locale.US,
+                "Sample storage, %d samples (bytes are modeled SQLite record sizes, not measured on disk;"
+                        + " no SQLite throughput is timed):%n"
+                        + "  tag_data %.1f B/sample stored, %d statements and %.0f B written per 1000,"
+                        + " flush prep %.0f ns/sample%n"
+                        + "  chunks   %.1f B/sample stored, %.1f statements and %.0f B written per 1000,"
+                        + " flush prep %.0f ns/sample%n"
+                        + "  chunks store %.1fx less and cost %.1fx the CPU to prepare",
+                samples,
+                (double) rowBytes / samples, 1000, 1000.0 * rowBytes / samples, rowsPerSample,
+                (double) chunkBytes / samples, 1000.0 * chunkStatements / samples,
+                1000.0 * dao.bytesWritten / samples, chunksPerSample,
+                (double) rowBytes / chunkBytes, chunksPerSample / rowsPerSample));
+    }
+
+    private static long sampleCount(List<List<List<TagData>>> flushes) {
+        long samples = 0;
+        for (List<List<TagData>> track : flushes) for (List<TagData> f : track) samples += f.size();
+        return samples;
+    }
+
+    /** tag_data: one row and one index entry per sample, one INSERT each. */
+    private static long rowBytes(List<List<List<TagData>>> flushes) {
+        long rowBytes = 0;
+        long rowId = 0;
+        for (List<List<TagData>> track : flushes) {
+            for (List<TagData> f : track) {
+                for (TagData td : f) {
+                    rowId++;
+                    rowBytes += SqliteRecordModel.tagDataRowBytes(rowId, td) + SqliteRecordModel.tagDataIndexBytes(rowId, td);
+                }
+            }
+        }
+        return rowBytes;
+    }
+
+    private static FakeTagDataChunkDao replayChunks(List<List<List<TagData>>> flushes) {
+        FakeTagDataChunkDao dao = new FakeTagDataChunkDao();
+        ChunkedSampleStore store = new ChunkedSampleStore(dao);
+        for (int trackId = 0; trackId < flushes.size(); trackId++) {
+            for (List<TagData> f : flushes.get(trackId)) store.appendSync(trackId + 1, f);
+            store.sealTrackSync(trackId + 1); // the pass ends with the file
+        }
+        return dao;
+    }
+
+    private static long buildRows(List<List<List<TagData>>> flushes) {
+        long n = 0;
+        for (List<List<TagData>> track : flushes) {
+            for (List<TagData> f : track) {
+                List<TagData> rows = new ArrayList<>(f.size());
+                for (TagData td : f) rows.add(new TagData(td.trackId, td.timestampMs, td.rssi));
+                n += rows.size();
+            }
+        }
+        return n;
+    }
+
+    /** Per file (one track), the samples grouped by flush interval. */
+    private static List<List<List<TagData>>> loadCorpusAsFlushes(long flushMs) throws Exception {
+        List<List<List<TagData>>> out = new ArrayList<>();
+        for (String path : ResourceUtils.listCorpusFiles()) {
+            List<List<TagData>> track = new ArrayList<>();
+            List<TagData> current = null;
+            long flushEndsMs = Long.MIN_VALUE;
+            for (TagData td : ResourceUtils.loadSamples(path, out.size() + 1)) {
+                if (current == null || td.timestampMs >= flushEndsMs) {
+                    current = new ArrayList<>();
+                    track.add(current);
+                    flushEndsMs = td.timestampMs + flushMs;
+                }
+                current.add(td);
+            }
+            out.add(track);
+        }
+        Assert.assertFalse(out.isEmpty());
+        return out;
+    }
+}
@@ -0,0 +1,64 @@
+package com.patriotlogger.logger.data;
+
+/**
+ * Bytes a row or index entry occupies in SQLite's b-tree leaf pages, from the documented
+ * record format (schema format 4): the cell's length and rowid varints, the record header of
+ * serial types, the values, and the 2-byte cell pointer. Page slack and overflow pages are
+ * not counted, so real files are somewhat larger for both layouts.
+ */
+final class SqliteRecordModel {
+
+    private SqliteRecordModel() {}
+
+    static int varintBytes(long v) {
+        if (v < 0) return 9;
+        int n = 1;
+        while (n < 9 && (v >>> (7 * n)) != 0) n++;
+        return n;
+    }
+
+    /** Body bytes of an INTEGER value (0 and 1 are stored in the serial type alone). */
+    static int intBytes(long v) {
+        if (v == 0 || v == 1) return 0;
+        if (v >= -128 && v <= 127) return 1;
+        if (v >= -32768 && v <= 32767) return 2;
+        if (v >= -8388608 && v <= 8388607) return 3;
+        if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) return 4;
+        if (v >= -(1L << 47) && v < (1L << 47)) return 6;
+        return 8;
+    }
+
+    /** A table leaf cell whose record has these serial-type and value bytes (the rowid alias is a NULL). */
+    private static int tableCell(long rowId, int headerTypesBytes, int bodyBytes) {
+        final int header = headerTypesBytes + 1;
+        final int payload = header + bodyBytes;
+        return varintBytes(payload) + varintBytes(rowId) + payload + 2;
+    }
+
+    private static int indexCell(int headerTypesBytes, int bodyBytes) {
+        final int payload = headerTypesBytes + 1 + bodyBytes;
+        return varintBytes(payload) + payload + 2;
+    }
+
+    /** tag_data row: (dataId NULL, trackId, timestampMs, rssi). */
+    static int tagDataRowBytes(long rowId, TagData td) {
+        return tableCell(rowId, 4, intBytes(td.trackId) + intBytes(td.timestampMs) + intBytes(td.rssi));
+    }
+
+    /** tag_data (trackId, timestampMs) index entry, with the rowid. */
+    static int tagDataIndexBytes(long rowId, TagData td) {
+        return indexCell(3, intBytes(td.trackId) + intBytes(td.timestampMs) + intBytes(rowId));
+    }
+
+    /** tag_data_chunk row: (chunkId NULL, trackId, min, max, sampleCount, payload BLOB). */
+    static int chunkRowBytes(TagDataChunk c) {
+        final int blobType = varintBytes(12L + 2L * c.payload.length);
+        return tableCell(c.chunkId, 5 + blobType, intBytes(c.trackId) + intBytes(c.minTimestampMs)
+                + intBytes(c.maxTimestampMs) + intBytes(c.sampleCount) + c.payload.length);
+    }
+
+    /** tag_data_chunk (trackId, minTimestampMs) index entry, with the rowid. */
+    static int chunkIndexBytes(TagDataChunk c) {
+        return indexCell(3, intBytes(c.trackId) + intBytes(c.minTimestampMs) + intBytes(c.chunkId));
+    }
+}
@@ -0,0 +1,138 @@
+package com.patriotlogger.logger.data;
+
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The write-behind only ever hands out copies taken under the row's monitor: a flush never
+ * sees a half-applied update, and later changes to the live row don't leak into a copy that
+ * is already queued.
+ */
+public class TagStatusWriteBehindTest {
+
+    private final ActivePassRegistry passes = new ActivePassRegistry();
+    private final TagStatusWriteBehind writes = new TagStatusWriteBehind(passes, new StatusWriteStats());
+
+    private TagStatus openPass(int tagId, int trackId) {
+        TagStatus ts = new TagStatus();
+        ts.tagId = tagId;
+        ts.trackId = trackId;
+        ts.state = TagStatusState.APPROACHING;
+        ts.writtenState = ts.state;
+        passes.put(ts);
+        return ts;
+    }
+
+    @Test
+    public void drainedRowsAreDetachedCopies() {
+        TagStatus live = openPass(7, 70);
+        live.lastSeenMs = 1_000L;
+        writes.markDirty(live);
+
+        List<TagStatus> batch = writes.drain();
+        Assert.assertEquals(1, batch.size());
+        TagStatus row = batch.get(0);
+        Assert.assertNotSame(live, row);
+
+        live.lastSeenMs = 2_000L;
+        live.peakTimeMs = 1_500L;
+        Assert.assertEquals(1_000L, row.lastSeenMs);
+        Assert.assertEquals(0L, row.peakTimeMs);
+        Assert.assertTrue("not flagged again until the next update", writes.drain().isEmpty());
+    }
+
+    @Test
+    public void immediateWriteSupersedesStagedCopy() {
+        TagStatus live = openPass(8, 80);
+        live.state = TagStatusState.LOGGED;
+        live.writtenState = TagStatusState.LOGGED;
+        live.exitTimeMs = 5_000L;
+        // already logged and out of the registry: coalesced update is copied on the worker
+        passes.onStateChanged(live);
+        writes.markDirty(live);
+
+        live.peakTimeMs = 4_000L;
+        TagStatus row = writes.prepareImmediateWrite(live);
+        Assert.assertEquals(4_000L, row.peakTimeMs);
+        Assert.assertNull("closed passes drop handler state", row.handlerState);
+        Assert.assertTrue(writes.drain().isEmpty());
+    }
+
+    @Test
+    public void failedBatchFlagsOpenRowsAgain() {
+        TagStatus live = openPass(9, 90);
+        writes.markDirty(live);
+        List<TagStatus> batch = writes.drain();
+        Assert.assertFalse(live.dirty);
+
+        live.lastSeenMs = 3_000L;
+        writes.requeue(batch);
+        List<TagStatus> retry = writes.drain();
+        Assert.assertEquals(1, retry.size());
+        Assert.assertEquals("retry carries the current state", 3_000L, retry.get(0).lastSeenMs);
+        Assert.assertEquals(Collections.emptyList(), writes.drain());
+    }
+
+    @Test
+    public void handlerStateIsWrittenWithTheFieldsItWasTakenAt() {
+        TagStatus live = openPass(12, 120);
+        live.lastSeenMs = 1_000L;
+        writes.markDirty(live);
+        byte[] blob = {1, 2, 3};
+        writes.stageHandlerState(live, blob);
+        Assert.assertFalse("the staged copy covers the pending update", live.dirty);
+
+        // samples after the snapshot move the live row on, not the staged copy
+        live.lastSeenMs = 1_500L;
+        List<TagStatus> batch = writes.drain();
+        Assert.assertEquals(1, batch.size());
+        Assert.assertSame(blob, batch.get(0).handlerState);
+        Assert.assertEquals(1_000L, batch.get(0).lastSeenMs);
+
+        writes.markDirty(live);
+        batch = writes.drain();
+        Assert.assertEquals(1_500L, batch.get(0).lastSeenMs);
+    }
+
+    @Test
+    public void concurrentFlushNeverSeesHalfAppliedUpdate() throws Exception {
+        final TagStatus live = openPass(11, 110);
+        final int updates = 200_000;
+        Thread worker = new Thread(() -> {
+            for (int i = 1; i <= updates; i++) {
+                // a "sample": the fields move together, as a handler step moves them
+                synchronized (live) {
+                    live.lastSeenMs = i;
+                    live.peakTimeMs = i;
+                    live.exitTimeMs = i;
+                    live.state = (i & 1) == 0 ? TagStatusState.APPROACHING : TagStatusState.TOO_FAR;
+                    live.writtenState = live.state;
+                }
+                writes.markDirty(live);
+            }
+        }, "worker");
+        worker.start();
+
+        long lastWritten = 0L;
+        int batches = 0;
+        while (worker.isAlive() || live.dirty) {
+            for (TagStatus row : writes.drain()) {
+                Assert.assertEquals(row.lastSeenMs, row.peakTimeMs);
+                Assert.assertEquals(row.lastSeenMs, row.exitTimeMs);
+                Assert.assertEquals((row.lastSeenMs & 1) == 0 ? TagStatusState.APPROACHING : TagStatusState.TOO_FAR,
+                        row.state);
+                Assert.assertTrue("copies come out in order", row.lastSeenMs >= lastWritten);
+                lastWritten = row.lastSeenMs;
+                batches++;
+            }
+        }
+        worker.join();
+        Assert.assertTrue(batches > 0);
+        Assert.assertEquals("the final update is flushed", updates, lastWritten);
+    }
+}
@@ -0,0 +1,147 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BurstCoalescer turns each tag's bursts into one sample per bucket, keeps the pass peak in
+ * MAX mode, and reports how many advertisements it saved the handler.
+ */
+public class BurstCoalescerTest {
+
+    /** Collects what the coalescer emits. */
+    private static final class Out {
+        final List<long[]> samples = new ArrayList<>(); // {tagId, ts, rssi}
+    }
+
+    private static final BurstCoalescer.Sink<Out> SINK =
+            (out, tagId, ts, rssi) -> out.samples.add(new long[]{tagId, ts, rssi});
+
+    @Test
+    public void maxModeKeepsPassPeakOnCorpus() throws Exception {
+        int files = 0;
+        for (String path : ResourceUtils.listCorpusFiles()) {
+            List<TagData> pass = ResourceUtils.loadSamples(path);
+            if (pass.isEmpty()) continue;
+
+            // every advertisement arrives as a burst of three near-duplicates
+            BurstCoalescer coalescer = new BurstCoalescer(5, BurstCoalescer.Mode.MAX);
+            Out out = new Out();
+            long peakTs = 0L;
+            int peak = Integer.MIN_VALUE;
+            for (TagData s : pass) {
+                final int rssi = s.rssi;
+                coalescer.offer(1, s.timestampMs, rssi - 3, out, SINK);
+                coalescer.offer(1, s.timestampMs + 1, rssi, out, SINK);
+                coalescer.offer(1, s.timestampMs + 3, rssi - 1, out, SINK);
+                if (rssi > peak) {
+                    peak = rssi;
+                    peakTs = s.timestampMs + 1;
+                }
+            }
+            coalescer.flushAll(out, SINK);
+
+            long emittedPeakTs = 0L;
+            int emittedPeak = Integer.MIN_VALUE;
+            long previousTs = Long.MIN_VALUE;
+            for (long[] e : out.samples) {
+                Assert.assertTrue(path + " time order", e[1] >= previousTs);
+                previousTs = e[1];
+                if (e[2] > emittedPeak) {
+                    emittedPeak = (int) e[2];
+                    emittedPeakTs = e[1];
+                }
+            }
+            Assert.assertEquals(path, peak, emittedPeak);
+            Assert.assertEquals(path, peakTs, emittedPeakTs);
+            Assert.assertEquals(3L * pass.size(), coalescer.samplesIn());
+            Assert.assertEquals(out.samples.size(), coalescer.samplesOut());
+            Assert.assertTrue(path + " ratio " + coalescer.reductionRatio(), coalescer.reductionRatio() > 2.5);
+            files++;
+        }
+        Assert.assertTrue(files > 0);
+    }
+
+    @Test
+    public void meanAndMedianUseTheBucketMidpoint() {
+        int[] burst = {-60, -70, -64, -61};
+        Out mean = new Out(), median = new Out();
+        BurstCoalescer m1 = new BurstCoalescer(20, BurstCoalescer.Mode.MEAN);
+        BurstCoalescer m2 = new BurstCoalescer(20, BurstCoalescer.Mode.MEDIAN);
+        for (int i = 0; i < burst.length; i++) {
+            m1.offer(4, 1000L + 2 * i, burst[i], mean, SINK);
+            m2.offer(4, 1000L + 2 * i, burst[i], median, SINK);
+        }
+        Assert.assertTrue(mean.samples.isEmpty());
+        m1.offer(4, 1020L, -50, mean, SINK); // opens the next bucket, emits this one
+        m2.flush(4, median, SINK);
+
+        Assert.assertArrayEquals(new long[]{4, 1003, -64}, mean.samples.get(0)); // -63.75 rounds to -64
+        Assert.assertArrayEquals(new long[]{4, 1003, -63}, median.samples.get(0)); // floor(-62.5)
+        Assert.assertEquals(1, m1.pending());
+    }
+
+    @Test
+    public void lateSampleJoinsBucketWithoutMovingItsMidpoint() {
+        for (BurstCoalescer.Mode mode : new BurstCoalescer.Mode[]{BurstCoalescer.Mode.MEAN, BurstCoalescer.Mode.MEDIAN}) {
+            BurstCoalescer coalescer = new BurstCoalescer(20, mode);
+            Out out = new Out();
+            coalescer.offer(4, 1000L, -60, out, SINK);
+            coalescer.offer(4, 1010L, -62, out, SINK);
+            coalescer.offer(4, 990L, -70, out, SINK);  // stamped before the bucket opened
+            coalescer.offer(4, 1020L, -50, out, SINK); // emits the bucket
+            coalescer.flush(4, out, SINK);
+
+            Assert.assertEquals(mode + " one sample per bucket", 2, out.samples.size());
+            Assert.assertEquals(mode + " midpoint of first and latest", 1005L, out.samples.get(0)[1]);
+            Assert.assertEquals(mode + " late sample counted", mode == BurstCoalescer.Mode.MEAN ? -64L : -62L,
+                    out.samples.get(0)[2]);
+            Assert.assertTrue(mode + " time order", out.samples.get(1)[1] > out.samples.get(0)[1]);
+        }
+    }
+
+    @Test
+    public void tagsAreIndependentAndQuietBucketsFlushWhenDue() {
+        BurstCoalescer coalescer = new BurstCoalescer(10, BurstCoalescer.Mode.MAX);
+        Out out = new Out();
+        coalescer.offer(2, 100L, -70, out, SINK);
+        coalescer.offer(300, 101L, -40, out, SINK); // grows the per-tag arrays
+        coalescer.offer(2, 105L, -65, out, SINK);
+        coalescer.flushDue(109L, out, SINK);
+        Assert.assertTrue(out.samples.isEmpty());
+
+        coalescer.flushDue(110L, out, SINK);
+        Assert.assertEquals(1, out.samples.size());
+        Assert.assertArrayEquals(new long[]{2, 105, -65}, out.samples.get(0));
+        coalescer.flushDue(111L, out, SINK);
+        Assert.assertArrayEquals(new long[]{300, 101, -40}, out.samples.get(1));
+        Assert.assertEquals(0, coalescer.pending());
+    }
+
+    @Test
+    public void fullBucketEmitsEarlyAndZeroPassesThrough() {
+        BurstCoalescer coalescer = new BurstCoalescer(1_000, BurstCoalescer.Mode.MAX);
+        Out out = new Out();
+        for (int i = 0; i < BurstCoalescer.MAX_BUCKET_SAMPLES; i++) coalescer.offer(1, i, -80 + i, out, SINK);
+        Assert.assertEquals(1, out.samples.size());
+        Assert.assertEquals(BurstCoalescer.MAX_BUCKET_SAMPLES, coalescer.reductionRatio(), 1e-9);
+
+        // reconfiguring emits what is open and keeps counting
+        coalescer.offer(1, 100L, -50, out, SINK);
+        coalescer.configure(0, BurstCoalescer.Mode.MAX, out, SINK);
+        Assert.assertEquals(2, out.samples.size());
+        Assert.assertFalse(coalescer.isEnabled());
+        coalescer.offer(1, 101L, -51, out, SINK);
+        coalescer.offer(1, 101L, -52, out, SINK);
+        Assert.assertEquals(4, out.samples.size());
+        Assert.assertEquals(BurstCoalescer.MAX_BUCKET_SAMPLES + 3, coalescer.samplesIn());
+        Assert.assertEquals(BurstCoalescer.Mode.MEDIAN,
+                BurstCoalescer.Mode.fromName(" median ", BurstCoalescer.Mode.MAX));
+    }
+}
@@ -0,0 +1,170 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+import com.patriotlogger.logger.test.HandlerFixtures;
+import com.patriotlogger.logger.test.TcaSweep;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Kalman tracker logs walk-bys through the shared HERE/LOGGED state machine, keeps a fixed
+ * size whatever the pass length, and resumes exactly from its persisted state.
+ */
+public class KalmanTrackerHandlerTest {
+
+    private static final List<TagData> NONE = Collections.emptyList();
+
+    @Test
+    public void logsSyntheticWalkByNearClosestApproach() {
+        RssiHandler h = handler(Setting.DEFAULT_TCA_HERE_METERS);
+        TagStatus s = HandlerFixtures.newPass();
+        // 3 m/s past the antenna at 1 m offset, closest at t0, one clean sample every 100 ms
+        final long t0 = 1_761_170_400_000L;
+        long enteredMs = 0L;
+        for (int k = -100; k <= 100 && s.state != TagStatusState.LOGGED; k++) {
+            double x = 3.0 * k / 10.0;
+            double d = Math.sqrt(1.0 + x * x);
+            int rssi = (int) Math.round(Setting.DEFAULT_TX_POWER_AT_1M_DBM - 10.0 * Setting.DEFAULT_PATH_LOSS_N * Math.log10(d));
+            s = h.acceptSample(s, NONE, new RssiData(1, t0 + k * 100L, rssi, rssi));
+            if (s.state == TagStatusState.HERE && enteredMs == 0L) enteredMs = t0 + k * 100L;
+        }
+        Assert.assertEquals(TagStatusState.LOGGED, s.state);
+        Assert.assertTrue("entered after closest approach", enteredMs < t0);
+        Assert.assertEquals(enteredMs, s.arrivedTimeMs);
+        Assert.assertTrue("exit before closest approach", s.exitTimeMs > t0);
+        Assert.assertTrue("peak " + (s.peakTimeMs - t0) + "ms off", Math.abs(s.peakTimeMs - t0) <= 1000L);
+    }
+
+    @Test
+    public void logsEveryCorpusPass() throws Exception {
+        List<TcaSweep.Pass> corpus = TcaSweep.loadCorpus();
+        Assert.assertFalse(corpus.isEmpty());
+        StateTransitions transitions = new StateTransitions();
+        for (TcaSweep.Pass p : corpus) {
+            RssiHandler h = handler(Setting.DEFAULT_TCA_HERE_METERS);
+            TagStatus s = HandlerFixtures.newPass();
+            h.acceptSamples(s, p.ts, p.rssi, 0, p.ts.length, transitions);
+            Assert.assertEquals(p.name, TagStatusState.LOGGED, s.state);
+            Assert.assertTrue(p.name, s.arrivedTimeMs != 0L && s.peakTimeMs >= s.arrivedTimeMs
+                    && s.exitTimeMs >= s.peakTimeMs);
+        }
+    }
+
+    @Test
+    public void batchMatchesPerSample() throws Exception {
+        StateTransitions transitions = new StateTransitions();
+        for (TcaSweep.Pass p : TcaSweep.loadCorpus()) {
+            RssiHandler single = handler(Setting.DEFAULT_TCA_HERE_METERS);
+            RssiHandler batch = handler(Setting.DEFAULT_TCA_HERE_METERS);
+            TagStatus a = HandlerFixtures.newPass();
+            TagStatus b = HandlerFixtures.newPass();
+            int i = 0;
+            while (i < p.ts.length) {
+                final int n = batch.acceptSamples(b, p.ts, p.rssi, i, Math.min(17, p.ts.length - i), transitions);
+                for (int k = i; k < i + n; k++) {
+                    a = single.acceptSample(a, NONE, new RssiData(1, p.ts[k], p.rssi[k], p.rssi[k]));
+                }
+                i += n;
+                Assert.assertEquals(p.name + " @" + i, a.toString(), b.toString());
+                if (b.state == TagStatusState.LOGGED) {
+                    single.init();
+                    batch.init();
+                    a = HandlerFixtures.newPass();
+                    b = HandlerFixtures.newPass();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void footprintDoesNotGrowWithPass() {
+        RssiHandler h = handler(Setting.DEFAULT_TCA_HERE_METERS);
+        final long before = h.estimatedFootprintBytes();
+        TagStatus s = HandlerFixtures.newPass();
+        long t = 1_761_170_366_833L;
+        for (int i = 0; i < 10_000; i++) s = h.acceptSample(s, NONE, new RssiData(1, t += 50, -95, -95));
+        Assert.assertEquals(before, h.estimatedFootprintBytes());
+        RssiHandler tca = HandlerFixtures.tca();
+        Assert.assertTrue(before < tca.estimatedFootprintBytes());
+    }
+
+    @Test
+    public void footprintMatchesAllocation() {
+        java.lang.management.ThreadMXBean std = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(std instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) std;
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+        final long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < 2_000; i++) handler(Setting.DEFAULT_TCA_HERE_METERS); // warm up / JIT
+        final int n = 1_000;
+        RssiHandler[] keep = new RssiHandler[n];
+        long before = mx.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < n; i++) keep[i] = handler(Setting.DEFAULT_TCA_HERE_METERS);
+        long perHandler = (mx.getThreadAllocatedBytes(thread) - before) / n;
+
+        long estimate = keep[0].estimatedFootprintBytes();
+        Assert.assertTrue("estimate " + estimate + " vs allocated " + perHandler, Math.abs(estimate - perHandler) <= 32);
+    }
+
+    @Test
+    public void restoredHandlerMatchesUninterrupted() throws Exception {
+        for (TcaSweep.Pass p : TcaSweep.loadCorpus()) {
+            RssiHandler steady = handler(Setting.DEFAULT_TCA_HERE_METERS);
+            RssiHandler restarted = handler(Setting.DEFAULT_TCA_HERE_METERS);
+            TagStatus a = HandlerFixtures.newPass();
+            TagStatus b = HandlerFixtures.newPass();
+            for (int i = 0; i < p.ts.length; i++) {
+                if (i % 5 == 2) {
+                    byte[] blob = restarted.snapshotState();
+                    restarted = handler(Setting.DEFAULT_TCA_HERE_METERS);
+                    Assert.assertTrue(restarted.restoreState(blob));
+                }
+                RssiData d = new RssiData(1, p.ts[i], p.rssi[i], p.rssi[i]);
+                a = steady.acceptSample(a, NONE, d);
+                b = restarted.acceptSample(b, NONE, d);
+                Assert.assertEquals(p.name + " sample " + i, a.toString(), b.toString());
+                if (a.state == TagStatusState.LOGGED) {
+                    steady.init();
+                    restarted.init();
+                    a = HandlerFixtures.newPass();
+                    b = HandlerFixtures.newPass();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejectsStateFromOtherSettingsOrFormat() {
+        RssiHandler h = handler(Setting.DEFAULT_TCA_HERE_METERS);
+        TagStatus s = HandlerFixtures.newPass();
+        long t = 1_761_170_366_833L;
+        for (int i = 0; i < 60; i++) s = h.acceptSample(s, NONE, new RssiData(1, t += 50, -80 + i / 4, -80));
+        byte[] blob = h.snapshotState();
+
+        Assert.assertFalse(handler(Setting.DEFAULT_TCA_HERE_METERS + 1.0).restoreState(blob));
+        Assert.assertFalse(handler(Setting.DEFAULT_TCA_HERE_METERS).restoreState(new byte[3]));
+        byte[] otherFormat = blob.clone();
+        otherFormat[0]++;
+        RssiHandler fresh = handler(Setting.DEFAULT_TCA_HERE_METERS);
+        Assert.assertFalse(fresh.restoreState(otherFormat));
+        Assert.assertArrayEquals(handler(Setting.DEFAULT_TCA_HERE_METERS).snapshotState(), fresh.snapshotState());
+    }
+
+    private static RssiHandler handler(double hereMeters) {
+        return new KalmanTrackerHandler(Setting.DEFAULT_TX_POWER_AT_1M_DBM, Setting.DEFAULT_PATH_LOSS_N,
+                hereMeters, Setting.DEFAULT_TCA_THRESHOLD_SEC, Setting.DEFAULT_TCA_MIN_POINTS,
+                Setting.DEFAULT_TCA_APPROACH_METERS,
+                KalmanTrackerHandler.DEFAULT_PROCESS_NOISE, KalmanTrackerHandler.DEFAULT_MEASUREMENT_NOISE_DB);
+    }
+}
@@ -0,0 +1,50 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.Setting;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelineConfigTest {
+
+    @Test
+    public void resolvesNullFieldsToDefaults() {
+        Setting s = new Setting();
+        s.tca_window_size = null;
+        s.rssi_averaging_alpha = null;
+        s.retain_samples = null;
+        s.scan_queue_policy = null;
+        PipelineConfig c = PipelineConfig.next(null, s);
+        Assert.assertEquals(Setting.DEFAULT_TCA_WINDOW_SIZE, c.tcaWindowSize);
+        Assert.assertEquals(Setting.DEFAULT_RSSI_AVERAGING_ALPHA, c.rssiAveragingAlpha, 0f);
+        Assert.assertEquals(Setting.DEFAULT_RETAIN_SAMPLES, c.retainSamples);
+        Assert.assertEquals(Setting.DEFAULT_SCAN_QUEUE_POLICY, c.scanQueuePolicy);
+        Assert.assertTrue(c.sameValues(PipelineConfig.defaults()));
+    }
+
+    @Test
+    public void unchangedSettingsKeepTheSameSnapshot() {
+        PipelineConfig base = PipelineConfig.defaults();
+        Assert.assertSame(base, PipelineConfig.next(base, new Setting()));
+    }
+
+    @Test
+    public void handlerVersionMovesOnlyWithHandlerSettings() {
+        PipelineConfig v0 = PipelineConfig.defaults();
+
+        Setting s = new Setting();
+        s.filter_min_rssi = -100;
+        s.sweep_interval_ms = 500;
+        PipelineConfig v1 = PipelineConfig.next(v0, s);
+        Assert.assertEquals(v0.version + 1, v1.version);
+        Assert.assertEquals(v0.handlerVersion, v1.handlerVersion);
+        Assert.assertFalse(v1.sameFilterValues(v0));
+        Assert.assertTrue(v1.sameHandlerValues(v0));
+
+        s.tca_here_meters = Setting.DEFAULT_TCA_HERE_METERS + 0.5;
+        PipelineConfig v2 = PipelineConfig.next(v1, s);
+        Assert.assertEquals(v1.version + 1, v2.version);
+        Assert.assertEquals(v1.handlerVersion + 1, v2.handlerVersion);
+        Assert.assertTrue(v2.newTcaHandler().getName().contains("thr=4.5m"));
+    }
+}
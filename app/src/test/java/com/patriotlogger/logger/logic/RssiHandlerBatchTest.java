@@ -0,0 +1,122 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+import com.patriotlogger.logger.test.HandlerFixtures;
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link RssiHandler#acceptSamples} over arbitrary batch boundaries reaches the same states,
+ * split times and transitions as feeding the same samples one at a time.
+ */
+public class RssiHandlerBatchTest {
+
+    @Test
+    public void batchesMatchPerSampleOnCorpus() throws Exception {
+        Random rnd = new Random(15);
+        int transitions = 0;
+        for (String file : ResourceUtils.listCorpusFiles()) {
+            List<TagData> rows = ResourceUtils.loadSamples(file);
+            long[] ts = new long[rows.size()];
+            int[] rssi = new int[rows.size()];
+            for (int k = 0; k < rows.size(); k++) {
+                ts[k] = rows.get(k).timestampMs;
+                rssi[k] = rows.get(k).rssi;
+            }
+
+            List<String> single = perSample(ts, rssi);
+            for (int maxBatch : new int[]{1, 7, 64, Integer.MAX_VALUE}) {
+                Assert.assertEquals(file + " batch<=" + maxBatch, single, batched(tca(), ts, rssi, maxBatch, rnd));
+                // the interface default gets there too
+                Assert.assertEquals(file + " default batch<=" + maxBatch, single,
+                        batched(new PerSampleOnly(tca()), ts, rssi, maxBatch, rnd));
+            }
+            transitions += single.size();
+        }
+        Assert.assertTrue("corpus should exercise state changes", transitions > 0);
+    }
+
+    @Test
+    public void stopsAfterTheSampleThatEndsThePass() {
+        // approach then recede, well past the end of the pass
+        final int n = 400;
+        long[] ts = new long[n];
+        int[] rssi = new int[n];
+        for (int k = 0; k < n; k++) {
+            ts[k] = 1_761_170_366_833L + 50L * k;
+            rssi[k] = -40 - Math.abs(k - 120) / 3;
+        }
+        RssiHandler h = tca();
+        TagStatus s = HandlerFixtures.newPass();
+        StateTransitions out = new StateTransitions(1);
+        int used = h.acceptSamples(s, ts, rssi, 0, n, out);
+
+        Assert.assertEquals(TagStatusState.LOGGED, s.state);
+        Assert.assertTrue(used < n);
+        Assert.assertEquals(TagStatusState.LOGGED, out.state(out.size() - 1));
+        Assert.assertEquals(used - 1, out.sampleIndex(out.size() - 1));
+        Assert.assertEquals(ts[used - 1], s.exitTimeMs);
+        for (int t = 1; t < out.size(); t++) Assert.assertTrue(out.sampleIndex(t) > out.sampleIndex(t - 1));
+    }
+
+    /** Transitions as "index@ts->STATE", plus each pass's split times, one handler/pass at a time. */
+    private static List<String> perSample(long[] ts, int[] rssi) {
+        List<String> out = new ArrayList<>();
+        List<TagData> none = Collections.emptyList();
+        RssiHandler h = tca();
+        TagStatus s = HandlerFixtures.newPass();
+        for (int i = 0; i < ts.length; i++) {
+            TagStatusState before = s.state;
+            s = h.acceptSample(s, none, new RssiData(1, ts[i], rssi[i], rssi[i]));
+            if (s.state != before) out.add(i + "@" + ts[i] + "->" + s.state);
+            if (s.state == TagStatusState.LOGGED) {
+                out.add(s.arrivedTimeMs + "/" + s.peakTimeMs + "/" + s.exitTimeMs);
+                h = tca();
+                s = HandlerFixtures.newPass();
+            }
+        }
+        return out;
+    }
+
+    private static List<String> batched(RssiHandler first, long[] ts, int[] rssi, int maxBatch, Random rnd) {
+        List<String> out = new ArrayList<>();
+        StateTransitions tr = new StateTransitions(2);
+        RssiHandler h = first;
+        TagStatus s = HandlerFixtures.newPass();
+        int i = 0;
+        while (i < ts.length) {
+            int len = Math.min(ts.length - i, maxBatch == Integer.MAX_VALUE ? maxBatch : 1 + rnd.nextInt(maxBatch));
+            int used = h.acceptSamples(s, ts, rssi, i, len, tr);
+            Assert.assertTrue(used >= 1 && used <= len);
+            for (int t = 0; t < tr.size(); t++) out.add(tr.sampleIndex(t) + "@" + tr.timestampMs(t) + "->" + tr.state(t));
+            i += used;
+            if (s.state == TagStatusState.LOGGED) {
+                out.add(s.arrivedTimeMs + "/" + s.peakTimeMs + "/" + s.exitTimeMs);
+                h = (first instanceof PerSampleOnly) ? new PerSampleOnly(tca()) : tca();
+                s = HandlerFixtures.newPass();
+            }
+        }
+        return out;
+    }
+
+    /** Exposes only acceptSample, so acceptSamples falls back to the interface default. */
+    private static final class PerSampleOnly implements RssiHandler {
+        private final RssiHandler inner;
+        PerSampleOnly(RssiHandler inner) { this.inner = inner; }
+        @Override public void init() { inner.init(); }
+        @Override public TagStatus acceptSample(TagStatus s, List<TagData> h, RssiData d) { return inner.acceptSample(s, h, d); }
+    }
+
+    private static RssiHandler tca() {
+        return HandlerFixtures.tca();
+    }
+}
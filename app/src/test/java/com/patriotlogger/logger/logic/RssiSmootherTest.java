@@ -0,0 +1,59 @@
+package com.patriotlogger.logger.logic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Each tag's smoothed series depends only on that tag's samples, however other tags'
+ * traffic is interleaved with it.
+ */
+public class RssiSmootherTest {
+
+    private static final float ALPHA = 0.3f;
+
+    @Test
+    public void seriesIsIndependentOfOtherTags() {
+        final int tag = 5;
+        final int[] raw = new int[500];
+        Random rnd = new Random(42);
+        for (int i = 0; i < raw.length; i++) raw[i] = -90 + rnd.nextInt(40);
+
+        // the tag alone
+        RssiSmoother alone = new RssiSmoother();
+        float[] expected = new float[raw.length];
+        for (int i = 0; i < raw.length; i++) expected[i] = alone.getSmoothedRssi(tag, raw[i], ALPHA);
+
+        // the same samples with bursts of other tags in between, one of them past the initial capacity
+        RssiSmoother shared = new RssiSmoother();
+        final int[] others = {1, 2, 6, 700};
+        for (int i = 0; i < raw.length; i++) {
+            for (int k = 0, n = rnd.nextInt(4); k < n; k++) {
+                shared.getSmoothedRssi(others[rnd.nextInt(others.length)], -40 - rnd.nextInt(20), ALPHA);
+            }
+            Assert.assertEquals("sample " + i, expected[i], shared.getSmoothedRssi(tag, raw[i], ALPHA), 0.0f);
+        }
+        Assert.assertEquals(alone.getLastRssi(tag), shared.getLastRssi(tag), 0.0f);
+    }
+
+    @Test
+    public void smoothsWithinTag() {
+        RssiSmoother s = new RssiSmoother();
+        Assert.assertEquals(0.0f, s.getLastRssi(3), 0.0f);
+        Assert.assertEquals(-80.0f, s.getSmoothedRssi(3, -80, ALPHA), 0.0f);
+        Assert.assertEquals(ALPHA * -60 + (1 - ALPHA) * -80.0f, s.getSmoothedRssi(3, -60, ALPHA), 1e-4f);
+        Assert.assertEquals(ALPHA * -60 + (1 - ALPHA) * -80.0f, s.getLastRssi(3), 1e-4f);
+    }
+
+    @Test
+    public void resetRestartsOnlyThatTag() {
+        RssiSmoother s = new RssiSmoother();
+        s.getSmoothedRssi(1, -80, ALPHA);
+        s.getSmoothedRssi(2, -80, ALPHA);
+        s.reset(1);
+        Assert.assertEquals(-50.0f, s.getSmoothedRssi(1, -50, ALPHA), 0.0f);
+        Assert.assertNotEquals(-50.0f, s.getSmoothedRssi(2, -50, ALPHA), 0.0f);
+        Assert.assertEquals(-50.0f, s.getSmoothedRssi(-1, -50, ALPHA), 0.0f);
+    }
+}
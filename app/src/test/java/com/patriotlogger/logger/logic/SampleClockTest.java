@@ -0,0 +1,119 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.test.HandlerFixtures;
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays a recorded walk-by (src/test/resources/sample_walk_by.csv) through the TCA handler
+ * on time, and again with the worker running seconds behind in bursts, and checks that
+ * radio-time stamping gives the same split times either way.
+ */
+public class SampleClockTest {
+
+    /** Fake elapsedRealtime / wall clock pair; the test advances it. */
+    private static final class FakeTime implements SampleClock.TimeSource {
+        long elapsedNs = 5_000_000_000L; // device booted 5s ago
+        long epochAtBootMs;
+
+        FakeTime(long epochAtBootMs) { this.epochAtBootMs = epochAtBootMs; }
+
+        @Override public long wallMs() { return epochAtBootMs + elapsedNs / 1_000_000L; }
+        @Override public long elapsedNs() { return elapsedNs; }
+    }
+
+    @Test
+    public void mapsElapsedTimeToEpoch() {
+        FakeTime t = new FakeTime(1_700_000_000_000L);
+        SampleClock clock = new SampleClock(t);
+        Assert.assertEquals(1_700_000_005_000L, clock.nowEpochMs());
+        Assert.assertEquals(1_700_000_004_250L, clock.toEpochMs(4_250_000_000L));
+        // no radio timestamp (pre-O): fall back to the delivery time
+        Assert.assertEquals(1_700_000_004_900L, clock.stampMs(0L, 4_900_000_000L));
+        Assert.assertEquals(1_700_000_004_100L, clock.stampMs(4_100_000_000L, 4_900_000_000L));
+    }
+
+    @Test
+    public void recalibrateIgnoresJitterButFollowsClockSteps() {
+        FakeTime t = new FakeTime(1_700_000_000_000L);
+        SampleClock clock = new SampleClock(t);
+        long offset = clock.getOffsetNs();
+
+        t.epochAtBootMs += 20; // read jitter / slew
+        Assert.assertFalse(clock.recalibrate());
+        Assert.assertEquals(offset, clock.getOffsetNs());
+
+        t.epochAtBootMs += 5_000; // NTP step
+        Assert.assertTrue(clock.recalibrate());
+        Assert.assertEquals(t.wallMs(), clock.nowEpochMs());
+    }
+
+    @Test
+    public void lateProcessingGivesIdenticalSplitTimes() throws Exception {
+        List<TagData> walk = loadWalkBy();
+        final long firstMs = walk.get(0).timestampMs;
+
+        // on time: each sample is processed 3ms after the radio heard it
+        TagStatus onTime = replay(walk, firstMs, new long[]{3}, false);
+        // late: the worker only runs every ~2.5s and handles whatever queued up meanwhile
+        Random rnd = new Random(7);
+        long[] delays = new long[walk.size()];
+        long nextRunMs = 0;
+        for (int i = 0; i < walk.size(); i++) {
+            long heardMs = walk.get(i).timestampMs - firstMs;
+            while (nextRunMs < heardMs) nextRunMs += 2_000 + rnd.nextInt(1_000);
+            delays[i] = nextRunMs - heardMs;
+        }
+        TagStatus late = replay(walk, firstMs, delays, false);
+
+        Assert.assertNotEquals("walk-by should produce a peak", 0L, onTime.peakTimeMs);
+        Assert.assertEquals(onTime.state, late.state);
+        Assert.assertEquals(onTime.peakTimeMs, late.peakTimeMs);
+        Assert.assertEquals(onTime.arrivedTimeMs, late.arrivedTimeMs);
+        Assert.assertEquals(onTime.exitTimeMs, late.exitTimeMs);
+        Assert.assertEquals(onTime.lastSeenMs, late.lastSeenMs);
+
+        // stamping with the worker's wall clock (the old behaviour) moves the split
+        TagStatus legacy = replay(walk, firstMs, delays, true);
+        Assert.assertNotEquals(onTime.peakTimeMs, legacy.peakTimeMs);
+    }
+
+    /**
+     * Feed the walk-by to a fresh handler in processing order. delays[i] (or delays[0] for all)
+     * is how long after the radio heard sample i the worker handles it.
+     */
+    private static TagStatus replay(List<TagData> walk, long firstMs, long[] delays, boolean stampAtProcessing) {
+        FakeTime t = new FakeTime(firstMs - 5_000L); // radio time 5s after boot == first sample
+        SampleClock clock = new SampleClock(t);
+        final long bootElapsedNs = t.elapsedNs;
+
+        RssiHandler handler = HandlerFixtures.tca();
+        TagStatus status = new TagStatus();
+        status.tagId = 123;
+        status.trackId = 1;
+
+        for (int i = 0; i < walk.size(); i++) {
+            TagData d = walk.get(i);
+            final long radioNs = bootElapsedNs + (d.timestampMs - firstMs) * 1_000_000L;
+            final long delayMs = delays.length == 1 ? delays[0] : delays[i];
+            t.elapsedNs = Math.max(t.elapsedNs, radioNs + delayMs * 1_000_000L); // worker runs now
+
+            final long ts = stampAtProcessing ? t.wallMs() : clock.stampMs(radioNs, radioNs + 1_000_000L);
+            status = handler.acceptSample(status, Collections.<TagData>emptyList(), new RssiData(123, ts, d.rssi, d.rssi));
+            if (status.state == TagStatus.TagStatusState.LOGGED || status.state == TagStatus.TagStatusState.TIMED_OUT) break;
+        }
+        return status;
+    }
+
+    private static List<TagData> loadWalkBy() throws Exception {
+        return ResourceUtils.loadSamples("sample_walk_by.csv", 1);
+    }
+}
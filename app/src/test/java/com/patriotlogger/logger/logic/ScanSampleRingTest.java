@@ -0,0 +1,162 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.logic.ScanSampleRing.OverflowPolicy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ScanSampleRingTest {
+
+    @Test
+    public void dropNewestRejectsWhenFullAndKeepsOrder() {
+        ScanSampleRing r = new ScanSampleRing(3, OverflowPolicy.DROP_NEWEST, 1);
+        Assert.assertEquals(4, r.capacity());
+        for (int i = 0; i < 4; i++) Assert.assertTrue(r.offer(1, -60 - i, i, i));
+        Assert.assertFalse(r.offer(1, -70, 9, 9));
+        Assert.assertEquals(1, r.droppedFullCount());
+        Assert.assertEquals(4, r.size());
+
+        Assert.assertEquals(List.of(-60, -61, -62, -63), drainRssi(r));
+        Assert.assertEquals(0, r.size());
+    }
+
+    @Test
+    public void dropOldestPerTagBoundsEachTag() {
+        ScanSampleRing r = new ScanSampleRing(64, OverflowPolicy.DROP_OLDEST_PER_TAG, 3);
+        // tag 1 floods, tag 2 sends one sample in the middle
+        for (int i = 0; i < 5; i++) r.offer(1, -50 - i, i, i);
+        r.offer(2, -90, 100, 100);
+        for (int i = 5; i < 8; i++) r.offer(1, -50 - i, i, i);
+
+        List<int[]> out = drain(r);
+        List<Integer> tag1 = new ArrayList<>();
+        int tag2 = 0;
+        for (int[] s : out) {
+            if (s[0] == 1) tag1.add(s[1]);
+            else tag2++;
+        }
+        // only the newest three of tag 1 survive, still in order; tag 2 untouched
+        Assert.assertEquals(List.of(-55, -56, -57), tag1);
+        Assert.assertEquals(1, tag2);
+        Assert.assertEquals(5, r.droppedOldestCount());
+        Assert.assertEquals(0, r.droppedFullCount());
+    }
+
+    @Test
+    public void coalesceLatestKeepsOnePendingSamplePerTag() {
+        ScanSampleRing r = new ScanSampleRing(16, OverflowPolicy.COALESCE_LATEST, 1);
+        r.offer(1, -80, 1, 1);
+        r.offer(2, -70, 2, 2);
+        r.offer(1, -60, 3, 3); // replaces tag 1's pending sample, keeps its position
+        r.offer(1, -55, 4, 4);
+
+        List<int[]> out = drain(r);
+        Assert.assertEquals(2, out.size());
+        Assert.assertArrayEquals(new int[]{1, -55}, out.get(0));
+        Assert.assertArrayEquals(new int[]{2, -70}, out.get(1));
+        Assert.assertEquals(2, r.coalescedCount());
+
+        // once consumed, the next sample queues normally
+        r.offer(1, -50, 5, 5);
+        Assert.assertEquals(1, drain(r).size());
+    }
+
+    @Test
+    public void drainSignalFiresOncePerBurst() {
+        ScanSampleRing r = new ScanSampleRing(16);
+        r.offer(1, -60, 1, 1);
+        Assert.assertTrue(r.requestDrain());
+        r.offer(1, -61, 2, 2);
+        Assert.assertFalse(r.requestDrain());
+
+        r.beginDrain();
+        drain(r);
+        r.offer(1, -62, 3, 3);
+        Assert.assertTrue(r.requestDrain());
+    }
+
+    @Test
+    public void reportsOldestAge() {
+        ScanSampleRing r = new ScanSampleRing(16);
+        Assert.assertEquals(0L, r.oldestAgeNanos(1_000L));
+        r.offer(1, -60, 100L, 400L);
+        r.offer(1, -61, 200L, 900L);
+        Assert.assertEquals(600L, r.oldestAgeNanos(1_000L));
+    }
+
+    @Test
+    public void concurrentProducerConsumerKeepsPerTagOrderWithoutTornReads() throws Exception {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            runConcurrent(policy);
+        }
+    }
+
+    private void runConcurrent(OverflowPolicy policy) throws Exception {
+        final int tags = 8;
+        final int perTag = 50_000;
+        final ScanSampleRing r = new ScanSampleRing(256, policy, 4);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final long[] lastSeqSeen = new long[tags];
+        java.util.Arrays.fill(lastSeqSeen, -1L);
+
+        Thread consumer = new Thread(() -> {
+            int received = 0;
+            long idleSpins = 0;
+            while (idleSpins < 50_000_000L && failure.get() == null) {
+                int slot = r.claim();
+                if (slot < 0) { idleSpins++; continue; }
+                idleSpins = 0;
+                int tag = r.tagIdAt(slot);
+                int rssi = r.rssiAt(slot);
+                long seq = r.radioNsAt(slot);
+                long check = r.deliverNsAt(slot);
+                r.release(slot);
+                received++;
+                // every field of a sample was written together
+                if (rssi != -(int) (seq % 100) || check != seq * 31 + tag) {
+                    failure.set(policy + ": torn sample tag=" + tag + " seq=" + seq);
+                }
+                if (seq <= lastSeqSeen[tag]) failure.set(policy + ": out of order tag=" + tag);
+                lastSeqSeen[tag] = seq;
+                if (seq == perTag - 1 && allDone(lastSeqSeen, perTag)) break;
+            }
+        });
+        consumer.start();
+
+        for (long seq = 0; seq < perTag; seq++) {
+            for (int tag = 0; tag < tags; tag++) {
+                // offer() only fails when the ring is full; retry so the run has a known last sample
+                while (!r.offer(tag, -(int) (seq % 100), seq, seq * 31 + tag)) Thread.yield();
+            }
+        }
+        consumer.join(30_000);
+        Assert.assertNull(failure.get(), failure.get());
+        // the newest sample of a tag is never the one a per-tag policy drops or coalesces away
+        for (int tag = 0; tag < tags; tag++) Assert.assertEquals(policy + " tag " + tag, perTag - 1, lastSeqSeen[tag]);
+    }
+
+    private static boolean allDone(long[] last, int perTag) {
+        for (long l : last) if (l != perTag - 1) return false;
+        return true;
+    }
+
+    private static List<Integer> drainRssi(ScanSampleRing r) {
+        List<Integer> out = new ArrayList<>();
+        for (int[] s : drain(r)) out.add(s[1]);
+        return out;
+    }
+
+    private static List<int[]> drain(ScanSampleRing r) {
+        List<int[]> out = new ArrayList<>();
+        int slot;
+        while ((slot = r.claim()) >= 0) {
+            out.add(new int[]{r.tagIdAt(slot), r.rssiAt(slot)});
+            r.release(slot);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,48 @@
+package com.patriotlogger.logger.logic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** SlidingMedian agrees with sorting a copy of the window, for every window size and step. */
+public class SlidingMedianTest {
+
+    @Test
+    public void matchesSortedWindow() {
+        Random rnd = new Random(11);
+        for (int capacity = 1; capacity <= 12; capacity++) {
+            SlidingMedian median = new SlidingMedian(capacity);
+            int[] recent = new int[3_000];
+            for (int n = 0; n < recent.length; n++) {
+                // narrow range so duplicates are common
+                recent[n] = -90 + rnd.nextInt(n % 7 == 0 ? 60 : 6);
+                median.add(recent[n]);
+                int from = Math.max(0, n + 1 - capacity);
+                Assert.assertEquals("capacity " + capacity + " step " + n,
+                        sortedMedian(Arrays.copyOfRange(recent, from, n + 1)), median.median());
+                Assert.assertEquals(n + 1 - from, median.size());
+            }
+        }
+    }
+
+    @Test
+    public void evenCountFloorsTheMeanAndClearEmpties() {
+        SlidingMedian median = new SlidingMedian(4);
+        median.add(-61);
+        median.add(-70);
+        Assert.assertEquals(-66, median.median()); // floor(-65.5)
+        median.clear();
+        Assert.assertEquals(0, median.size());
+        median.add(-50);
+        Assert.assertEquals(-50, median.median());
+    }
+
+    private static int sortedMedian(int[] window) {
+        Arrays.sort(window);
+        int n = window.length;
+        return (n % 2 == 1) ? window[n / 2]
+                : (int) Math.floor((window[n / 2 - 1] + window[n / 2]) / 2.0);
+    }
+}
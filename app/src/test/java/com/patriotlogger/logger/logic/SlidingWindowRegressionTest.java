@@ -0,0 +1,132 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.test.HandlerFixtures;
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+public class SlidingWindowRegressionTest {
+
+
+    @Test
+    public void matchesSimpleRegressionOverLongRuns() {
+        for (int capacity : new int[]{6, 12, 40, 64}) {
+            Random rnd = new Random(capacity);
+            SlidingWindowRegression acc = new SlidingWindowRegression(capacity);
+            Deque<long[]> ts = new ArrayDeque<>();
+            Deque<Double> ys = new ArrayDeque<>();
+            long t = 1_761_170_366_833L;
+            for (int step = 0; step < 50_000; step++) {
+                t += 30 + rnd.nextInt(40); // ~20 Hz with jitter
+                double y = 0.8 - 0.002 * (step % 500) + rnd.nextGaussian() * 0.05;
+                acc.add(t, y);
+                ts.addLast(new long[]{t});
+                ys.addLast(y);
+                if (ts.size() > capacity) { ts.removeFirst(); ys.removeFirst(); }
+
+                SimpleRegression ref = new SimpleRegression(true);
+                java.util.Iterator<Double> yi = ys.iterator();
+                for (long[] p : ts) ref.addData((p[0] - t) / 1000.0, yi.next());
+
+                Assert.assertEquals(ts.size(), acc.size());
+                if (ts.size() < 2) continue;
+                assertClose("slope cap=" + capacity + " step=" + step, ref.getSlope(), acc.slope());
+                assertClose("intercept cap=" + capacity + " step=" + step, ref.getIntercept(), acc.valueAt(t));
+            }
+        }
+    }
+
+    @Test
+    public void leavesNonFinitePointsOutOfTheFit() {
+        SlidingWindowRegression acc = new SlidingWindowRegression(4);
+        acc.add(1_000L, 1.0);
+        acc.add(2_000L, Double.NaN);
+        acc.add(3_000L, 3.0);
+        Assert.assertEquals(3, acc.size());
+        Assert.assertEquals(2, acc.count());
+        Assert.assertEquals(1.0, acc.slope(), 1e-12);
+
+        acc.add(4_000L, 4.0);
+        acc.add(5_000L, 5.0); // evicts t=1000
+        acc.add(6_000L, 6.0); // evicts the NaN
+        Assert.assertEquals(4, acc.count());
+        Assert.assertEquals(1.0, acc.slope(), 1e-12);
+        Assert.assertEquals(6.0, acc.valueAt(6_000L), 1e-12);
+    }
+
+    @Test
+    public void slopeIsUndefinedWithoutTwoDistinctTimes() {
+        SlidingWindowRegression acc = new SlidingWindowRegression(8);
+        Assert.assertTrue(Double.isNaN(acc.slope()));
+        acc.add(1_000L, 1.0);
+        Assert.assertTrue(Double.isNaN(acc.slope()));
+        acc.add(1_000L, 2.0);
+        Assert.assertTrue(Double.isNaN(acc.slope()));
+        acc.clear();
+        Assert.assertEquals(0, acc.size());
+    }
+
+    /** The handler's decisions on the recorded corpus are unchanged from the SimpleRegression version. */
+    @Test
+    public void handlerMatchesReferenceOnCorpus() throws Exception {
+        List<String> files = ResourceUtils.listCorpusFiles();
+        Assert.assertFalse("no corpus files under " + ResourceUtils.CORPUS_DIR, files.isEmpty());
+        int transitions = 0;
+        for (int windowSize : new int[]{Setting.DEFAULT_TCA_WINDOW_SIZE, 40}) {
+            for (String file : files) {
+                List<RssiData> samples = ResourceUtils.loadRssiData(file);
+                RssiHandler ref = handler(true, windowSize);
+                RssiHandler opt = handler(false, windowSize);
+                TagStatus a = HandlerFixtures.newPass();
+                TagStatus b = HandlerFixtures.newPass();
+                for (int i = 0; i < samples.size(); i++) {
+                    RssiData d = samples.get(i);
+                    TagStatus.TagStatusState before = a.state;
+                    a = ref.acceptSample(a, Collections.<TagData>emptyList(), d);
+                    b = opt.acceptSample(b, Collections.<TagData>emptyList(), d);
+                    String where = file + " win=" + windowSize + " sample " + i;
+                    Assert.assertEquals(where, a.state, b.state);
+                    Assert.assertEquals(where, a.arrivedTimeMs, b.arrivedTimeMs);
+                    Assert.assertEquals(where, a.peakTimeMs, b.peakTimeMs);
+                    Assert.assertEquals(where, a.exitTimeMs, b.exitTimeMs);
+                    if (a.state != before) transitions++;
+                    if (a.state == TagStatus.TagStatusState.LOGGED) {
+                        // next pass, fresh handlers (as the service does)
+                        ref = handler(true, windowSize);
+                        opt = handler(false, windowSize);
+                        a = HandlerFixtures.newPass();
+                        b = HandlerFixtures.newPass();
+                    }
+                }
+            }
+        }
+        Assert.assertTrue("corpus should exercise state changes", transitions > 0);
+    }
+
+    private static void assertClose(String msg, double expected, double actual) {
+        if (Double.isNaN(expected)) {
+            Assert.assertTrue(msg, Double.isNaN(actual));
+            return;
+        }
+        Assert.assertEquals(msg, expected, actual, 1e-9 * Math.max(1.0, Math.abs(expected)));
+    }
+
+    private static RssiHandler handler(boolean reference, int windowSize) {
+        return reference
+                ? new ReferenceTcaHandler(Setting.DEFAULT_TCA_ALPHA, Setting.DEFAULT_TX_POWER_AT_1M_DBM,
+                        Setting.DEFAULT_PATH_LOSS_N, Setting.DEFAULT_TCA_HERE_METERS, Setting.DEFAULT_TCA_THRESHOLD_SEC,
+                        windowSize, Setting.DEFAULT_TCA_MIN_POINTS, Setting.DEFAULT_TCA_APPROACH_METERS)
+                : HandlerFixtures.tca(windowSize);
+    }
+}
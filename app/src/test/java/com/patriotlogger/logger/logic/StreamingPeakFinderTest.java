@@ -0,0 +1,92 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StreamingPeakFinder returns the same peak sample and value as TagPeakFinder, on whole
+ * passes and on every prefix as samples arrive, while visiting only part of the pass.
+ */
+public class StreamingPeakFinderTest {
+
+    private static final float ALPHA = 0.30f;
+
+    @Test
+    public void matchesTagPeakFinderOnCorpus() throws Exception {
+        int files = 0;
+        long visited = 0, total = 0;
+        for (String path : ResourceUtils.listCorpusFiles()) {
+            List<TagData> series = ResourceUtils.loadSamples(path);
+            StreamingPeakFinder streaming = new StreamingPeakFinder(ALPHA);
+            for (TagData d : series) streaming.add(d.timestampMs, d.rssi);
+
+            assertSamePeak(path, reference(series), streaming.findPeak());
+            visited += streaming.lastBackwardSpan();
+            total += series.size();
+            files++;
+        }
+        Assert.assertTrue(files > 0);
+        Assert.assertTrue("backward pass visited " + visited + " of " + total, visited < total);
+    }
+
+    @Test
+    public void matchesOnEveryPrefix() throws Exception {
+        List<TagData> series = ResourceUtils.loadSamples("data_samples/calibration_data_1761170475798.csv");
+        StreamingPeakFinder streaming = new StreamingPeakFinder(ALPHA, 4); // grows as it goes
+        for (int n = 1; n <= series.size(); n++) {
+            TagData d = series.get(n - 1);
+            streaming.add(d.timestampMs, d.rssi);
+            assertSamePeak("prefix " + n, reference(series.subList(0, n)), streaming.findPeak());
+        }
+    }
+
+    @Test
+    public void primitiveColumnsAndReset() throws Exception {
+        List<TagData> series = ResourceUtils.loadSamples("data_samples/calibration_data_1761170475798.csv");
+        long[] ts = new long[series.size() + 2];
+        int[] rssi = new int[series.size() + 2];
+        for (int i = 0; i < series.size(); i++) {
+            ts[i + 1] = series.get(i).timestampMs;
+            rssi[i + 1] = series.get(i).rssi;
+        }
+        StreamingPeakFinder streaming = new StreamingPeakFinder(ALPHA);
+        streaming.addAll(new long[]{1L, 2L, 3L, 4L}, new int[]{-40, -40, -40, -40}, 0, 4);
+        streaming.reset();
+        Assert.assertNull(streaming.findPeak());
+        streaming.addAll(ts, rssi, 1, series.size());
+        Assert.assertEquals(series.size(), streaming.size());
+        assertSamePeak("columns", reference(series), streaming.findPeak());
+    }
+
+    @Test
+    public void tiesKeepEarliestSample() {
+        List<TagData> flat = new ArrayList<>();
+        for (int i = 0; i < 10; i++) flat.add(new TagData(0, 1000L + i, -60));
+        StreamingPeakFinder streaming = new StreamingPeakFinder(ALPHA);
+        for (TagData d : flat) streaming.add(d.timestampMs, d.rssi);
+        assertSamePeak("flat", reference(flat), streaming.findPeak());
+    }
+
+    private static TagPeakData reference(List<TagData> series) {
+        Setting setting = new Setting();
+        setting.rssi_averaging_alpha = ALPHA;
+        return new TagPeakFinder().findPeak(series, setting);
+    }
+
+    private static void assertSamePeak(String where, TagPeakData expected, TagPeakData actual) {
+        if (expected == null) {
+            Assert.assertNull(where, actual);
+            return;
+        }
+        Assert.assertNotNull(where, actual);
+        Assert.assertEquals(where, expected.peakTimeMs, actual.peakTimeMs);
+        Assert.assertEquals(where, expected.peakRssi, actual.peakRssi, 0.0f);
+    }
+}
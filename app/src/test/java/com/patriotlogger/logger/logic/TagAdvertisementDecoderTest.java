@@ -0,0 +1,125 @@
+package com.patriotlogger.logger.logic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Feeds raw advertisement byte arrays (as ScanRecord.getBytes() would return them)
+ * through TagAdvertisementDecoder.
+ */
+public class TagAdvertisementDecoderTest {
+
+    private static final byte[] FLAGS = ad(0x01, new byte[]{0x06});
+
+    @Test
+    public void decodesManufacturerPayload() {
+        byte[] adv = concat(FLAGS, manufacturer(TagAdvertisementDecoder.COMPANY_ID, TagAdvertisementDecoder.encodePayload(123)));
+        Assert.assertEquals(123, TagAdvertisementDecoder.decode(adv));
+    }
+
+    @Test
+    public void decodesServiceDataPayload() {
+        byte[] adv = concat(FLAGS, serviceData(TagAdvertisementDecoder.SERVICE_UUID16, TagAdvertisementDecoder.encodePayload(4242)));
+        Assert.assertEquals(4242, TagAdvertisementDecoder.decode(adv));
+    }
+
+    @Test
+    public void decodesFullUint16Range() {
+        byte[] adv = manufacturer(TagAdvertisementDecoder.COMPANY_ID, TagAdvertisementDecoder.encodePayload(0xFFFF));
+        Assert.assertEquals(0xFFFF, TagAdvertisementDecoder.decode(adv));
+    }
+
+    @Test
+    public void binaryPayloadWinsOverName() {
+        byte[] adv = concat(name("PT-7"), manufacturer(TagAdvertisementDecoder.COMPANY_ID, TagAdvertisementDecoder.encodePayload(99)));
+        Assert.assertEquals(99, TagAdvertisementDecoder.decode(adv));
+    }
+
+    @Test
+    public void fallsBackToLocalName() {
+        Assert.assertEquals(123, TagAdvertisementDecoder.decode(concat(FLAGS, name("PT-123"))));
+        // short local name works too
+        Assert.assertEquals(5, TagAdvertisementDecoder.decode(ad(0x08, ascii("PT-5"))));
+    }
+
+    @Test
+    public void ignoresForeignAdvertisements() {
+        // another vendor's manufacturer data, a phone name, a different service UUID
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.decode(
+                concat(FLAGS, manufacturer(0x004C, new byte[]{0x02, 0x15, 1, 2, 3}), name("Pixel 7"))));
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.decode(
+                serviceData(0xFEAA, TagAdvertisementDecoder.encodePayload(1))));
+    }
+
+    @Test
+    public void rejectsWrongMagicOrVersion() {
+        byte[] payload = TagAdvertisementDecoder.encodePayload(10);
+        payload[2] = 2; // unknown version
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG,
+                TagAdvertisementDecoder.decode(manufacturer(TagAdvertisementDecoder.COMPANY_ID, payload)));
+        payload = TagAdvertisementDecoder.encodePayload(10);
+        payload[0] = 'X';
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.decodePayload(payload));
+    }
+
+    @Test
+    public void survivesTruncatedAndPaddedRecords() {
+        byte[] good = concat(FLAGS, name("PT-8"));
+        byte[] padded = concat(good, new byte[]{0, 0, 0, 0});
+        Assert.assertEquals(8, TagAdvertisementDecoder.decode(padded));
+
+        byte[] truncated = manufacturer(TagAdvertisementDecoder.COMPANY_ID, TagAdvertisementDecoder.encodePayload(3));
+        byte[] cut = new byte[truncated.length - 2];
+        System.arraycopy(truncated, 0, cut, 0, cut.length);
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.decode(cut));
+
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.decode(null));
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.decode(new byte[0]));
+    }
+
+    @Test
+    public void nameParsingMatchesLegacyFormat() {
+        Assert.assertEquals(123, TagAdvertisementDecoder.parseTagIdFromName("PT-123"));
+        Assert.assertEquals(0, TagAdvertisementDecoder.parseTagIdFromName("PT_0"));
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.parseTagIdFromName("PT-"));
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.parseTagIdFromName("PT-12a"));
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.parseTagIdFromName("XT-12"));
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.parseTagIdFromName("PT-99999999999"));
+        Assert.assertEquals(TagAdvertisementDecoder.NO_TAG, TagAdvertisementDecoder.parseTagIdFromName(null));
+    }
+
+    // --- advertisement builders ---
+
+    private static byte[] ad(int type, byte[] data) {
+        byte[] out = new byte[data.length + 2];
+        out[0] = (byte) (data.length + 1);
+        out[1] = (byte) type;
+        System.arraycopy(data, 0, out, 2, data.length);
+        return out;
+    }
+
+    private static byte[] manufacturer(int companyId, byte[] payload) {
+        return ad(0xFF, concat(new byte[]{(byte) companyId, (byte) (companyId >>> 8)}, payload));
+    }
+
+    private static byte[] serviceData(int uuid16, byte[] payload) {
+        return ad(0x16, concat(new byte[]{(byte) uuid16, (byte) (uuid16 >>> 8)}, payload));
+    }
+
+    private static byte[] name(String name) {
+        return ad(0x09, ascii(name));
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts) out.write(p, 0, p.length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,105 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.test.HandlerFixtures;
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays the data_samples corpus through ReferenceTcaHandler (SimpleRegression refit,
+ * pow/log10 per point) and TcaWithFallbackHandler (sliding fit, log-domain distances) and
+ * checks they reach the same split times.
+ *
+ * {@link #main} times the two on the same corpus and prints ns per sample. Wall-clock
+ * results depend on the machine and its load, so they are reported there rather than
+ * asserted in the unit suite.
+ */
+public class TcaHandlerBenchmarkTest {
+
+    private static final int ROUNDS = 30;
+    private static final int[] WINDOW_SIZES = {Setting.DEFAULT_TCA_WINDOW_SIZE, 40};
+
+    @Test
+    public void optimizedHandlerMatchesReference() throws Exception {
+        List<List<RssiData>> corpus = loadCorpus();
+        for (int windowSize : WINDOW_SIZES) {
+            // same outputs, pass by pass
+            Assert.assertEquals("win=" + windowSize, replay(corpus, true, windowSize), replay(corpus, false, windowSize));
+        }
+    }
+
+    /** Prints reference vs optimized ns per sample for each window size. */
+    public static void main(String[] args) throws Exception {
+        List<List<RssiData>> corpus = loadCorpus();
+        long samples = 0;
+        for (List<RssiData> f : corpus) samples += f.size();
+
+        // warm every configuration up before timing any of them
+        for (int i = 0; i < 20; i++) {
+            for (int windowSize : WINDOW_SIZES) { replay(corpus, true, windowSize); replay(corpus, false, windowSize); }
+        }
+
+        for (int windowSize : WINDOW_SIZES) {
+            // alternate so drift in machine load hits both equally
+            long refNs = 0, optNs = 0;
+            for (int r = 0; r < ROUNDS; r++) {
+                long t0 = System.nanoTime();
+                replay(corpus, true, windowSize);
+                long t1 = System.nanoTime();
+                replay(corpus, false, windowSize);
+                long t2 = System.nanoTime();
+                refNs += t1 - t0;
+                optNs += t2 - t1;
+            }
+            double refPerSample = (double) refNs / (ROUNDS * samples);
+            double optPerSample = (double) optNs / (ROUNDS * samples);
+            System.out.println(String.format(Locale.US,
+                    "TCA win=%d: reference %.0f ns/sample, optimized %.0f ns/sample (%.1fx)",
+                    windowSize, refPerSample, optPerSample, refPerSample / optPerSample));
+        }
+    }
+
+    /** Split times of every logged pass, as "arrived/peak/exit" strings. */
+    private static List<String> replay(List<List<RssiData>> corpus, boolean reference, int windowSize) {
+        List<String> passes = new ArrayList<>();
+        List<TagData> none = Collections.emptyList();
+        for (List<RssiData> file : corpus) {
+            RssiHandler h = handler(reference, windowSize);
+            TagStatus s = HandlerFixtures.newPass();
+            for (int i = 0; i < file.size(); i++) {
+                s = h.acceptSample(s, none, file.get(i));
+                if (s.state == TagStatus.TagStatusState.LOGGED) {
+                    passes.add(s.arrivedTimeMs + "/" + s.peakTimeMs + "/" + s.exitTimeMs);
+                    h = handler(reference, windowSize);
+                    s = HandlerFixtures.newPass();
+                }
+            }
+            passes.add("end:" + s.state);
+        }
+        return passes;
+    }
+
+    private static RssiHandler handler(boolean reference, int windowSize) {
+        return reference
+                ? new ReferenceTcaHandler(Setting.DEFAULT_TCA_ALPHA, Setting.DEFAULT_TX_POWER_AT_1M_DBM,
+                        Setting.DEFAULT_PATH_LOSS_N, Setting.DEFAULT_TCA_HERE_METERS, Setting.DEFAULT_TCA_THRESHOLD_SEC,
+                        windowSize, Setting.DEFAULT_TCA_MIN_POINTS, Setting.DEFAULT_TCA_APPROACH_METERS)
+                : HandlerFixtures.tca(windowSize);
+    }
+
+    private static List<List<RssiData>> loadCorpus() throws Exception {
+        List<List<RssiData>> corpus = new ArrayList<>();
+        for (String path : ResourceUtils.listCorpusFiles()) corpus.add(ResourceUtils.loadRssiData(path));
+        Assert.assertFalse(corpus.isEmpty());
+        return corpus;
+    }
+}
@@ -0,0 +1,80 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.test.HandlerFixtures;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The per-track memory the TCA handler reports is close to what constructing one allocates,
+ * and feeding it samples allocates nothing further.
+ *
+ * JVM-only approximation: the allocation counter is HotSpot's (com.sun.management), so this
+ * checks the estimate against HotSpot's object layout, not ART's. The test is skipped on VMs
+ * without the counter.
+ */
+public class TcaHandlerFootprintTest {
+
+    private com.sun.management.ThreadMXBean mx;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean std = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(std instanceof com.sun.management.ThreadMXBean);
+        mx = (com.sun.management.ThreadMXBean) std;
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void estimateMatchesAllocation() {
+        for (int windowSize : new int[]{12, 40, 200}) {
+            for (int i = 0; i < 2_000; i++) HandlerFixtures.tca(windowSize); // warm up / JIT
+
+            final int n = 1_000;
+            RssiHandler[] keep = new RssiHandler[n];
+            long before = allocated();
+            for (int i = 0; i < n; i++) keep[i] = HandlerFixtures.tca(windowSize);
+            long perHandler = (allocated() - before) / n;
+
+            long estimate = keep[0].estimatedFootprintBytes();
+            Assert.assertTrue("window " + windowSize + ": estimate " + estimate + " vs allocated " + perHandler,
+                    Math.abs(estimate - perHandler) <= 32);
+        }
+    }
+
+    @Test
+    public void acceptSampleDoesNotAllocate() {
+        RssiHandler h = HandlerFixtures.tca(40);
+        TagStatus status = new TagStatus();
+        status.tagId = 1;
+        status.trackId = 1;
+        RssiData d = new RssiData(1, 0L, -90, -90);
+        List<TagData> none = Collections.emptyList();
+
+        long t = 1_761_170_366_833L;
+        for (int i = 0; i < 20_000; i++) { // warm up; stays far away so the pass never ends
+            d.set(1, t += 50, -95 + (i & 3), -95);
+            h.acceptSample(status, none, d);
+        }
+        long before = allocated();
+        for (int i = 0; i < 100_000; i++) {
+            d.set(1, t += 50, -95 + (i & 3), -95);
+            h.acceptSample(status, none, d);
+        }
+        long bytes = allocated() - before;
+        Assert.assertTrue("allocated " + bytes + " bytes", bytes < 16 * 1024);
+    }
+
+    private long allocated() {
+        return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
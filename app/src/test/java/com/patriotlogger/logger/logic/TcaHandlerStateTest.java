@@ -0,0 +1,95 @@
+package com.patriotlogger.logger.logic;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.test.HandlerFixtures;
+import com.patriotlogger.logger.test.ResourceUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A TCA handler restored from {@link RssiHandler#snapshotState} carries on exactly as the
+ * handler it was taken from, and refuses state written under other settings.
+ */
+public class TcaHandlerStateTest {
+
+    private static final List<TagData> NONE = Collections.emptyList();
+
+    @Test
+    public void restoredHandlerMatchesUninterruptedOnCorpus() throws Exception {
+        int restores = 0;
+        for (String file : ResourceUtils.listCorpusFiles()) {
+            List<RssiData> samples = ResourceUtils.loadRssiData(file);
+            for (int windowSize : new int[]{Setting.DEFAULT_TCA_WINDOW_SIZE, 40}) {
+                RssiHandler steady = HandlerFixtures.tca(windowSize, Setting.DEFAULT_TCA_HERE_METERS);
+                RssiHandler restarted = HandlerFixtures.tca(windowSize, Setting.DEFAULT_TCA_HERE_METERS);
+                TagStatus a = HandlerFixtures.newPass();
+                TagStatus b = HandlerFixtures.newPass();
+                for (int i = 0; i < samples.size(); i++) {
+                    if (i % 7 == 3) {
+                        // "service restart": a new handler resumes from the blob
+                        byte[] blob = restarted.snapshotState();
+                        Assert.assertNotNull(blob);
+                        restarted = HandlerFixtures.tca(windowSize, Setting.DEFAULT_TCA_HERE_METERS);
+                        Assert.assertTrue(restarted.restoreState(blob));
+                        restores++;
+                    }
+                    RssiData d = samples.get(i);
+                    a = steady.acceptSample(a, NONE, d);
+                    b = restarted.acceptSample(b, NONE, d);
+                    String where = file + " win=" + windowSize + " sample " + i;
+                    Assert.assertEquals(where, a.state, b.state);
+                    Assert.assertEquals(where, a.arrivedTimeMs, b.arrivedTimeMs);
+                    Assert.assertEquals(where, a.peakTimeMs, b.peakTimeMs);
+                    Assert.assertEquals(where, a.exitTimeMs, b.exitTimeMs);
+                    if (a.state == TagStatus.TagStatusState.LOGGED) {
+                        steady = HandlerFixtures.tca(windowSize, Setting.DEFAULT_TCA_HERE_METERS);
+                        restarted = HandlerFixtures.tca(windowSize, Setting.DEFAULT_TCA_HERE_METERS);
+                        a = HandlerFixtures.newPass();
+                        b = HandlerFixtures.newPass();
+                    }
+                }
+                // same state, same bytes
+                Assert.assertArrayEquals(file, steady.snapshotState(), restarted.snapshotState());
+            }
+        }
+        Assert.assertTrue(restores > 0);
+    }
+
+    @Test
+    public void rejectsStateFromOtherSettingsOrFormat() {
+        RssiHandler h = HandlerFixtures.tca(40, Setting.DEFAULT_TCA_HERE_METERS);
+        TagStatus s = HandlerFixtures.newPass();
+        long t = 1_761_170_366_833L;
+        for (int i = 0; i < 60; i++) s = h.acceptSample(s, NONE, new RssiData(1, t += 50, -80 + i / 4, -80));
+        byte[] blob = h.snapshotState();
+
+        Assert.assertFalse(HandlerFixtures.tca(12, Setting.DEFAULT_TCA_HERE_METERS).restoreState(blob));
+        Assert.assertFalse(HandlerFixtures.tca(40, Setting.DEFAULT_TCA_HERE_METERS + 1.0).restoreState(blob));
+        Assert.assertFalse(HandlerFixtures.tca(40, Setting.DEFAULT_TCA_HERE_METERS).restoreState(new byte[3]));
+
+        byte[] otherFormat = blob.clone();
+        otherFormat[0]++;
+        Assert.assertFalse(HandlerFixtures.tca(40, Setting.DEFAULT_TCA_HERE_METERS).restoreState(otherFormat));
+
+        byte[] truncated = java.util.Arrays.copyOf(blob, blob.length - 5);
+        RssiHandler fresh = HandlerFixtures.tca(40, Setting.DEFAULT_TCA_HERE_METERS);
+        Assert.assertFalse(fresh.restoreState(truncated));
+        Assert.assertArrayEquals(HandlerFixtures.tca(40, Setting.DEFAULT_TCA_HERE_METERS).snapshotState(), fresh.snapshotState());
+    }
+
+    @Test
+    public void blobIsCompact() {
+        RssiHandler h = HandlerFixtures.tca(40, Setting.DEFAULT_TCA_HERE_METERS);
+        TagStatus s = HandlerFixtures.newPass();
+        long t = 1_761_170_366_833L;
+        for (int i = 0; i < 500; i++) s = h.acceptSample(s, NONE, new RssiData(1, t += 50, -95, -95));
+        // 12 bytes per window point plus ~100 bytes of fixed state
+        Assert.assertTrue(h.snapshotState().length <= 40 * 12 + 128);
+    }
+}
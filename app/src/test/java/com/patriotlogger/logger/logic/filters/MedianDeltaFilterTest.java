@@ -0,0 +1,85 @@
+package com.patriotlogger.logger.logic.filters;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.test.OutlierDeltaFilter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * MedianDeltaFilter makes the same decisions as the sort-based OutlierDeltaFilter it replaces,
+ * but per tag, and recovers from a level shift instead of rejecting it forever.
+ */
+public class MedianDeltaFilterTest {
+
+    @Test
+    public void matchesOutlierDeltaFilterPerTag() {
+        final int tags = 5;
+        MedianDeltaFilter filter = new MedianDeltaFilter(5, 8);
+        OutlierDeltaFilter[] reference = new OutlierDeltaFilter[tags];
+        for (int t = 0; t < tags; t++) reference[t] = new OutlierDeltaFilter(5, 8);
+
+        Random rnd = new Random(3);
+        int rejected = 0;
+        for (int n = 0; n < 20_000; n++) {
+            int tagId = rnd.nextInt(tags);
+            int base = -80 + 4 * tagId; // each tag has its own level
+            // occasional spikes, never enough in a row to count as a level shift
+            int rssi = (n % 11 == 0) ? base + 25 : base - 3 + rnd.nextInt(7);
+            boolean expected = reference[tagId].shouldAccept(rssi);
+            Assert.assertEquals("sample " + n, expected, filter.shouldAccept(tagId, n, rssi));
+            if (!expected) rejected++;
+        }
+        Assert.assertTrue(rejected > 0);
+    }
+
+    @Test
+    public void levelShiftReseedsAfterWindowRejections() {
+        MedianDeltaFilter filter = new MedianDeltaFilter(4, 6);
+        for (int i = 0; i < 4; i++) Assert.assertTrue(filter.shouldAccept(7, i, -80));
+        // the tag moved much closer: three rejections, then the fourth reseeds
+        Assert.assertFalse(filter.shouldAccept(7, 10, -50));
+        Assert.assertFalse(filter.shouldAccept(7, 11, -51));
+        Assert.assertFalse(filter.shouldAccept(7, 12, -49));
+        Assert.assertTrue(filter.shouldAccept(7, 13, -50));
+        // the other tags are untouched
+        Assert.assertTrue(filter.shouldAccept(3, 14, -50));
+    }
+
+    @Test
+    public void resetForgetsOneTag() {
+        MedianDeltaFilter filter = new MedianDeltaFilter(3, 5);
+        for (int i = 0; i < 3; i++) {
+            filter.shouldAccept(1, i, -80);
+            filter.shouldAccept(200, i, -80); // grows the per-tag arrays
+        }
+        Assert.assertFalse(filter.shouldAccept(1, 5, -40));
+        Assert.assertFalse(filter.shouldAccept(200, 5, -40));
+
+        RssiFilterChain.of(java.util.Collections.singletonList(filter)).reset(1);
+        Assert.assertTrue(filter.shouldAccept(1, 6, -40));
+        Assert.assertFalse(filter.shouldAccept(200, 6, -40));
+    }
+
+    @Test
+    public void builtFromSettings() {
+        Setting s = new Setting();
+        Assert.assertEquals(0, FilterFactory.buildChain(s, null).stageCount());
+        Assert.assertEquals(0, FilterFactory.buildChain(PipelineConfig.next(null, s)).stageCount());
+
+        s.filter_median_window = 5;
+        s.filter_median_max_delta_db = 6;
+        RssiFilterChain chain = FilterFactory.buildChain(PipelineConfig.next(null, s));
+        Assert.assertEquals(1, chain.stageCount());
+        Assert.assertEquals(1, FilterFactory.buildChain(s, FilterFactory.FiltersConfig.defaults()).stageCount());
+
+        // range from Setting still applies ahead of the median stage
+        Assert.assertFalse(chain.shouldAccept(1, 0L, Setting.DEFAULT_FILTER_MIN_RSSI - 1));
+        for (int i = 0; i < 5; i++) Assert.assertTrue(chain.shouldAccept(1, i, -70));
+        Assert.assertFalse(chain.shouldAccept(1, 9L, -60));
+        Assert.assertTrue(chain.shouldAccept(1, 9L, -65));
+    }
+}
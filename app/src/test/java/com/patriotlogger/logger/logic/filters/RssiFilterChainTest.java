@@ -0,0 +1,74 @@
+package com.patriotlogger.logger.logic.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A fused chain accepts exactly what running its filters one by one would, and stateful
+ * stages see the same samples.
+ */
+public class RssiFilterChainTest {
+
+    /** Accepts every other sample it sees and counts them, so it notices being fed differently. */
+    private static final class Alternating implements RssiFilter {
+        int seen = 0;
+        @Override public boolean shouldAccept(long timestampMs, int rssi) {
+            return (seen++ & 1) == 0;
+        }
+    }
+
+    @Test
+    public void matchesSequentialEvaluation() {
+        Alternating a1 = new Alternating(), a2 = new Alternating();
+        Alternating b1 = new Alternating(), b2 = new Alternating();
+        List<RssiFilter> sequential = Arrays.asList(
+                new MinMaxRssiFilter(-105, -25), new MinMaxRssiFilter(-95, -30), a1,
+                new MinMaxRssiFilter(-90, -20), new MinMaxRssiFilter(-110, -40), b1);
+        RssiFilterChain chain = RssiFilterChain.of(Arrays.asList(
+                new MinMaxRssiFilter(-105, -25), new MinMaxRssiFilter(-95, -30), a2,
+                new MinMaxRssiFilter(-90, -20), new MinMaxRssiFilter(-110, -40), b2));
+        Assert.assertEquals(3, chain.stageCount()); // inlined range, a, fused range, b
+
+        Random rnd = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            int rssi = -120 + rnd.nextInt(110);
+            boolean expected = true;
+            for (RssiFilter f : sequential) {
+                if (!f.shouldAccept(i, rssi)) { expected = false; break; }
+            }
+            Assert.assertEquals("rssi " + rssi, expected, chain.shouldAccept(1, i, rssi));
+        }
+        Assert.assertEquals(a1.seen, a2.seen);
+        Assert.assertEquals(b1.seen, b2.seen);
+    }
+
+    @Test
+    public void rangeOnlyChainIsOneInlinedCheck() {
+        RssiFilterChain chain = RssiFilterChain.of(Arrays.asList(
+                new MinMaxRssiFilter(-105, -25), new MinMaxRssiFilter(-100, -35)));
+        Assert.assertEquals(0, chain.stageCount());
+        Assert.assertTrue(chain.shouldAccept(1, 0L, -100));
+        Assert.assertTrue(chain.shouldAccept(1, 0L, -35));
+        Assert.assertFalse(chain.shouldAccept(1, 0L, -101));
+        Assert.assertFalse(chain.shouldAccept(1, 0L, -34));
+    }
+
+    @Test
+    public void emptyChainAcceptsAllAndChainIsImmutable() {
+        Assert.assertTrue(RssiFilterChain.of(Collections.<RssiFilter>emptyList()).shouldAccept(1, 0L, 10));
+        Assert.assertTrue(RssiFilterChain.ACCEPT_ALL.shouldAccept(1, 0L, Integer.MIN_VALUE));
+
+        List<RssiFilter> source = new ArrayList<>();
+        source.add(new MinMaxRssiFilter(-80, -40));
+        RssiFilterChain chain = RssiFilterChain.of(source);
+        source.clear();
+        source.add(new MinMaxRssiFilter(-200, 0));
+        Assert.assertFalse(chain.shouldAccept(1, 0L, -90));
+    }
+}
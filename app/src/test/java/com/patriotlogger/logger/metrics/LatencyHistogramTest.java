@@ -0,0 +1,118 @@
+package com.patriotlogger.logger.metrics;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndTight() {
+        long prevHigh = -1L;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long high = LatencyHistogram.highestValueAt(i);
+            Assert.assertEquals("bucket " + i + " starts right after the previous one", i, LatencyHistogram.indexFor(prevHigh + 1));
+            Assert.assertEquals(i, LatencyHistogram.indexFor(high));
+            long low = prevHigh + 1;
+            Assert.assertTrue("bucket " + i + " too wide", (high - low) <= Math.max(0L, low / 32));
+            prevHigh = high;
+        }
+        Assert.assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, prevHigh);
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        Random rnd = new Random(42);
+        LatencyHistogram h = new LatencyHistogram();
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform from 1us to 10s, the range the pipeline actually sees
+            values[i] = (long) Math.pow(10, 3 + rnd.nextDouble() * 7);
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot s = h.snapshot();
+        Assert.assertEquals(values.length, s.getCount());
+        Assert.assertEquals(values[values.length - 1], s.getMaxNanos());
+        for (double p : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(p / 100.0 * values.length) - 1];
+            long approx = s.percentileNanos(p);
+            Assert.assertTrue(p + ": " + approx + " vs " + exact, approx >= exact);
+            Assert.assertTrue(p + ": " + approx + " vs " + exact, approx <= exact + exact / 32 + 1);
+        }
+        double mean = Arrays.stream(values).average().orElse(0);
+        Assert.assertEquals(mean, s.getMeanNanos(), 1e-9 * mean);
+    }
+
+    @Test
+    public void weightedRecordMatchesRepeatedRecords() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        for (int i = 0; i < 37; i++) a.record(12_345L);
+        a.record(900L);
+        b.record(12_345L, 37);
+        b.record(900L, 1);
+        b.record(5L, 0);
+        LatencyHistogram.Snapshot sa = a.snapshot();
+        LatencyHistogram.Snapshot sb = b.snapshot();
+        Assert.assertEquals(sa.getCount(), sb.getCount());
+        Assert.assertEquals(sa.getMeanNanos(), sb.getMeanNanos(), 0.0);
+        Assert.assertEquals(sa.getMaxNanos(), sb.getMaxNanos());
+        Assert.assertEquals(sa.percentileNanos(1), sb.percentileNanos(1));
+        Assert.assertEquals(sa.percentileNanos(50), sb.percentileNanos(50));
+    }
+
+    @Test
+    public void clampsOutOfRangeValues() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5L);
+        h.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot s = h.snapshot();
+        Assert.assertEquals(2, s.getCount());
+        Assert.assertEquals(0L, s.percentileNanos(50));
+        Assert.assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, s.getMaxNanos());
+        Assert.assertEquals(0L, new LatencyHistogram().snapshot().percentileNanos(99));
+    }
+
+    @Test
+    public void concurrentRecordersLoseNothing() throws Exception {
+        final LatencyHistogram h = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long v = 1_000L * (t + 1);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 250_000; i++) h.record(v);
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        LatencyHistogram.Snapshot s = h.snapshot();
+        Assert.assertEquals(1_000_000L, s.getCount());
+        Assert.assertEquals(4_000L, s.getMaxNanos());
+        Assert.assertEquals(2_500.0, s.getMeanNanos(), 1e-9);
+
+        h.reset();
+        Assert.assertEquals(0L, h.snapshot().getCount());
+    }
+
+    @Test
+    public void recordDoesNotAllocate() {
+        java.lang.management.ThreadMXBean std = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(std instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) std;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        PipelineMetrics m = PipelineMetrics.get();
+        for (int i = 0; i < 20_000; i++) m.record(PipelineMetrics.Stage.HANDLER, i); // warm up / JIT
+
+        long tid = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 100_000; i++) m.record(PipelineMetrics.Stage.HANDLER, i * 37L);
+        long allocated = bean.getThreadAllocatedBytes(tid) - before;
+        Assert.assertTrue("allocated " + allocated + " bytes", allocated < 16 * 1024);
+    }
+}
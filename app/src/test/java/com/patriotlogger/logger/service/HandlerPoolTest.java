@@ -0,0 +1,125 @@
+package com.patriotlogger.logger.service;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TrackSampleBuffer;
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.logic.RssiData;
+import com.patriotlogger.logger.logic.RssiHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class HandlerPoolTest {
+
+    private final PipelineConfig v1 = PipelineConfig.defaults();
+    private final PipelineConfig v2 = PipelineConfig.next(v1, hereMeters(Setting.DEFAULT_TCA_HERE_METERS + 1.0));
+
+    @Test
+    public void recycledHandlersAreResetAndReused() {
+        HandlerPool pool = new HandlerPool(4);
+        RssiHandler a = pool.acquire(v1);
+        RssiHandler b = pool.acquire(v1);
+        Assert.assertEquals(2, pool.misses());
+
+        sample(a, 1_000L, -60);
+        pool.recycle(a, v1.handlerVersion);
+        RssiHandler fresh = v1.newTcaHandler();
+        sample(a, 5_000L, -70);
+        sample(fresh, 5_000L, -70);
+        Assert.assertArrayEquals("reset on recycle", fresh.snapshotState(), a.snapshotState());
+        a.init();
+        Assert.assertSame(a, pool.acquire(v1));
+        Assert.assertEquals(1, pool.hits());
+        Assert.assertEquals(2, pool.misses());
+
+        pool.recycle(b, v1.handlerVersion);
+        pool.recycle(null, v1.handlerVersion);
+        Assert.assertEquals(1, pool.idleCount());
+    }
+
+    @Test
+    public void configChangeRetiresOnlyOutdatedHandlers() {
+        HandlerPool pool = new HandlerPool(4);
+        RssiHandler inFlight = pool.acquire(v1);
+        pool.recycle(pool.acquire(v1), v1.handlerVersion);
+        pool.recycle(pool.acquire(v1), v1.handlerVersion); // the same idle one again
+        Assert.assertEquals(1, pool.idleCount());
+
+        // settings changed: the idle one is retired on first use of the new version
+        RssiHandler fresh = pool.acquire(v2);
+        Assert.assertNotSame(inFlight, fresh);
+        Assert.assertEquals(0, pool.idleCount());
+        Assert.assertEquals(1, pool.retired());
+
+        // a handler built under the old settings is not pooled when its pass ends
+        pool.recycle(inFlight, v1.handlerVersion);
+        Assert.assertEquals(2, pool.retired());
+        Assert.assertEquals(0, pool.idleCount());
+
+        pool.recycle(fresh, v2.handlerVersion);
+        Assert.assertSame(fresh, pool.acquire(v2));
+    }
+
+    @Test
+    public void idleSetIsBounded() {
+        HandlerPool pool = new HandlerPool(2);
+        RssiHandler[] hs = new RssiHandler[4];
+        for (int i = 0; i < hs.length; i++) hs[i] = pool.acquire(v1);
+        for (RssiHandler h : hs) pool.recycle(h, v1.handlerVersion);
+        Assert.assertEquals(2, pool.idleCount());
+        Assert.assertEquals(2, pool.retired());
+    }
+
+    @Test
+    public void lanesHandHandlersBackBetweenPasses() {
+        TagLaneTable table = new TagLaneTable(16);
+        TagLane lane = table.laneFor(3);
+        lane.bind(pass(3, 100), new TrackSampleBuffer(100, 8), 0);
+        Assert.assertTrue(lane.ensureHandler(v1));
+        Assert.assertFalse("same pass, same settings: keep it", lane.ensureHandler(v1));
+        RssiHandler first = lane.handler;
+
+        lane.release();
+        Assert.assertNull(lane.handler);
+        Assert.assertEquals(1, table.pool.idleCount());
+
+        // next pass on another tag of the same shard picks it up
+        TagLane other = table.laneFor(5);
+        other.bind(pass(5, 101), new TrackSampleBuffer(101, 8), 0);
+        Assert.assertTrue(other.ensureHandler(v1));
+        Assert.assertSame(first, other.handler);
+        Assert.assertEquals(1, table.pool.hits());
+
+        // settings change mid-pass: rebuilt, the old one retired
+        Assert.assertTrue(other.ensureHandler(v2));
+        Assert.assertNotSame(first, other.handler);
+        Assert.assertEquals(1, table.pool.retired());
+
+        // a new pass on the same lane recycles the previous pass's handler
+        RssiHandler second = other.handler;
+        other.bind(pass(5, 102), new TrackSampleBuffer(102, 8), 0);
+        Assert.assertNull(other.handler);
+        Assert.assertTrue(other.ensureHandler(v2));
+        Assert.assertSame(second, other.handler);
+    }
+
+    private static TagStatus pass(int tagId, int trackId) {
+        TagStatus s = new TagStatus();
+        s.tagId = tagId;
+        s.trackId = trackId;
+        return s;
+    }
+
+    private static void sample(RssiHandler h, long tMs, int rssi) {
+        h.acceptSample(pass(1, 1), new ArrayList<>(), new RssiData(1, tMs, rssi, rssi));
+    }
+
+    private static Setting hereMeters(double meters) {
+        Setting s = new Setting();
+        s.tca_here_meters = meters;
+        return s;
+    }
+}
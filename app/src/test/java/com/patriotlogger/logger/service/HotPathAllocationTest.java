@@ -0,0 +1,137 @@
+package com.patriotlogger.logger.service;
+
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TrackSampleBuffer;
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.logic.RssiData;
+import com.patriotlogger.logger.logic.RssiHandler;
+import com.patriotlogger.logger.logic.SampleClock;
+import com.patriotlogger.logger.logic.ScanSampleRing;
+import com.patriotlogger.logger.logic.filters.MedianDeltaFilter;
+import com.patriotlogger.logger.logic.filters.MinMaxRssiFilter;
+import com.patriotlogger.logger.logic.filters.RssiFilterChain;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drives samples through {@link ScanPipeline}, the code BleScannerService runs per
+ * advertisement (ring drain, stamping, filters, coalescer, smoothing, lane and pass lookup,
+ * handler, sample buffer append, coalesced status write), and checks with the JVM's
+ * per-thread allocation counter that steady state allocates a bounded amount no matter how
+ * many samples go through. The Repository is stood in for by {@link InMemoryPassStore}.
+ */
+public class HotPathAllocationTest {
+
+    private static final int TAGS = 40;
+    private static final int WARMUP_SAMPLES = 20_000;
+    private static final int SAMPLES = 100_000;
+    private static final int FLUSH_EVERY = 2_000;
+    private static final long START_MS = 1_700_000_000_000L;
+
+    // a few KB covers the counter call itself and any one-off JIT/class-init noise
+    private static final long MAX_STEADY_STATE_BYTES = 16 * 1024;
+
+    /** Handler with no internal allocation, so the measurement isolates the pipeline. */
+    private static final class LastSeenHandler implements RssiHandler {
+        @Override public void init() {}
+        @Override public TagStatus acceptSample(TagStatus currentStatus, List<TagData> history, RssiData sample) {
+            currentStatus.lastSeenMs = sample.timestampMs;
+            return currentStatus;
+        }
+    }
+
+    private final InMemoryPassStore store = new InMemoryPassStore();
+    private final PipelineConfig config = PipelineConfig.defaults();
+    private final ScanSampleRing ring = new ScanSampleRing(1024, ScanSampleRing.OverflowPolicy.DROP_OLDEST_PER_TAG, 16);
+    private final TagLaneTable lanes = new TagLaneTable(16);
+    private long elapsedNs = 0L;
+    private final ScanPipeline pipeline = new ScanPipeline(store,
+            new SampleClock(new SampleClock.TimeSource() {
+                @Override public long wallMs() { return START_MS + elapsedNs / 1_000_000L; }
+                @Override public long elapsedNs() { return elapsedNs; }
+            }),
+            () -> config, line -> { }, false);
+
+    private volatile boolean flushRequested = false;
+    private volatile boolean stop = false;
+    private volatile int flushedRows = 0;
+
+    @Test
+    public void steadyStateSamplesAllocateConstantBytes() throws Exception {
+        java.lang.management.ThreadMXBean std = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(std instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) std;
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        lanes.filters = RssiFilterChain.of(Arrays.asList(
+                new MinMaxRssiFilter(-105, -25), new MedianDeltaFilter(5, 8)));
+        for (int tagId = 1; tagId <= TAGS; tagId++) {
+            // pass bound and handler for the current settings in place, as after a pass's first sample
+            TagLane lane = lanes.laneFor(tagId);
+            TagStatus pass = store.getOrCreateActiveStatus(tagId, START_MS);
+            lane.bind(pass, store.sampleBufferFor(pass.trackId), store.getDataGeneration());
+            lane.handler = new LastSeenHandler();
+            lane.handlerVersion = config.handlerVersion;
+            lane.handlerTrackId = pass.trackId;
+        }
+
+        // stands in for the Repository's periodic flush, which runs on its own thread
+        Thread flusher = new Thread(() -> {
+            while (!stop) {
+                if (flushRequested) {
+                    for (TrackSampleBuffer b : store.buffers.values()) b.drain();
+                    flushedRows += store.statusWrites.drain().size();
+                    flushRequested = false;
+                }
+                Thread.yield();
+            }
+        }, "flusher");
+        flusher.start();
+
+        try {
+            runSamples(0, WARMUP_SAMPLES);
+
+            final long tid = Thread.currentThread().getId();
+            final long before = mx.getThreadAllocatedBytes(tid);
+            runSamples(WARMUP_SAMPLES, SAMPLES);
+            final long allocated = mx.getThreadAllocatedBytes(tid) - before;
+
+            Assert.assertEquals(TAGS, store.passes.size());
+            Assert.assertTrue("status rows flushed", flushedRows > 0);
+            Assert.assertTrue("allocated " + allocated + " bytes for " + SAMPLES + " samples",
+                    allocated < MAX_STEADY_STATE_BYTES);
+        } finally {
+            stop = true;
+            flusher.join();
+        }
+    }
+
+    private void runSamples(int from, int count) {
+        for (int n = from; n < from + count; n++) {
+            final int tagId = 1 + (n % TAGS);
+            elapsedNs = n * 10_000_000L;
+            final int rssi = -90 + (n % 50);
+
+            // scan callback side
+            if (!ring.offer(tagId, rssi, elapsedNs, elapsedNs)) Assert.fail("ring full");
+            ring.requestDrain();
+
+            // worker side
+            ring.beginDrain();
+            pipeline.drain(ring, lanes);
+
+            if (n % FLUSH_EVERY == FLUSH_EVERY - 1) {
+                flushRequested = true;
+                while (flushRequested) Thread.yield();
+            }
+        }
+    }
+}
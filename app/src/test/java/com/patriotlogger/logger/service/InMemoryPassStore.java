@@ -0,0 +1,87 @@
+package com.patriotlogger.logger.service;
+
+import androidx.annotation.NonNull;
+
+import com.patriotlogger.logger.data.ActivePassRegistry;
+import com.patriotlogger.logger.data.StatusWriteStats;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TagStatusWriteBehind;
+import com.patriotlogger.logger.data.TrackSampleBuffer;
+import com.patriotlogger.logger.logic.RssiData;
+
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Repository's in-memory side for {@link ScanPipeline} tests: open passes, per-track sample
+ * buffers and the TagStatus write-behind. State changes are written through (kept in
+ * {@link #written}), everything else is coalesced, as the Repository does.
+ */
+final class InMemoryPassStore implements ScanPipeline.PassStore {
+
+    final ActivePassRegistry passes = new ActivePassRegistry();
+    final TagStatusWriteBehind statusWrites = new TagStatusWriteBehind(passes, new StatusWriteStats());
+    final Map<Integer, TrackSampleBuffer> buffers = new ConcurrentHashMap<>();
+    final List<TagStatus> written = Collections.synchronizedList(new ArrayList<>());
+
+    private int nextTrackId = 1000;
+
+    @Override public boolean isSavingEnabled() { return true; }
+    @Override public void appendCalibrationSample(@NonNull RssiData sample) { Assert.fail("not calibrating"); }
+    @Override public int getDataGeneration() { return 0; }
+
+    @NonNull
+    @Override
+    public TagStatus getOrCreateActiveStatus(int tagId, long sampleTimeMs) {
+        TagStatus ts = passes.get(tagId);
+        if (ts == null) {
+            ts = new TagStatus();
+            ts.tagId = tagId;
+            ts.trackId = ++nextTrackId;
+            ts.entryTimeMs = sampleTimeMs;
+            ts.lastSeenMs = sampleTimeMs;
+            ts.state = TagStatus.TagStatusState.APPROACHING;
+            ts.writtenState = ts.state;
+            passes.put(ts);
+        }
+        return ts;
+    }
+
+    @NonNull
+    @Override
+    public TrackSampleBuffer sampleBufferFor(int trackId) {
+        return buffers.computeIfAbsent(trackId, id -> new TrackSampleBuffer(id, 64));
+    }
+
+    @NonNull @Override public List<TagData> getHistoryWindowView(int trackId) { return Collections.emptyList(); }
+    @Override public void appendInMemoryTagData(@NonNull TagData tagData, boolean retainInHistory) { Assert.fail("no history"); }
+
+    @Override
+    public void upsertTagStatus(@NonNull TagStatus status, boolean deleteSamples) {
+        if (status.state == status.writtenState) statusWrites.markDirty(status);
+        else written.add(statusWrites.prepareImmediateWrite(status));
+    }
+
+    @Override
+    public void stageHandlerState(@NonNull TagStatus pass, @NonNull byte[] handlerState) {
+        statusWrites.stageHandlerState(pass, handlerState);
+    }
+
+    /** The track's pass while it is open, else the last row written for it. */
+    TagStatus rowFor(int tagId, int trackId) {
+        TagStatus open = passes.get(tagId);
+        if (open != null && open.trackId == trackId) return open.copy();
+        synchronized (written) {
+            for (int i = written.size() - 1; i >= 0; i--) {
+                if (written.get(i).trackId == trackId) return written.get(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,124 @@
+package com.patriotlogger.logger.service;
+
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.logic.BurstCoalescer;
+import com.patriotlogger.logger.logic.PipelineConfig;
+import com.patriotlogger.logger.logic.SampleClock;
+import com.patriotlogger.logger.logic.ScanSampleRing;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tag routing across shards, and the handover of open passes when the shard count changes or
+ * the service quiesces: a pass split across an old and a new shard ends the same as one
+ * processed on a single shard, and nothing waiting in a coalescer bucket is left behind.
+ */
+public class ScanShardHandoffTest {
+
+    private static final int TAG = 17;
+    private static final long STEP_MS = 100L;
+    private static final int SAMPLES = 600;          // one minute, closest approach at 30 s
+    private static final int HANDOFF_AT = 290;       // reshard just before the peak, mid-fit
+
+    private final PipelineConfig config = PipelineConfig.defaults();
+    private final ScanSampleRing ring = new ScanSampleRing(64, ScanSampleRing.OverflowPolicy.DROP_OLDEST_PER_TAG, 16);
+
+    @Test
+    public void everyTagHasExactlyOneOwningShard() {
+        for (int shards = 1; shards <= 8; shards++) {
+            for (int tagId = -3; tagId < 200; tagId++) {
+                final int index = ScanShard.indexFor(tagId, shards);
+                Assert.assertTrue(index >= 0 && index < shards);
+                Assert.assertEquals("stable", index, ScanShard.indexFor(tagId, shards));
+            }
+        }
+        Assert.assertEquals(0, ScanShard.indexFor(TAG, 1));
+        Assert.assertEquals(TAG % 4, ScanShard.indexFor(TAG, 4));
+    }
+
+    @Test
+    public void reshardResumesOpenPassFromHandedOverState() {
+        InMemoryPassStore single = new InMemoryPassStore();
+        ScanPipeline p1 = pipeline(single);
+        TagLaneTable only = new TagLaneTable(16);
+        feed(p1, only, 0, SAMPLES);
+
+        InMemoryPassStore split = new InMemoryPassStore();
+        ScanPipeline p2 = pipeline(split);
+        TagLaneTable before = new TagLaneTable(16);
+        feed(p2, before, 0, HANDOFF_AT);
+        p2.handOff(before);
+
+        TagStatus open = split.passes.get(TAG);
+        Assert.assertNotNull("pass still open at the handoff", open);
+        Assert.assertNotNull("handler state put on the pass", open.handlerState);
+
+        TagLaneTable after = new TagLaneTable(16);
+        feed(p2, after, HANDOFF_AT, HANDOFF_AT + 1);
+        Assert.assertEquals("new shard resumed the same pass", open.trackId, after.laneFor(TAG).handlerTrackId);
+        feed(p2, after, HANDOFF_AT + 1, SAMPLES);
+
+        TagStatus expected = single.rowFor(TAG, open.trackId);
+        TagStatus actual = split.rowFor(TAG, open.trackId);
+        Assert.assertEquals(expected.state, actual.state);
+        Assert.assertEquals(expected.peakTimeMs, actual.peakTimeMs);
+        Assert.assertEquals(expected.arrivedTimeMs, actual.arrivedTimeMs);
+        Assert.assertEquals(expected.exitTimeMs, actual.exitTimeMs);
+        Assert.assertTrue("the pass peaked", expected.peakTimeMs > 0L);
+    }
+
+    @Test
+    public void quiesceWritesTheOpenCoalescerBucket() {
+        InMemoryPassStore store = new InMemoryPassStore();
+        ScanPipeline pipeline = pipeline(store);
+        TagLaneTable lanes = new TagLaneTable(16);
+        lanes.coalescer.configure(50, BurstCoalescer.Mode.MAX, lanes, pipeline.coalescedSample);
+
+        // one burst, all inside the tag's first bucket
+        final int[] burst = {-72, -65, -70};
+        for (int k = 0; k < burst.length; k++) {
+            final long radioNs = (1_000L + 10L * k) * 1_000_000L;
+            Assert.assertTrue(ring.offer(TAG, burst[k], radioNs, radioNs));
+        }
+        ring.requestDrain();
+        ring.beginDrain();
+        pipeline.drain(ring, lanes);
+        pipeline.persistHandlerStates(lanes);
+        Assert.assertNull("still waiting in the bucket", store.passes.get(TAG));
+
+        pipeline.handOff(lanes);
+        TagStatus pass = store.passes.get(TAG);
+        Assert.assertNotNull("the bucket's sample opened the pass", pass);
+        List<TagData> rows = store.sampleBufferFor(pass.trackId).copyRows();
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals(-65, rows.get(0).rssi);
+        Assert.assertEquals(0, lanes.coalescer.pending());
+    }
+
+    private ScanPipeline pipeline(InMemoryPassStore store) {
+        SampleClock clock = new SampleClock(new SampleClock.TimeSource() {
+            @Override public long wallMs() { return 1_700_000_000_000L; }
+            @Override public long elapsedNs() { return 0L; }
+        });
+        return new ScanPipeline(store, clock, () -> config, line -> { }, false);
+    }
+
+    /** A tag passing 2 m from the antenna at 3 m/s, with a little deterministic jitter. */
+    private void feed(ScanPipeline pipeline, TagLaneTable lanes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final double t = (i - SAMPLES / 2) * STEP_MS / 1000.0;
+            final double meters = Math.sqrt(4.0 + 9.0 * t * t);
+            final int rssi = (int) Math.round(config.txAt1mDbm - 10.0 * config.pathLossN * Math.log10(meters))
+                    + ((i * 7) % 5) - 2;
+            final long radioNs = (i + 1) * STEP_MS * 1_000_000L;
+            Assert.assertTrue(ring.offer(TAG, rssi, radioNs, radioNs));
+            ring.requestDrain();
+            ring.beginDrain();
+            pipeline.drain(ring, lanes);
+        }
+    }
+}
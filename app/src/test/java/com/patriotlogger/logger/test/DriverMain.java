@@ -4,6 +4,7 @@ import com.patriotlogger.logger.data.TagData;
 import com.patriotlogger.logger.data.TagStatus;
 import com.patriotlogger.logger.data.TagStatus.TagStatusState;
 import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.logic.KalmanTrackerHandler;
 import com.patriotlogger.logger.logic.RssiData;
 import com.patriotlogger.logger.logic.RssiHandler;
 import com.patriotlogger.logger.logic.TagPeakFinder;
@@ -35,6 +36,9 @@ import java.util.*;
  *
  * Peak is computed ONLY up to that handler's LOGGED timestamp; if LOGGED missing => PEAK missing.
  * Samples are pre-filtered (range + optional stateful filters) before hitting handlers.
+ *
+ * Ends with a side-by-side table per handler: files logged, detection latency (LOGGED minus
+ * the whole-file reference peak), error of the handler's own peak, and CPU cost per sample.
  */
 public class DriverMain {
 
@@ -46,6 +50,9 @@ public class DriverMain {
             "ema", "median", "filtered", "filter", "estimate", "est", "smoothed", "value", "stateRssi", "x", "xhat"
     };
 
+    private static final int TIMING_WARMUP_ROUNDS = 100;
+    private static final int TIMING_ROUNDS = 100;
+
     @Test
     public void runDriver() throws Exception {
         main(new String[]{});
@@ -75,6 +82,10 @@ public class DriverMain {
         //handlers.add(new TcaWithFallbackHandler(0.30f, -70.0, 2.0, 3.5, 2.0, 40, 6, 12.0));
         //handlers.add(new TcaWithFallbackHandler(0.30f, -70.0, 2.0, 4.5, 2.5, 40, 6, 12.0));
 
+        // Same geometry as the TCA above, tracked by the constant-time Kalman filter
+        handlers.add(new KalmanTrackerHandler(-70.0, 2.0, 4.0, 1.5, 6, 12.0,
+                KalmanTrackerHandler.DEFAULT_PROCESS_NOISE, KalmanTrackerHandler.DEFAULT_MEASUREMENT_NOISE_DB));
+
         // ---------- Filters (ingest) ----------
         List<RssiFilter> filters = Arrays.asList(
                 new MinMaxRssiFilter(-115, -35)
@@ -87,10 +98,18 @@ public class DriverMain {
             return;
         }
 
+        Map<String, Summary> summaries = new LinkedHashMap<>();
+        for (RssiHandler h : handlers) summaries.put(h.getName(), new Summary());
+        List<List<RssiData>> allSamples = new ArrayList<>();
+
         for (String resPath : resourceFiles) {
             final String sampleFile = resPath.substring(resPath.lastIndexOf('/') + 1);
             List<RssiData> raw = readSamplesFromResource(resPath);
             List<RssiData> samples = applyFilters(raw, filters);
+            allSamples.add(samples);
+
+            // Whole-file peak, the reference detection latency is measured against
+            Long refPeakTs = parseLongOrNull(detectPeakTs(samples));
 
             // Raw filtered series for plotting (blue circles)
             Map<Long, Integer> tsToRssi = new HashMap<>(Math.max(16, samples.size() * 2));
@@ -176,6 +195,8 @@ public class DriverMain {
 
                 algoStates.put(h.getName(), states);
                 algoLines.put(h.getName(), line);
+
+                summaries.get(h.getName()).addFile(refPeakTs, loggedTs, status.peakTimeMs);
             }
 
             // Write JSON
@@ -190,9 +211,86 @@ public class DriverMain {
             System.out.println("Wrote " + out.toAbsolutePath());
         }
 
+        measureCost(handlers, allSamples, summaries);
+        printSummary(summaries);
+
         System.out.println("Done. Plot with plot_results_lines.py");
     }
 
+    // ---------- Side-by-side summary ----------
+    private static final class Summary {
+        int files, logged, peaks;
+        long sumLatencyMs, sumAbsPeakErrMs;
+        double nsPerSample = Double.NaN;
+        long footprintBytes;
+
+        void addFile(Long refPeakTs, Long loggedTs, long handlerPeakTs) {
+            files++;
+            if (loggedTs == null) return;
+            logged++;
+            if (refPeakTs == null) return;
+            peaks++;
+            sumLatencyMs += loggedTs - refPeakTs;
+            sumAbsPeakErrMs += Math.abs((handlerPeakTs != 0L ? handlerPeakTs : loggedTs) - refPeakTs);
+        }
+    }
+
+    /**
+     * CPU cost per sample of each handler alone: no reflection, JSON or history for handlers
+     * that don't read it. Every handler is warmed up first, then rounds alternate between
+     * handlers so drift in machine load hits all of them equally.
+     */
+    private static void measureCost(List<RssiHandler> handlers, List<List<RssiData>> corpus,
+                                    Map<String, Summary> summaries) {
+        long samples = 0;
+        for (List<RssiData> f : corpus) samples += f.size();
+        if (samples == 0) return;
+
+        for (int r = 0; r < TIMING_WARMUP_ROUNDS; r++) {
+            for (RssiHandler h : handlers) replay(h, corpus);
+        }
+        long[] nanos = new long[handlers.size()];
+        for (int r = 0; r < TIMING_ROUNDS; r++) {
+            for (int i = 0; i < handlers.size(); i++) {
+                long t0 = System.nanoTime();
+                replay(handlers.get(i), corpus);
+                nanos[i] += System.nanoTime() - t0;
+            }
+        }
+        for (int i = 0; i < handlers.size(); i++) {
+            Summary s = summaries.get(handlers.get(i).getName());
+            s.nsPerSample = (double) nanos[i] / ((double) TIMING_ROUNDS * samples);
+            s.footprintBytes = handlers.get(i).estimatedFootprintBytes();
+        }
+    }
+
+    private static void replay(RssiHandler h, List<List<RssiData>> corpus) {
+        for (List<RssiData> samples : corpus) {
+            h.init();
+            TagStatus status = new TagStatus();
+            status.trackId = 1;
+            List<TagData> history = h.needsHistory() ? new ArrayList<>(samples.size()) : Collections.emptyList();
+            for (RssiData s : samples) {
+                status = h.acceptSample(status, history, s);
+                if (h.needsHistory()) history.add(new TagData(status.trackId, s.timestampMs, s.rssi));
+            }
+        }
+    }
+
+    private static void printSummary(Map<String, Summary> summaries) {
+        System.out.println(String.format(Locale.US, "%-8s %-14s %-14s %-12s %-10s %s",
+                "logged", "latency(ms)", "|peak err|(ms)", "ns/sample", "bytes", "handler"));
+        for (Map.Entry<String, Summary> e : summaries.entrySet()) {
+            Summary s = e.getValue();
+            System.out.println(String.format(Locale.US, "%-8s %-14s %-14s %-12s %-10d %s",
+                    s.logged + "/" + s.files,
+                    s.peaks > 0 ? String.format(Locale.US, "%.0f", (double) s.sumLatencyMs / s.peaks) : "X",
+                    s.peaks > 0 ? String.format(Locale.US, "%.0f", (double) s.sumAbsPeakErrMs / s.peaks) : "X",
+                    Double.isNaN(s.nsPerSample) ? "X" : String.format(Locale.US, "%.0f", s.nsPerSample),
+                    s.footprintBytes, e.getKey()));
+        }
+    }
+
     // ---------- Reflection probe for handler's current filtered value ----------
     private static Double reflectCurrentValue(Object handler) {
         Class<?> c = handler.getClass();
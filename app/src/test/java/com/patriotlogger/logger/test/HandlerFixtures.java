@@ -0,0 +1,37 @@
+package com.patriotlogger.logger.test;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.logic.TcaWithFallbackHandler;
+
+/**
+ * Handlers and passes as the tests share them: the app's default settings, with only the
+ * value a test is about varied.
+ */
+public final class HandlerFixtures {
+
+    private HandlerFixtures() {}
+
+    /** TCA handler with the default settings. */
+    public static TcaWithFallbackHandler tca() {
+        return tca(Setting.DEFAULT_TCA_WINDOW_SIZE);
+    }
+
+    public static TcaWithFallbackHandler tca(int windowSize) {
+        return tca(windowSize, Setting.DEFAULT_TCA_HERE_METERS);
+    }
+
+    public static TcaWithFallbackHandler tca(int windowSize, double hereMeters) {
+        return new TcaWithFallbackHandler(Setting.DEFAULT_TCA_ALPHA, Setting.DEFAULT_TX_POWER_AT_1M_DBM,
+                Setting.DEFAULT_PATH_LOSS_N, hereMeters, Setting.DEFAULT_TCA_THRESHOLD_SEC,
+                windowSize, Setting.DEFAULT_TCA_MIN_POINTS, Setting.DEFAULT_TCA_APPROACH_METERS);
+    }
+
+    /** A fresh open pass for tag 1, track 1. */
+    public static TagStatus newPass() {
+        TagStatus ts = new TagStatus();
+        ts.tagId = 1;
+        ts.trackId = 1;
+        return ts;
+    }
+}
@@ -1,5 +1,8 @@
 package com.patriotlogger.logger.test;
 
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.logic.RssiData;
+
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,6 +27,9 @@ import java.util.jar.JarFile;
  */
 public final class ResourceUtils {
 
+    /** Recorded passes on the test classpath, one CSV per pass. */
+    public static final String CORPUS_DIR = "data_samples";
+
     private ResourceUtils() {}
 
     /**
@@ -169,5 +175,43 @@ public final class ResourceUtils {
         if (is == null) throw new IOException("Resource not found: " + resourcePath);
         return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
     }
-}
 
+    /** Resource paths of the recorded passes (the CSVs under {@link #CORPUS_DIR}). */
+    public static List<String> listCorpusFiles() {
+        List<String> out = new ArrayList<>();
+        for (String path : listResourceFiles(CORPUS_DIR)) {
+            if (path.endsWith(".csv")) out.add(path);
+        }
+        return out;
+    }
+
+    /**
+     * Reads a recorded pass (columns timestamp,tagid,rssi,smoothedrssi, with a header row) as
+     * TagData rows for {@code trackId}, in file order. Rows with fewer than three columns are skipped.
+     */
+    public static List<TagData> loadSamples(String resourcePath, int trackId) throws IOException {
+        List<TagData> out = new ArrayList<>();
+        try (BufferedReader br = openResourceAsReader(resourcePath)) {
+            br.readLine(); // timestamp,tagid,rssi,smoothedrssi
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] f = line.trim().split(",");
+                if (f.length < 3) continue;
+                out.add(new TagData(trackId, Long.parseLong(f[0].trim()), Integer.parseInt(f[2].trim())));
+            }
+        }
+        return out;
+    }
+
+    public static List<TagData> loadSamples(String resourcePath) throws IOException {
+        return loadSamples(resourcePath, 0);
+    }
+
+    /** As {@link #loadSamples(String)}, as handler input (tagId 0, smoothed = raw RSSI). */
+    public static List<RssiData> loadRssiData(String resourcePath) throws IOException {
+        List<TagData> rows = loadSamples(resourcePath);
+        List<RssiData> out = new ArrayList<>(rows.size());
+        for (TagData td : rows) out.add(new RssiData(0, td.timestampMs, td.rssi, td.rssi));
+        return out;
+    }
+}
@@ -0,0 +1,355 @@
+package com.patriotlogger.logger.test;
+
+import com.patriotlogger.logger.data.Setting;
+import com.patriotlogger.logger.data.TagData;
+import com.patriotlogger.logger.data.TagStatus;
+import com.patriotlogger.logger.data.TagStatus.TagStatusState;
+import com.patriotlogger.logger.logic.RssiHandler;
+import com.patriotlogger.logger.logic.StateTransitions;
+import com.patriotlogger.logger.logic.TagPeakData;
+import com.patriotlogger.logger.logic.TagPeakFinder;
+import com.patriotlogger.logger.logic.TcaWithFallbackHandler;
+import com.patriotlogger.logger.logic.filters.MinMaxRssiFilter;
+import com.patriotlogger.logger.logic.filters.RssiFilter;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Grid search over TcaWithFallbackHandler parameters against the recorded data_samples
+ * passes, in parallel on a fork-join pool.
+ *
+ * Each file is one walk-by; its reference time is the offline zero-phase peak
+ * (TagPeakFinder, as DriverMain plots). A configuration is scored on how many passes it
+ * logs, how many it logs more than once, and how far its peak time lands from the
+ * reference. The grid is never materialized: a config is decoded from its index, and each
+ * leaf task builds one handler and reuses it (init()) across passes.
+ *
+ * Run main() for a full sweep; it writes the ranked table to tca_sweep.csv in the
+ * working directory and prints the top rows.
+ */
+public final class TcaSweep {
+
+    private static final float REFERENCE_ALPHA = 0.30f;
+    /** Configs per leaf task; a config over the corpus is ~0.5 ms, so leaves are a few ms. */
+    private static final int LEAF_CONFIGS = 16;
+
+    private TcaSweep() {}
+
+    // ---------- grid ----------
+
+    /** Values per parameter; every combination is one configuration. Defaults are single points. */
+    public static final class Grid {
+        float[]  alpha        = {Setting.DEFAULT_TCA_ALPHA};
+        double[] txAt1mDbm    = {Setting.DEFAULT_TX_POWER_AT_1M_DBM};
+        double[] pathExp      = {Setting.DEFAULT_PATH_LOSS_N};
+        double[] hereMeters   = {Setting.DEFAULT_TCA_HERE_METERS};
+        double[] thresholdSec = {Setting.DEFAULT_TCA_THRESHOLD_SEC};
+        int[]    windowSize   = {Setting.DEFAULT_TCA_WINDOW_SIZE};
+        int[]    minPoints    = {Setting.DEFAULT_TCA_MIN_POINTS};
+        double   approachMeters = Setting.DEFAULT_TCA_APPROACH_METERS;
+
+        public Grid alpha(float from, float to, float step) {
+            double[] v = steps(from, to, step);
+            alpha = new float[v.length];
+            for (int i = 0; i < v.length; i++) alpha[i] = (float) v[i];
+            return this;
+        }
+        public Grid txAt1mDbm(double from, double to, double step)    { txAt1mDbm = steps(from, to, step); return this; }
+        public Grid pathExp(double from, double to, double step)      { pathExp = steps(from, to, step); return this; }
+        public Grid hereMeters(double from, double to, double step)   { hereMeters = steps(from, to, step); return this; }
+        public Grid thresholdSec(double from, double to, double step) { thresholdSec = steps(from, to, step); return this; }
+        public Grid windowSize(int from, int to, int step)            { windowSize = intSteps(from, to, step); return this; }
+        public Grid minPoints(int from, int to, int step)             { minPoints = intSteps(from, to, step); return this; }
+        public Grid approachMeters(double m)                          { approachMeters = m; return this; }
+
+        public long size() {
+            return (long) alpha.length * txAt1mDbm.length * pathExp.length * hereMeters.length
+                    * thresholdSec.length * windowSize.length * minPoints.length;
+        }
+
+        /** Mixed-radix decode; the last parameter varies fastest. */
+        public Config config(long index) {
+            long r = index;
+            final int mp = (int) (r % minPoints.length);    r /= minPoints.length;
+            final int ws = (int) (r % windowSize.length);   r /= windowSize.length;
+            final int th = (int) (r % thresholdSec.length); r /= thresholdSec.length;
+            final int hm = (int) (r % hereMeters.length);   r /= hereMeters.length;
+            final int pe = (int) (r % pathExp.length);      r /= pathExp.length;
+            final int tx = (int) (r % txAt1mDbm.length);    r /= txAt1mDbm.length;
+            final int al = (int) r;
+            return new Config(index, alpha[al], txAt1mDbm[tx], pathExp[pe], hereMeters[hm],
+                    thresholdSec[th], windowSize[ws], minPoints[mp], approachMeters);
+        }
+
+        private static double[] steps(double from, double to, double step) {
+            if (step <= 0 || to < from) return new double[]{from};
+            int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+            double[] v = new double[n];
+            for (int i = 0; i < n; i++) v[i] = from + i * step; // no accumulated drift
+            return v;
+        }
+
+        private static int[] intSteps(int from, int to, int step) {
+            if (step <= 0 || to < from) return new int[]{from};
+            int[] v = new int[(to - from) / step + 1];
+            for (int i = 0; i < v.length; i++) v[i] = from + i * step;
+            return v;
+        }
+    }
+
+    public static final class Config {
+        public final long index;
+        public final float alpha;
+        public final double txAt1mDbm, pathExp, hereMeters, thresholdSec, approachMeters;
+        public final int windowSize, minPoints;
+
+        Config(long index, float alpha, double txAt1mDbm, double pathExp, double hereMeters,
+               double thresholdSec, int windowSize, int minPoints, double approachMeters) {
+            this.index = index;
+            this.alpha = alpha;
+            this.txAt1mDbm = txAt1mDbm;
+            this.pathExp = pathExp;
+            this.hereMeters = hereMeters;
+            this.thresholdSec = thresholdSec;
+            this.windowSize = windowSize;
+            this.minPoints = minPoints;
+            this.approachMeters = approachMeters;
+        }
+
+        public RssiHandler newHandler() {
+            return new TcaWithFallbackHandler(alpha, txAt1mDbm, pathExp, hereMeters, thresholdSec,
+                    windowSize, minPoints, approachMeters);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "α=%.2f P1m=%.1f n=%.2f here=%.2fm thr=%.2fs win=%d min=%d",
+                    alpha, txAt1mDbm, pathExp, hereMeters, thresholdSec, windowSize, minPoints);
+        }
+    }
+
+    // ---------- corpus ----------
+
+    /** One recorded walk-by, filtered as the service would, with its offline reference peak. */
+    public static final class Pass {
+        public final String name;
+        public final long[] ts;
+        public final int[] rssi;
+        public final long refPeakMs;
+
+        Pass(String name, long[] ts, int[] rssi, long refPeakMs) {
+            this.name = name;
+            this.ts = ts;
+            this.rssi = rssi;
+            this.refPeakMs = refPeakMs;
+        }
+    }
+
+    public static List<Pass> loadCorpus() throws Exception {
+        RssiFilter range = new MinMaxRssiFilter(Setting.DEFAULT_FILTER_MIN_RSSI, Setting.DEFAULT_FILTER_MAX_RSSI);
+        Setting peakSetting = new Setting();
+        peakSetting.rssi_averaging_alpha = REFERENCE_ALPHA;
+        TagPeakFinder peakFinder = new TagPeakFinder();
+
+        List<Pass> out = new ArrayList<>();
+        for (String path : ResourceUtils.listCorpusFiles()) {
+            List<TagData> rows = ResourceUtils.loadSamples(path);
+            rows.removeIf(td -> !range.shouldAccept(td.timestampMs, td.rssi));
+            rows.sort(Comparator.comparingLong(td -> td.timestampMs));
+            TagPeakData peak = peakFinder.findPeak(rows, peakSetting);
+            if (peak == null) continue;
+
+            long[] ts = new long[rows.size()];
+            int[] rssi = new int[rows.size()];
+            for (int i = 0; i < ts.length; i++) {
+                ts[i] = rows.get(i).timestampMs;
+                rssi[i] = rows.get(i).rssi;
+            }
+            out.add(new Pass(path.substring(path.lastIndexOf('/') + 1), ts, rssi, peak.peakTimeMs));
+        }
+        return out;
+    }
+
+    // ---------- scoring ----------
+
+    public static final class Score {
+        public final Config config;
+        /** Passes logged at least once. */
+        public final int detected;
+        /** Logs beyond the first within a pass (double counts). */
+        public final int extra;
+        public final int passes;
+        /** |handler peak - reference peak| over detected passes. */
+        public final double meanAbsPeakErrMs;
+        public final long maxAbsPeakErrMs;
+        /** LOGGED time - reference peak, i.e. how long after closest approach the split lands. */
+        public final double meanLogLagMs;
+
+        Score(Config config, int detected, int extra, int passes,
+              double meanAbsPeakErrMs, long maxAbsPeakErrMs, double meanLogLagMs) {
+            this.config = config;
+            this.detected = detected;
+            this.extra = extra;
+            this.passes = passes;
+            this.meanAbsPeakErrMs = meanAbsPeakErrMs;
+            this.maxAbsPeakErrMs = maxAbsPeakErrMs;
+            this.meanLogLagMs = meanLogLagMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d/%d logged, %d extra, peak err mean %.0fms max %dms, lag %.0fms | %s",
+                    detected, passes, extra, meanAbsPeakErrMs, maxAbsPeakErrMs, meanLogLagMs, config);
+        }
+    }
+
+    /** Most passes logged, then fewest double counts, then closest peaks; grid order breaks ties. */
+    public static final Comparator<Score> RANKING = Comparator
+            .comparingInt((Score s) -> -s.detected)
+            .thenComparingInt(s -> s.extra)
+            .thenComparingDouble(s -> s.meanAbsPeakErrMs)
+            .thenComparingLong(s -> s.maxAbsPeakErrMs)
+            .thenComparingLong(s -> s.config.index);
+
+    /** Score one handler over the corpus; the handler is re-initialized for every pass. */
+    static Score evaluate(Config config, RssiHandler handler, List<Pass> corpus, StateTransitions scratch) {
+        int detected = 0, extra = 0;
+        long sumErr = 0, maxErr = 0, sumLag = 0;
+        for (Pass p : corpus) {
+            handler.init();
+            TagStatus status = newStatus();
+            int logged = 0;
+            long peakMs = 0L, exitMs = 0L;
+            int i = 0;
+            while (i < p.ts.length) {
+                i += handler.acceptSamples(status, p.ts, p.rssi, i, p.ts.length - i, scratch);
+                if (status.state == TagStatusState.LOGGED) {
+                    if (logged++ == 0) {
+                        exitMs = status.exitTimeMs;
+                        peakMs = (status.peakTimeMs != 0L) ? status.peakTimeMs : status.exitTimeMs;
+                    }
+                    handler.init();
+                    status = newStatus();
+                }
+            }
+            if (logged == 0) continue;
+            detected++;
+            extra += logged - 1;
+            long err = Math.abs(peakMs - p.refPeakMs);
+            sumErr += err;
+            maxErr = Math.max(maxErr, err);
+            sumLag += exitMs - p.refPeakMs;
+        }
+        return new Score(config, detected, extra, corpus.size(),
+                detected > 0 ? (double) sumErr / detected : Double.POSITIVE_INFINITY, maxErr,
+                detected > 0 ? (double) sumLag / detected : Double.NaN);
+    }
+
+    private static TagStatus newStatus() {
+        TagStatus s = new TagStatus();
+        s.trackId = 1;
+        s.tagId = 1;
+        return s;
+    }
+
+    // ---------- fork-join ----------
+
+    private static final class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Grid grid;
+        private final List<Pass> corpus;
+        private final Score[] out;
+        private final int lo, hi;
+
+        SweepTask(Grid grid, List<Pass> corpus, Score[] out, int lo, int hi) {
+            this.grid = grid;
+            this.corpus = corpus;
+            this.out = out;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= LEAF_CONFIGS) {
+                StateTransitions scratch = new StateTransitions();
+                for (int i = lo; i < hi; i++) {
+                    Config c = grid.config(i);
+                    out[i] = evaluate(c, c.newHandler(), corpus, scratch);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SweepTask(grid, corpus, out, lo, mid), new SweepTask(grid, corpus, out, mid, hi));
+        }
+    }
+
+    /** Evaluate every configuration of the grid on {@code pool}; results come back ranked best first. */
+    public static Score[] run(Grid grid, List<Pass> corpus, ForkJoinPool pool) {
+        final long n = grid.size();
+        if (n > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("grid too large: " + n);
+        Score[] scores = new Score[(int) n];
+        pool.invoke(new SweepTask(grid, corpus, scores, 0, scores.length));
+        Arrays.sort(scores, RANKING);
+        return scores;
+    }
+
+    public static void writeTable(Score[] ranked, Path out) throws Exception {
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write("rank,alpha,txAt1mDbm,pathExp,hereMeters,thresholdSec,windowSize,minPoints,"
+                    + "detected,passes,extra,meanAbsPeakErrMs,maxAbsPeakErrMs,meanLogLagMs\n");
+            for (int r = 0; r < ranked.length; r++) {
+                Score s = ranked[r];
+                Config c = s.config;
+                w.write(String.format(Locale.US, "%d,%.3f,%.1f,%.2f,%.2f,%.2f,%d,%d,%d,%d,%d,%.1f,%d,%.1f\n",
+                        r + 1, c.alpha, c.txAt1mDbm, c.pathExp, c.hereMeters, c.thresholdSec, c.windowSize,
+                        c.minPoints, s.detected, s.passes, s.extra, s.meanAbsPeakErrMs, s.maxAbsPeakErrMs,
+                        s.meanLogLagMs));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Grid grid = new Grid()
+                .alpha(0.15f, 0.45f, 0.05f)
+                .txAt1mDbm(-74.0, -62.0, 2.0)
+                .pathExp(1.8, 2.6, 0.2)
+                .hereMeters(1.0, 5.0, 1.0)
+                .thresholdSec(1.0, 2.5, 0.5)
+                .windowSize(12, 40, 14)
+                .minPoints(5, 9, 2);
+
+        List<Pass> corpus = loadCorpus();
+        if (corpus.isEmpty()) {
+            System.out.println("No CSV files found under src/test/resources/" + ResourceUtils.CORPUS_DIR);
+            return;
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("Sweeping " + grid.size() + " configs over " + corpus.size() + " passes on "
+                + pool.getParallelism() + " workers");
+
+        long t0 = System.nanoTime();
+        Score[] ranked = run(grid, corpus, pool);
+        long ms = (System.nanoTime() - t0) / 1_000_000L;
+
+        Path out = Paths.get("tca_sweep.csv");
+        writeTable(ranked, out);
+        System.out.println(String.format(Locale.US, "Done in %dms (%.1f configs/s). Wrote %s",
+                ms, ranked.length * 1000.0 / Math.max(1, ms), out.toAbsolutePath()));
+        for (int r = 0; r < Math.min(20, ranked.length); r++) {
+            System.out.println(String.format(Locale.US, "%3d. %s", r + 1, ranked[r]));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.patriotlogger.logger.test;
+
+import com.patriotlogger.logger.logic.StateTransitions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class TcaSweepTest {
+
+    @Test
+    public void gridDecodesEveryCombinationOnce() {
+        TcaSweep.Grid grid = new TcaSweep.Grid()
+                .alpha(0.2f, 0.4f, 0.1f)
+                .hereMeters(1.0, 4.0, 1.0)
+                .windowSize(12, 40, 14)
+                .minPoints(5, 9, 2);
+        Assert.assertEquals(3 * 4 * 3 * 3, grid.size());
+        Set<String> seen = new HashSet<>();
+        for (long i = 0; i < grid.size(); i++) Assert.assertTrue(seen.add(grid.config(i).toString()));
+        Assert.assertEquals(0.4f, grid.config(grid.size() - 1).alpha, 1e-6f);
+        Assert.assertEquals(9, grid.config(grid.size() - 1).minPoints);
+    }
+
+    @Test
+    public void parallelSweepMatchesSequentialAndIsRanked() throws Exception {
+        List<TcaSweep.Pass> corpus = TcaSweep.loadCorpus();
+        Assert.assertFalse(corpus.isEmpty());
+        TcaSweep.Grid grid = new TcaSweep.Grid()
+                .alpha(0.2f, 0.3f, 0.1f)
+                .hereMeters(1.0, 4.0, 1.5)
+                .thresholdSec(1.0, 2.0, 1.0)
+                .windowSize(12, 40, 28);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TcaSweep.Score[] ranked = TcaSweep.run(grid, corpus, pool);
+            Assert.assertEquals(grid.size(), ranked.length);
+
+            // same numbers as scoring each config alone, on this thread
+            StateTransitions scratch = new StateTransitions();
+            Set<Long> indices = new HashSet<>();
+            for (TcaSweep.Score s : ranked) {
+                Assert.assertTrue(indices.add(s.config.index));
+                TcaSweep.Score alone = TcaSweep.evaluate(s.config, s.config.newHandler(), corpus, scratch);
+                Assert.assertEquals(alone.detected, s.detected);
+                Assert.assertEquals(alone.extra, s.extra);
+                Assert.assertEquals(alone.meanAbsPeakErrMs, s.meanAbsPeakErrMs, 0.0);
+                Assert.assertEquals(alone.maxAbsPeakErrMs, s.maxAbsPeakErrMs);
+            }
+            for (int r = 1; r < ranked.length; r++) {
+                Assert.assertTrue(TcaSweep.RANKING.compare(ranked[r - 1], ranked[r]) < 0);
+            }
+            Assert.assertTrue("best config should log some passes", ranked[0].detected > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}